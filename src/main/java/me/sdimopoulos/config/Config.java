@@ -1,22 +1,26 @@
 package me.sdimopoulos.config;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * The configuration object that keeps all sections and settings.
- * Extends the HashMap with String key and a Map<String,Object> value.
+ * Extends the LinkedHashMap with String key and a Map<String,Object> value,
+ * so the sections are iterated in the order they were first found in the file.
  * To avoid returning nulls when a section is missing, it overrides the get(key)
  * method and returns an empty hashmap in case the key is missing.
+ * Many settings can be fetched at once with the getAll methods, which fill an
+ * array given by the caller and do not allocate for missing sections.
  */
-public class Config extends HashMap<String,Map<String,Object>>{
+public class Config extends LinkedHashMap<String,Map<String,Object>>{
 
 	private static final long serialVersionUID = -1038974014203658662L;
 
 	@Override
 	public Map<String,Object> get(Object key)
 	{
-		Map<String,Object> value = super.get(key);
+		Map<String,Object> value = getGroupOrNull(key);
 
 		if (value==null)
 		{
@@ -28,4 +32,68 @@ public class Config extends HashMap<String,Map<String,Object>>{
 		}
 	}
 
+	/**
+	 * Fetches many settings of the same section in one call
+	 *
+	 * The section is looked up once. Each value is the same as the one of
+	 * get(group).get(key), so a missing key of a {@link ConfigGroup} is an
+	 * empty string and every key of a missing section is null. The arguments
+	 * are in the same order as in {@link #getAll(String[], String[], Object[])},
+	 * and both arrays can be kept by the caller and passed on every call.
+	 *
+	 * @param group The name of the section
+	 * @param keys The setting names
+	 * @param values The array to fill, at least as long as the keys
+	 * @return The values array
+	 */
+	public Object[] getAll(String group, String[] keys, Object[] values)
+	{
+		Map<String,Object> settings = getGroupOrNull(group);
+		for (int i = 0; i < keys.length; i++)
+		{
+			values[i] = settings == null ? null : settings.get(keys[i]);
+		}
+		return values;
+	}
+
+	/**
+	 * Fetches settings of many sections in one call
+	 *
+	 * The value of the i-th key is taken from the i-th section. Consecutive
+	 * entries of the same section look it up only once, so the pairs should be
+	 * ordered by section. Missing values are as in
+	 * {@link #getAll(String, String[], Object[])}.
+	 *
+	 * @param groups The section names
+	 * @param keys The setting names, as many as the sections
+	 * @param values The array to fill, at least as long as the keys
+	 * @return The values array
+	 */
+	public Object[] getAll(String[] groups, String[] keys, Object[] values)
+	{
+		String lastGroup = null;
+		Map<String,Object> settings = null;
+		for (int i = 0; i < keys.length; i++)
+		{
+			if (i == 0 || !groups[i].equals(lastGroup))
+			{
+				lastGroup = groups[i];
+				settings = getGroupOrNull(lastGroup);
+			}
+			values[i] = settings == null ? null : settings.get(keys[i]);
+		}
+		return values;
+	}
+
+	/**
+	 * Returns the section with the given name without creating an empty one
+	 *
+	 * @param key The name of the section
+	 * @return The section or null if it is missing
+	 */
+	protected Map<String,Object> getGroupOrNull(Object key)
+	{
+		return super.get(key);
+	}
+
 }
@@ -0,0 +1,277 @@
+package me.sdimopoulos.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The settings that differ between two versions of a configuration
+ *
+ * Computed on reload to find what to invalidate:
+ *
+ *   ConfigDiff diff = ConfigDiff.between(oldConfig, newConfig);
+ *   for (ConfigDiff.Change change : diff.getChanges()) { ... }
+ *   if (diff.isChanged("core", "max_bytes_per_request")) { ... }
+ *
+ * A section that is the same object in both versions, or a {@link ConfigGroup}
+ * with the same size and content hash as its old version, is skipped without
+ * looking at its settings, so the cost depends on the number of sections and
+ * of changed sections, not on the number of settings. Other sections are
+ * compared setting by setting. A section that was added or removed reports
+ * all its settings as added or removed.
+ */
+public final class ConfigDiff {
+
+	/**
+	 * The kind of a change
+	 */
+	public enum Type {
+		ADDED,
+		REMOVED,
+		CHANGED
+	}
+
+	/**
+	 * A setting that was added, removed or given another value
+	 */
+	public static final class Change {
+
+		private final Type type;
+		private final String group;
+		private final String key;
+		private final Object oldValue;
+		private final Object newValue;
+
+		/**
+		 * Constructor
+		 *
+		 * @param type The kind of the change
+		 * @param group The section name
+		 * @param key The setting name
+		 * @param oldValue The old value, null if added
+		 * @param newValue The new value, null if removed
+		 */
+		Change(Type type, String group, String key, Object oldValue, Object newValue)
+		{
+			this.type = type;
+			this.group = group;
+			this.key = key;
+			this.oldValue = oldValue;
+			this.newValue = newValue;
+		}
+
+		@Override
+		public String toString()
+		{
+			return type + " " + group + "." + key + " [" + oldValue + " -> " + newValue + "]";
+		}
+
+		/* Getters and Setters begin here */
+
+		public Type getType() {
+			return type;
+		}
+
+		public String getGroup() {
+			return group;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public Object getOldValue() {
+			return oldValue;
+		}
+
+		public Object getNewValue() {
+			return newValue;
+		}
+	}
+
+	private static final Object MISSING = new Object();
+
+	private final List<Change> changes;
+	private final Map<String,Set<String>> changedKeys;
+
+	/**
+	 * Constructor
+	 *
+	 * @param changes The changes, in section order
+	 */
+	private ConfigDiff(List<Change> changes)
+	{
+		this.changes = Collections.unmodifiableList(changes);
+		this.changedKeys = new LinkedHashMap<>();
+		for (Change change : changes)
+		{
+			changedKeys.computeIfAbsent(change.getGroup(), group -> new LinkedHashSet<>())
+					.add(change.getKey());
+		}
+	}
+
+	/**
+	 * Computes the differences between two versions of a configuration
+	 *
+	 * @param oldConfig The previous version
+	 * @param newConfig The current version
+	 * @return The added, removed and changed settings
+	 */
+	public static ConfigDiff between(Config oldConfig, Config newConfig)
+	{
+		List<Change> changes = new ArrayList<>();
+		for (String group : newConfig.keySet())
+		{
+			Map<String,Object> newSettings = newConfig.getGroupOrNull(group);
+			Map<String,Object> oldSettings = oldConfig.getGroupOrNull(group);
+			if (oldSettings == null)
+			{
+				addAll(changes, Type.ADDED, group, newSettings);
+			}
+			else if (!sameContent(oldSettings, newSettings))
+			{
+				compare(changes, group, oldSettings, newSettings);
+			}
+		}
+		for (String group : oldConfig.keySet())
+		{
+			if (!newConfig.containsKey(group))
+			{
+				addAll(changes, Type.REMOVED, group, oldConfig.getGroupOrNull(group));
+			}
+		}
+		return new ConfigDiff(changes);
+	}
+
+	/**
+	 * Tells in O(1) whether two versions of a section are known to be equal
+	 */
+	private static boolean sameContent(Map<String,Object> oldSettings,
+			Map<String,Object> newSettings)
+	{
+		if (oldSettings == newSettings)
+		{
+			return true;
+		}
+		return oldSettings instanceof ConfigGroup && newSettings instanceof ConfigGroup
+				&& oldSettings.size() == newSettings.size()
+				&& ((ConfigGroup) oldSettings).getContentHash()
+					== ((ConfigGroup) newSettings).getContentHash();
+	}
+
+	private static void compare(List<Change> changes, String group,
+			Map<String,Object> oldSettings, Map<String,Object> newSettings)
+	{
+		// forEach does not expose the entries, so the content hashes stay valid
+		newSettings.forEach((key, value) -> {
+			Object oldValue = oldSettings.getOrDefault(key, MISSING);
+			if (oldValue == MISSING)
+			{
+				changes.add(new Change(Type.ADDED, group, key, null, value));
+			}
+			else if (!Objects.equals(oldValue, value))
+			{
+				changes.add(new Change(Type.CHANGED, group, key, oldValue, value));
+			}
+		});
+		oldSettings.forEach((key, value) -> {
+			if (!newSettings.containsKey(key))
+			{
+				changes.add(new Change(Type.REMOVED, group, key, value, null));
+			}
+		});
+	}
+
+	private static void addAll(List<Change> changes, Type type, String group,
+			Map<String,Object> settings)
+	{
+		settings.forEach((key, value) -> changes.add(type == Type.ADDED
+				? new Change(type, group, key, null, value)
+				: new Change(type, group, key, value, null)));
+	}
+
+	/**
+	 * Tells whether there are no differences
+	 *
+	 * @return true if both versions have the same settings
+	 */
+	public boolean isEmpty()
+	{
+		return changes.isEmpty();
+	}
+
+	/**
+	 * Tells whether a setting was added, removed or changed
+	 *
+	 * @param group The section name
+	 * @param key The setting name
+	 * @return true if the setting differs
+	 */
+	public boolean isChanged(String group, String key)
+	{
+		Set<String> keys = changedKeys.get(group);
+		return keys != null && keys.contains(key);
+	}
+
+	/**
+	 * Returns the changes of one kind
+	 *
+	 * @param type The kind of change
+	 * @return The changes of that kind, in section order
+	 */
+	public List<Change> getChanges(Type type)
+	{
+		List<Change> selected = new ArrayList<>();
+		for (Change change : changes)
+		{
+			if (change.getType() == type)
+			{
+				selected.add(change);
+			}
+		}
+		return selected;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "ConfigDiff " + changes;
+	}
+
+	/* Getters and Setters begin here */
+
+	/**
+	 * Returns all the changes, the sections of the new version first
+	 *
+	 * @return The changes
+	 */
+	public List<Change> getChanges() {
+		return changes;
+	}
+
+	/**
+	 * Returns the names of the sections with changes
+	 *
+	 * @return The section names, in the order of the changes
+	 */
+	public Set<String> getChangedGroups() {
+		return Collections.unmodifiableSet(changedKeys.keySet());
+	}
+
+	/**
+	 * Returns the changed settings of a section
+	 *
+	 * @param group The section name
+	 * @return The setting names, empty if the section did not change
+	 */
+	public Set<String> getChangedKeys(String group) {
+		Set<String> keys = changedKeys.get(group);
+		return keys == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(keys);
+	}
+
+}
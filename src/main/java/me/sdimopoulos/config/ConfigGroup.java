@@ -1,17 +1,43 @@
 package me.sdimopoulos.config;
 
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
  * The configuration section object
  * 
  * Extends the HashMap with String key and a Object value.
  * To avoid returning nulls when a setting is missing, it overrides the get(key)
- * method and returns an empty string in case the key is missing */
+ * method and returns an empty string in case the key is missing.
+ * 
+ * A 64 bit hash of the content is kept up to date on every put and remove,
+ * so that {@link ConfigDiff} can tell that two sections are equal without
+ * comparing their settings. The hash of a setting mixes 64 bit hashes of its
+ * name and value, and the hash of the section is their sum, which does not
+ * depend on the order of the settings. The views see the changes made through
+ * them too: a remove of a setting through a view is tracked as any remove, and
+ * an iteration that may change settings, over the entries that setValue can
+ * change or with the remove of an iterator, marks the hash to be recomputed on
+ * the next {@link #getContentHash()}. An entry kept after that call must not
+ * be changed. Read only walks that use forEach leave the hash as it is. */
 public class ConfigGroup extends HashMap<String, Object> {
 
 	private static final long serialVersionUID = 6564010360156039943L;
 
+	private long contentHash;
+	private boolean contentHashValid = true;
+	private transient Set<Map.Entry<String,Object>> entryView;
+	private transient Set<String> keyView;
+	private transient Collection<Object> valueView;
+
 	@Override
 	public Object get(Object key)
 	{
@@ -27,4 +53,360 @@ public class ConfigGroup extends HashMap<String, Object> {
 		}
 	}
 
+	@Override
+	public Object put(String key, Object value)
+	{
+		int size = size();
+		Object previous = super.put(key, value);
+		if (size() == size)
+		{
+			contentHash -= entryHash(key, previous);
+		}
+		contentHash += entryHash(key, value);
+		return previous;
+	}
+
+	@Override
+	public void putAll(Map<? extends String, ? extends Object> m)
+	{
+		for (Map.Entry<? extends String, ? extends Object> entry : m.entrySet())
+		{
+			put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	@Override
+	public Object remove(Object key)
+	{
+		int size = size();
+		Object previous = super.remove(key);
+		if (size() != size)
+		{
+			contentHash -= entryHash((String) key, previous);
+		}
+		return previous;
+	}
+
+	@Override
+	public void clear()
+	{
+		super.clear();
+		contentHash = 0;
+		contentHashValid = true;
+	}
+
+	@Override
+	public Object putIfAbsent(String key, Object value)
+	{
+		contentHashValid = false;
+		return super.putIfAbsent(key, value);
+	}
+
+	@Override
+	public boolean remove(Object key, Object value)
+	{
+		contentHashValid = false;
+		return super.remove(key, value);
+	}
+
+	@Override
+	public boolean replace(String key, Object oldValue, Object newValue)
+	{
+		contentHashValid = false;
+		return super.replace(key, oldValue, newValue);
+	}
+
+	@Override
+	public Object replace(String key, Object value)
+	{
+		contentHashValid = false;
+		return super.replace(key, value);
+	}
+
+	@Override
+	public Object computeIfAbsent(String key,
+			Function<? super String, ? extends Object> mappingFunction)
+	{
+		contentHashValid = false;
+		return super.computeIfAbsent(key, mappingFunction);
+	}
+
+	@Override
+	public Object computeIfPresent(String key,
+			BiFunction<? super String, ? super Object, ? extends Object> remappingFunction)
+	{
+		contentHashValid = false;
+		return super.computeIfPresent(key, remappingFunction);
+	}
+
+	@Override
+	public Object compute(String key,
+			BiFunction<? super String, ? super Object, ? extends Object> remappingFunction)
+	{
+		contentHashValid = false;
+		return super.compute(key, remappingFunction);
+	}
+
+	@Override
+	public Object merge(String key, Object value,
+			BiFunction<? super Object, ? super Object, ? extends Object> remappingFunction)
+	{
+		contentHashValid = false;
+		return super.merge(key, value, remappingFunction);
+	}
+
+	@Override
+	public void replaceAll(BiFunction<? super String, ? super Object, ? extends Object> function)
+	{
+		contentHashValid = false;
+		super.replaceAll(function);
+	}
+
+	@Override
+	public Set<Map.Entry<String,Object>> entrySet()
+	{
+		if (entryView == null)
+		{
+			entryView = new EntryView();
+		}
+		return entryView;
+	}
+
+	@Override
+	public Set<String> keySet()
+	{
+		if (keyView == null)
+		{
+			keyView = new KeyView();
+		}
+		return keyView;
+	}
+
+	@Override
+	public Collection<Object> values()
+	{
+		if (valueView == null)
+		{
+			valueView = new ValueView();
+		}
+		return valueView;
+	}
+
+	@Override
+	public Object clone()
+	{
+		ConfigGroup clone = (ConfigGroup) super.clone();
+		// the views of the copy must not read the original
+		clone.entryView = null;
+		clone.keyView = null;
+		clone.valueView = null;
+		return clone;
+	}
+
+	/**
+	 * The entries of the section, any entry can be changed by setValue, so
+	 * iterating them marks the content hash to be recomputed
+	 */
+	private final class EntryView extends AbstractSet<Map.Entry<String,Object>> {
+
+		@Override
+		public Iterator<Map.Entry<String,Object>> iterator() {
+			contentHashValid = false;
+			return ConfigGroup.super.entrySet().iterator();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return ConfigGroup.super.entrySet().contains(o);
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			if (!contains(o))
+			{
+				return false;
+			}
+			ConfigGroup.this.remove(((Map.Entry<?,?>) o).getKey());
+			return true;
+		}
+
+		@Override
+		public int size() {
+			return ConfigGroup.this.size();
+		}
+
+		@Override
+		public void clear() {
+			ConfigGroup.this.clear();
+		}
+	}
+
+	/**
+	 * The names of the settings, a remove through the view updates the
+	 * content hash and a remove through its iterator marks it to be recomputed
+	 */
+	private final class KeyView extends AbstractSet<String> {
+
+		@Override
+		public Iterator<String> iterator() {
+			return new StaleOnRemove<>(ConfigGroup.super.keySet().iterator());
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return containsKey(o);
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			if (!containsKey(o))
+			{
+				return false;
+			}
+			ConfigGroup.this.remove(o);
+			return true;
+		}
+
+		@Override
+		public int size() {
+			return ConfigGroup.this.size();
+		}
+
+		@Override
+		public void clear() {
+			ConfigGroup.this.clear();
+		}
+	}
+
+	/**
+	 * The values of the settings, a remove through its iterator marks the
+	 * content hash to be recomputed
+	 */
+	private final class ValueView extends AbstractCollection<Object> {
+
+		@Override
+		public Iterator<Object> iterator() {
+			return new StaleOnRemove<>(ConfigGroup.super.values().iterator());
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return containsValue(o);
+		}
+
+		@Override
+		public int size() {
+			return ConfigGroup.this.size();
+		}
+
+		@Override
+		public void clear() {
+			ConfigGroup.this.clear();
+		}
+	}
+
+	/**
+	 * An iterator of a view that marks the content hash to be recomputed when
+	 * it removes a setting
+	 */
+	private final class StaleOnRemove<T> implements Iterator<T> {
+
+		private final Iterator<T> iterator;
+
+		StaleOnRemove(Iterator<T> iterator) {
+			this.iterator = iterator;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return iterator.hasNext();
+		}
+
+		@Override
+		public T next() {
+			return iterator.next();
+		}
+
+		@Override
+		public void remove() {
+			iterator.remove();
+			contentHashValid = false;
+		}
+	}
+
+	/**
+	 * Returns the hash of the settings of the section
+	 *
+	 * Equal sections have equal hashes. Sections with equal hashes are equal
+	 * unless two 64 bit hashes collide. The hash is recomputed only after a
+	 * change that is not tracked incrementally, such as compute or merge, or
+	 * an iteration of the entries.
+	 *
+	 * @return The content hash
+	 */
+	public long getContentHash()
+	{
+		if (!contentHashValid)
+		{
+			long hash = 0;
+			for (Map.Entry<String,Object> entry : super.entrySet())
+			{
+				hash += entryHash(entry.getKey(), entry.getValue());
+			}
+			contentHash = hash;
+			contentHashValid = true;
+		}
+		return contentHash;
+	}
+
+	private static long entryHash(String key, Object value)
+	{
+		return mix(valueHash(key) * 0x9E3779B97F4A7C15L + valueHash(value));
+	}
+
+	private static long valueHash(Object value)
+	{
+		if (value == null)
+		{
+			return 0x5851F42D4C957F2DL;
+		}
+		if (value instanceof String)
+		{
+			String string = (String) value;
+			long hash = 0xCBF29CE484222325L;
+			for (int i = 0; i < string.length(); i++)
+			{
+				hash = (hash ^ string.charAt(i)) * 0x100000001B3L;
+			}
+			return mix(hash);
+		}
+		if (value instanceof Long)
+		{
+			return mix((Long) value ^ 0x2545F4914F6CDD1DL);
+		}
+		if (value instanceof List)
+		{
+			long hash = 0x27D4EB2F165667C5L;
+			for (Object element : (List<?>) value)
+			{
+				hash = hash * 31 + valueHash(element);
+			}
+			return mix(hash);
+		}
+		return mix(value.hashCode() ^ ((long) value.getClass().getName().hashCode() << 32));
+	}
+
+	/**
+	 * The finalizer of MurmurHash3, spreads every input bit to all output bits
+	 */
+	private static long mix(long hash)
+	{
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
 }
@@ -0,0 +1,18 @@
+package me.sdimopoulos.config;
+
+/**
+ * Thrown when the configuration file cannot be loaded
+ *
+ * The cause is the {@link java.io.IOException} of reading the file or the
+ * {@link me.sdimopoulos.config.parser.ParsingConfigurationException} of the
+ * line that could not be parsed.
+ */
+public class ConfigLoadException extends RuntimeException {
+
+	public ConfigLoadException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	private static final long serialVersionUID = 2630862125429718523L;
+
+}
@@ -2,18 +2,37 @@ package me.sdimopoulos.config;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 
+import me.sdimopoulos.config.journal.JournaledConfig;
+import me.sdimopoulos.config.mapped.MappedConfig;
+import me.sdimopoulos.config.mapped.MappedConfigWriter;
+import me.sdimopoulos.config.parser.ByteLineScanner;
 import me.sdimopoulos.config.parser.FsmBuilder;
 import me.sdimopoulos.config.parser.FsmParser;
+import me.sdimopoulos.config.parser.FsmState;
+import me.sdimopoulos.config.parser.InflatingChannel;
 import me.sdimopoulos.config.parser.Parser;
 import me.sdimopoulos.config.parser.ParserBuilder;
 import me.sdimopoulos.config.parser.ParsingConfigurationException;
 import me.sdimopoulos.config.parser.ParsingContext;
 import me.sdimopoulos.config.parser.RegExBuilder;
+import me.sdimopoulos.config.pipeline.LoadPipeline;
 /**
  * The Configuration Loader, contains the loadConfig method
  * 
@@ -24,6 +43,12 @@ import me.sdimopoulos.config.parser.RegExBuilder;
  */ 
 public class ConfigLoader {
 
+	/** Lines read between two checks for cancellation of an asynchronous load */
+	private static final int CANCELLATION_CHECK_LINES = 1024;
+
+	private Charset charset = StandardCharsets.UTF_8;
+	private Supplier<? extends Config> configSupplier = Config::new;
+
 	/**
 	 * Use this main function for testing.
 	 * 
@@ -76,29 +101,383 @@ public class ConfigLoader {
 	 * @param filePath The path where to find the settings file
 	 * @param overrides A list of overrides
 	 * @return A {@link Config} objects containing the parsed configuration
-	 * @throws RuntimeException in case it encounters a non-parsable line
-	 * in the file
+	 * @throws ConfigLoadException in case it encounters a non-parsable line
+	 * in the file or the file cannot be read
 	 */
 	public Config loadConfig(String filePath, List<String> overrides)
 			throws RuntimeException
 	{
-		Config config = new Config();
-		try(BufferedReader buffReader = 
-				Files.newBufferedReader(Paths.get(filePath))) {
+		return loadConfig(filePath, overrides, null);
+	}
+
+	/**
+	 * Loads only the given sections and settings of the configuration
+	 *
+	 * As {@link #loadConfig(String, List)}, but the lines of the sections that
+	 * are not in the spec are skipped after a look at their first byte, until
+	 * the next section header, and the settings that are not wanted are
+	 * skipped after a comparison of their name. Skipped lines are neither
+	 * parsed nor validated, so the load time and the memory depend on what is
+	 * loaded. Loading still stops at the first empty line.
+	 *
+	 * @param filePath The path where to find the settings file
+	 * @param overrides A list of overrides
+	 * @param spec The sections and settings to load, null to load everything
+	 * @return A {@link Config} objects containing the loaded sections
+	 * @throws ConfigLoadException in case it encounters a non-parsable line
+	 * in the file or the file cannot be read
+	 */
+	public Config loadConfig(String filePath, List<String> overrides,
+			LoadSpec spec) throws RuntimeException
+	{
+		FsmBuilder fsmBuilder = new FsmBuilder();
+		return loadConfigWithFSM(filePath, overrides, fsmBuilder.buildFSM(),
+				spec, () -> false, null);
+	}
+
+	/**
+	 * Loads the configuration, skipping the lines that cannot be parsed
+	 *
+	 * As {@link #loadConfig(String, List)}, but a line that cannot be parsed
+	 * is left out as if it was not in the file, and its line number, column
+	 * and reason are recorded in the diagnostics, which are reset first. A
+	 * skipped section header leaves its settings in the previous section.
+	 * Errors are recorded without building a stack trace or a report, so a
+	 * file with many bad lines loads as fast as a clean one.
+	 *
+	 * @param filePath The path where to find the settings file
+	 * @param overrides A list of overrides
+	 * @param diagnostics Receives the skipped lines
+	 * @return A {@link Config} objects containing the parsed lines
+	 * @throws ConfigLoadException in case the file cannot be read
+	 */
+	public Config loadConfigLenient(String filePath, List<String> overrides,
+			LoadDiagnostics diagnostics) throws RuntimeException
+	{
+		diagnostics.reset();
+		FsmBuilder fsmBuilder = new FsmBuilder();
+		return loadConfigWithFSM(filePath, overrides, fsmBuilder.buildFSM(),
+				null, () -> false, diagnostics);
+	}
+
+	/**
+	 * Loads the configuration asynchronously on the given executor
+	 *
+	 * The file is loaded as with {@link #loadConfig(String, List)} in a task
+	 * submitted to the executor, so the caller can carry on with other work.
+	 * The future completes exceptionally with a {@link ConfigLoadException}
+	 * when the file cannot be read or parsed. Cancelling the future stops the
+	 * parsing, which checks for cancellation every few lines.
+	 *
+	 * @param filePath The path where to find the settings file
+	 * @param overrides A list of overrides
+	 * @param executor The executor that runs the loading
+	 * @return A future completed with the {@link Config} object
+	 */
+	public CompletableFuture<Config> loadConfigAsync(String filePath,
+			List<String> overrides, Executor executor)
+	{
+		CompletableFuture<Config> future = new CompletableFuture<>();
+		try {
+			executor.execute(() -> {
+				if (future.isCancelled())
+				{
+					return;
+				}
+				try {
+					FsmBuilder fsmBuilder = new FsmBuilder();
+					future.complete(loadConfigWithFSM(filePath, overrides,
+							fsmBuilder.buildFSM(), null, future::isCancelled, null));
+				}
+				catch(Throwable e)
+				{
+					future.completeExceptionally(e);
+				}
+			});
+		}
+		catch(RejectedExecutionException e)
+		{
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * Loads the configuration using the RegEx grammar compiled into a DFA
+	 *
+	 * The patterns of the {@link RegExBuilder} are compiled by the
+	 * {@link me.sdimopoulos.config.parser.RegExCompiler} into a minimized
+	 * Deterministic FSM, which is then run by the {@link FsmParser} in the same
+	 * way as the hand built FSM of {@link #loadConfig(String, List)}.
+	 *
+	 * @param filePath The path where to find the settings file
+	 * @param overrides A list of overrides
+	 * @return A {@link Config} objects containing the parsed configuration
+	 * @throws ConfigLoadException in case it encounters a non-parsable line
+	 * in the file or the file cannot be read
+	 */
+	public Config loadConfigRegExDFA(String filePath, List<String> overrides)
+			throws RuntimeException
+	{
+		RegExBuilder regexBuilder = new RegExBuilder();
+		return loadConfigWithFSM(filePath, overrides, regexBuilder.buildDFA(),
+				null, () -> false, null);
+	}
+
+	/**
+	 * Loads the configuration with reading, parsing and inserting overlapped
+	 *
+	 * The file is read and split into lines on one thread, parsed with the
+	 * FSM of {@link #loadConfig(String, List)} on another, and the parsed
+	 * entries are put in the configuration by the calling thread, see
+	 * {@link LoadPipeline}. The result is the same as with the sequential
+	 * loader, since every stage keeps the order of the lines, but a large file
+	 * loads faster when there are cores to spare. Charsets that the
+	 * {@link ByteLineScanner} cannot split are loaded sequentially.
+	 *
+	 * @param filePath The path where to find the settings file
+	 * @param overrides A list of overrides
+	 * @return A {@link Config} objects containing the parsed configuration
+	 * @throws ConfigLoadException in case it encounters a non-parsable line
+	 * in the file or the file cannot be read
+	 */
+	public Config loadConfigPipelined(String filePath, List<String> overrides)
+			throws RuntimeException
+	{
+		FsmBuilder fsmBuilder = new FsmBuilder();
+		if (!ByteLineScanner.supportsCharset(charset))
+		{
+			return loadConfigWithFSMFromReader(filePath, overrides,
+					fsmBuilder.buildFSM(), null, () -> false, null);
+		}
+		Config config = configSupplier.get();
+		try(ReadableByteChannel channel = openChannel(filePath)) {
+			return new LoadPipeline(fsmBuilder.buildFSM(), charset)
+					.load(channel, overrides, config);
+		}
+		catch(ParsingConfigurationException|IOException e)
+		{
+			discardConfig(config);
+			throw new ConfigLoadException(e.getMessage(), e);
+		}
+		catch(RuntimeException e)
+		{
+			discardConfig(config);
+			throw e;
+		}
+	}
+
+	/**
+	 * Loads the configuration and writes it in the memory mapped format
+	 *
+	 * The file is loaded with {@link #loadConfig(String, List)} and written
+	 * by the {@link MappedConfigWriter}. The written file is then opened with
+	 * {@link MappedConfig#open(java.nio.file.Path)} by any number of processes,
+	 * which query it in place and share its pages.
+	 *
+	 * @param filePath The path where to find the settings file
+	 * @param overrides A list of overrides
+	 * @param mappedPath The path of the mapped file to create or replace
+	 * @throws ConfigLoadException in case it encounters a non-parsable line
+	 * in the file or a file cannot be read or written
+	 */
+	public void writeMappedConfig(String filePath, List<String> overrides,
+			String mappedPath) throws RuntimeException
+	{
+		Config config = loadConfig(filePath, overrides);
+		try {
+			MappedConfigWriter.write(config, Paths.get(mappedPath));
+		}
+		catch(IOException e)
+		{
+			throw new ConfigLoadException(e.getMessage(), e);
+		}
+		finally {
+			discardConfig(config);
+		}
+	}
+
+	/**
+	 * Loads the configuration with the changes of its journal
+	 *
+	 * The file is loaded with {@link #loadConfig(String, List)} and the
+	 * journal next to it is replayed. Settings changed with
+	 * {@link JournaledConfig#set(String, String, Object)} are appended to the
+	 * journal and written into the file by a background compaction.
+	 *
+	 * @param filePath The path where to find the settings file
+	 * @param overrides A list of overrides
+	 * @return A {@link JournaledConfig} to close when it is no longer changed
+	 * @throws ConfigLoadException in case it encounters a non-parsable line
+	 * in the file or a file cannot be read
+	 */
+	public JournaledConfig loadJournaledConfig(String filePath, List<String> overrides)
+			throws RuntimeException
+	{
+		return JournaledConfig.open(this, filePath, overrides);
+	}
+
+	/**
+	 * Loads the configuration line by line using the given FSM
+	 *
+	 * The file is read as bytes by a {@link ByteLineScanner}, which finds the
+	 * line ends and skips the leading whitespace eight bytes at a time.
+	 * Blank and comment lines are recognised from their first byte and
+	 * skipped, so only the lines with content are passed to the FSM. Lines
+	 * that are pure ASCII, or all lines of an ISO-8859-1 file, are parsed from
+	 * the bytes in place; only other lines are decoded into a String. As with
+	 * the line reader, loading stops at the first empty line.
+	 * Charsets that the scanner cannot split are read with a line reader.
+	 * A gzip compressed file is inflated while it is parsed, see
+	 * {@link #openChannel(String)}.
+	 *
+	 * @param filePath The path where to find the settings file
+	 * @param overrides A list of overrides
+	 * @param fsmState The FSM used to parse the lines
+	 * @param spec The sections and settings to load, null to load everything
+	 * @param cancelled Checked every few lines to stop the loading
+	 * @param diagnostics Records the lines that cannot be parsed, which are
+	 * then skipped, or null to stop at the first one
+	 * @return A {@link Config} objects containing the parsed configuration
+	 * @throws ConfigLoadException in case it encounters a non-parsable line
+	 * in the file or the file cannot be read
+	 * @throws CancellationException if the loading was cancelled
+	 */
+	private Config loadConfigWithFSM(String filePath, List<String> overrides,
+			FsmState fsmState, LoadSpec spec, BooleanSupplier cancelled,
+			LoadDiagnostics diagnostics) throws RuntimeException
+	{
+		if (!ByteLineScanner.supportsCharset(charset))
+		{
+			return loadConfigWithFSMFromReader(filePath, overrides, fsmState,
+					spec, cancelled, diagnostics);
+		}
+		Config config = configSupplier.get();
+		boolean isLatin1 = charset.equals(StandardCharsets.ISO_8859_1);
+		try(ReadableByteChannel channel = openChannel(filePath)) {
+			System.out.print("\n");
+			ParsingContext parsingCtx = new ParsingContext(config, overrides);
+			parsingCtx.setupParsedVariables(new String [] {"group","setting",
+					"override","value"});
+			ParserBuilder parserBuilder = new ParserBuilder();
+			Parser fsmParser = parserBuilder.buildParserWithFSM(fsmState);
+			fsmParser.setLenient(diagnostics != null);
+			ByteLineScanner scanner = new ByteLineScanner(channel, charset);
+			Projection projection = spec == null ? null : new Projection(spec, charset);
+			while(scanner.nextLine() && !scanner.isEmpty())
+			{
+				if (scanner.getLineNumber() % CANCELLATION_CHECK_LINES == 0)
+				{
+					checkCancelled(cancelled);
+				}
+				if (scanner.isBlank() || scanner.isComment())
+				{
+					continue;
+				}
+				if (projection != null && projection.skipLine(scanner))
+				{
+					continue;
+				}
+				try {
+					if (isLatin1 || scanner.isContentAscii())
+					{
+						fsmParser.parseBytesAndUpdateContext(scanner.getBuffer(),
+								scanner.getContentStart(), scanner.getLineEnd(),
+								parsingCtx);
+					}
+					else
+					{
+						fsmParser.parseSingleLineAndUpdateContext(
+								scanner.decodeContent(), parsingCtx);
+					}
+					updateConfig(parsingCtx);
+				}
+				catch(ParsingConfigurationException e)
+				{
+					if (diagnostics == null)
+					{
+						throw e;
+					}
+					// the parsed content starts after the leading whitespace
+					diagnostics.add(scanner.getLineNumber(), e.getColumn() == 0 ? 0
+							: e.getColumn() + scanner.getContentStart() - scanner.getLineStart(),
+							e.getReason());
+				}
+				parsingCtx.resetParsedVariables();
+				fsmParser.resetParser();
+			}
+			System.out.print("\n");
+		}
+		catch(ParsingConfigurationException|IOException e)
+		{
+			discardConfig(config);
+			throw new ConfigLoadException(e.getMessage(), e);
+		}
+		catch(RuntimeException e)
+		{
+			discardConfig(config);
+			throw e;
+		}
+		return config;
+	}
+
+	/**
+	 * Loads the configuration line by line using the given FSM and a reader
+	 *
+	 * Used for the charsets that cannot be split into lines as bytes.
+	 *
+	 * @param filePath The path where to find the settings file
+	 * @param overrides A list of overrides
+	 * @param fsmState The FSM used to parse the lines
+	 * @param spec The sections and settings to load, null to load everything
+	 * @param cancelled Checked every few lines to stop the loading
+	 * @param diagnostics Records the lines that cannot be parsed, which are
+	 * then skipped, or null to stop at the first one
+	 * @return A {@link Config} objects containing the parsed configuration
+	 * @throws ConfigLoadException in case it encounters a non-parsable line
+	 * in the file or the file cannot be read
+	 * @throws CancellationException if the loading was cancelled
+	 */
+	private Config loadConfigWithFSMFromReader(String filePath,
+			List<String> overrides, FsmState fsmState, LoadSpec spec,
+			BooleanSupplier cancelled, LoadDiagnostics diagnostics)
+			throws RuntimeException
+	{
+		Config config = configSupplier.get();
+		try(BufferedReader buffReader = openReader(filePath)) {
 			System.out.print("\n");
 			ParsingContext parsingCtx = new ParsingContext(config, overrides);
 			parsingCtx.setupParsedVariables(new String [] {"group","setting",
 					"override","value"});
-			FsmBuilder fsmBuilder = new FsmBuilder();
 			ParserBuilder parserBuilder = new ParserBuilder();
-			Parser fsmParser = parserBuilder.buildParserWithFSM(
-												fsmBuilder.buildFSM());
+			Parser fsmParser = parserBuilder.buildParserWithFSM(fsmState);
+			fsmParser.setLenient(diagnostics != null);
+			Projection projection = spec == null ? null : new Projection(spec, charset);
+			long lineNumber = 0;
 			for(String line=buffReader.readLine();
 					line!=null&&!line.isEmpty();
 					line=buffReader.readLine())
 			{
-				fsmParser.parseSingleLineAndUpdateContext(line, parsingCtx);
-				updateConfig(parsingCtx);
+				if (++lineNumber % CANCELLATION_CHECK_LINES == 0)
+				{
+					checkCancelled(cancelled);
+				}
+				if (projection != null && projection.skipLine(line))
+				{
+					continue;
+				}
+				try {
+					fsmParser.parseSingleLineAndUpdateContext(line, parsingCtx);
+					updateConfig(parsingCtx);
+				}
+				catch(ParsingConfigurationException e)
+				{
+					if (diagnostics == null)
+					{
+						throw e;
+					}
+					diagnostics.add(lineNumber, e.getColumn(), e.getReason());
+				}
 				parsingCtx.resetParsedVariables();
 				fsmParser.resetParser();
 			}
@@ -106,7 +485,13 @@ public class ConfigLoader {
 		}
 		catch(ParsingConfigurationException|IOException e)
 		{
-			throw new RuntimeException(e.getMessage());
+			discardConfig(config);
+			throw new ConfigLoadException(e.getMessage(), e);
+		}
+		catch(RuntimeException e)
+		{
+			discardConfig(config);
+			throw e;
 		}
 		return config;
 	}
@@ -114,9 +499,8 @@ public class ConfigLoader {
 	public Config loadConfigRegEx(String filePath, List<String> overrides)
 			throws RuntimeException
 	{
-		Config config = new Config();
-		try(BufferedReader buffReader = 
-				Files.newBufferedReader(Paths.get(filePath))) {
+		Config config = configSupplier.get();
+		try(BufferedReader buffReader = openReader(filePath)) {
 			System.out.print("\n");
 			ParsingContext parsingCtx = new ParsingContext(config, overrides);
 			parsingCtx.setupParsedVariables(new String [] {"group","setting",
@@ -137,12 +521,100 @@ public class ConfigLoader {
 		}
 		catch(ParsingConfigurationException|IOException e)
 		{
-			throw new RuntimeException(e.getMessage());
+			discardConfig(config);
+			throw new ConfigLoadException(e.getMessage(), e);
+		}
+		catch(RuntimeException e)
+		{
+			discardConfig(config);
+			throw e;
 		}
 		return config;
 	}
 
 	
+	/**
+	 * Opens the file, decompressing it if it is gzip compressed
+	 *
+	 * A file that starts with the gzip magic number is read through an
+	 * {@link InflatingChannel}, which inflates it on its own thread while the
+	 * caller parses the bytes already inflated. The decompressed file is
+	 * never written to disk nor held whole in memory. Other files are read
+	 * directly from their channel.
+	 *
+	 * @param filePath The path of the file
+	 * @return A channel of the decompressed bytes of the file
+	 * @throws IOException if the file cannot be opened
+	 */
+	private static ReadableByteChannel openChannel(String filePath)
+			throws IOException
+	{
+		FileChannel channel = FileChannel.open(Paths.get(filePath),
+				StandardOpenOption.READ);
+		try {
+			ByteBuffer magic = ByteBuffer.allocate(2);
+			while (magic.hasRemaining() && channel.read(magic) >= 0);
+			channel.position(0);
+			if (magic.position() == 2
+					&& InflatingChannel.isGzipMagic(magic.get(0), magic.get(1)))
+			{
+				return new InflatingChannel(Channels.newInputStream(channel));
+			}
+			return channel;
+		}
+		catch(IOException|RuntimeException e)
+		{
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens a line reader of the file, decompressing it if it is gzip compressed
+	 *
+	 * @param filePath The path of the file
+	 * @return A reader of the decompressed file in the charset of the loader
+	 * @throws IOException if the file cannot be opened
+	 */
+	private BufferedReader openReader(String filePath) throws IOException
+	{
+		return new BufferedReader(Channels.newReader(openChannel(filePath),
+				charset.newDecoder(), -1));
+	}
+
+	/**
+	 * Closes a partially loaded configuration that holds resources
+	 *
+	 * @param config The configuration that failed to load
+	 */
+	private void discardConfig(Config config)
+	{
+		if (config instanceof AutoCloseable)
+		{
+			try {
+				((AutoCloseable) config).close();
+			}
+			catch(Exception e)
+			{
+				//intentionally left empty. the load failure is reported instead
+			}
+		}
+	}
+
+	/**
+	 * Stops the loading if it was cancelled
+	 *
+	 * @param cancelled The cancellation flag of the loading
+	 * @throws CancellationException if the loading was cancelled
+	 */
+	private void checkCancelled(BooleanSupplier cancelled)
+	{
+		if (cancelled.getAsBoolean())
+		{
+			throw new CancellationException("Configuration loading was cancelled");
+		}
+	}
+
 	/**
 	 * Updates the Config object inside ParsingContext
 	 * 
@@ -275,4 +747,176 @@ public class ConfigLoader {
 				.anyMatch(item -> item.equals(override)));
 	}
 
+	/**
+	 * Decides which lines to skip when loading with a {@link LoadSpec}
+	 *
+	 * Only the first byte of a line is looked at to tell a section header from
+	 * the rest, and the name of a header is decoded to check it against the
+	 * spec. Until the next header, all the lines of an unwanted section are
+	 * skipped, as are the lines before the first header, which are never
+	 * stored. In a section with wanted keys, the setting name at the start of
+	 * a line is compared with the encoded keys without decoding it.
+	 */
+	private static final class Projection {
+
+		private final LoadSpec spec;
+		private final Charset charset;
+		private boolean skipping = true;
+		private String currentGroup = null;
+		private byte [][] wantedKeys = null;
+
+		Projection(LoadSpec spec, Charset charset)
+		{
+			this.spec = spec;
+			this.charset = charset;
+		}
+
+		/**
+		 * Checks the current line of a scanner, which has content
+		 *
+		 * @param scanner The scanner positioned on the line
+		 * @return true if the line must be skipped
+		 */
+		boolean skipLine(ByteLineScanner scanner)
+		{
+			byte [] bytes = scanner.getBuffer();
+			int start = scanner.getContentStart();
+			int end = scanner.getLineEnd();
+			if (bytes[start] == '[')
+			{
+				int close = scanner.indexOf((byte) ']', start + 1, end);
+				enterSection(close < 0 ? null
+						: new String(bytes, start + 1, close - start - 1, charset));
+				return skipping;
+			}
+			if (skipping)
+			{
+				return true;
+			}
+			if (wantedKeys == null)
+			{
+				return false;
+			}
+			int nameEnd = start;
+			while (nameEnd < end && !endsName(bytes[nameEnd]))
+			{
+				nameEnd++;
+			}
+			for (byte [] key : wantedKeys)
+			{
+				if (key.length == nameEnd - start && regionMatches(bytes, start, key))
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Checks a line read as a String
+		 *
+		 * @param line The line
+		 * @return true if the line must be skipped
+		 */
+		boolean skipLine(String line)
+		{
+			int start = 0;
+			while (start < line.length() && Character.isWhitespace(line.charAt(start)))
+			{
+				start++;
+			}
+			if (start == line.length() || line.charAt(start) == ';')
+			{
+				return false;
+			}
+			if (line.charAt(start) == '[')
+			{
+				int close = line.indexOf(']', start + 1);
+				enterSection(close < 0 ? null : line.substring(start + 1, close));
+				return skipping;
+			}
+			if (skipping)
+			{
+				return true;
+			}
+			if (wantedKeys == null)
+			{
+				return false;
+			}
+			int nameEnd = start;
+			while (nameEnd < line.length() && !endsName(line.charAt(nameEnd)))
+			{
+				nameEnd++;
+			}
+			return !spec.includesKey(currentGroup, line.substring(start, nameEnd));
+		}
+
+		/**
+		 * Starts a section, a malformed header is left to the parser to reject
+		 */
+		private void enterSection(String group)
+		{
+			currentGroup = group;
+			skipping = group != null && !spec.includesGroup(group);
+			wantedKeys = group == null || skipping ? null : spec.encodeKeys(group, charset);
+		}
+
+		/**
+		 * Checks if a byte or a whole char ends a setting name, a char is not
+		 * narrowed so that no other character can match a delimiter
+		 */
+		private static boolean endsName(int value)
+		{
+			return value == ' ' || value == '\t' || value == '<' || value == '=';
+		}
+
+		private static boolean regionMatches(byte [] bytes, int start, byte [] key)
+		{
+			for (int i = 0; i < key.length; i++)
+			{
+				if (bytes[start + i] != key[i])
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/* Getters and Setters begin here */
+	public Charset getCharset() {
+		return charset;
+	}
+
+	/**
+	 * Sets the charset of the configuration files, UTF-8 by default
+	 *
+	 * @param charset The charset of the files
+	 * @return This loader
+	 */
+	public ConfigLoader setCharset(Charset charset) {
+		this.charset = charset;
+		return this;
+	}
+
+	public Supplier<? extends Config> getConfigSupplier() {
+		return configSupplier;
+	}
+
+	/**
+	 * Sets the supplier of the configuration objects that are filled by the
+	 * loader, by default a heap {@link Config}
+	 *
+	 * A configuration that is AutoCloseable, such as the
+	 * {@link me.sdimopoulos.config.store.OffHeapConfig}, is closed when the
+	 * loading fails.
+	 *
+	 * @param configSupplier The supplier of empty configuration objects
+	 * @return This loader
+	 */
+	public ConfigLoader setConfigSupplier(Supplier<? extends Config> configSupplier) {
+		this.configSupplier = configSupplier;
+		return this;
+	}
+
 }
@@ -0,0 +1,263 @@
+package me.sdimopoulos.config;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Base of the configuration objects that keep their sections outside the
+ * HashMap
+ *
+ * A view is a {@link Config}, so it can be returned by the loader and queried
+ * with the same get(group).get(key) contract, but the sections are supplied by
+ * the subclass through {@link #getGroup(String)} and {@link #groupNames()}.
+ * The inherited HashMap storage is never used. All the read methods of the Map
+ * are answered from the subclass, while the mutators throw an
+ * {@link UnsupportedOperationException} unless the subclass overrides them.
+ */
+public abstract class ConfigView extends Config {
+
+	private static final long serialVersionUID = 4419620398153385742L;
+
+	/**
+	 * Returns the section with the given name
+	 *
+	 * @param name The name of the section
+	 * @return The section settings, or null if the section is missing
+	 */
+	protected abstract Map<String,Object> getGroup(String name);
+
+	/**
+	 * Returns the names of all the sections
+	 *
+	 * @return The set of section names
+	 */
+	protected abstract Set<String> groupNames();
+
+	@Override
+	protected Map<String,Object> getGroupOrNull(Object key)
+	{
+		return key instanceof String ? getGroup((String) key) : null;
+	}
+
+	@Override
+	public Map<String,Object> getOrDefault(Object key,
+			Map<String,Object> defaultValue)
+	{
+		Map<String,Object> value = key instanceof String
+				? getGroup((String) key) : null;
+		return value == null ? defaultValue : value;
+	}
+
+	@Override
+	public boolean containsKey(Object key)
+	{
+		return key instanceof String && getGroup((String) key) != null;
+	}
+
+	@Override
+	public boolean containsValue(Object value)
+	{
+		return values().contains(value);
+	}
+
+	@Override
+	public int size()
+	{
+		return groupNames().size();
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return groupNames().isEmpty();
+	}
+
+	@Override
+	public Set<String> keySet()
+	{
+		return Collections.unmodifiableSet(groupNames());
+	}
+
+	@Override
+	public Collection<Map<String,Object>> values()
+	{
+		return new AbstractCollection<Map<String,Object>>() {
+			@Override
+			public Iterator<Map<String,Object>> iterator() {
+				Iterator<String> names = groupNames().iterator();
+				return new Iterator<Map<String,Object>>() {
+					@Override
+					public boolean hasNext() {
+						return names.hasNext();
+					}
+					@Override
+					public Map<String,Object> next() {
+						return getGroup(names.next());
+					}
+				};
+			}
+			@Override
+			public int size() {
+				return ConfigView.this.size();
+			}
+		};
+	}
+
+	@Override
+	public Set<Map.Entry<String,Map<String,Object>>> entrySet()
+	{
+		return new AbstractSet<Map.Entry<String,Map<String,Object>>>() {
+			@Override
+			public Iterator<Map.Entry<String,Map<String,Object>>> iterator() {
+				Iterator<String> names = groupNames().iterator();
+				return new Iterator<Map.Entry<String,Map<String,Object>>>() {
+					@Override
+					public boolean hasNext() {
+						return names.hasNext();
+					}
+					@Override
+					public Map.Entry<String,Map<String,Object>> next() {
+						String name = names.next();
+						return new AbstractMap.SimpleImmutableEntry<>(name,
+								getGroup(name));
+					}
+				};
+			}
+			@Override
+			public int size() {
+				return ConfigView.this.size();
+			}
+		};
+	}
+
+	@Override
+	public void forEach(BiConsumer<? super String, ? super Map<String,Object>> action)
+	{
+		for (String name : groupNames())
+		{
+			action.accept(name, getGroup(name));
+		}
+	}
+
+	/**
+	 * Copies the view into a heap {@link Config}, used when it is serialized
+	 *
+	 * @return A Config with the same sections and settings
+	 */
+	protected Object writeReplace()
+	{
+		Config copy = new Config();
+		for (String name : groupNames())
+		{
+			ConfigGroup group = new ConfigGroup();
+			group.putAll(getGroup(name));
+			copy.put(name, group);
+		}
+		return copy;
+	}
+
+	/* Mutators are not supported unless overridden */
+
+	@Override
+	public Map<String,Object> put(String key, Map<String,Object> value)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void putAll(Map<? extends String, ? extends Map<String,Object>> m)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Map<String,Object> putIfAbsent(String key, Map<String,Object> value)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Map<String,Object> remove(Object key)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean remove(Object key, Object value)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void clear()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Map<String,Object> replace(String key, Map<String,Object> value)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean replace(String key, Map<String,Object> oldValue,
+			Map<String,Object> newValue)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void replaceAll(BiFunction<? super String, ? super Map<String,Object>,
+			? extends Map<String,Object>> function)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Map<String,Object> computeIfAbsent(String key,
+			Function<? super String, ? extends Map<String,Object>> mappingFunction)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Map<String,Object> computeIfPresent(String key,
+			BiFunction<? super String, ? super Map<String,Object>,
+			? extends Map<String,Object>> remappingFunction)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Map<String,Object> compute(String key,
+			BiFunction<? super String, ? super Map<String,Object>,
+			? extends Map<String,Object>> remappingFunction)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Map<String,Object> merge(String key, Map<String,Object> value,
+			BiFunction<? super Map<String,Object>, ? super Map<String,Object>,
+			? extends Map<String,Object>> remappingFunction)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Object clone()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+}
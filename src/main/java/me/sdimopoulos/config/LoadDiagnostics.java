@@ -0,0 +1,163 @@
+package me.sdimopoulos.config;
+
+import me.sdimopoulos.config.parser.ParsingConfigurationException.Reason;
+
+/**
+ * The lines skipped by a lenient load
+ *
+ * Passed to {@link ConfigLoader#loadConfigLenient(String, java.util.List,
+ * LoadDiagnostics)}, which records the line number, the column and the
+ * reason of every line it cannot parse:
+ *
+ *   LoadDiagnostics diagnostics = new LoadDiagnostics();
+ *   Config config = configLoader.loadConfigLenient(path, overrides, diagnostics);
+ *   for (int i = 0; i < diagnostics.size(); i++)
+ *       log(diagnostics.getLine(i), diagnostics.getColumn(i), diagnostics.getReason(i));
+ *
+ * The entries are kept in arrays allocated once, so recording an error
+ * allocates nothing and the same diagnostics can be passed to every load.
+ * Errors past the capacity are only counted.
+ */
+public class LoadDiagnostics {
+
+	/** Default number of errors kept */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private final long [] lines;
+	private final int [] columns;
+	private final Reason [] reasons;
+	private int size;
+	private long errorCount;
+
+	/**
+	 * Constructor, keeps up to {@link #DEFAULT_CAPACITY} errors
+	 */
+	public LoadDiagnostics()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity The number of errors kept
+	 */
+	public LoadDiagnostics(int capacity)
+	{
+		this.lines = new long [capacity];
+		this.columns = new int [capacity];
+		this.reasons = new Reason [capacity];
+	}
+
+	/**
+	 * Forgets the errors of a previous load
+	 */
+	public void reset()
+	{
+		size = 0;
+		errorCount = 0;
+	}
+
+	/**
+	 * Records an error
+	 *
+	 * @param line The line number, starting from 1
+	 * @param column The column, starting from 1, or 0 if it is not known
+	 * @param reason The reason the line was skipped
+	 */
+	void add(long line, int column, Reason reason)
+	{
+		if (size < lines.length)
+		{
+			lines[size] = line;
+			columns[size] = column;
+			reasons[size] = reason;
+			size++;
+		}
+		errorCount++;
+	}
+
+	/**
+	 * Returns the number of errors kept
+	 *
+	 * @return The number, at most the capacity
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return errorCount == 0;
+	}
+
+	/**
+	 * Checks if there were more errors than the capacity
+	 *
+	 * @return true if some errors were only counted
+	 */
+	public boolean isTruncated()
+	{
+		return errorCount > size;
+	}
+
+	public long getLine(int index)
+	{
+		checkIndex(index);
+		return lines[index];
+	}
+
+	public int getColumn(int index)
+	{
+		checkIndex(index);
+		return columns[index];
+	}
+
+	public Reason getReason(int index)
+	{
+		checkIndex(index);
+		return reasons[index];
+	}
+
+	private void checkIndex(int index)
+	{
+		if (index < 0 || index >= size)
+		{
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder report = new StringBuilder();
+		report.append(errorCount).append(" lines skipped");
+		for (int i = 0; i < size; i++)
+		{
+			report.append("\n").append(lines[i]).append(':').append(columns[i])
+				.append(' ').append(reasons[i]);
+		}
+		if (isTruncated())
+		{
+			report.append("\n...");
+		}
+		return report.toString();
+	}
+
+	/* Getters and Setters begin here */
+
+	/**
+	 * Returns the number of errors of the load, kept or not
+	 *
+	 * @return The number of skipped lines
+	 */
+	public long getErrorCount() {
+		return errorCount;
+	}
+
+	public int getCapacity() {
+		return lines.length;
+	}
+
+}
@@ -0,0 +1,124 @@
+package me.sdimopoulos.config;
+
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The sections, and optionally the settings, to load from a file
+ *
+ * Passed to {@link ConfigLoader#loadConfig(String, java.util.List, LoadSpec)}
+ * so that only what a service reads is parsed and stored:
+ *
+ *   LoadSpec spec = new LoadSpec()
+ *       .addGroup("core")
+ *       .addGroup("rest", "config_path", "arguments");
+ *
+ * A group added without keys is loaded whole. A group added with keys keeps
+ * only those settings, including their overrides. Adding the same group again
+ * adds to its keys, and adding it without keys loads it whole.
+ */
+public class LoadSpec {
+
+	private final Map<String,Set<String>> groups = new LinkedHashMap<>();
+
+	/**
+	 * Adds a section with all its settings
+	 *
+	 * @param group The section name
+	 * @return This spec
+	 */
+	public LoadSpec addGroup(String group)
+	{
+		groups.put(group, null);
+		return this;
+	}
+
+	/**
+	 * Adds some settings of a section
+	 *
+	 * @param group The section name
+	 * @param keys The setting names
+	 * @return This spec
+	 */
+	public LoadSpec addGroup(String group, String... keys)
+	{
+		if (groups.containsKey(group) && groups.get(group) == null)
+		{
+			return this;
+		}
+		Set<String> wanted = groups.get(group);
+		if (wanted == null)
+		{
+			wanted = new HashSet<>();
+			groups.put(group, wanted);
+		}
+		Collections.addAll(wanted, keys);
+		return this;
+	}
+
+	/**
+	 * Tells whether a section is loaded
+	 *
+	 * @param group The section name
+	 * @return true if the section was added
+	 */
+	public boolean includesGroup(String group)
+	{
+		return groups.containsKey(group);
+	}
+
+	/**
+	 * Tells whether a setting is loaded
+	 *
+	 * @param group The section name
+	 * @param key The setting name
+	 * @return true if the section was added whole or with this setting
+	 */
+	public boolean includesKey(String group, String key)
+	{
+		if (!groups.containsKey(group))
+		{
+			return false;
+		}
+		Set<String> keys = groups.get(group);
+		return keys == null || keys.contains(key);
+	}
+
+	/**
+	 * Returns the added sections
+	 *
+	 * @return The section names in the order they were added
+	 */
+	public Set<String> getGroups()
+	{
+		return Collections.unmodifiableSet(groups.keySet());
+	}
+
+	/**
+	 * Encodes the wanted settings of a section, for matching raw lines
+	 *
+	 * @param group The section name
+	 * @param charset The charset of the file
+	 * @return The encoded setting names, or null if the section is loaded whole
+	 */
+	byte [][] encodeKeys(String group, Charset charset)
+	{
+		Set<String> keys = groups.get(group);
+		if (keys == null)
+		{
+			return null;
+		}
+		byte [][] encoded = new byte [keys.size()][];
+		int i = 0;
+		for (String key : keys)
+		{
+			encoded[i++] = key.getBytes(charset);
+		}
+		return encoded;
+	}
+
+}
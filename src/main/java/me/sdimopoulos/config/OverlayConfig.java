@@ -0,0 +1,292 @@
+package me.sdimopoulos.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A configuration made of several configurations stacked by precedence
+ *
+ * The layers are given from the lowest precedence to the highest, and a
+ * get(group).get(key) is answered by the last layer that has the setting:
+ *
+ *   OverlayConfig config = new OverlayConfig(base, region, host, runtime);
+ *   config.get("core").get("max_files_per_session");
+ *   config.replaceLayer(3, newRuntime);
+ *
+ * Nothing is copied, the sections of the overlay resolve their settings
+ * through the layers and remember the answer, so a setting is looked up in the
+ * layers once and then costs one map lookup. A setting that no layer has is
+ * looked up in the layers on every get and not remembered, so asking for
+ * arbitrary names cannot grow the overlay. A section of the overlay is a
+ * live view, it keeps answering with the current layers after a replacement.
+ *
+ * {@link #replaceLayer(int, Config)} computes the {@link ConfigDiff} between
+ * the old and the new version of the layer and forgets only the resolved
+ * settings that it reports, so replacing a small layer costs in the size of
+ * its changes, whatever the size of the other layers. The layers are not
+ * watched: a layer changed in place must be followed by
+ * {@link #invalidate(String, String)} of the changed settings, or replaced by
+ * a new version instead.
+ *
+ * Queries may run concurrently with each other and with a replacement, which
+ * are serialized with each other. A query that resolved a setting with the
+ * layers before a replacement drops its answer instead of remembering it.
+ */
+public class OverlayConfig extends ConfigView {
+
+	private static final long serialVersionUID = -7706216447405536137L;
+
+	/** Returned for a setting that no layer has, which is never remembered */
+	static final Object MISSING = new Object();
+
+	private transient volatile Config [] layers;
+	// only sections that a layer has are added, and they are never removed so
+	// that the views held by callers stay current
+	private final transient Map<String,OverlayConfigGroup> groups = new ConcurrentHashMap<>();
+	private transient volatile Set<String> names;
+
+	/**
+	 * Constructor
+	 *
+	 * @param layers The configurations, from the lowest precedence to the
+	 * highest
+	 */
+	public OverlayConfig(Config... layers)
+	{
+		this(Arrays.asList(layers));
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param layers The configurations, from the lowest precedence to the
+	 * highest
+	 */
+	public OverlayConfig(List<? extends Config> layers)
+	{
+		for (Config layer : layers)
+		{
+			if (layer == null)
+			{
+				throw new IllegalArgumentException("A layer is null");
+			}
+		}
+		this.layers = layers.toArray(new Config [layers.size()]);
+	}
+
+	/**
+	 * Replaces a layer and forgets the resolved settings it changes
+	 *
+	 * @param index The position of the layer, 0 for the lowest precedence
+	 * @param layer The new version of the layer
+	 * @return The differences between the old and the new version of the
+	 * layer, some of them may be hidden by layers of higher precedence
+	 * @throws IndexOutOfBoundsException if there is no layer at the index
+	 */
+	public synchronized ConfigDiff replaceLayer(int index, Config layer)
+	{
+		if (layer == null)
+		{
+			throw new IllegalArgumentException("The layer is null");
+		}
+		Config [] current = layers;
+		Config old = current[index];
+		Config [] replaced = current.clone();
+		replaced[index] = layer;
+		// publish the new layers first, queries that started before drop their answers
+		layers = replaced;
+		ConfigDiff diff = ConfigDiff.between(old, layer);
+		for (ConfigDiff.Change change : diff.getChanges())
+		{
+			OverlayConfigGroup group = groups.get(change.getGroup());
+			if (group != null)
+			{
+				group.forget(change.getKey(), change.getType() != ConfigDiff.Type.CHANGED);
+			}
+		}
+		if (!old.keySet().equals(layer.keySet()))
+		{
+			forgetSections(old.keySet(), layer);
+			forgetSections(layer.keySet(), old);
+		}
+		return diff;
+	}
+
+	/**
+	 * Forgets if the sections that are in a version of a layer but not the
+	 * other are in the overlay
+	 */
+	private void forgetSections(Set<String> names, Config other)
+	{
+		for (String name : names)
+		{
+			if (!other.containsKey(name))
+			{
+				OverlayConfigGroup group = groups.get(name);
+				if (group != null)
+				{
+					group.forgetPresence();
+				}
+				this.names = null;
+			}
+		}
+	}
+
+	/**
+	 * Forgets a resolved setting, after a layer was changed in place
+	 *
+	 * @param group The section name
+	 * @param key The setting name
+	 */
+	public synchronized void invalidate(String group, String key)
+	{
+		layers = layers.clone();
+		names = null;
+		OverlayConfigGroup settings = groups.get(group);
+		if (settings != null)
+		{
+			settings.forgetPresence();
+			settings.forget(key, true);
+		}
+	}
+
+	/**
+	 * Forgets all the resolved sections and settings
+	 */
+	public synchronized void invalidate()
+	{
+		layers = layers.clone();
+		names = null;
+		for (OverlayConfigGroup group : groups.values())
+		{
+			group.forgetAll();
+		}
+	}
+
+	/**
+	 * Tells whether a setting is resolved, so the next get of it is answered
+	 * without looking at the layers
+	 *
+	 * @param group The section name
+	 * @param key The setting name
+	 * @return true if the setting is remembered, a missing one never is
+	 */
+	public boolean isResolved(String group, String key)
+	{
+		OverlayConfigGroup settings = groups.get(group);
+		return settings != null && settings.isResolved(key);
+	}
+
+	@Override
+	protected Map<String,Object> getGroup(String name)
+	{
+		OverlayConfigGroup group = groups.get(name);
+		if (group == null)
+		{
+			if (!contains(layers, name))
+			{
+				// not remembered, or every missing name asked for would stay
+				return null;
+			}
+			group = new OverlayConfigGroup(this, name);
+			OverlayConfigGroup previous = groups.putIfAbsent(name, group);
+			if (previous != null)
+			{
+				group = previous;
+			}
+		}
+		return group.isPresent() ? group : null;
+	}
+
+	/**
+	 * Tells whether a layer has a section
+	 *
+	 * @param layers The layers to look in
+	 * @param group The section name
+	 * @return true if any layer has the section
+	 */
+	static boolean contains(Config [] layers, String group)
+	{
+		for (Config layer : layers)
+		{
+			if (layer.containsKey(group))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	protected Set<String> groupNames()
+	{
+		Set<String> resolved = names;
+		if (resolved == null)
+		{
+			Config [] current = layers;
+			Set<String> union = new LinkedHashSet<>();
+			for (Config layer : current)
+			{
+				union.addAll(layer.keySet());
+			}
+			resolved = Collections.unmodifiableSet(union);
+			names = resolved;
+			if (layers != current)
+			{
+				names = null;
+			}
+		}
+		return resolved;
+	}
+
+	/**
+	 * Looks a setting up in the layers, the last layer that has it wins
+	 *
+	 * @param layers The layers to look in
+	 * @param group The section name
+	 * @param key The setting name
+	 * @return The value, or {@link #MISSING}
+	 */
+	static Object resolve(Config [] layers, String group, Object key)
+	{
+		for (int i = layers.length - 1; i >= 0; i--)
+		{
+			Map<String,Object> settings = layers[i].getGroupOrNull(group);
+			if (settings != null)
+			{
+				Object value = settings.getOrDefault(key, MISSING);
+				if (value != MISSING)
+				{
+					return value;
+				}
+			}
+		}
+		return MISSING;
+	}
+
+	/* Getters and Setters begin here */
+
+	Config [] getLayerArray() {
+		return layers;
+	}
+
+	int getGroupCount() {
+		return groups.size();
+	}
+
+	/**
+	 * Returns the layers
+	 *
+	 * @return The configurations, from the lowest precedence to the highest
+	 */
+	public List<Config> getLayers() {
+		return Collections.unmodifiableList(new ArrayList<>(Arrays.asList(layers)));
+	}
+
+}
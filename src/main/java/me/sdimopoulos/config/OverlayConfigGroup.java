@@ -0,0 +1,213 @@
+package me.sdimopoulos.config;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A section of an {@link OverlayConfig}
+ *
+ * Resolves its settings through the layers of the overlay on the first get
+ * and remembers the value. That no layer has a setting is not remembered,
+ * or every name asked for would stay in the section. A missing
+ * setting is answered with the empty string, as by a {@link ConfigGroup}.
+ * Every resolution reads the layers once, remembers the answer and then
+ * forgets it again if the layers were replaced meanwhile, so a replacement
+ * that forgot the setting before the answer was remembered cannot leave a
+ * stale value.
+ */
+class OverlayConfigGroup extends AbstractMap<String,Object> {
+
+	private final OverlayConfig overlay;
+	private final String name;
+	private final Map<Object,Object> resolved = new ConcurrentHashMap<>();
+	private volatile Set<String> keys;
+	private volatile Boolean present;
+
+	/**
+	 * Constructor
+	 *
+	 * @param overlay The overlay of the section
+	 * @param name The section name
+	 */
+	OverlayConfigGroup(OverlayConfig overlay, String name)
+	{
+		this.overlay = overlay;
+		this.name = name;
+	}
+
+	@Override
+	public Object get(Object key)
+	{
+		Object value = lookup(key);
+		return value == OverlayConfig.MISSING || value == null ? "" : value;
+	}
+
+	@Override
+	public Object getOrDefault(Object key, Object defaultValue)
+	{
+		Object value = lookup(key);
+		return value == OverlayConfig.MISSING ? defaultValue : value;
+	}
+
+	@Override
+	public boolean containsKey(Object key)
+	{
+		return lookup(key) != OverlayConfig.MISSING;
+	}
+
+	private Object lookup(Object key)
+	{
+		if (key == null)
+		{
+			return OverlayConfig.MISSING;
+		}
+		Object value = resolved.get(key);
+		if (value != null)
+		{
+			return value;
+		}
+		Config [] layers = overlay.getLayerArray();
+		value = OverlayConfig.resolve(layers, name, key);
+		if (value == OverlayConfig.MISSING || value == null)
+		{
+			// a miss is not remembered, a null stored in a layer cannot be
+			return value;
+		}
+		resolved.put(key, value);
+		if (overlay.getLayerArray() != layers)
+		{
+			resolved.remove(key, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Forgets a resolved setting
+	 *
+	 * @param key The setting name
+	 * @param keysChanged true if the setting was added to or removed from a
+	 * layer, so the names of the settings must be collected again
+	 */
+	void forget(String key, boolean keysChanged)
+	{
+		resolved.remove(key);
+		if (keysChanged)
+		{
+			keys = null;
+		}
+	}
+
+	/**
+	 * Forgets whether a layer has the section, after one gained or lost it
+	 */
+	void forgetPresence()
+	{
+		present = null;
+	}
+
+	/**
+	 * Forgets all the resolved settings
+	 */
+	void forgetAll()
+	{
+		resolved.clear();
+		keys = null;
+		present = null;
+	}
+
+	/**
+	 * Tells whether any layer has the section, a missing section is not
+	 * returned by the overlay
+	 *
+	 * @return true if a layer has the section
+	 */
+	boolean isPresent()
+	{
+		Boolean inLayers = present;
+		if (inLayers == null)
+		{
+			Config [] layers = overlay.getLayerArray();
+			inLayers = OverlayConfig.contains(layers, name);
+			present = inLayers;
+			if (overlay.getLayerArray() != layers)
+			{
+				present = null;
+			}
+		}
+		return inLayers;
+	}
+
+	boolean isResolved(String key)
+	{
+		return resolved.containsKey(key);
+	}
+
+	/**
+	 * Returns the names of the settings of the section in all the layers
+	 */
+	private Set<String> keys()
+	{
+		Set<String> names = keys;
+		if (names == null)
+		{
+			Config [] layers = overlay.getLayerArray();
+			Set<String> union = new LinkedHashSet<>();
+			for (Config layer : layers)
+			{
+				Map<String,Object> settings = layer.getGroupOrNull(name);
+				if (settings != null)
+				{
+					union.addAll(settings.keySet());
+				}
+			}
+			names = Collections.unmodifiableSet(union);
+			keys = names;
+			if (overlay.getLayerArray() != layers)
+			{
+				keys = null;
+			}
+		}
+		return names;
+	}
+
+	@Override
+	public int size()
+	{
+		return keys().size();
+	}
+
+	@Override
+	public Set<Map.Entry<String,Object>> entrySet()
+	{
+		Set<String> names = keys();
+		return new AbstractSet<Map.Entry<String,Object>>() {
+			@Override
+			public Iterator<Map.Entry<String,Object>> iterator() {
+				Iterator<String> iterator = names.iterator();
+				return new Iterator<Map.Entry<String,Object>>() {
+					@Override
+					public boolean hasNext() {
+						return iterator.hasNext();
+					}
+					@Override
+					public Map.Entry<String,Object> next() {
+						String key = iterator.next();
+						return new AbstractMap.SimpleImmutableEntry<>(key,
+								getOrDefault(key, null));
+					}
+				};
+			}
+			@Override
+			public int size() {
+				return names.size();
+			}
+		};
+	}
+
+}
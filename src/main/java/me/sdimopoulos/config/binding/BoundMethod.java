@@ -0,0 +1,148 @@
+package me.sdimopoulos.config.binding;
+
+import java.lang.reflect.Method;
+
+/**
+ * A method of a bound interface with the setting it reads
+ */
+final class BoundMethod {
+
+	/** Returned by {@link #convert(Object)} for a value of the wrong type */
+	static final Object MISMATCH = new Object();
+
+	/**
+	 * How a value is stored and returned
+	 *
+	 * Primitive returns are kept in primitive fields. Numbers in the
+	 * configuration are always Long, so int and double returns are converted
+	 * once, when binding, and an int that does not fit is a mismatch.
+	 */
+	enum Kind {
+		LONG("J", "java.lang.Long", "longValue", 0xad),
+		INT("I", "java.lang.Integer", "intValue", 0xac),
+		DOUBLE("D", "java.lang.Double", "doubleValue", 0xaf),
+		BOOLEAN("Z", "java.lang.Boolean", "booleanValue", 0xac),
+		REFERENCE(null, null, null, 0xb0);
+
+		private final String descriptor;
+		private final String boxedName;
+		private final String unboxMethod;
+		private final int returnOpcode;
+
+		Kind(String descriptor, String boxedName, String unboxMethod, int returnOpcode)
+		{
+			this.descriptor = descriptor;
+			this.boxedName = boxedName;
+			this.unboxMethod = unboxMethod;
+			this.returnOpcode = returnOpcode;
+		}
+
+		String descriptor(BoundMethod method)
+		{
+			return descriptor != null ? descriptor
+					: "L" + ClassFileWriter.internalName(method.getType().getName()) + ";";
+		}
+
+		String boxedName(BoundMethod method)
+		{
+			return boxedName != null ? boxedName : method.getType().getName();
+		}
+
+		String unboxMethod()
+		{
+			return unboxMethod;
+		}
+
+		int returnOpcode()
+		{
+			return returnOpcode;
+		}
+
+		/**
+		 * Returns the kind of a return type
+		 *
+		 * @param type The return type
+		 * @return The kind, or null if the type cannot be bound
+		 */
+		static Kind of(Class<?> type)
+		{
+			if (type == long.class)
+				return LONG;
+			if (type == int.class)
+				return INT;
+			if (type == double.class)
+				return DOUBLE;
+			if (type == boolean.class)
+				return BOOLEAN;
+			if (type.isPrimitive() || type.isArray())
+				return null;
+			return REFERENCE;
+		}
+	}
+
+	private final Method method;
+	private final String key;
+	private final Kind kind;
+
+	/**
+	 * Constructor
+	 *
+	 * @param method The interface method
+	 * @param key The setting name
+	 * @param kind The kind of the return type
+	 */
+	BoundMethod(Method method, String key, Kind kind)
+	{
+		this.method = method;
+		this.key = key;
+		this.kind = kind;
+	}
+
+	/**
+	 * Converts a setting value to the boxed type stored by the constructor
+	 *
+	 * @param value The value of the setting
+	 * @return The converted value, or {@link #MISMATCH} if the value has the
+	 * wrong type; a null value is only accepted by reference types
+	 */
+	Object convert(Object value)
+	{
+		switch(kind)
+		{
+		case LONG:
+			return value instanceof Long ? value : MISMATCH;
+		case INT:
+			if (value instanceof Long)
+			{
+				long number = (Long) value;
+				return number == (int) number ? Integer.valueOf((int) number) : MISMATCH;
+			}
+			return MISMATCH;
+		case DOUBLE:
+			return value instanceof Long ? Double.valueOf((Long) value) : MISMATCH;
+		case BOOLEAN:
+			return value instanceof Boolean ? value : MISMATCH;
+		default:
+			return value == null || getType().isInstance(value) ? value : MISMATCH;
+		}
+	}
+
+	/* Getters and Setters begin here */
+
+	Method getMethod() {
+		return method;
+	}
+
+	Class<?> getType() {
+		return method.getReturnType();
+	}
+
+	String getKey() {
+		return key;
+	}
+
+	Kind getKind() {
+		return kind;
+	}
+
+}
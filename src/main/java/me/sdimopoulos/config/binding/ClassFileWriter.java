@@ -0,0 +1,278 @@
+package me.sdimopoulos.config.binding;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the class file of a bound interface implementation
+ *
+ * The generated class has one private final field per bound method, a public
+ * constructor that takes the values as an Object array, and one getter per
+ * method that returns its field:
+ *
+ *   public final class Core$$Bound0 implements Core {
+ *       private final long f0;
+ *       private final String f1;
+ *       public Core$$Bound0(Object [] values) {
+ *           f0 = ((Long) values[0]).longValue();
+ *           f1 = (String) values[1];
+ *       }
+ *       public long maxBytesPerRequest() { return f0; }
+ *       public String configPath() { return f1; }
+ *   }
+ *
+ * The values are converted and checked by the {@link ConfigBinder} before the
+ * constructor runs, so the bytecode has no branches and needs no stack map
+ * frames. The class file version is 52, the version of Java 8.
+ */
+final class ClassFileWriter {
+
+	private static final int VERSION = 52;
+	private static final int ACC_PUBLIC = 0x0001;
+	private static final int ACC_PRIVATE = 0x0002;
+	private static final int ACC_FINAL = 0x0010;
+	private static final int ACC_SUPER = 0x0020;
+
+	private static final int ALOAD_0 = 0x2a;
+	private static final int ALOAD_1 = 0x2b;
+	private static final int ICONST_0 = 0x03;
+	private static final int BIPUSH = 0x10;
+	private static final int SIPUSH = 0x11;
+	private static final int AALOAD = 0x32;
+	private static final int RETURN = 0xb1;
+	private static final int GETFIELD = 0xb4;
+	private static final int PUTFIELD = 0xb5;
+	private static final int INVOKEVIRTUAL = 0xb6;
+	private static final int INVOKESPECIAL = 0xb7;
+	private static final int CHECKCAST = 0xc0;
+
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_FIELDREF = 9;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+	private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+	private final DataOutputStream pool = new DataOutputStream(poolBytes);
+	private final Map<String,Integer> constants = new HashMap<>();
+	private int poolCount = 1;
+
+	/**
+	 * Writes the class
+	 *
+	 * @param className The binary name of the class
+	 * @param interfaceName The binary name of the implemented interface
+	 * @param methods The bound methods, in field order
+	 * @return The class file bytes
+	 */
+	byte [] write(String className, String interfaceName, List<BoundMethod> methods)
+	{
+		try {
+			String owner = internalName(className);
+			int thisClass = classRef(owner);
+			int superClass = classRef("java/lang/Object");
+			int implemented = classRef(internalName(interfaceName));
+			ByteArrayOutputStream membersBytes = new ByteArrayOutputStream();
+			DataOutputStream members = new DataOutputStream(membersBytes);
+
+			members.writeShort(methods.size());
+			for (int i = 0; i < methods.size(); i++)
+			{
+				members.writeShort(ACC_PRIVATE | ACC_FINAL);
+				members.writeShort(utf8("f" + i));
+				members.writeShort(utf8(methods.get(i).getKind().descriptor(methods.get(i))));
+				members.writeShort(0);
+			}
+
+			members.writeShort(methods.size() + 1);
+			writeConstructor(members, owner, methods);
+			for (int i = 0; i < methods.size(); i++)
+			{
+				writeGetter(members, owner, i, methods.get(i));
+			}
+
+			ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(classBytes);
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(VERSION);
+			out.writeShort(poolCount);
+			pool.flush();
+			poolBytes.writeTo(out);
+			out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(1);
+			out.writeShort(implemented);
+			members.flush();
+			membersBytes.writeTo(out);
+			out.writeShort(0);
+			out.flush();
+			return classBytes.toByteArray();
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void writeConstructor(DataOutputStream members, String owner,
+			List<BoundMethod> methods) throws IOException
+	{
+		ByteArrayOutputStream codeBytes = new ByteArrayOutputStream();
+		DataOutputStream code = new DataOutputStream(codeBytes);
+		code.writeByte(ALOAD_0);
+		code.writeByte(INVOKESPECIAL);
+		code.writeShort(methodRef("java/lang/Object", "<init>", "()V"));
+		for (int i = 0; i < methods.size(); i++)
+		{
+			BoundMethod method = methods.get(i);
+			BoundMethod.Kind kind = method.getKind();
+			code.writeByte(ALOAD_0);
+			code.writeByte(ALOAD_1);
+			if (i <= 5)
+			{
+				code.writeByte(ICONST_0 + i);
+			}
+			else if (i < 128)
+			{
+				code.writeByte(BIPUSH);
+				code.writeByte(i);
+			}
+			else
+			{
+				code.writeByte(SIPUSH);
+				code.writeShort(i);
+			}
+			code.writeByte(AALOAD);
+			code.writeByte(CHECKCAST);
+			code.writeShort(classRef(internalName(kind.boxedName(method))));
+			if (kind.unboxMethod() != null)
+			{
+				code.writeByte(INVOKEVIRTUAL);
+				code.writeShort(methodRef(internalName(kind.boxedName(method)),
+						kind.unboxMethod(), "()" + kind.descriptor(method)));
+			}
+			code.writeByte(PUTFIELD);
+			code.writeShort(fieldRef(owner, "f" + i, kind.descriptor(method)));
+		}
+		code.writeByte(RETURN);
+		writeMethod(members, "<init>", "([Ljava/lang/Object;)V", 4, 2, codeBytes.toByteArray());
+	}
+
+	private void writeGetter(DataOutputStream members, String owner, int index,
+			BoundMethod method) throws IOException
+	{
+		BoundMethod.Kind kind = method.getKind();
+		ByteArrayOutputStream codeBytes = new ByteArrayOutputStream();
+		DataOutputStream code = new DataOutputStream(codeBytes);
+		code.writeByte(ALOAD_0);
+		code.writeByte(GETFIELD);
+		code.writeShort(fieldRef(owner, "f" + index, kind.descriptor(method)));
+		code.writeByte(kind.returnOpcode());
+		writeMethod(members, method.getMethod().getName(), "()" + kind.descriptor(method),
+				2, 1, codeBytes.toByteArray());
+	}
+
+	private void writeMethod(DataOutputStream members, String name, String descriptor,
+			int maxStack, int maxLocals, byte [] code) throws IOException
+	{
+		members.writeShort(ACC_PUBLIC);
+		members.writeShort(utf8(name));
+		members.writeShort(utf8(descriptor));
+		members.writeShort(1);
+		members.writeShort(utf8("Code"));
+		members.writeInt(2 + 2 + 4 + code.length + 2 + 2);
+		members.writeShort(maxStack);
+		members.writeShort(maxLocals);
+		members.writeInt(code.length);
+		members.write(code);
+		members.writeShort(0);
+		members.writeShort(0);
+	}
+
+	/* Constant pool entries, each written once */
+
+	private int utf8(String value) throws IOException
+	{
+		Integer index = constants.get("U" + value);
+		if (index == null)
+		{
+			pool.writeByte(CONSTANT_UTF8);
+			pool.writeUTF(value);
+			index = poolCount++;
+			constants.put("U" + value, index);
+		}
+		return index;
+	}
+
+	private int classRef(String internalName) throws IOException
+	{
+		Integer index = constants.get("C" + internalName);
+		if (index == null)
+		{
+			int name = utf8(internalName);
+			pool.writeByte(CONSTANT_CLASS);
+			pool.writeShort(name);
+			index = poolCount++;
+			constants.put("C" + internalName, index);
+		}
+		return index;
+	}
+
+	private int nameAndType(String name, String descriptor) throws IOException
+	{
+		String key = "N" + name + " " + descriptor;
+		Integer index = constants.get(key);
+		if (index == null)
+		{
+			int nameIndex = utf8(name);
+			int descriptorIndex = utf8(descriptor);
+			pool.writeByte(CONSTANT_NAME_AND_TYPE);
+			pool.writeShort(nameIndex);
+			pool.writeShort(descriptorIndex);
+			index = poolCount++;
+			constants.put(key, index);
+		}
+		return index;
+	}
+
+	private int fieldRef(String owner, String name, String descriptor) throws IOException
+	{
+		return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+	}
+
+	private int methodRef(String owner, String name, String descriptor) throws IOException
+	{
+		return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+	}
+
+	private int memberRef(int tag, String owner, String name, String descriptor)
+			throws IOException
+	{
+		String key = tag + owner + "." + name + " " + descriptor;
+		Integer index = constants.get(key);
+		if (index == null)
+		{
+			int ownerIndex = classRef(owner);
+			int nameAndTypeIndex = nameAndType(name, descriptor);
+			pool.writeByte(tag);
+			pool.writeShort(ownerIndex);
+			pool.writeShort(nameAndTypeIndex);
+			index = poolCount++;
+			constants.put(key, index);
+		}
+		return index;
+	}
+
+	static String internalName(String binaryName)
+	{
+		return binaryName.replace('.', '/');
+	}
+
+}
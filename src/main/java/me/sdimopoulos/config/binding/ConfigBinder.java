@@ -0,0 +1,309 @@
+package me.sdimopoulos.config.binding;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.sdimopoulos.config.Config;
+
+/**
+ * Binds configuration sections to typed interfaces
+ *
+ * A section is read through an interface of no-argument methods instead of
+ * string names and casts:
+ *
+ *   public interface Ftp {
+ *       String name();
+ *       long basicSizeLimit();
+ *       boolean enabled();
+ *       {@literal @}ConfigKey("path") String rootPath();
+ *       default long timeout() { return 30; }
+ *   }
+ *
+ *   Ftp ftp = ConfigBinder.bind(config, "ftp", Ftp.class);
+ *   long limit = ftp.basicSizeLimit();
+ *
+ * Each method reads the setting named by its {@link ConfigKey}, or its name in
+ * snake case (basicSizeLimit reads basic_size_limit). The supported return types
+ * are long, int, double and boolean, kept in primitive fields, and any public
+ * class or interface, like String or List, which the value must be an
+ * instance of. A missing setting uses the default method if there is one.
+ *
+ * Binding checks every method up front and throws a
+ * {@link ConfigBindingException} listing all the missing settings and type
+ * mismatches. The values are then copied into an instance of a class generated
+ * for the interface, with one final field per method, so a read is a field
+ * read with no hashing, casting or unboxing. The generated class does not see
+ * later changes of the section. Classes are generated once per interface and
+ * set of overridden default methods, and cached.
+ */
+public final class ConfigBinder {
+
+	private static final Object MISSING = new Object();
+	private static final ConcurrentMap<Class<?>,Schema> SCHEMAS = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor
+	 */
+	private ConfigBinder()
+	{
+	}
+
+	/**
+	 * Binds a section of a configuration to an interface
+	 *
+	 * @param config The loaded configuration
+	 * @param group The section name
+	 * @param type The public interface to implement
+	 * @return An implementation of the interface with the section values
+	 * @throws ConfigBindingException if the section is missing or cannot be
+	 * bound
+	 */
+	public static <T> T bind(Config config, String group, Class<T> type)
+	{
+		if (!config.containsKey(group))
+		{
+			throw new ConfigBindingException("Missing section " + group
+					+ " for " + type.getName());
+		}
+		return bind(config.get(group), type);
+	}
+
+	/**
+	 * Binds the settings of a section to an interface
+	 *
+	 * @param settings The settings of the section
+	 * @param type The public interface to implement
+	 * @return An implementation of the interface with the section values
+	 * @throws ConfigBindingException if the interface is not supported, a
+	 * setting is missing or a value has the wrong type
+	 */
+	public static <T> T bind(Map<String,Object> settings, Class<T> type)
+	{
+		Schema schema = schemaOf(type);
+		BitSet bound = new BitSet(schema.methods.size());
+		List<Object> values = new ArrayList<>(schema.methods.size());
+		List<String> problems = new ArrayList<>();
+		for (int i = 0; i < schema.methods.size(); i++)
+		{
+			BoundMethod method = schema.methods.get(i);
+			Object value = settings.getOrDefault(method.getKey(), MISSING);
+			if (value == MISSING)
+			{
+				if (!method.getMethod().isDefault())
+				{
+					problems.add("missing setting " + method.getKey() + " for "
+							+ method.getMethod().getName() + "()");
+				}
+				continue;
+			}
+			Object converted = method.convert(value);
+			if (converted == BoundMethod.MISMATCH)
+			{
+				problems.add(String.format("setting %s is %s but %s() returns %s",
+						method.getKey(), describe(value), method.getMethod().getName(),
+						method.getType().getSimpleName()));
+				continue;
+			}
+			bound.set(i);
+			values.add(converted);
+		}
+		if (!problems.isEmpty())
+		{
+			throw new ConfigBindingException("Cannot bind " + type.getName()
+					+ ": " + String.join(", ", problems));
+		}
+		try {
+			return type.cast(schema.constructorFor(bound).newInstance((Object) values.toArray()));
+		}
+		catch(InstantiationException | IllegalAccessException | InvocationTargetException e)
+		{
+			throw new ConfigBindingException("Cannot instantiate the binding of "
+					+ type.getName(), e);
+		}
+	}
+
+	/**
+	 * Converts a method name to a setting name, maxBytes to max_bytes
+	 *
+	 * @param name The method name
+	 * @return The name in snake case
+	 */
+	static String toSnakeCase(String name)
+	{
+		StringBuilder key = new StringBuilder(name.length() + 8);
+		for (int i = 0; i < name.length(); i++)
+		{
+			char c = name.charAt(i);
+			if (Character.isUpperCase(c))
+			{
+				if (i > 0)
+				{
+					key.append('_');
+				}
+				key.append(Character.toLowerCase(c));
+			}
+			else
+			{
+				key.append(c);
+			}
+		}
+		return key.toString();
+	}
+
+	private static String describe(Object value)
+	{
+		return value == null ? "null" : "a " + value.getClass().getSimpleName();
+	}
+
+	private static Schema schemaOf(Class<?> type)
+	{
+		Schema schema = SCHEMAS.get(type);
+		if (schema == null)
+		{
+			schema = new Schema(type);
+			Schema existing = SCHEMAS.putIfAbsent(type, schema);
+			if (existing != null)
+			{
+				schema = existing;
+			}
+		}
+		return schema;
+	}
+
+	/**
+	 * The bound methods of an interface and its generated classes
+	 */
+	private static final class Schema {
+
+		private final Class<?> type;
+		private final List<BoundMethod> methods = new ArrayList<>();
+		private final ConcurrentMap<BitSet,Constructor<?>> constructors = new ConcurrentHashMap<>();
+		private final AtomicInteger variants = new AtomicInteger();
+
+		/**
+		 * Constructor
+		 *
+		 * @param type The interface
+		 * @throws ConfigBindingException if the interface cannot be bound
+		 */
+		Schema(Class<?> type)
+		{
+			this.type = type;
+			if (!type.isInterface() || !Modifier.isPublic(type.getModifiers()))
+			{
+				throw new ConfigBindingException(type.getName()
+						+ " is not a public interface");
+			}
+			List<String> problems = new ArrayList<>();
+			Map<String,Method> bySignature = new TreeMap<>();
+			for (Method method : type.getMethods())
+			{
+				String signature = method.getName()
+						+ Arrays.toString(method.getParameterTypes());
+				Method other = bySignature.get(signature);
+				if (other == null || overrides(method, other))
+				{
+					bySignature.put(signature, method);
+				}
+			}
+			for (Method method : bySignature.values())
+			{
+				if (Modifier.isStatic(method.getModifiers()))
+				{
+					continue;
+				}
+				BoundMethod.Kind kind = BoundMethod.Kind.of(method.getReturnType());
+				boolean bindable = method.getParameterCount() == 0 && kind != null
+						&& (kind != BoundMethod.Kind.REFERENCE
+						|| Modifier.isPublic(method.getReturnType().getModifiers()));
+				if (!bindable)
+				{
+					if (!method.isDefault())
+					{
+						problems.add(method.getName() + "() cannot be bound");
+					}
+					continue;
+				}
+				ConfigKey key = method.getAnnotation(ConfigKey.class);
+				methods.add(new BoundMethod(method,
+						key != null ? key.value() : toSnakeCase(method.getName()), kind));
+			}
+			if (!problems.isEmpty())
+			{
+				throw new ConfigBindingException("Cannot bind " + type.getName()
+						+ ": " + String.join(", ", problems));
+			}
+		}
+
+		/**
+		 * Returns the constructor of the class that overrides the given methods
+		 */
+		Constructor<?> constructorFor(BitSet bound)
+		{
+			return constructors.computeIfAbsent(bound, this::define);
+		}
+
+		private Constructor<?> define(BitSet bound)
+		{
+			List<BoundMethod> selected = new ArrayList<>(bound.cardinality());
+			for (int i = bound.nextSetBit(0); i >= 0; i = bound.nextSetBit(i + 1))
+			{
+				selected.add(methods.get(i));
+			}
+			String className = type.getName() + "$$Bound" + variants.getAndIncrement();
+			byte [] classFile = new ClassFileWriter().write(className, type.getName(), selected);
+			ClassLoader parent = type.getClassLoader() != null
+					? type.getClassLoader() : ConfigBinder.class.getClassLoader();
+			try {
+				return new BindingClassLoader(parent).define(className, classFile)
+						.getConstructor(Object [].class);
+			}
+			catch(NoSuchMethodException | LinkageError e)
+			{
+				throw new ConfigBindingException("Cannot generate the binding of "
+						+ type.getName(), e);
+			}
+		}
+	}
+
+	/**
+	 * Tells whether a method of the interface hides another with the same
+	 * signature, by a narrower return type or a more specific interface
+	 */
+	private static boolean overrides(Method method, Method other)
+	{
+		if (method.getReturnType() != other.getReturnType())
+		{
+			return other.getReturnType().isAssignableFrom(method.getReturnType());
+		}
+		return other.getDeclaringClass().isAssignableFrom(method.getDeclaringClass());
+	}
+
+	/**
+	 * Defines a generated class next to the classes of its interface
+	 */
+	private static final class BindingClassLoader extends ClassLoader {
+
+		BindingClassLoader(ClassLoader parent)
+		{
+			super(parent);
+		}
+
+		Class<?> define(String name, byte [] classFile)
+		{
+			return defineClass(name, classFile, 0, classFile.length);
+		}
+	}
+
+}
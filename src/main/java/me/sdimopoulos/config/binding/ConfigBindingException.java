@@ -0,0 +1,21 @@
+package me.sdimopoulos.config.binding;
+
+/**
+ * Thrown when a section cannot be bound to an interface
+ *
+ * The message lists every problem found, i.e. unsupported methods, missing
+ * settings and values of the wrong type, so all of them can be fixed at once.
+ */
+public class ConfigBindingException extends RuntimeException {
+
+	public ConfigBindingException(String message) {
+		super(message);
+	}
+
+	public ConfigBindingException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	private static final long serialVersionUID = -6190827043520953165L;
+
+}
@@ -0,0 +1,23 @@
+package me.sdimopoulos.config.binding;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Names the setting read by a method of a bound interface
+ *
+ * Without it the setting name is the method name in snake case, so
+ * maxBytesPerRequest() reads max_bytes_per_request.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ConfigKey {
+
+	/** The setting name */
+	String value();
+
+}
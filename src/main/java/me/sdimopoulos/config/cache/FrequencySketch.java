@@ -0,0 +1,85 @@
+package me.sdimopoulos.config.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Count-min sketch of the sampled access frequencies of (group, key) pairs
+ *
+ * Each pair is counted in one counter of each of four rows, picked by a
+ * different mix of its hash, and its frequency is the smallest of the four,
+ * which can only overestimate. After a fixed number of additions all counters
+ * are halved, so the frequencies follow the recent accesses and a pair that
+ * stops being read fades out.
+ *
+ * The counters are plain ints updated without synchronization. Concurrent
+ * increments of the same counter may be lost, which only makes an estimate
+ * slightly lower; the sketch is a heuristic and never affects a returned value.
+ */
+final class FrequencySketch {
+
+	private static final int DEPTH = 4;
+	private static final int [] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+	private final int [] table;
+	private final int width;
+	private final int sampleSize;
+	private final AtomicInteger additions = new AtomicInteger();
+
+	/**
+	 * Constructor
+	 *
+	 * @param width The counters per row, a power of two
+	 * @param sampleSize The additions after which the counters are halved
+	 */
+	FrequencySketch(int width, int sampleSize)
+	{
+		this.table = new int [DEPTH * width];
+		this.width = width;
+		this.sampleSize = sampleSize;
+	}
+
+	/**
+	 * Counts an access
+	 *
+	 * @param hash The hash of the pair
+	 * @return Whether the counters were halved by this addition
+	 */
+	boolean increment(int hash)
+	{
+		for (int i = 0; i < DEPTH; i++)
+		{
+			table[indexOf(hash, i)]++;
+		}
+		if (additions.incrementAndGet() == sampleSize)
+		{
+			for (int i = 0; i < table.length; i++)
+			{
+				table[i] >>>= 1;
+			}
+			additions.addAndGet(-sampleSize);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the estimated recent accesses of a pair
+	 */
+	int frequency(int hash)
+	{
+		int frequency = Integer.MAX_VALUE;
+		for (int i = 0; i < DEPTH; i++)
+		{
+			frequency = Math.min(frequency, table[indexOf(hash, i)]);
+		}
+		return frequency;
+	}
+
+	private int indexOf(int hash, int row)
+	{
+		int h = hash * SEEDS[row];
+		h ^= h >>> 16;
+		return row * width + (h & (width - 1));
+	}
+
+}
@@ -0,0 +1,341 @@
+package me.sdimopoulos.config.cache;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import me.sdimopoulos.config.Config;
+
+/**
+ * Small front cache of the most read settings of a configuration
+ *
+ * get(group, key) answers like config.get(group).get(key), but the hot pairs
+ * are found with a single probe of a fixed-size table instead of two HashMap
+ * lookups. The table is two-way set associative and holds immutable entries
+ * with the resolved value, replaced with atomic stores, so readers take no lock.
+ *
+ * Which pairs are hot is decided by sampling: one access in sampleRate is
+ * counted in a {@link FrequencySketch}. A sampled pair whose frequency passes
+ * {@link #PROMOTION_FREQUENCY} is promoted into its set, evicting the colder of
+ * the two entries only if the new pair is read more often. The sketch halves
+ * its counters periodically, and at that point the entries that were not
+ * sampled enough since are demoted, so the cache follows a change of access
+ * pattern.
+ *
+ * Only the misses are counted one by one. A hit is counted when it is sampled,
+ * as sampleRate hits, so the hit count and ratio of the {@link Stats} are
+ * estimates unless sampleRate is 1; this keeps shared counters off the hit path.
+ *
+ * Like the indexes, the cache is a snapshot of the values: after changing the
+ * configuration call {@link #invalidate()}.
+ */
+public class HotKeyCache {
+
+	/** Default number of cached pairs */
+	public static final int DEFAULT_CAPACITY = 256;
+	/** Default sampling, one access in this many is profiled */
+	public static final int DEFAULT_SAMPLE_RATE = 16;
+	/** Sampled frequency needed to enter or stay in the cache */
+	public static final int PROMOTION_FREQUENCY = 2;
+
+	private final Config config;
+	private final AtomicReferenceArray<Entry> slots;
+	private final int setMask;
+	private final int sampleMask;
+	private final FrequencySketch sketch;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder promotions = new LongAdder();
+	private final LongAdder demotions = new LongAdder();
+
+	/**
+	 * Constructor
+	 *
+	 * @param config The configuration to cache
+	 */
+	public HotKeyCache(Config config)
+	{
+		this(config, DEFAULT_CAPACITY, DEFAULT_SAMPLE_RATE);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param config The configuration to cache
+	 * @param capacity The number of cached pairs, rounded up to a power of two
+	 * @param sampleRate One access in sampleRate is profiled, rounded up to a
+	 * power of two; 0 turns profiling and promotions off
+	 */
+	public HotKeyCache(Config config, int capacity, int sampleRate)
+	{
+		int slotCount = powerOfTwo(Math.max(capacity, 2));
+		this.config = config;
+		this.slots = new AtomicReferenceArray<>(slotCount);
+		this.setMask = (slotCount - 1) & ~1;
+		this.sampleMask = sampleRate <= 0 ? -1 : powerOfTwo(sampleRate) - 1;
+		this.sketch = new FrequencySketch(slotCount * 8, slotCount * 32);
+	}
+
+	/**
+	 * Returns a setting, the same as config.get(group).get(key)
+	 *
+	 * @param group The section name
+	 * @param key The setting name
+	 * @return The value
+	 */
+	public Object get(String group, String key)
+	{
+		int hash = hash(group, key);
+		int set = hash & setMask;
+		Entry entry = slots.get(set);
+		if (entry == null || !entry.matches(hash, group, key))
+		{
+			entry = slots.get(set + 1);
+			if (entry != null && !entry.matches(hash, group, key))
+			{
+				entry = null;
+			}
+		}
+		boolean sampled = sampleMask >= 0
+				&& (ThreadLocalRandom.current().nextInt() & sampleMask) == 0;
+		if (entry != null)
+		{
+			if (sampled)
+			{
+				profileHit(hash);
+			}
+			return entry.value;
+		}
+		misses.increment();
+		Object value = config.get(group).get(key);
+		if (sampled)
+		{
+			profile(new Entry(hash, group, key, value), set);
+		}
+		return value;
+	}
+
+	/**
+	 * Counts a sampled hit, kept out of get so that get stays small enough to
+	 * be inlined
+	 */
+	private void profileHit(int hash)
+	{
+		hits.add(sampleMask + 1);
+		if (sketch.increment(hash))
+		{
+			demoteCold();
+		}
+	}
+
+	/**
+	 * Counts a sampled miss and promotes the pair if it became hot
+	 */
+	private void profile(Entry candidate, int set)
+	{
+		boolean aged = sketch.increment(candidate.hash);
+		int frequency = sketch.frequency(candidate.hash);
+		if (frequency >= PROMOTION_FREQUENCY)
+		{
+			Entry first = slots.get(set);
+			Entry second = slots.get(set + 1);
+			int victim;
+			Entry evicted;
+			if (first == null || second == null)
+			{
+				victim = first == null ? set : set + 1;
+				evicted = null;
+			}
+			else
+			{
+				boolean firstColder = sketch.frequency(first.hash) <= sketch.frequency(second.hash);
+				victim = firstColder ? set : set + 1;
+				evicted = firstColder ? first : second;
+			}
+			if ((evicted == null || sketch.frequency(evicted.hash) < frequency)
+					&& slots.compareAndSet(victim, evicted, candidate))
+			{
+				promotions.increment();
+				if (evicted != null)
+				{
+					demotions.increment();
+				}
+			}
+		}
+		if (aged)
+		{
+			demoteCold();
+		}
+	}
+
+	/**
+	 * Removes the entries that were not read enough since the last aging
+	 */
+	private void demoteCold()
+	{
+		for (int i = 0; i < slots.length(); i++)
+		{
+			Entry entry = slots.get(i);
+			if (entry != null && sketch.frequency(entry.hash) < PROMOTION_FREQUENCY
+					&& slots.compareAndSet(i, entry, null))
+			{
+				demotions.increment();
+			}
+		}
+	}
+
+	/**
+	 * Empties the cache, needed after the configuration changes
+	 */
+	public void invalidate()
+	{
+		for (int i = 0; i < slots.length(); i++)
+		{
+			slots.set(i, null);
+		}
+	}
+
+	/**
+	 * Reads the counters of the cache
+	 *
+	 * @return The current statistics
+	 */
+	public Stats getStats()
+	{
+		int size = 0;
+		for (int i = 0; i < slots.length(); i++)
+		{
+			if (slots.get(i) != null)
+			{
+				size++;
+			}
+		}
+		return new Stats(hits.sum(), misses.sum(), promotions.sum(),
+				demotions.sum(), size);
+	}
+
+	/**
+	 * Tells whether a pair is currently cached
+	 *
+	 * @param group The section name
+	 * @param key The setting name
+	 * @return true if the next get of the pair is answered by the cache
+	 */
+	public boolean isCached(String group, String key)
+	{
+		int hash = hash(group, key);
+		int set = hash & setMask;
+		for (int i = set; i <= set + 1; i++)
+		{
+			Entry entry = slots.get(i);
+			if (entry != null && entry.matches(hash, group, key))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public int getCapacity()
+	{
+		return slots.length();
+	}
+
+	private static int hash(String group, String key)
+	{
+		int h = group.hashCode() * 31 + key.hashCode();
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private static int powerOfTwo(int value)
+	{
+		return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+	}
+
+	/**
+	 * A cached pair with its resolved value
+	 */
+	private static final class Entry {
+
+		final int hash;
+		final String group;
+		final String key;
+		final Object value;
+
+		Entry(int hash, String group, String key, Object value)
+		{
+			this.hash = hash;
+			this.group = group;
+			this.key = key;
+			this.value = value;
+		}
+
+		boolean matches(int hash, String group, String key)
+		{
+			return this.hash == hash && (this.group == group || this.group.equals(group))
+					&& (this.key == key || this.key.equals(key));
+		}
+	}
+
+	/**
+	 * The counters of the cache at one moment
+	 */
+	public static final class Stats {
+
+		private final long hits;
+		private final long misses;
+		private final long promotions;
+		private final long demotions;
+		private final int size;
+
+		Stats(long hits, long misses, long promotions, long demotions, int size)
+		{
+			this.hits = hits;
+			this.misses = misses;
+			this.promotions = promotions;
+			this.demotions = demotions;
+			this.size = size;
+		}
+
+		/**
+		 * Returns the fraction of the reads answered by the cache
+		 */
+		public double getHitRatio()
+		{
+			long total = hits + misses;
+			return total == 0 ? 0 : (double) hits / total;
+		}
+
+		public long getHits() {
+			return hits;
+		}
+
+		public long getMisses() {
+			return misses;
+		}
+
+		public long getPromotions() {
+			return promotions;
+		}
+
+		public long getDemotions() {
+			return demotions;
+		}
+
+		/**
+		 * Returns the number of pairs currently cached
+		 */
+		public int getSize() {
+			return size;
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("hits=%d misses=%d hitRatio=%.3f promotions=%d demotions=%d size=%d",
+					hits, misses, getHitRatio(), promotions, demotions, size);
+		}
+	}
+
+}
@@ -0,0 +1,309 @@
+package me.sdimopoulos.config.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import me.sdimopoulos.config.Config;
+
+/**
+ * Columnar layout of a configuration, one column per setting name
+ *
+ * The sections are numbered in the iteration order of the {@link Config},
+ * which is the order they were found in the file. The column of a setting name
+ * holds the numbers of the sections that contain it, in increasing order, and
+ * the values in the same positions, so reading a key across all sections is
+ * a walk over two arrays without any hashing:
+ *
+ *   NumberColumn column = (NumberColumn) index.column("max_files");
+ *   for (int i = 0; i < column.size(); i++)
+ *       use(column.groupAt(i), column.longAt(i));
+ *
+ * Columns whose values are all numbers or all booleans are kept in primitive
+ * arrays ({@link NumberColumn}, {@link BooleanColumn}), the rest as objects
+ * ({@link ObjectColumn}). Like the {@link PrefixIndex} it is a snapshot built
+ * once after loading with {@link #build(Config)}.
+ */
+public class ColumnarIndex {
+
+	private static final int [] NO_SECTIONS = new int [0];
+
+	private final String [] groups;
+	private final Map<String,Column> columns;
+
+	/**
+	 * Constructor
+	 *
+	 * @param groups The section names in section order
+	 * @param columns The columns per setting name
+	 */
+	private ColumnarIndex(String [] groups, Map<String,Column> columns)
+	{
+		this.groups = groups;
+		this.columns = columns;
+	}
+
+	/**
+	 * Builds the columns of a configuration
+	 *
+	 * @param config The loaded configuration
+	 * @return The index
+	 */
+	public static ColumnarIndex build(Config config)
+	{
+		String [] groups = config.keySet().toArray(new String [config.size()]);
+		Map<String,ColumnBuilder> builders = new HashMap<>();
+		int section = 0;
+		for (Map<String,Object> settings : config.values())
+		{
+			for (Map.Entry<String,Object> setting : settings.entrySet())
+			{
+				ColumnBuilder builder = builders.get(setting.getKey());
+				if (builder == null)
+				{
+					builder = new ColumnBuilder();
+					builders.put(setting.getKey(), builder);
+				}
+				builder.add(section, setting.getValue());
+			}
+			section++;
+		}
+		Map<String,Column> columns = new HashMap<>(builders.size() * 2);
+		for (Map.Entry<String,ColumnBuilder> builder : builders.entrySet())
+		{
+			columns.put(builder.getKey(), builder.getValue().build(groups));
+		}
+		return new ColumnarIndex(groups, columns);
+	}
+
+	/**
+	 * Returns the column of a setting name
+	 *
+	 * @param key The setting name
+	 * @return The column, empty if no section contains the setting
+	 */
+	public Column column(String key)
+	{
+		Column column = columns.get(key);
+		return column == null
+				? new ObjectColumn(groups, NO_SECTIONS, new Object [0]) : column;
+	}
+
+	/**
+	 * Returns the section names in section order
+	 *
+	 * @return The section names
+	 */
+	public List<String> getGroups()
+	{
+		return Collections.unmodifiableList(Arrays.asList(groups));
+	}
+
+	/**
+	 * The values of one setting name across the sections
+	 *
+	 * Positions go from 0 to size() - 1 and follow the section order.
+	 */
+	public abstract static class Column {
+
+		private final String [] groups;
+		private final int [] sections;
+
+		Column(String [] groups, int [] sections)
+		{
+			this.groups = groups;
+			this.sections = sections;
+		}
+
+		/**
+		 * Returns the number of sections that contain the setting
+		 *
+		 * @return The number of values
+		 */
+		public int size()
+		{
+			return sections.length;
+		}
+
+		/**
+		 * Returns the number of the section at a position
+		 *
+		 * @param position The position in the column
+		 * @return The section number
+		 */
+		public int sectionAt(int position)
+		{
+			return sections[position];
+		}
+
+		/**
+		 * Returns the name of the section at a position
+		 *
+		 * @param position The position in the column
+		 * @return The section name
+		 */
+		public String groupAt(int position)
+		{
+			return groups[sections[position]];
+		}
+
+		/**
+		 * Finds the position of a section in the column
+		 *
+		 * @param section The section number
+		 * @return The position, or a negative number if the section does not
+		 * contain the setting
+		 */
+		public int positionOf(int section)
+		{
+			return Arrays.binarySearch(sections, section);
+		}
+
+		/**
+		 * Returns the value at a position as an object
+		 *
+		 * @param position The position in the column
+		 * @return The value
+		 */
+		public abstract Object valueAt(int position);
+	}
+
+	/**
+	 * A column of numbers kept in a long array
+	 */
+	public static final class NumberColumn extends Column {
+
+		private final long [] values;
+
+		NumberColumn(String [] groups, int [] sections, long [] values)
+		{
+			super(groups, sections);
+			this.values = values;
+		}
+
+		/**
+		 * Returns the number at a position
+		 *
+		 * @param position The position in the column
+		 * @return The value
+		 */
+		public long longAt(int position)
+		{
+			return values[position];
+		}
+
+		@Override
+		public Object valueAt(int position)
+		{
+			return values[position];
+		}
+	}
+
+	/**
+	 * A column of booleans kept in a boolean array
+	 */
+	public static final class BooleanColumn extends Column {
+
+		private final boolean [] values;
+
+		BooleanColumn(String [] groups, int [] sections, boolean [] values)
+		{
+			super(groups, sections);
+			this.values = values;
+		}
+
+		/**
+		 * Returns the boolean at a position
+		 *
+		 * @param position The position in the column
+		 * @return The value
+		 */
+		public boolean booleanAt(int position)
+		{
+			return values[position];
+		}
+
+		@Override
+		public Object valueAt(int position)
+		{
+			return values[position];
+		}
+	}
+
+	/**
+	 * A column of strings, arrays or mixed values
+	 */
+	public static final class ObjectColumn extends Column {
+
+		private final Object [] values;
+
+		ObjectColumn(String [] groups, int [] sections, Object [] values)
+		{
+			super(groups, sections);
+			this.values = values;
+		}
+
+		@Override
+		public Object valueAt(int position)
+		{
+			return values[position];
+		}
+	}
+
+	/**
+	 * Collects the values of a column and picks its type
+	 */
+	private static final class ColumnBuilder {
+
+		private int [] sections = new int [4];
+		private final List<Object> values = new ArrayList<>(4);
+		private boolean allNumbers = true;
+		private boolean allBooleans = true;
+
+		void add(int section, Object value)
+		{
+			if (values.size() == sections.length)
+			{
+				sections = Arrays.copyOf(sections, sections.length * 2);
+			}
+			sections[values.size()] = section;
+			values.add(value);
+			allNumbers &= value instanceof Long;
+			allBooleans &= value instanceof Boolean;
+		}
+
+		Column build(String [] groups)
+		{
+			int size = values.size();
+			int [] columnSections = Arrays.copyOf(sections, size);
+			Column column;
+			if (allNumbers)
+			{
+				long [] numbers = new long [size];
+				for (int i = 0; i < size; i++)
+				{
+					numbers[i] = (Long) values.get(i);
+				}
+				column = new NumberColumn(groups, columnSections, numbers);
+			}
+			else if (allBooleans)
+			{
+				boolean [] booleans = new boolean [size];
+				for (int i = 0; i < size; i++)
+				{
+					booleans[i] = (Boolean) values.get(i);
+				}
+				column = new BooleanColumn(groups, columnSections, booleans);
+			}
+			else
+			{
+				column = new ObjectColumn(groups, columnSections, values.toArray());
+			}
+			return column;
+		}
+	}
+
+}
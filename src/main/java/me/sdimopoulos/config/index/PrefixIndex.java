@@ -0,0 +1,79 @@
+package me.sdimopoulos.config.index;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import me.sdimopoulos.config.Config;
+
+/**
+ * Prefix search over the section and setting names of a configuration
+ *
+ * The names are kept in radix trees, one for the sections and one for the
+ * settings of each section (see {@link RadixTree}), so a search costs the
+ * length of the prefix plus the size of the result, instead of a scan of all
+ * the names. Results are sorted.
+ *
+ * The index is built once from a loaded {@link Config} with
+ * {@link #build(Config)}. It is a snapshot: changes to the configuration made
+ * after the build are not reflected.
+ */
+public class PrefixIndex {
+
+	private final RadixTree groups;
+	private final Map<String,RadixTree> keys;
+
+	/**
+	 * Constructor
+	 *
+	 * @param groups The tree of section names
+	 * @param keys The trees of setting names per section
+	 */
+	private PrefixIndex(RadixTree groups, Map<String,RadixTree> keys)
+	{
+		this.groups = groups;
+		this.keys = keys;
+	}
+
+	/**
+	 * Builds the index of a configuration
+	 *
+	 * @param config The loaded configuration
+	 * @return The index
+	 */
+	public static PrefixIndex build(Config config)
+	{
+		Map<String,RadixTree> keys = new HashMap<>();
+		for (Map.Entry<String,Map<String,Object>> group : config.entrySet())
+		{
+			keys.put(group.getKey(), new RadixTree(group.getValue().keySet()));
+		}
+		return new PrefixIndex(new RadixTree(config.keySet()), keys);
+	}
+
+	/**
+	 * Returns the names of the sections starting with the prefix
+	 *
+	 * @param prefix The prefix of the section names
+	 * @return The sorted section names
+	 */
+	public List<String> groupsWithPrefix(String prefix)
+	{
+		return groups.withPrefix(prefix);
+	}
+
+	/**
+	 * Returns the names of the settings of a section starting with the prefix
+	 *
+	 * @param group The name of the section
+	 * @param prefix The prefix of the setting names
+	 * @return The sorted setting names, empty if the section is missing
+	 */
+	public List<String> keysWithPrefix(String group, String prefix)
+	{
+		RadixTree tree = keys.get(group);
+		return tree == null ? Collections.<String>emptyList() : tree.withPrefix(prefix);
+	}
+
+}
@@ -0,0 +1,192 @@
+package me.sdimopoulos.config.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An immutable radix tree (compact trie) of strings
+ *
+ * Every node holds the label of the edge that leads to it and its children
+ * sorted by the first character of their label. Chains of nodes with a single
+ * child are merged into one label, so every node either ends a string or has
+ * at least two children. Collecting all strings under a node therefore visits
+ * less than twice as many nodes as the strings found.
+ *
+ * The tree is built once from the sorted strings, in time proportional to
+ * their total length.
+ */
+final class RadixTree {
+
+	private static final Node [] NO_CHILDREN = new Node [0];
+
+	private final Node root;
+	private final int size;
+
+	/**
+	 * Constructor
+	 *
+	 * @param strings The strings to index, duplicates are ignored
+	 */
+	RadixTree(Collection<String> strings)
+	{
+		String [] sorted = strings.toArray(new String [strings.size()]);
+		Arrays.sort(sorted);
+		int unique = 0;
+		for (int i = 0; i < sorted.length; i++)
+		{
+			if (unique == 0 || !sorted[i].equals(sorted[unique - 1]))
+			{
+				sorted[unique++] = sorted[i];
+			}
+		}
+		this.size = unique;
+		this.root = unique == 0 ? new Node("", false, NO_CHILDREN)
+				: build(sorted, 0, unique, 0);
+	}
+
+	/**
+	 * Returns all strings starting with the prefix, in lexicographic order
+	 *
+	 * @param prefix The prefix, the empty string returns all strings
+	 * @return The list of strings
+	 */
+	List<String> withPrefix(String prefix)
+	{
+		List<String> result = new ArrayList<>();
+		Node node = root;
+		int matched = 0;
+		StringBuilder path = new StringBuilder(prefix.length() + 16);
+		while (true)
+		{
+			String label = node.label;
+			int common = 0;
+			while (common < label.length() && matched + common < prefix.length()
+					&& label.charAt(common) == prefix.charAt(matched + common))
+			{
+				common++;
+			}
+			if (matched + common == prefix.length())
+			{
+				// the prefix ends inside or at the end of this label
+				path.append(prefix, 0, matched);
+				collect(node, path, result);
+				return result;
+			}
+			if (common < label.length())
+			{
+				return result;
+			}
+			matched += common;
+			node = node.child(prefix.charAt(matched));
+			if (node == null)
+			{
+				return result;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of strings in the tree
+	 */
+	int size()
+	{
+		return size;
+	}
+
+	private static void collect(Node node, StringBuilder path, List<String> result)
+	{
+		int length = path.length();
+		path.append(node.label);
+		if (node.terminal)
+		{
+			result.add(path.toString());
+		}
+		for (Node child : node.children)
+		{
+			collect(child, path, result);
+		}
+		path.setLength(length);
+	}
+
+	/**
+	 * Builds the node of a range of sorted strings that share their first
+	 * depth characters
+	 */
+	private static Node build(String [] sorted, int from, int to, int depth)
+	{
+		String first = sorted[from];
+		String last = sorted[to - 1];
+		int end = depth;
+		while (end < first.length() && end < last.length()
+				&& first.charAt(end) == last.charAt(end))
+		{
+			end++;
+		}
+		boolean terminal = first.length() == end;
+		if (terminal)
+		{
+			from++;
+		}
+		List<Node> children = new ArrayList<>();
+		while (from < to)
+		{
+			char next = sorted[from].charAt(end);
+			int childTo = from + 1;
+			while (childTo < to && sorted[childTo].charAt(end) == next)
+			{
+				childTo++;
+			}
+			children.add(build(sorted, from, childTo, end));
+			from = childTo;
+		}
+		return new Node(first.substring(depth, end), terminal,
+				children.toArray(NO_CHILDREN));
+	}
+
+	/**
+	 * A node of the tree
+	 */
+	private static final class Node {
+
+		final String label;
+		final boolean terminal;
+		final Node [] children;
+
+		Node(String label, boolean terminal, Node [] children)
+		{
+			this.label = label;
+			this.terminal = terminal;
+			this.children = children;
+		}
+
+		/**
+		 * Finds the child whose label starts with the given character
+		 */
+		Node child(char first)
+		{
+			int low = 0;
+			int high = children.length - 1;
+			while (low <= high)
+			{
+				int middle = (low + high) >>> 1;
+				char c = children[middle].label.charAt(0);
+				if (c < first)
+				{
+					low = middle + 1;
+				}
+				else if (c > first)
+				{
+					high = middle - 1;
+				}
+				else
+				{
+					return children[middle];
+				}
+			}
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,318 @@
+package me.sdimopoulos.config.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import me.sdimopoulos.config.Config;
+
+/**
+ * Inverted index from setting values to the settings that hold them
+ *
+ * Every setting of the configuration is numbered, section by section in
+ * section order. For each distinct value the numbers of the settings that
+ * hold it are kept as a posting list, compressed as the variable length
+ * encoded differences between consecutive numbers, so the common values take
+ * one or two bytes per setting. Number values are instead kept sorted in a
+ * long array with the setting numbers beside them, which answers both exact
+ * and range queries with a binary search and a walk over the matching slice.
+ *
+ * Values are matched with equals, so the type matters: the number 12 does not
+ * match the string "12". Like the other indexes of this package it is a
+ * snapshot built once after loading with {@link #build(Config)}.
+ */
+public class ValueIndex {
+
+	private final String [] groups;
+	private final int [] entrySections;
+	private final String [] entryKeys;
+	private final Map<Object,byte[]> postings;
+	private final long [] numbers;
+	private final int [] numberEntries;
+
+	/**
+	 * Constructor
+	 */
+	private ValueIndex(String [] groups, int [] entrySections,
+			String [] entryKeys, Map<Object,byte[]> postings, long [] numbers,
+			int [] numberEntries)
+	{
+		this.groups = groups;
+		this.entrySections = entrySections;
+		this.entryKeys = entryKeys;
+		this.postings = postings;
+		this.numbers = numbers;
+		this.numberEntries = numberEntries;
+	}
+
+	/**
+	 * Builds the index of a configuration
+	 *
+	 * @param config The loaded configuration
+	 * @return The index
+	 */
+	public static ValueIndex build(Config config)
+	{
+		int entries = 0;
+		for (Map<String,Object> settings : config.values())
+		{
+			entries += settings.size();
+		}
+		String [] groups = config.keySet().toArray(new String [config.size()]);
+		int [] entrySections = new int [entries];
+		String [] entryKeys = new String [entries];
+		Map<Object,PostingBuilder> builders = new HashMap<>();
+		int numberCount = 0;
+		long [] numberValues = new long [16];
+		int [] numberIds = new int [16];
+		int entry = 0;
+		int section = 0;
+		for (Map<String,Object> settings : config.values())
+		{
+			for (Map.Entry<String,Object> setting : settings.entrySet())
+			{
+				entrySections[entry] = section;
+				entryKeys[entry] = setting.getKey();
+				Object value = setting.getValue();
+				if (value instanceof Long)
+				{
+					if (numberCount == numberValues.length)
+					{
+						numberValues = Arrays.copyOf(numberValues, numberCount * 2);
+						numberIds = Arrays.copyOf(numberIds, numberCount * 2);
+					}
+					numberValues[numberCount] = (Long) value;
+					numberIds[numberCount++] = entry;
+				}
+				else if (value != null)
+				{
+					PostingBuilder builder = builders.get(value);
+					if (builder == null)
+					{
+						builder = new PostingBuilder();
+						builders.put(value, builder);
+					}
+					builder.add(entry);
+				}
+				entry++;
+			}
+			section++;
+		}
+		Map<Object,byte[]> postings = new HashMap<>(builders.size() * 2);
+		for (Map.Entry<Object,PostingBuilder> builder : builders.entrySet())
+		{
+			postings.put(builder.getKey(), builder.getValue().toBytes());
+		}
+		long [] numbers = Arrays.copyOf(numberValues, numberCount);
+		int [] numberEntries = Arrays.copyOf(numberIds, numberCount);
+		sortByValue(numbers, numberEntries);
+		return new ValueIndex(groups, entrySections, entryKeys, postings,
+				numbers, numberEntries);
+	}
+
+	/**
+	 * Finds the settings that hold a value
+	 *
+	 * @param value The value, a String, Long, Boolean or List of String
+	 * @return The settings in section order, empty if none holds the value
+	 */
+	public List<Location> lookup(Object value)
+	{
+		if (value instanceof Long)
+		{
+			long number = (Long) value;
+			return numbersInRange(number, number);
+		}
+		byte [] posting = postings.get(value);
+		if (posting == null)
+		{
+			return Collections.emptyList();
+		}
+		List<Location> result = new ArrayList<>();
+		int entry = 0;
+		for (int i = 0; i < posting.length; )
+		{
+			int delta = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = posting[i++];
+				delta |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			entry += delta;
+			result.add(location(entry));
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the settings with a number value in a range
+	 *
+	 * @param from The lowest value, inclusive
+	 * @param to The highest value, inclusive
+	 * @return The settings sorted by value, empty if none is in the range
+	 */
+	public List<Location> numbersInRange(long from, long to)
+	{
+		if (from > to)
+		{
+			return Collections.emptyList();
+		}
+		int start = lowerBound(from);
+		int end = upperBound(to);
+		List<Location> result = new ArrayList<>(end - start);
+		for (int i = start; i < end; i++)
+		{
+			result.add(location(numberEntries[i]));
+		}
+		return result;
+	}
+
+	private Location location(int entry)
+	{
+		return new Location(groups[entrySections[entry]], entryKeys[entry]);
+	}
+
+	/**
+	 * Returns the first position with a number not less than the value
+	 */
+	private int lowerBound(long value)
+	{
+		int low = 0;
+		int high = numbers.length;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (numbers[middle] < value)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the first position with a number greater than the value
+	 */
+	private int upperBound(long value)
+	{
+		int low = 0;
+		int high = numbers.length;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (numbers[middle] <= value)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Sorts the numbers and moves the setting numbers along with them
+	 *
+	 * The positions are sorted by value with a stable sort, which keeps the
+	 * settings of equal values in section order.
+	 */
+	private static void sortByValue(long [] numbers, int [] entries)
+	{
+		Integer [] order = new Integer [numbers.length];
+		for (int i = 0; i < order.length; i++)
+		{
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Long.compare(numbers[a], numbers[b]));
+		long [] sortedNumbers = new long [numbers.length];
+		int [] sortedEntries = new int [entries.length];
+		for (int i = 0; i < order.length; i++)
+		{
+			sortedNumbers[i] = numbers[order[i]];
+			sortedEntries[i] = entries[order[i]];
+		}
+		System.arraycopy(sortedNumbers, 0, numbers, 0, numbers.length);
+		System.arraycopy(sortedEntries, 0, entries, 0, entries.length);
+	}
+
+	/**
+	 * A setting found by the index
+	 */
+	public static final class Location {
+
+		private final String group;
+		private final String key;
+
+		public Location(String group, String key)
+		{
+			this.group = group;
+			this.key = key;
+		}
+
+		public String getGroup() {
+			return group;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		@Override
+		public boolean equals(Object other)
+		{
+			if (!(other instanceof Location))
+			{
+				return false;
+			}
+			Location location = (Location) other;
+			return group.equals(location.group) && key.equals(location.key);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return group.hashCode() * 31 + key.hashCode();
+		}
+
+		@Override
+		public String toString()
+		{
+			return group + "." + key;
+		}
+	}
+
+	/**
+	 * Collects the increasing setting numbers of a value as encoded deltas
+	 */
+	private static final class PostingBuilder {
+
+		private byte [] bytes = new byte [8];
+		private int length = 0;
+		private int last = 0;
+
+		void add(int entry)
+		{
+			int delta = entry - last;
+			last = entry;
+			if (length + 5 > bytes.length)
+			{
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 5));
+			}
+			while ((delta & ~0x7F) != 0)
+			{
+				bytes[length++] = (byte) ((delta & 0x7F) | 0x80);
+				delta >>>= 7;
+			}
+			bytes[length++] = (byte) delta;
+		}
+
+		byte [] toBytes()
+		{
+			return Arrays.copyOf(bytes, length);
+		}
+	}
+
+}
@@ -0,0 +1,359 @@
+package me.sdimopoulos.config.journal;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PushbackInputStream;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import me.sdimopoulos.config.parser.InflatingChannel;
+
+/**
+ * Writes the journaled changes into the configuration file
+ *
+ * The file is copied line by line and only the lines of the changed settings
+ * are touched, so comments, the order of the sections and the overrides of
+ * other environments are kept. For every changed setting:
+ *
+ * 1. its first line without an override, in the first section of its group,
+ * is replaced with the new value,
+ * 2. its lines with one of the overrides in use are dropped from all the
+ * sections of its group, since they would win over the new value,
+ * 3. if the first section of its group has no line to replace, it is added
+ * at the end of that section.
+ *
+ * Groups that are not in the file are added at the end of the part that the
+ * loader reads, before the first empty line. The new file is written next to
+ * the old one, given the permissions of the old one and renamed over it; a
+ * gzip compressed file stays compressed.
+ *
+ * Only values that the loader reads back as the same value can be written,
+ * see {@link #checkValue(Object)}.
+ */
+final class ConfigFileRewriter {
+
+	/**
+	 * Constructor
+	 */
+	private ConfigFileRewriter()
+	{
+	}
+
+	/**
+	 * Rewrites a configuration file with the given changes
+	 *
+	 * @param file The configuration file
+	 * @param charset The charset of the file
+	 * @param changes The new values per group and setting name
+	 * @param overrides The overrides the configuration is loaded with
+	 * @throws IOException if the file cannot be read or replaced
+	 */
+	static void rewrite(Path file, Charset charset,
+			Map<String,Map<String,Object>> changes, List<String> overrides)
+			throws IOException
+	{
+		Path directory = file.toAbsolutePath().getParent();
+		Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+		try {
+			boolean compressed;
+			try(PushbackInputStream source = new PushbackInputStream(
+					Files.newInputStream(file), 2)) {
+				compressed = isCompressed(source);
+				try(BufferedReader reader = new BufferedReader(new InputStreamReader(
+						compressed ? new GZIPInputStream(source, 1 << 16) : source, charset));
+					OutputStream target = Files.newOutputStream(temporary,
+						StandardOpenOption.WRITE);
+					Writer writer = new BufferedWriter(new OutputStreamWriter(
+						compressed ? new GZIPOutputStream(target, 1 << 16) : target, charset),
+						1 << 16)) {
+					copy(reader, writer, changes, overrides);
+				}
+			}
+			try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+				channel.force(true);
+			}
+			copyPermissions(file, temporary);
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * Gives the new file the permissions of the file it replaces, since a
+	 * temporary file is created readable by its owner only
+	 */
+	private static void copyPermissions(Path file, Path temporary) throws IOException
+	{
+		if (Files.getFileAttributeView(file, PosixFileAttributeView.class) != null)
+		{
+			Files.setPosixFilePermissions(temporary, Files.getPosixFilePermissions(file));
+		}
+	}
+
+	private static boolean isCompressed(PushbackInputStream source) throws IOException
+	{
+		byte [] magic = new byte [2];
+		int read = 0;
+		for (int count; read < 2 && (count = source.read(magic, read, 2 - read)) >= 0;)
+		{
+			read += count;
+		}
+		source.unread(magic, 0, read);
+		return read == 2 && InflatingChannel.isGzipMagic(magic[0], magic[1]);
+	}
+
+	/**
+	 * Copies the lines, changing the ones of the changed settings
+	 */
+	private static void copy(BufferedReader reader, Writer writer,
+			Map<String,Map<String,Object>> changes, List<String> overrides)
+			throws IOException
+	{
+		Map<String,Map<String,Object>> remaining = new LinkedHashMap<>(changes);
+		Set<String> seenGroups = new HashSet<>();
+		Map<String,Object> groupChanges = null;
+		Map<String,Object> sectionChanges = null;
+		Set<String> written = new HashSet<>();
+		boolean loaded = true;
+		for (String line = reader.readLine(); line != null; line = reader.readLine())
+		{
+			if (loaded && line.isEmpty())
+			{
+				writeRemaining(writer, sectionChanges, written);
+				writeGroups(writer, remaining);
+				loaded = false;
+			}
+			if (!loaded)
+			{
+				writeLine(writer, line);
+				continue;
+			}
+			String trimmed = line.trim();
+			if (trimmed.startsWith("["))
+			{
+				writeRemaining(writer, sectionChanges, written);
+				int end = trimmed.indexOf(']');
+				String group = end > 0 ? trimmed.substring(1, end) : "";
+				groupChanges = changes.get(group);
+				sectionChanges = seenGroups.add(group) ? remaining.remove(group) : null;
+				written.clear();
+				writeLine(writer, line);
+				continue;
+			}
+			if (groupChanges != null && !trimmed.isEmpty() && isLetter(trimmed.charAt(0)))
+			{
+				int nameEnd = 0;
+				while (nameEnd < trimmed.length() && isNameChar(trimmed.charAt(nameEnd)))
+				{
+					nameEnd++;
+				}
+				String key = trimmed.substring(0, nameEnd);
+				if (groupChanges.containsKey(key))
+				{
+					boolean isOverride = nameEnd < trimmed.length()
+							&& trimmed.charAt(nameEnd) == '<';
+					if (!isOverride && sectionChanges != null && written.add(key))
+					{
+						writeSetting(writer, key, sectionChanges.get(key));
+						continue;
+					}
+					if (isOverride)
+					{
+						int overrideEnd = trimmed.indexOf('>', nameEnd);
+						if (overrideEnd > 0 && overrides.contains(
+								trimmed.substring(nameEnd + 1, overrideEnd)))
+						{
+							continue;
+						}
+					}
+				}
+			}
+			writeLine(writer, line);
+		}
+		if (loaded)
+		{
+			writeRemaining(writer, sectionChanges, written);
+			writeGroups(writer, remaining);
+		}
+	}
+
+	private static void writeRemaining(Writer writer, Map<String,Object> sectionChanges,
+			Set<String> written) throws IOException
+	{
+		if (sectionChanges == null)
+		{
+			return;
+		}
+		for (Map.Entry<String,Object> setting : sectionChanges.entrySet())
+		{
+			if (written.add(setting.getKey()))
+			{
+				writeSetting(writer, setting.getKey(), setting.getValue());
+			}
+		}
+	}
+
+	private static void writeGroups(Writer writer,
+			Map<String,Map<String,Object>> remaining) throws IOException
+	{
+		for (Map.Entry<String,Map<String,Object>> group : remaining.entrySet())
+		{
+			writeLine(writer, "[" + group.getKey() + "]");
+			for (Map.Entry<String,Object> setting : group.getValue().entrySet())
+			{
+				writeSetting(writer, setting.getKey(), setting.getValue());
+			}
+		}
+		remaining.clear();
+	}
+
+	private static void writeSetting(Writer writer, String key, Object value)
+			throws IOException
+	{
+		writeLine(writer, key + " = " + format(value));
+	}
+
+	private static void writeLine(Writer writer, String line) throws IOException
+	{
+		writer.write(line);
+		writer.write('\n');
+	}
+
+	/**
+	 * Formats a value as the loader reads it
+	 */
+	private static String format(Object value)
+	{
+		if (value instanceof String)
+		{
+			return "\"" + value + "\"";
+		}
+		if (value instanceof Boolean)
+		{
+			return (Boolean) value ? "yes" : "no";
+		}
+		if (value instanceof List)
+		{
+			StringBuilder elements = new StringBuilder();
+			for (Object element : (List<?>) value)
+			{
+				if (elements.length() > 0)
+				{
+					elements.append(',');
+				}
+				elements.append(element);
+			}
+			return elements.toString();
+		}
+		return value.toString();
+	}
+
+	/**
+	 * Checks that a group name can be written as a section header
+	 *
+	 * @param group The group name
+	 * @throws IllegalArgumentException if it is empty or has characters other
+	 * than letters, digits and underscores
+	 */
+	static void checkGroup(String group)
+	{
+		if (group == null || group.isEmpty() || !group.chars().allMatch(
+				c -> c < 128 && isNameChar((char) c)))
+		{
+			throw new IllegalArgumentException("Invalid group name [" + group + "]");
+		}
+	}
+
+	/**
+	 * Checks that a setting name can be written in a setting line
+	 *
+	 * @param key The setting name
+	 * @throws IllegalArgumentException if it does not start with a letter or
+	 * has characters other than letters, digits and underscores
+	 */
+	static void checkKey(String key)
+	{
+		if (key == null || key.isEmpty() || !isLetter(key.charAt(0))
+				|| !key.chars().allMatch(c -> c < 128 && isNameChar((char) c)))
+		{
+			throw new IllegalArgumentException("Invalid setting name [" + key + "]");
+		}
+	}
+
+	/**
+	 * Checks that a value is read back as the same value by the loader
+	 *
+	 * The values are the ones the loader produces: a String without double
+	 * quotes or line breaks, a non negative Long, a Boolean, or a List of two
+	 * or more Strings of letters.
+	 *
+	 * @param value The value
+	 * @throws IllegalArgumentException if the value cannot be written
+	 */
+	static void checkValue(Object value)
+	{
+		boolean valid;
+		if (value instanceof String)
+		{
+			String string = (String) value;
+			valid = string.indexOf('"') < 0 && string.indexOf('\n') < 0
+					&& string.indexOf('\r') < 0;
+		}
+		else if (value instanceof Long)
+		{
+			valid = (Long) value >= 0;
+		}
+		else if (value instanceof Boolean)
+		{
+			valid = true;
+		}
+		else if (value instanceof List)
+		{
+			List<?> list = (List<?>) value;
+			valid = list.size() > 1 && list.stream().allMatch(element ->
+					element instanceof String && !((String) element).isEmpty()
+					&& ((String) element).chars().allMatch(c -> c < 128
+							&& isLetter((char) c)));
+		}
+		else
+		{
+			valid = false;
+		}
+		if (!valid)
+		{
+			throw new IllegalArgumentException("Value [" + value
+					+ "] cannot be written to the configuration file");
+		}
+	}
+
+	private static boolean isLetter(char c)
+	{
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	private static boolean isNameChar(char c)
+	{
+		return isLetter(c) || (c >= '0' && c <= '9') || c == '_';
+	}
+
+}
@@ -0,0 +1,313 @@
+package me.sdimopoulos.config.journal;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file of setting changes
+ *
+ * Every change is one record framed by the length of its payload and the
+ * CRC-32 of the payload:
+ *
+ *   int length, int crc, string group, string key, byte tag, value
+ *
+ * Strings are an int length and UTF-8 bytes. The value tag is one of string,
+ * long, boolean or array, an array being an int count and its strings. A
+ * record is written with a single write and forced to the disk before
+ * {@link #append} returns. A crash can leave only the last record torn, so
+ * {@link #open} stops the replay at the first record that is short or fails
+ * its CRC and cuts it off.
+ */
+final class ConfigJournal implements AutoCloseable {
+
+	private static final int HEADER_SIZE = 8;
+	private static final byte STRING_VALUE = 1;
+	private static final byte LONG_VALUE = 2;
+	private static final byte BOOLEAN_VALUE = 3;
+	private static final byte ARRAY_VALUE = 4;
+
+	/**
+	 * Receives the records of a journal in the order they were written
+	 */
+	interface RecordHandler {
+		void apply(String group, String key, Object value);
+	}
+
+	private final Path file;
+	private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+	private final DataOutputStream record = new DataOutputStream(recordBytes);
+	private final CRC32 crc = new CRC32();
+	private FileChannel channel;
+
+	/**
+	 * Constructor
+	 *
+	 * @param file The journal file
+	 * @param channel The channel of the file, positioned at its end
+	 */
+	private ConfigJournal(Path file, FileChannel channel)
+	{
+		this.file = file;
+		this.channel = channel;
+	}
+
+	/**
+	 * Opens a journal, creating it if it is missing, and replays its records
+	 *
+	 * @param file The journal file
+	 * @param handler Receives every whole record
+	 * @return The journal, ready to append after the last whole record
+	 * @throws IOException if the file cannot be read or written
+	 */
+	static ConfigJournal open(Path file, RecordHandler handler) throws IOException
+	{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			long valid = replay(channel, handler);
+			if (valid < channel.size())
+			{
+				channel.truncate(valid);
+				channel.force(true);
+			}
+			channel.position(valid);
+			return new ConfigJournal(file, channel);
+		}
+		catch(IOException|RuntimeException e)
+		{
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the records from the start of the channel
+	 *
+	 * @return The length of the whole records
+	 */
+	private static long replay(FileChannel channel, RecordHandler handler)
+			throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				Channels.newInputStream(channel.position(0)), 1 << 16));
+		CRC32 checksum = new CRC32();
+		long valid = 0;
+		long size = channel.size();
+		while (size - valid >= HEADER_SIZE)
+		{
+			int length = in.readInt();
+			int expected = in.readInt();
+			if (length <= 0 || length > size - valid - HEADER_SIZE)
+			{
+				break;
+			}
+			byte [] payload = new byte [length];
+			in.readFully(payload);
+			checksum.reset();
+			checksum.update(payload, 0, length);
+			if ((int) checksum.getValue() != expected)
+			{
+				break;
+			}
+			DataInputStream fields = new DataInputStream(
+					new ByteArrayInputStream(payload));
+			try {
+				String group = readString(fields);
+				String key = readString(fields);
+				Object value = readValue(fields);
+				handler.apply(group, key, value);
+			}
+			catch(EOFException e)
+			{
+				break;
+			}
+			valid += HEADER_SIZE + length;
+		}
+		return valid;
+	}
+
+	/**
+	 * Appends a change and forces it to the disk
+	 *
+	 * @param group The section name
+	 * @param key The setting name
+	 * @param value The value, of a type checked by
+	 * {@link ConfigFileRewriter#checkValue(Object)}
+	 * @throws IOException if the record cannot be written
+	 */
+	void append(String group, String key, Object value) throws IOException
+	{
+		recordBytes.reset();
+		record.writeInt(0);
+		record.writeInt(0);
+		writeString(record, group);
+		writeString(record, key);
+		writeValue(record, value);
+		record.flush();
+		ByteBuffer buffer = ByteBuffer.wrap(recordBytes.toByteArray());
+		int length = buffer.limit() - HEADER_SIZE;
+		crc.reset();
+		crc.update(buffer.array(), HEADER_SIZE, length);
+		buffer.putInt(0, length);
+		buffer.putInt(4, (int) crc.getValue());
+		long start = channel.position();
+		try {
+			while (buffer.hasRemaining())
+			{
+				channel.write(buffer);
+			}
+			channel.force(false);
+		}
+		catch(IOException e)
+		{
+			channel.truncate(start);
+			channel.position(start);
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the length of the journal, the position of the next record
+	 *
+	 * @return The length in bytes
+	 * @throws IOException if the journal is closed
+	 */
+	long size() throws IOException
+	{
+		return channel.position();
+	}
+
+	/**
+	 * Drops the records before a position, keeping the ones after it
+	 *
+	 * The remaining records are written to a new file that is renamed over the
+	 * journal, so a crash leaves either the old or the new journal whole.
+	 *
+	 * @param from The position of the first record to keep
+	 * @throws IOException if the journal cannot be rewritten
+	 */
+	void dropBefore(long from) throws IOException
+	{
+		Path directory = file.toAbsolutePath().getParent();
+		Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+		try {
+			try(FileChannel target = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+				long end = channel.position();
+				long copied = from;
+				while (copied < end)
+				{
+					copied += channel.transferTo(copied, end - copied, target);
+				}
+				target.force(true);
+			}
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			Files.deleteIfExists(temporary);
+		}
+		channel.close();
+		channel = FileChannel.open(file, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		channel.position(channel.size());
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+
+	private static void writeValue(DataOutputStream out, Object value) throws IOException
+	{
+		if (value instanceof String)
+		{
+			out.writeByte(STRING_VALUE);
+			writeString(out, (String) value);
+		}
+		else if (value instanceof Long)
+		{
+			out.writeByte(LONG_VALUE);
+			out.writeLong((Long) value);
+		}
+		else if (value instanceof Boolean)
+		{
+			out.writeByte(BOOLEAN_VALUE);
+			out.writeBoolean((Boolean) value);
+		}
+		else
+		{
+			List<?> list = (List<?>) value;
+			out.writeByte(ARRAY_VALUE);
+			out.writeInt(list.size());
+			for (Object element : list)
+			{
+				writeString(out, (String) element);
+			}
+		}
+	}
+
+	private static Object readValue(DataInputStream in) throws IOException
+	{
+		byte tag = in.readByte();
+		switch(tag)
+		{
+		case STRING_VALUE:
+			return readString(in);
+		case LONG_VALUE:
+			return in.readLong();
+		case BOOLEAN_VALUE:
+			return in.readBoolean();
+		case ARRAY_VALUE:
+			int count = in.readInt();
+			if (count < 0 || count > in.available())
+			{
+				throw new EOFException();
+			}
+			String [] elements = new String [count];
+			for (int i = 0; i < count; i++)
+			{
+				elements[i] = readString(in);
+			}
+			return Arrays.asList(elements);
+		default:
+			throw new IOException("Unknown value type " + tag + " in the journal");
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException
+	{
+		byte [] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException
+	{
+		int length = in.readInt();
+		if (length < 0 || length > in.available())
+		{
+			throw new EOFException();
+		}
+		byte [] bytes = new byte [length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
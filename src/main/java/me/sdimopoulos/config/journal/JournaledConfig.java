@@ -0,0 +1,394 @@
+package me.sdimopoulos.config.journal;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import me.sdimopoulos.config.Config;
+import me.sdimopoulos.config.ConfigGroup;
+import me.sdimopoulos.config.ConfigLoadException;
+import me.sdimopoulos.config.ConfigLoader;
+import me.sdimopoulos.config.ConfigView;
+
+/**
+ * A configuration whose settings can be changed at runtime and survive a
+ * restart
+ *
+ * The configuration file is loaded once, then every change made with
+ * {@link #set(String, String, Object)} is put in memory and appended as a
+ * small record to a journal next to the file, the file name with
+ * {@value #JOURNAL_SUFFIX} added, see {@link ConfigJournal}. A change costs
+ * one write and one fsync of its record, whatever the size of the file:
+ *
+ *   JournaledConfig config = configLoader.loadJournaledConfig(path, overrides);
+ *   config.set("core", "max_files_per_session", 5000L);
+ *
+ * Opening the configuration again loads the file and replays the journal
+ * over it. When the journal grows over the compaction threshold, the changes
+ * are written into the file by the {@link ConfigFileRewriter} on a background
+ * thread and the journal is cut down to the records written since. Changes
+ * keep being accepted while the file is rewritten. A crash during a
+ * compaction leaves the journal whole, and replaying records that are
+ * already in the file gives the same values.
+ *
+ * The journal holds the values the settings have with the overrides the
+ * configuration was opened with, so it should always be opened with the same
+ * overrides. Changes are serialized with each other and with the compaction,
+ * but as for any {@link Config}, queries are not synchronized with changes.
+ */
+public class JournaledConfig extends ConfigView implements AutoCloseable {
+
+	private static final long serialVersionUID = 6071452916340335802L;
+
+	/** Suffix added to the name of the configuration file for its journal */
+	public static final String JOURNAL_SUFFIX = ".journal";
+	/** Default journal length in bytes that starts a compaction */
+	public static final long DEFAULT_COMPACTION_THRESHOLD = 1 << 20;
+
+	private final transient Config config;
+	private final transient Path file;
+	private final transient Charset charset;
+	private final transient List<String> overrides;
+	private final transient ConfigJournal journal;
+	private final transient Executor compactionExecutor;
+	private transient Map<String,Map<String,Object>> pending;
+	private transient long compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+	private transient boolean compacting;
+	private transient boolean closed;
+	private transient volatile IOException compactionFailure;
+
+	/**
+	 * Constructor
+	 *
+	 * @param config The loaded file with the journal replayed
+	 * @param file The configuration file
+	 * @param charset The charset of the file
+	 * @param overrides The overrides the file was loaded with
+	 * @param journal The opened journal
+	 * @param pending The changes of the journal
+	 * @param compactionExecutor Runs the background compactions
+	 */
+	private JournaledConfig(Config config, Path file, Charset charset,
+			List<String> overrides, ConfigJournal journal,
+			Map<String,Map<String,Object>> pending, Executor compactionExecutor)
+	{
+		this.config = config;
+		this.file = file;
+		this.charset = charset;
+		this.overrides = overrides;
+		this.journal = journal;
+		this.pending = pending;
+		this.compactionExecutor = compactionExecutor;
+	}
+
+	/**
+	 * Loads a configuration file and replays its journal, compactions run on
+	 * a daemon thread of their own
+	 *
+	 * @param loader The loader of the file
+	 * @param filePath The path of the configuration file
+	 * @param overrides A list of overrides
+	 * @return The configuration
+	 * @throws ConfigLoadException if the file cannot be loaded or the journal
+	 * cannot be read
+	 */
+	public static JournaledConfig open(ConfigLoader loader, String filePath,
+			List<String> overrides) throws RuntimeException
+	{
+		return open(loader, filePath, overrides, task -> {
+			Thread thread = new Thread(task, "config-compaction");
+			thread.setDaemon(true);
+			thread.start();
+		});
+	}
+
+	/**
+	 * Loads a configuration file and replays its journal
+	 *
+	 * The loader must create a mutable {@link Config}, as its default
+	 * supplier does.
+	 *
+	 * @param loader The loader of the file
+	 * @param filePath The path of the configuration file
+	 * @param overrides A list of overrides
+	 * @param compactionExecutor Runs the background compactions
+	 * @return The configuration
+	 * @throws ConfigLoadException if the file cannot be loaded or the journal
+	 * cannot be read
+	 */
+	public static JournaledConfig open(ConfigLoader loader, String filePath,
+			List<String> overrides, Executor compactionExecutor) throws RuntimeException
+	{
+		Config config = loader.loadConfig(filePath, overrides);
+		Map<String,Map<String,Object>> pending = new LinkedHashMap<>();
+		ConfigJournal journal;
+		try {
+			journal = ConfigJournal.open(Paths.get(filePath + JOURNAL_SUFFIX),
+					(group, key, value) -> apply(config, pending, group, key, value));
+		}
+		catch(IOException e)
+		{
+			throw new ConfigLoadException(e.getMessage(), e);
+		}
+		return new JournaledConfig(config, Paths.get(filePath), loader.getCharset(),
+				new ArrayList<>(overrides), journal, pending, compactionExecutor);
+	}
+
+	/**
+	 * Changes a setting and records the change in the journal
+	 *
+	 * The record is on the disk when the method returns. A section that is
+	 * missing is created.
+	 *
+	 * @param group The section name, of letters, digits and underscores
+	 * @param key The setting name, a letter then letters, digits and underscores
+	 * @param value A String without double quotes or line breaks, a non
+	 * negative Long, a Boolean or a List of two or more Strings of letters,
+	 * which are the values that the configuration file can hold
+	 * @throws IOException if the journal cannot be written, the setting is
+	 * then unchanged
+	 * @throws IllegalArgumentException if a name or the value cannot be written
+	 * in the configuration file
+	 * @throws IllegalStateException if the configuration is closed
+	 */
+	public void set(String group, String key, Object value) throws IOException
+	{
+		ConfigFileRewriter.checkGroup(group);
+		ConfigFileRewriter.checkKey(key);
+		ConfigFileRewriter.checkValue(value);
+		synchronized (this)
+		{
+			checkOpen();
+			journal.append(group, key, value);
+			apply(config, pending, group, key, value);
+			startCompactionIfNeeded();
+		}
+	}
+
+	/**
+	 * Starts a background compaction if there are changes, the journal is over
+	 * the threshold and no compaction is running, called holding the lock
+	 */
+	private void startCompactionIfNeeded() throws IOException
+	{
+		if (!compacting && !pending.isEmpty() && journal.size() >= compactionThreshold)
+		{
+			compacting = true;
+			try {
+				compactionExecutor.execute(this::compactInBackground);
+			}
+			catch(RejectedExecutionException e)
+			{
+				compacting = false;
+			}
+		}
+	}
+
+	/**
+	 * Writes the changes of the journal into the configuration file now
+	 *
+	 * Waits for a background compaction that is running to finish first.
+	 *
+	 * @throws IOException if the file or the journal cannot be rewritten, the
+	 * changes are then kept in the journal
+	 * @throws IllegalStateException if the configuration is closed
+	 */
+	public void compact() throws IOException
+	{
+		synchronized (this)
+		{
+			awaitCompaction();
+			checkOpen();
+			if (pending.isEmpty())
+			{
+				return;
+			}
+			compacting = true;
+		}
+		runCompaction();
+	}
+
+	private void compactInBackground()
+	{
+		try {
+			runCompaction();
+			compactionFailure = null;
+		}
+		catch(IOException e)
+		{
+			compactionFailure = e;
+		}
+	}
+
+	/**
+	 * Rewrites the file with the changes made so far, the flag compacting
+	 * must be set by the caller. The changes made during the rewrite start
+	 * the next compaction if they are over the threshold.
+	 */
+	private void runCompaction() throws IOException
+	{
+		Map<String,Map<String,Object>> changes;
+		long mark;
+		synchronized (this)
+		{
+			changes = pending;
+			pending = new LinkedHashMap<>();
+			mark = journal.size();
+		}
+		boolean done = false;
+		try {
+			ConfigFileRewriter.rewrite(file, charset, changes, overrides);
+			synchronized (this)
+			{
+				journal.dropBefore(mark);
+			}
+			done = true;
+		}
+		finally {
+			synchronized (this)
+			{
+				if (!done)
+				{
+					for (Map.Entry<String,Map<String,Object>> group : pending.entrySet())
+					{
+						changes.computeIfAbsent(group.getKey(), name -> new LinkedHashMap<>())
+							.putAll(group.getValue());
+					}
+					pending = changes;
+				}
+				compacting = false;
+				notifyAll();
+			}
+		}
+		synchronized (this)
+		{
+			if (!closed && !pending.isEmpty())
+			{
+				startCompactionIfNeeded();
+			}
+		}
+	}
+
+	private void awaitCompaction() throws InterruptedIOException
+	{
+		while (compacting)
+		{
+			try {
+				wait();
+			}
+			catch(InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the compaction");
+			}
+		}
+	}
+
+	private void checkOpen()
+	{
+		if (closed)
+		{
+			throw new IllegalStateException("The journaled configuration is closed");
+		}
+	}
+
+	/**
+	 * Puts a change in the configuration and in the changes to compact
+	 */
+	private static void apply(Config config, Map<String,Map<String,Object>> pending,
+			String group, String key, Object value)
+	{
+		Map<String,Object> settings = config.getOrDefault(group, null);
+		if (settings == null)
+		{
+			settings = new ConfigGroup();
+			config.put(group, settings);
+		}
+		settings.put(key, value);
+		pending.computeIfAbsent(group, name -> new LinkedHashMap<>()).put(key, value);
+	}
+
+	@Override
+	protected Map<String,Object> getGroup(String name)
+	{
+		return config.getOrDefault(name, null);
+	}
+
+	@Override
+	protected Set<String> groupNames()
+	{
+		return config.keySet();
+	}
+
+	/**
+	 * Closes the journal, after the compaction that is running
+	 *
+	 * The changes that were not compacted stay in the journal and are
+	 * replayed when the configuration is opened again.
+	 *
+	 * @throws IOException if the journal cannot be closed
+	 */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if (closed)
+		{
+			return;
+		}
+		awaitCompaction();
+		closed = true;
+		journal.close();
+	}
+
+	/* Getters and Setters begin here */
+
+	public synchronized long getCompactionThreshold() {
+		return compactionThreshold;
+	}
+
+	/**
+	 * Sets the journal length that starts a background compaction
+	 *
+	 * @param compactionThreshold The length in bytes, more than 0
+	 * @return This configuration
+	 * @throws IllegalArgumentException if the threshold is not positive
+	 */
+	public synchronized JournaledConfig setCompactionThreshold(long compactionThreshold) {
+		if (compactionThreshold <= 0)
+		{
+			throw new IllegalArgumentException("The compaction threshold must be positive: "
+					+ compactionThreshold);
+		}
+		this.compactionThreshold = compactionThreshold;
+		return this;
+	}
+
+	/**
+	 * Returns the error of the last background compaction
+	 *
+	 * @return The error, or null if the last compaction succeeded
+	 */
+	public IOException getCompactionFailure() {
+		return compactionFailure;
+	}
+
+	/**
+	 * Returns the length of the journal
+	 *
+	 * @return The length in bytes
+	 * @throws IOException if the journal is closed
+	 */
+	public synchronized long getJournalSize() throws IOException {
+		return journal.size();
+	}
+
+}
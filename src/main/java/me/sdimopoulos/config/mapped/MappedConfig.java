@@ -0,0 +1,225 @@
+package me.sdimopoulos.config.mapped;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import me.sdimopoulos.config.ConfigView;
+
+/**
+ * A read-only configuration answered from a memory mapped file
+ *
+ * The file is written by {@link MappedConfigWriter}, for example through
+ * {@link me.sdimopoulos.config.ConfigLoader#writeMappedConfig}, and mapped
+ * read only. Sections and settings are found through the hash tables of the
+ * file and only the value that is asked for is decoded, so opening a file
+ * costs the same whatever its size, and the heap holds no copy of the
+ * settings. All the processes of a host that map the same file share one copy
+ * of it in the page cache.
+ *
+ * As with the ConfigGroup, a missing setting is returned as an empty string.
+ * A file replaced by the writer is not seen until it is opened again.
+ * Queries are thread safe.
+ */
+public class MappedConfig extends ConfigView {
+
+	private static final long serialVersionUID = -4913256206402935548L;
+
+	private final transient ByteBuffer buffer;
+	private final transient int sectionCount;
+	private final transient int sectionTable;
+	private final transient int sectionCapacity;
+	private final transient int directory;
+	private transient volatile Set<String> names;
+
+	/**
+	 * Constructor
+	 *
+	 * @param buffer The content of a file in the mapped format
+	 * @throws IOException if the content is not in the mapped format
+	 */
+	MappedConfig(ByteBuffer buffer) throws IOException
+	{
+		if (buffer.capacity() < MappedFormat.HEADER_SIZE
+				|| buffer.getInt(0) != MappedFormat.MAGIC)
+		{
+			throw new IOException("Not a mapped configuration file");
+		}
+		if (buffer.getInt(4) != MappedFormat.FORMAT_VERSION)
+		{
+			throw new IOException("Unsupported mapped configuration version "
+					+ buffer.getInt(4));
+		}
+		this.buffer = buffer;
+		this.sectionCount = buffer.getInt(MappedFormat.HEADER_SECTION_COUNT);
+		this.sectionTable = buffer.getInt(MappedFormat.HEADER_SECTION_TABLE);
+		this.sectionCapacity = buffer.getInt(MappedFormat.HEADER_SECTION_CAPACITY);
+		this.directory = buffer.getInt(MappedFormat.HEADER_DIRECTORY);
+	}
+
+	/**
+	 * Maps a file written by the {@link MappedConfigWriter}
+	 *
+	 * @param file The file
+	 * @return The configuration of the file
+	 * @throws IOException if the file cannot be mapped or has another format
+	 */
+	public static MappedConfig open(Path file) throws IOException
+	{
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+			return new MappedConfig(mapped);
+		}
+	}
+
+	@Override
+	protected Map<String,Object> getGroup(String name)
+	{
+		int hash = MappedFormat.spread(name.hashCode());
+		int mask = sectionCapacity - 1;
+		for (int index = hash & mask; ; index = (index + 1) & mask)
+		{
+			int slot = sectionTable + index * MappedFormat.SECTION_SLOT_SIZE;
+			int entry = buffer.getInt(slot + 4);
+			if (entry == 0)
+			{
+				return null;
+			}
+			if (buffer.getInt(slot) == hash)
+			{
+				int offset = directory + (entry - 1) * MappedFormat.DIRECTORY_ENTRY_SIZE;
+				if (stringEquals(buffer.getInt(offset), name))
+				{
+					return new MappedConfigGroup(this, buffer.getInt(offset + 4),
+							buffer.getInt(offset + 8), buffer.getInt(offset + 12));
+				}
+			}
+		}
+	}
+
+	@Override
+	protected Set<String> groupNames()
+	{
+		Set<String> decoded = names;
+		if (decoded == null)
+		{
+			decoded = new LinkedHashSet<>();
+			for (int i = 0; i < sectionCount; i++)
+			{
+				decoded.add(stringAt(buffer.getInt(directory
+						+ i * MappedFormat.DIRECTORY_ENTRY_SIZE)));
+			}
+			decoded = Collections.unmodifiableSet(decoded);
+			names = decoded;
+		}
+		return decoded;
+	}
+
+	/**
+	 * Finds the slot of a setting in the table of a section
+	 *
+	 * @param table The offset of the table
+	 * @param capacity The number of slots
+	 * @param key The setting name
+	 * @return The offset of the slot, or -1 if the setting is missing
+	 */
+	int findSetting(int table, int capacity, String key)
+	{
+		int hash = MappedFormat.spread(key.hashCode());
+		int mask = capacity - 1;
+		for (int index = hash & mask; ; index = (index + 1) & mask)
+		{
+			int slot = table + index * MappedFormat.SETTING_SLOT_SIZE;
+			int keyRef = buffer.getInt(slot + 4);
+			if (keyRef == 0)
+			{
+				return -1;
+			}
+			if (buffer.getInt(slot) == hash && stringEquals(keyRef, key))
+			{
+				return slot;
+			}
+		}
+	}
+
+	/**
+	 * Compares a string of the pool with a String, without decoding ASCII
+	 */
+	boolean stringEquals(int ref, String value)
+	{
+		int length = buffer.getInt(ref);
+		if (length < value.length())
+		{
+			return false;
+		}
+		int start = ref + 4;
+		for (int i = 0; i < length; i++)
+		{
+			byte b = buffer.get(start + i);
+			if (b < 0)
+			{
+				return stringAt(ref).equals(value);
+			}
+			if (i >= value.length() || value.charAt(i) != b)
+			{
+				return false;
+			}
+		}
+		return length == value.length();
+	}
+
+	/**
+	 * Decodes a string of the pool
+	 */
+	String stringAt(int ref)
+	{
+		int length = buffer.getInt(ref);
+		byte [] bytes = new byte [length];
+		ByteBuffer view = buffer.duplicate();
+		view.position(ref + 4);
+		view.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Decodes a value of the pool
+	 */
+	Object valueAt(int ref)
+	{
+		switch(buffer.get(ref))
+		{
+		case MappedFormat.STRING_VALUE:
+			return stringAt(buffer.getInt(ref + 1));
+		case MappedFormat.LONG_VALUE:
+			return buffer.getLong(ref + 1);
+		case MappedFormat.BOOLEAN_VALUE:
+			return buffer.get(ref + 1) != 0;
+		case MappedFormat.ARRAY_VALUE:
+			String [] elements = new String [buffer.getInt(ref + 1)];
+			for (int i = 0; i < elements.length; i++)
+			{
+				elements[i] = stringAt(buffer.getInt(ref + 5 + i * 4));
+			}
+			return Arrays.asList(elements);
+		default:
+			return null;
+		}
+	}
+
+	/* Getters and Setters begin here */
+
+	ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+}
@@ -0,0 +1,139 @@
+package me.sdimopoulos.config.mapped;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A section of a {@link MappedConfig}
+ *
+ * Only the position of the hash table of the section is kept; every get
+ * probes the table in the mapped file and decodes the value it finds. As with
+ * the ConfigGroup, a missing setting is returned as an empty string. The
+ * settings are iterated in the order of the table.
+ */
+final class MappedConfigGroup extends AbstractMap<String,Object> {
+
+	private final MappedConfig config;
+	private final int table;
+	private final int capacity;
+	private final int size;
+
+	/**
+	 * Constructor
+	 *
+	 * @param config The config of the file
+	 * @param table The offset of the hash table of the section
+	 * @param capacity The number of slots of the table
+	 * @param size The number of settings
+	 */
+	MappedConfigGroup(MappedConfig config, int table, int capacity, int size)
+	{
+		this.config = config;
+		this.table = table;
+		this.capacity = capacity;
+		this.size = size;
+	}
+
+	@Override
+	public Object get(Object key)
+	{
+		return getOrDefault(key, "");
+	}
+
+	@Override
+	public Object getOrDefault(Object key, Object defaultValue)
+	{
+		if (key instanceof String)
+		{
+			int slot = config.findSetting(table, capacity, (String) key);
+			if (slot >= 0)
+			{
+				return config.valueAt(config.getBuffer().getInt(slot + 8));
+			}
+		}
+		return defaultValue;
+	}
+
+	@Override
+	public boolean containsKey(Object key)
+	{
+		return key instanceof String
+				&& config.findSetting(table, capacity, (String) key) >= 0;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public Set<Map.Entry<String,Object>> entrySet()
+	{
+		return new AbstractSet<Map.Entry<String,Object>>() {
+			@Override
+			public Iterator<Map.Entry<String,Object>> iterator() {
+				return new EntryIterator();
+			}
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * Walks the used slots of the table
+	 */
+	private final class EntryIterator implements Iterator<Map.Entry<String,Object>> {
+
+		private final ByteBuffer buffer = config.getBuffer();
+		private int index = -1;
+
+		EntryIterator()
+		{
+			advance();
+		}
+
+		private void advance()
+		{
+			do
+			{
+				index++;
+			}
+			while (index < capacity && buffer.getInt(slot() + 4) == 0);
+		}
+
+		private int slot()
+		{
+			return table + index * MappedFormat.SETTING_SLOT_SIZE;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return index < capacity;
+		}
+
+		@Override
+		public Map.Entry<String,Object> next()
+		{
+			if (!hasNext())
+			{
+				throw new NoSuchElementException();
+			}
+			int slot = slot();
+			Map.Entry<String,Object> entry = new AbstractMap.SimpleImmutableEntry<>(
+					config.stringAt(buffer.getInt(slot + 4)),
+					config.valueAt(buffer.getInt(slot + 8)));
+			advance();
+			return entry;
+		}
+	}
+
+}
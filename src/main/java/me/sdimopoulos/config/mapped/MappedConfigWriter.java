@@ -0,0 +1,259 @@
+package me.sdimopoulos.config.mapped;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import me.sdimopoulos.config.Config;
+
+/**
+ * Writes a configuration in the mapped format, see {@link MappedFormat}
+ *
+ * The file is written next to the target and then renamed over it, so a
+ * process that has the previous file mapped keeps reading the previous
+ * version, and one that opens the file never sees it half written. The new
+ * file keeps the permissions of the one it replaces, so the processes of other
+ * users can still open it.
+ */
+public final class MappedConfigWriter {
+
+	/** Permissions of a file that did not exist, readable by all users */
+	private static final Set<PosixFilePermission> NEW_FILE_PERMISSIONS =
+			PosixFilePermissions.fromString("rw-r--r--");
+
+	private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream(1 << 16);
+	private final DataOutputStream pool = new DataOutputStream(poolBytes);
+	private final Map<String,Integer> strings = new HashMap<>();
+	private final Map<Object,Integer> values = new HashMap<>();
+	private int poolOffset;
+
+	/**
+	 * Constructor
+	 */
+	private MappedConfigWriter()
+	{
+	}
+
+	/**
+	 * Writes a configuration to a file
+	 *
+	 * @param config The configuration
+	 * @param file The file to create or replace
+	 * @throws IOException if the file cannot be written
+	 * @throws IllegalArgumentException if a value has a type that the
+	 * loader does not produce
+	 */
+	public static void write(Config config, Path file) throws IOException
+	{
+		byte [] bytes = new MappedConfigWriter().encode(config);
+		Path directory = file.toAbsolutePath().getParent();
+		Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+		try {
+			try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+				ByteBuffer buffer = ByteBuffer.wrap(bytes);
+				while (buffer.hasRemaining())
+				{
+					channel.write(buffer);
+				}
+				channel.force(true);
+			}
+			setPermissions(file, temporary);
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * Gives the new file the permissions of the file it replaces, or lets all
+	 * users read it if there is none, since a temporary file is created
+	 * readable by its owner only
+	 */
+	private static void setPermissions(Path file, Path temporary) throws IOException
+	{
+		if (Files.getFileAttributeView(temporary, PosixFileAttributeView.class) != null)
+		{
+			Files.setPosixFilePermissions(temporary, Files.exists(file)
+					? Files.getPosixFilePermissions(file) : NEW_FILE_PERMISSIONS);
+		}
+	}
+
+	/**
+	 * Lays out the whole file in memory
+	 */
+	private byte [] encode(Config config) throws IOException
+	{
+		List<String> names = new ArrayList<>(config.keySet());
+		int sectionCapacity = MappedFormat.capacityFor(names.size());
+		int [] settingCapacities = new int [names.size()];
+		long tablesSize = 0;
+		for (int i = 0; i < names.size(); i++)
+		{
+			settingCapacities[i] = MappedFormat.capacityFor(config.get(names.get(i)).size());
+			tablesSize += (long) settingCapacities[i] * MappedFormat.SETTING_SLOT_SIZE;
+		}
+		int directoryOffset = MappedFormat.HEADER_SIZE;
+		int sectionTableOffset = directoryOffset + names.size() * MappedFormat.DIRECTORY_ENTRY_SIZE;
+		long firstTable = sectionTableOffset + (long) sectionCapacity * MappedFormat.SECTION_SLOT_SIZE;
+		checkSize(firstTable + tablesSize);
+		poolOffset = (int) (firstTable + tablesSize);
+
+		ByteBuffer tables = ByteBuffer.allocate(poolOffset);
+		tables.putInt(0, MappedFormat.MAGIC);
+		tables.putInt(4, MappedFormat.FORMAT_VERSION);
+		tables.putInt(MappedFormat.HEADER_SECTION_COUNT, names.size());
+		tables.putInt(MappedFormat.HEADER_SECTION_TABLE, sectionTableOffset);
+		tables.putInt(MappedFormat.HEADER_SECTION_CAPACITY, sectionCapacity);
+		tables.putInt(MappedFormat.HEADER_DIRECTORY, directoryOffset);
+		tables.putInt(MappedFormat.HEADER_POOL, poolOffset);
+		int tableOffset = (int) firstTable;
+		for (int i = 0; i < names.size(); i++)
+		{
+			String name = names.get(i);
+			Map<String,Object> settings = config.get(name);
+			int entry = directoryOffset + i * MappedFormat.DIRECTORY_ENTRY_SIZE;
+			tables.putInt(entry, stringRef(name));
+			tables.putInt(entry + 4, tableOffset);
+			tables.putInt(entry + 8, settingCapacities[i]);
+			tables.putInt(entry + 12, settings.size());
+			int hash = MappedFormat.spread(name.hashCode());
+			int slot = probe(tables, sectionTableOffset, sectionCapacity,
+					MappedFormat.SECTION_SLOT_SIZE, hash);
+			tables.putInt(slot, hash);
+			tables.putInt(slot + 4, i + 1);
+			for (Map.Entry<String,Object> setting : settings.entrySet())
+			{
+				hash = MappedFormat.spread(setting.getKey().hashCode());
+				slot = probe(tables, tableOffset, settingCapacities[i],
+						MappedFormat.SETTING_SLOT_SIZE, hash);
+				tables.putInt(slot, hash);
+				tables.putInt(slot + 4, stringRef(setting.getKey()));
+				tables.putInt(slot + 8, valueRef(setting.getValue()));
+			}
+			tableOffset += settingCapacities[i] * MappedFormat.SETTING_SLOT_SIZE;
+		}
+		pool.flush();
+		checkSize((long) poolOffset + poolBytes.size());
+		byte [] file = new byte [poolOffset + poolBytes.size()];
+		System.arraycopy(tables.array(), 0, file, 0, poolOffset);
+		System.arraycopy(poolBytes.toByteArray(), 0, file, poolOffset, poolBytes.size());
+		return file;
+	}
+
+	/**
+	 * Finds the first empty slot of the chain of a hash, the second int of an
+	 * empty slot is 0
+	 */
+	private static int probe(ByteBuffer tables, int offset, int capacity,
+			int slotSize, int hash)
+	{
+		int mask = capacity - 1;
+		for (int index = hash & mask; ; index = (index + 1) & mask)
+		{
+			int slot = offset + index * slotSize;
+			if (tables.getInt(slot + 4) == 0)
+			{
+				return slot;
+			}
+		}
+	}
+
+	private int stringRef(String value) throws IOException
+	{
+		Integer ref = strings.get(value);
+		if (ref == null)
+		{
+			ref = poolOffset + pool.size();
+			byte [] bytes = value.getBytes(StandardCharsets.UTF_8);
+			pool.writeInt(bytes.length);
+			pool.write(bytes);
+			strings.put(value, ref);
+		}
+		return ref;
+	}
+
+	private int valueRef(Object value) throws IOException
+	{
+		Object key = value == null ? MappedFormat.class : value;
+		Integer ref = values.get(key);
+		if (ref != null)
+		{
+			return ref;
+		}
+		if (value instanceof List)
+		{
+			List<?> list = (List<?>) value;
+			int [] elements = new int [list.size()];
+			for (int i = 0; i < elements.length; i++)
+			{
+				elements[i] = stringRef(String.valueOf(list.get(i)));
+			}
+			ref = poolOffset + pool.size();
+			pool.writeByte(MappedFormat.ARRAY_VALUE);
+			pool.writeInt(elements.length);
+			for (int element : elements)
+			{
+				pool.writeInt(element);
+			}
+		}
+		else if (value instanceof String)
+		{
+			int string = stringRef((String) value);
+			ref = poolOffset + pool.size();
+			pool.writeByte(MappedFormat.STRING_VALUE);
+			pool.writeInt(string);
+		}
+		else
+		{
+			ref = poolOffset + pool.size();
+			if (value == null)
+			{
+				pool.writeByte(MappedFormat.NULL_VALUE);
+			}
+			else if (value instanceof Long)
+			{
+				pool.writeByte(MappedFormat.LONG_VALUE);
+				pool.writeLong((Long) value);
+			}
+			else if (value instanceof Boolean)
+			{
+				pool.writeByte(MappedFormat.BOOLEAN_VALUE);
+				pool.writeBoolean((Boolean) value);
+			}
+			else
+			{
+				throw new IllegalArgumentException("Cannot store a "
+						+ value.getClass().getName());
+			}
+		}
+		values.put(key, ref);
+		return ref;
+	}
+
+	private static void checkSize(long size) throws IOException
+	{
+		if (size > Integer.MAX_VALUE)
+		{
+			throw new IOException("Mapped configuration of " + size
+					+ " bytes is over the 2 GB limit");
+		}
+	}
+
+}
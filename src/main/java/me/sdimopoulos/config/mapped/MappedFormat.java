@@ -0,0 +1,75 @@
+package me.sdimopoulos.config.mapped;
+
+/**
+ * The layout of a mapped configuration file
+ *
+ * All numbers are big endian and all references are absolute offsets in the
+ * file, so a file is at most 2 GB.
+ *
+ *   header       magic, format version, section count, offsets and capacity
+ *                of the section table, offset of the directory and the pool
+ *   directory    per section in file order: name, table offset, table
+ *                capacity, number of settings
+ *   section table  open addressing hash table of the section names: hash
+ *                  of the name and directory index plus one, 0 when empty
+ *   settings tables  per section, an open addressing hash table of the
+ *                    settings: hash of the name, name, value, 0 when empty
+ *   pool         strings as a length and UTF-8 bytes, and values as a type
+ *                tag and a payload, each distinct one stored once
+ *
+ * The hashes are String.hashCode() of the names, spread with
+ * {@link #spread(int)}, and tables are probed linearly.
+ */
+final class MappedFormat {
+
+	static final int MAGIC = 0x43464731;
+	static final int FORMAT_VERSION = 1;
+
+	static final int HEADER_SIZE = 32;
+	static final int HEADER_SECTION_COUNT = 8;
+	static final int HEADER_SECTION_TABLE = 12;
+	static final int HEADER_SECTION_CAPACITY = 16;
+	static final int HEADER_DIRECTORY = 20;
+	static final int HEADER_POOL = 24;
+
+	static final int DIRECTORY_ENTRY_SIZE = 16;
+	static final int SECTION_SLOT_SIZE = 8;
+	static final int SETTING_SLOT_SIZE = 12;
+
+	static final byte NULL_VALUE = 0;
+	static final byte STRING_VALUE = 1;
+	static final byte LONG_VALUE = 2;
+	static final byte BOOLEAN_VALUE = 3;
+	static final byte ARRAY_VALUE = 4;
+
+	/**
+	 * Constructor
+	 */
+	private MappedFormat()
+	{
+	}
+
+	/**
+	 * Returns the capacity of a table, a power of two at most half full
+	 *
+	 * @param entries The number of entries
+	 * @return The number of slots
+	 */
+	static int capacityFor(int entries)
+	{
+		return Math.max(2, Integer.highestOneBit(Math.max(entries, 1) * 2 - 1) << 1);
+	}
+
+	/**
+	 * Spreads the bits of a String hash over the low bits used by the tables
+	 *
+	 * @param hash The hash of the name
+	 * @return The spread hash
+	 */
+	static int spread(int hash)
+	{
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+}
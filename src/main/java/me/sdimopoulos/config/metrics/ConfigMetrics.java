@@ -0,0 +1,408 @@
+package me.sdimopoulos.config.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Latency and hit/miss counters of the lookups of an {@link InstrumentedConfig}
+ *
+ * The latency of every setting lookup goes to a {@link LatencyHistogram} with
+ * per-thread counters, and the hits and misses are counted per section with
+ * LongAdders, so recording takes no lock and threads do not write to shared
+ * cache lines. Lookups of sections that do not exist are counted together,
+ * since their names are unbounded.
+ *
+ * The counters only grow; {@link #reset()} keeps their current values as a
+ * baseline that the later snapshots subtract, so a reset never races with the
+ * recording threads. The same metrics can be given to the instrumented configs
+ * of successive reloads, and published once with {@link #register(String)}.
+ */
+public class ConfigMetrics implements ConfigMetricsMXBean {
+
+	/** The JMX domain of the registered metrics */
+	public static final String DOMAIN = "me.sdimopoulos.config";
+
+	private volatile boolean enabled = true;
+	private final LatencyHistogram histogram = new LatencyHistogram();
+	private final ConcurrentMap<String,SectionCounters> sections = new ConcurrentHashMap<>();
+	private final LongAdder unknownSections = new LongAdder();
+	private volatile long [] baseCounts = new long [LatencyHistogram.BUCKETS + 1];
+	private volatile long baseUnknownSections = 0;
+	private volatile long startNanos = System.nanoTime();
+	private ObjectName objectName;
+
+	/**
+	 * Records a setting lookup
+	 *
+	 * @param section The counters of the section
+	 * @param nanos The latency of the lookup
+	 * @param hit Whether the setting was found
+	 */
+	void recordLookup(SectionCounters section, long nanos, boolean hit)
+	{
+		histogram.record(nanos);
+		if (hit)
+			section.hits.increment();
+		else
+			section.misses.increment();
+	}
+
+	/**
+	 * Records a lookup of a section that does not exist
+	 */
+	void recordUnknownSection()
+	{
+		unknownSections.increment();
+	}
+
+	/**
+	 * Returns the counters of a section, creating them on first use
+	 */
+	SectionCounters section(String name)
+	{
+		return sections.computeIfAbsent(name, k -> new SectionCounters());
+	}
+
+	/**
+	 * Reads the counters recorded since the creation or the last reset
+	 *
+	 * @return An immutable snapshot
+	 */
+	public Snapshot snapshot()
+	{
+		long [] counts = histogram.counts();
+		long [] base = baseCounts;
+		for (int i = 0; i < counts.length; i++)
+		{
+			counts[i] -= base[i];
+		}
+		Map<String,Long> hits = new TreeMap<>();
+		Map<String,Long> misses = new TreeMap<>();
+		for (Map.Entry<String,SectionCounters> section : sections.entrySet())
+		{
+			SectionCounters counters = section.getValue();
+			hits.put(section.getKey(), counters.hits.sum() - counters.baseHits);
+			misses.put(section.getKey(), counters.misses.sum() - counters.baseMisses);
+		}
+		return new Snapshot(counts, hits, misses,
+				unknownSections.sum() - baseUnknownSections,
+				System.nanoTime() - startNanos);
+	}
+
+	@Override
+	public void reset()
+	{
+		baseCounts = histogram.counts();
+		for (SectionCounters counters : sections.values())
+		{
+			counters.baseHits = counters.hits.sum();
+			counters.baseMisses = counters.misses.sum();
+		}
+		baseUnknownSections = unknownSections.sum();
+		startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Registers the metrics in the platform MBean server
+	 *
+	 * @param name The name of the instance, part of the ObjectName
+	 * @return The ObjectName of the registered MXBean
+	 * @throws JMException if the name is taken or invalid
+	 */
+	public synchronized ObjectName register(String name) throws JMException
+	{
+		ObjectName registered = new ObjectName(DOMAIN + ":type=ConfigMetrics,name="
+				+ ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, registered);
+		if (objectName != null)
+		{
+			unregister();
+		}
+		objectName = registered;
+		return registered;
+	}
+
+	/**
+	 * Removes the metrics from the platform MBean server, if registered
+	 *
+	 * @throws JMException if the MBean server fails
+	 */
+	public synchronized void unregister() throws JMException
+	{
+		if (objectName != null)
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(objectName))
+			{
+				server.unregisterMBean(objectName);
+			}
+			objectName = null;
+		}
+	}
+
+	/* MXBean attributes, each read from a new snapshot */
+
+	@Override
+	public long getLookupCount() {
+		return snapshot().getLookupCount();
+	}
+
+	@Override
+	public long getHitCount() {
+		return snapshot().getHitCount();
+	}
+
+	@Override
+	public long getMissCount() {
+		return snapshot().getMissCount();
+	}
+
+	@Override
+	public long getUnknownSectionCount() {
+		return snapshot().getUnknownSectionCount();
+	}
+
+	@Override
+	public double getMeanNanos() {
+		return snapshot().getMeanNanos();
+	}
+
+	@Override
+	public long getP50Nanos() {
+		return snapshot().getValueAtPercentile(50);
+	}
+
+	@Override
+	public long getP99Nanos() {
+		return snapshot().getValueAtPercentile(99);
+	}
+
+	@Override
+	public long getP999Nanos() {
+		return snapshot().getValueAtPercentile(99.9);
+	}
+
+	@Override
+	public long getMaxNanos() {
+		return snapshot().getMaxNanos();
+	}
+
+	@Override
+	public double getLookupsPerSecond() {
+		return snapshot().getLookupsPerSecond();
+	}
+
+	@Override
+	public Map<String,Long> getSectionHits() {
+		return snapshot().getSectionHits();
+	}
+
+	@Override
+	public Map<String,Long> getSectionMisses() {
+		return snapshot().getSectionMisses();
+	}
+
+	/* Getters and Setters begin here */
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Turns the recording on or off
+	 *
+	 * While disabled the instrumented configs pass every lookup straight to
+	 * the wrapped sections, without reading the clock.
+	 */
+	@Override
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * The hit and miss counters of one section
+	 */
+	static final class SectionCounters {
+
+		final LongAdder hits = new LongAdder();
+		final LongAdder misses = new LongAdder();
+		volatile long baseHits = 0;
+		volatile long baseMisses = 0;
+	}
+
+	/**
+	 * The metrics at one moment
+	 *
+	 * Latencies are in nanoseconds. Percentiles and the maximum are the
+	 * highest value of their histogram bucket, which is at most 7% above the
+	 * recorded value; the mean is exact.
+	 */
+	public static final class Snapshot {
+
+		private final long [] counts;
+		private final long lookupCount;
+		private final Map<String,Long> sectionHits;
+		private final Map<String,Long> sectionMisses;
+		private final long hitCount;
+		private final long missCount;
+		private final long unknownSectionCount;
+		private final long elapsedNanos;
+
+		Snapshot(long [] counts, Map<String,Long> sectionHits,
+				Map<String,Long> sectionMisses, long unknownSectionCount,
+				long elapsedNanos)
+		{
+			this.counts = counts;
+			long lookups = 0;
+			for (int i = 0; i < LatencyHistogram.BUCKETS; i++)
+			{
+				lookups += counts[i];
+			}
+			this.lookupCount = lookups;
+			long hits = 0;
+			for (long sectionHit : sectionHits.values())
+			{
+				hits += sectionHit;
+			}
+			this.hitCount = hits;
+			long misses = 0;
+			for (long sectionMiss : sectionMisses.values())
+			{
+				misses += sectionMiss;
+			}
+			this.missCount = misses;
+			this.sectionHits = Collections.unmodifiableMap(sectionHits);
+			this.sectionMisses = Collections.unmodifiableMap(sectionMisses);
+			this.unknownSectionCount = unknownSectionCount;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/**
+		 * Returns the latency that a percentage of the lookups did not exceed
+		 *
+		 * @param percentile The percentage, from 0 to 100
+		 * @return The latency, or 0 if nothing was recorded
+		 */
+		public long getValueAtPercentile(double percentile)
+		{
+			if (lookupCount == 0)
+			{
+				return 0;
+			}
+			double clamped = Math.min(Math.max(percentile, 0), 100);
+			long rank = Math.max(1, (long) Math.ceil(clamped / 100 * lookupCount));
+			long seen = 0;
+			for (int i = 0; i < LatencyHistogram.BUCKETS; i++)
+			{
+				seen += counts[i];
+				if (seen >= rank)
+				{
+					return LatencyHistogram.highestValueOf(i);
+				}
+			}
+			return getMaxNanos();
+		}
+
+		/**
+		 * Returns the number of lookups recorded in a latency range
+		 *
+		 * @param fromNanos The lowest latency, inclusive
+		 * @param toNanos The highest latency, inclusive
+		 * @return The count of the buckets that overlap the range
+		 */
+		public long getCountBetween(long fromNanos, long toNanos)
+		{
+			if (fromNanos > toNanos)
+			{
+				return 0;
+			}
+			long count = 0;
+			int last = LatencyHistogram.bucketOf(Math.max(toNanos, 0));
+			for (int i = LatencyHistogram.bucketOf(Math.max(fromNanos, 0)); i <= last; i++)
+			{
+				count += counts[i];
+			}
+			return count;
+		}
+
+		public long getMaxNanos()
+		{
+			for (int i = LatencyHistogram.BUCKETS - 1; i >= 0; i--)
+			{
+				if (counts[i] != 0)
+				{
+					return LatencyHistogram.highestValueOf(i);
+				}
+			}
+			return 0;
+		}
+
+		public double getMeanNanos()
+		{
+			return lookupCount == 0 ? 0 : (double) counts[LatencyHistogram.SUM] / lookupCount;
+		}
+
+		/**
+		 * Returns the lookups per second since the creation or the last reset
+		 */
+		public double getLookupsPerSecond()
+		{
+			return elapsedNanos <= 0 ? 0 : lookupCount * 1e9 / elapsedNanos;
+		}
+
+		public long getLookupCount() {
+			return lookupCount;
+		}
+
+		public long getHitCount() {
+			return hitCount;
+		}
+
+		public long getMissCount() {
+			return missCount;
+		}
+
+		public long getUnknownSectionCount() {
+			return unknownSectionCount;
+		}
+
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		/**
+		 * Returns the hits per section name, sorted by name
+		 */
+		public Map<String,Long> getSectionHits() {
+			return sectionHits;
+		}
+
+		/**
+		 * Returns the misses per section name, sorted by name
+		 */
+		public Map<String,Long> getSectionMisses() {
+			return sectionMisses;
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("lookups=%d hits=%d misses=%d unknownSections=%d"
+					+ " mean=%.1fns p50=%dns p99=%dns p999=%dns max=%dns rate=%.0f/s",
+					lookupCount, hitCount, getMissCount(), unknownSectionCount,
+					getMeanNanos(), getValueAtPercentile(50), getValueAtPercentile(99),
+					getValueAtPercentile(99.9), getMaxNanos(), getLookupsPerSecond());
+		}
+	}
+
+}
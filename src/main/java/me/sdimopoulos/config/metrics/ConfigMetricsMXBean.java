@@ -0,0 +1,46 @@
+package me.sdimopoulos.config.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of the query metrics, published through JMX
+ *
+ * Every getter reads a new {@link ConfigMetrics.Snapshot}, so the values of
+ * two attributes may come from slightly different moments.
+ */
+public interface ConfigMetricsMXBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	long getLookupCount();
+
+	long getHitCount();
+
+	long getMissCount();
+
+	long getUnknownSectionCount();
+
+	double getMeanNanos();
+
+	long getP50Nanos();
+
+	long getP99Nanos();
+
+	long getP999Nanos();
+
+	long getMaxNanos();
+
+	double getLookupsPerSecond();
+
+	Map<String,Long> getSectionHits();
+
+	Map<String,Long> getSectionMisses();
+
+	/**
+	 * Starts counting from zero again
+	 */
+	void reset();
+
+}
@@ -0,0 +1,89 @@
+package me.sdimopoulos.config.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import me.sdimopoulos.config.Config;
+import me.sdimopoulos.config.ConfigView;
+
+/**
+ * A read-only view of a {@link Config} that measures its queries
+ *
+ * Every get(group).get(key) is answered by the wrapped configuration, and the
+ * latency of the setting lookup is recorded in the {@link ConfigMetrics} along
+ * with a hit or a miss of the section:
+ *
+ *   InstrumentedConfig config = new InstrumentedConfig(loader.loadConfig(...));
+ *   config.getMetrics().register("main");
+ *   ...
+ *   System.out.println(config.getMetrics().snapshot());
+ *
+ * The sections are wrapped once, when the view is created, so sections added
+ * to the wrapped configuration later are not seen. When the metrics are
+ * disabled the view returns the wrapped sections themselves, so a query costs
+ * one more map lookup and a volatile read.
+ */
+public class InstrumentedConfig extends ConfigView {
+
+	private static final long serialVersionUID = -2409418761226375185L;
+
+	private final transient ConfigMetrics metrics;
+	private final transient Map<String,InstrumentedConfigGroup> groups;
+
+	/**
+	 * Constructor
+	 *
+	 * @param config The configuration to measure
+	 */
+	public InstrumentedConfig(Config config)
+	{
+		this(config, new ConfigMetrics());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param config The configuration to measure
+	 * @param metrics The metrics to record to, which may be shared with the
+	 * views of earlier loads of the same configuration
+	 */
+	public InstrumentedConfig(Config config, ConfigMetrics metrics)
+	{
+		this.metrics = metrics;
+		this.groups = new LinkedHashMap<>(config.size() * 2);
+		for (Map.Entry<String,Map<String,Object>> group : config.entrySet())
+		{
+			groups.put(group.getKey(), new InstrumentedConfigGroup(group.getValue(),
+					metrics, metrics.section(group.getKey())));
+		}
+	}
+
+	@Override
+	protected Map<String,Object> getGroup(String name)
+	{
+		InstrumentedConfigGroup group = groups.get(name);
+		if (!metrics.isEnabled())
+		{
+			return group == null ? null : group.getSettings();
+		}
+		if (group == null)
+		{
+			metrics.recordUnknownSection();
+		}
+		return group;
+	}
+
+	@Override
+	protected Set<String> groupNames()
+	{
+		return groups.keySet();
+	}
+
+	/* Getters and Setters begin here */
+
+	public ConfigMetrics getMetrics() {
+		return metrics;
+	}
+
+}
@@ -0,0 +1,95 @@
+package me.sdimopoulos.config.metrics;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A section of an {@link InstrumentedConfig} that times its lookups
+ *
+ * get and getOrDefault are timed and counted as hits or misses of the
+ * section, all the other methods go to the wrapped section untimed. The
+ * wrapped section answers the lookup once, through getOrDefault with a marker
+ * value, so a miss is told apart from a stored value without a second lookup;
+ * the plain get of a miss then asks the wrapped section for its own answer,
+ * the empty string of a {@link me.sdimopoulos.config.ConfigGroup}.
+ */
+class InstrumentedConfigGroup extends AbstractMap<String,Object> {
+
+	private static final Object MISSING = new Object();
+
+	private final Map<String,Object> settings;
+	private final ConfigMetrics metrics;
+	private final ConfigMetrics.SectionCounters counters;
+
+	/**
+	 * Constructor
+	 *
+	 * @param settings The wrapped section
+	 * @param metrics The metrics to record to
+	 * @param counters The counters of the section
+	 */
+	InstrumentedConfigGroup(Map<String,Object> settings, ConfigMetrics metrics,
+			ConfigMetrics.SectionCounters counters)
+	{
+		this.settings = settings;
+		this.metrics = metrics;
+		this.counters = counters;
+	}
+
+	@Override
+	public Object get(Object key)
+	{
+		if (!metrics.isEnabled())
+		{
+			return settings.get(key);
+		}
+		Object value = lookup(key);
+		return value == MISSING ? settings.get(key) : value;
+	}
+
+	@Override
+	public Object getOrDefault(Object key, Object defaultValue)
+	{
+		if (!metrics.isEnabled())
+		{
+			return settings.getOrDefault(key, defaultValue);
+		}
+		Object value = lookup(key);
+		return value == MISSING ? defaultValue : value;
+	}
+
+	private Object lookup(Object key)
+	{
+		long start = System.nanoTime();
+		Object value = settings.getOrDefault(key, MISSING);
+		metrics.recordLookup(counters, System.nanoTime() - start, value != MISSING);
+		return value;
+	}
+
+	@Override
+	public boolean containsKey(Object key)
+	{
+		return settings.containsKey(key);
+	}
+
+	@Override
+	public int size()
+	{
+		return settings.size();
+	}
+
+	@Override
+	public Set<Map.Entry<String,Object>> entrySet()
+	{
+		return Collections.unmodifiableMap(settings).entrySet();
+	}
+
+	/* Getters and Setters begin here */
+
+	Map<String,Object> getSettings() {
+		return settings;
+	}
+
+}
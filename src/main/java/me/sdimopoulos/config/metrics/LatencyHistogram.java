@@ -0,0 +1,170 @@
+package me.sdimopoulos.config.metrics;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with per-thread recorders
+ *
+ * Latencies are counted in log-linear buckets, as in HDR histograms: values
+ * below {@link #SUB_BUCKETS} have a bucket each, and every further power of
+ * two is split in {@link #SUB_BUCKETS}/2 buckets, which keeps the error of a
+ * recorded value under 7% across the whole range of a long.
+ *
+ * Every recording thread writes to its own array of counters, so recording
+ * never contends. The arrays have a single writer, which updates a counter
+ * with an ordered store instead of a compare-and-swap. Snapshots add up the
+ * arrays of the live threads and the counts of the threads that ended. The
+ * array of a thread that ended is folded into the shared counts by the next
+ * snapshot or the next thread that starts recording, so a pool that replaces
+ * its threads keeps as many arrays as it has live threads.
+ */
+final class LatencyHistogram {
+
+	static final int SUB_BUCKET_BITS = 5;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+	static final int BUCKETS = (64 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+
+	/** Position of the sum of the recorded values after the buckets */
+	static final int SUM = BUCKETS;
+
+	private final Queue<Recorder> recorders = new ConcurrentLinkedQueue<>();
+	private final ThreadLocal<AtomicLongArray> recorder = ThreadLocal.withInitial(this::register);
+	// the counts of the threads that ended, guarded by this
+	private final long [] retired = new long [BUCKETS + 1];
+
+	/**
+	 * The counters of a recording thread
+	 */
+	private static final class Recorder {
+
+		final WeakReference<Thread> owner;
+		final AtomicLongArray counts = new AtomicLongArray(BUCKETS + 1);
+
+		Recorder(Thread owner)
+		{
+			this.owner = new WeakReference<>(owner);
+		}
+
+		boolean isRetired()
+		{
+			Thread thread = owner.get();
+			// isAlive returning false makes the last counts of the thread visible
+			return thread == null || !thread.isAlive();
+		}
+	}
+
+	/**
+	 * Creates the counters of the current thread, after folding those of the
+	 * threads that ended
+	 */
+	private AtomicLongArray register()
+	{
+		retireEndedThreads();
+		Recorder created = new Recorder(Thread.currentThread());
+		recorders.add(created);
+		return created.counts;
+	}
+
+	/**
+	 * Adds the counters of the threads that ended to the shared counts and
+	 * drops them
+	 */
+	private synchronized void retireEndedThreads()
+	{
+		for (Iterator<Recorder> iterator = recorders.iterator(); iterator.hasNext(); )
+		{
+			Recorder next = iterator.next();
+			if (next.isRetired())
+			{
+				for (int i = 0; i < retired.length; i++)
+				{
+					retired[i] += next.counts.get(i);
+				}
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Records a latency
+	 *
+	 * @param nanos The latency in nanoseconds, negative values count as 0
+	 */
+	void record(long nanos)
+	{
+		long value = Math.max(nanos, 0);
+		AtomicLongArray counts = recorder.get();
+		int bucket = bucketOf(value);
+		counts.lazySet(bucket, counts.get(bucket) + 1);
+		counts.lazySet(SUM, counts.get(SUM) + value);
+	}
+
+	/**
+	 * Adds up the counters of all threads
+	 *
+	 * @return The counts per bucket followed by the sum of the values
+	 */
+	synchronized long [] counts()
+	{
+		retireEndedThreads();
+		long [] total = retired.clone();
+		for (Recorder next : recorders)
+		{
+			for (int i = 0; i < total.length; i++)
+			{
+				total[i] += next.counts.get(i);
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the number of counter arrays kept
+	 *
+	 * @return The number of threads that recorded and were not yet retired
+	 */
+	int recorderCount()
+	{
+		return recorders.size();
+	}
+
+	/**
+	 * Returns the bucket of a value
+	 */
+	static int bucketOf(long value)
+	{
+		if (value < SUB_BUCKETS)
+		{
+			return (int) value;
+		}
+		int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	/**
+	 * Returns the lowest value counted in a bucket
+	 */
+	static long lowestValueOf(int bucket)
+	{
+		if (bucket < SUB_BUCKETS)
+		{
+			return bucket;
+		}
+		int shift = bucket / HALF_SUB_BUCKETS - 1;
+		return (long) (bucket % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS) << shift;
+	}
+
+	/**
+	 * Returns the highest value counted in a bucket
+	 */
+	static long highestValueOf(int bucket)
+	{
+		return bucket == BUCKETS - 1 ? Long.MAX_VALUE : lowestValueOf(bucket + 1) - 1;
+	}
+
+}
@@ -0,0 +1,414 @@
+package me.sdimopoulos.config.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits a byte input into lines scanning eight bytes at a time
+ *
+ * The input is read from a channel in large blocks. Line terminators are
+ * searched with SWAR (SIMD within a register) operations: eight bytes are
+ * loaded in a long and all bytes equal to a delimiter are found with a few
+ * arithmetic operations, instead of inspecting each character. Leading
+ * whitespace is skipped in the same way, so comment and blank lines can be
+ * recognised from their first byte and skipped without being decoded or
+ * passed to the parser.
+ *
+ * Lines are terminated by \n, \r or \r\n, as with
+ * {@link java.io.BufferedReader#readLine()}. A line is always kept whole in
+ * the buffer, which grows if a single line does not fit. Splitting the bytes
+ * is only valid for the charsets where these delimiters are always single
+ * bytes, see {@link #supportsCharset(Charset)}.
+ */
+public class ByteLineScanner {
+
+	private static final long ONES = 0x0101010101010101L;
+	private static final long LOWS = 0x7F7F7F7F7F7F7F7FL;
+	private static final long NEWLINES = ONES * '\n';
+	private static final long RETURNS = ONES * '\r';
+	private static final long SPACES = ONES * ' ';
+	private static final long TABS = ONES * '\t';
+	private static final long HIGHS = 0x8080808080808080L;
+	private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+	private final ReadableByteChannel channel;
+	private final CharsetDecoder decoder;
+	private ByteBuffer buffer;
+	private CharBuffer decoded;
+	private byte [] bytes;
+	private int position;
+	private int limit;
+	private boolean endOfInput;
+	private int lineStart;
+	private int contentStart;
+	private int lineEnd;
+	private long lineNumber;
+
+	/**
+	 * Constructor
+	 *
+	 * @param channel The channel to read the input from
+	 */
+	public ByteLineScanner(ReadableByteChannel channel)
+	{
+		this(channel, StandardCharsets.UTF_8, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param channel The channel to read the input from
+	 * @param charset The charset used to decode non ASCII lines
+	 */
+	public ByteLineScanner(ReadableByteChannel channel, Charset charset)
+	{
+		this(channel, charset, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param channel The channel to read the input from
+	 * @param charset The charset used to decode non ASCII lines
+	 * @param bufferSize The initial size of the read buffer
+	 */
+	public ByteLineScanner(ReadableByteChannel channel, Charset charset,
+			int bufferSize)
+	{
+		this.channel = channel;
+		this.decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+		this.buffer = ByteBuffer.allocate(Math.max(bufferSize, 16))
+				.order(ByteOrder.LITTLE_ENDIAN);
+		this.bytes = buffer.array();
+		this.decoded = CharBuffer.allocate(256);
+		this.position = 0;
+		this.limit = 0;
+		this.endOfInput = false;
+		this.lineNumber = 0;
+	}
+
+	/**
+	 * Advances to the next line of the input
+	 *
+	 * @return false if there are no more lines
+	 * @throws IOException when reading from the channel fails
+	 */
+	public boolean nextLine() throws IOException
+	{
+		int searchFrom = position;
+		int terminator;
+		while ((terminator = indexOfLineTerminator(searchFrom)) < 0)
+		{
+			if (endOfInput)
+			{
+				if (position >= limit)
+				{
+					return false;
+				}
+				terminator = limit;
+				break;
+			}
+			searchFrom = limit - position;
+			fill();
+			searchFrom += position;
+		}
+		// a \r at the end of the buffer may be followed by a \n not read yet
+		if (terminator == limit - 1 && bytes[terminator] == '\r' && !endOfInput)
+		{
+			fill();
+			return nextLine();
+		}
+		lineStart = position;
+		lineEnd = terminator;
+		position = terminator + 1;
+		if (terminator < limit && bytes[terminator] == '\r'
+				&& position < limit && bytes[position] == '\n')
+		{
+			position++;
+		}
+		contentStart = skipWhitespace(lineStart, lineEnd);
+		lineNumber++;
+		return true;
+	}
+
+	/**
+	 * Checks if the current line has no characters at all
+	 *
+	 * @return true or false
+	 */
+	public boolean isEmpty()
+	{
+		return lineStart == lineEnd;
+	}
+
+	/**
+	 * Checks if the current line contains only whitespace
+	 *
+	 * @return true or false
+	 */
+	public boolean isBlank()
+	{
+		return contentStart == lineEnd;
+	}
+
+	/**
+	 * Checks if the current line is a comment line
+	 *
+	 * @return true or false
+	 */
+	public boolean isComment()
+	{
+		return contentStart < lineEnd && bytes[contentStart] == ';';
+	}
+
+	/**
+	 * Returns the first non whitespace byte of the current line
+	 *
+	 * @return The byte, or -1 if the line is blank
+	 */
+	public int firstContentByte()
+	{
+		return contentStart < lineEnd ? bytes[contentStart] : -1;
+	}
+
+	/**
+	 * Checks if the content of the current line is pure ASCII
+	 *
+	 * ASCII content can be parsed from the bytes directly, see
+	 * {@link Parser#parseBytesAndUpdateContext(byte[], int, int, ParsingContext)}.
+	 * The high bits of eight bytes are tested at a time.
+	 *
+	 * @return true or false
+	 */
+	public boolean isContentAscii()
+	{
+		int i = contentStart;
+		long highBits = 0;
+		for ( ; i + 8 <= lineEnd; i += 8)
+		{
+			highBits |= buffer.getLong(i);
+		}
+		for ( ; i < lineEnd; i++)
+		{
+			highBits |= bytes[i];
+		}
+		return (highBits & HIGHS) == 0;
+	}
+
+	/**
+	 * Checks if lines of the given charset can be split by the scanner
+	 *
+	 * These are the ASCII compatible charsets in which the bytes of the line
+	 * terminators and whitespace never appear inside other characters.
+	 *
+	 * @param charset The charset of the input
+	 * @return true or false
+	 */
+	public static boolean supportsCharset(Charset charset)
+	{
+		return charset.equals(StandardCharsets.UTF_8) ||
+				charset.equals(StandardCharsets.US_ASCII) ||
+				charset.equals(StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Decodes the current line, without the leading whitespace
+	 *
+	 * @return The line content
+	 * @throws CharacterCodingException if the line is not valid in the charset
+	 */
+	public String decodeContent() throws CharacterCodingException
+	{
+		int length = lineEnd - contentStart;
+		if (decoded.capacity() < length)
+		{
+			decoded = CharBuffer.allocate(length);
+		}
+		decoded.clear();
+		decoder.reset();
+		ByteBuffer input = ByteBuffer.wrap(bytes, contentStart, length);
+		CoderResult result = decoder.decode(input, decoded, true);
+		if (!result.isUnderflow())
+		{
+			result.throwException();
+		}
+		result = decoder.flush(decoded);
+		if (!result.isUnderflow())
+		{
+			result.throwException();
+		}
+		decoded.flip();
+		return decoded.toString();
+	}
+
+	/**
+	 * Finds the first occurrence of a byte in a range of the buffer
+	 *
+	 * @param value The byte to search
+	 * @param from The first index to inspect
+	 * @param to The index after the last one to inspect
+	 * @return The index of the byte or -1 if it was not found
+	 */
+	public int indexOf(byte value, int from, int to)
+	{
+		long pattern = ONES * (value & 0xFF);
+		int i = from;
+		for ( ; i + 8 <= to; i += 8)
+		{
+			long matches = matchBytes(buffer.getLong(i), pattern);
+			if (matches != 0)
+			{
+				return i + (Long.numberOfTrailingZeros(matches) >>> 3);
+			}
+		}
+		for ( ; i < to; i++)
+		{
+			if (bytes[i] == value)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns a mask with the high bit set in every byte of the word that
+	 * equals the corresponding byte of the pattern
+	 *
+	 * Unlike the classic "has zero byte" test, this version is exact for every
+	 * byte, so it can also be inverted to find bytes that do not match.
+	 */
+	private static long matchBytes(long word, long pattern)
+	{
+		long diff = word ^ pattern;
+		return ~(((diff & LOWS) + LOWS) | diff | LOWS);
+	}
+
+	private int indexOfLineTerminator(int from)
+	{
+		int i = from;
+		for ( ; i + 8 <= limit; i += 8)
+		{
+			long word = buffer.getLong(i);
+			long matches = matchBytes(word, NEWLINES) | matchBytes(word, RETURNS);
+			if (matches != 0)
+			{
+				return i + (Long.numberOfTrailingZeros(matches) >>> 3);
+			}
+		}
+		for ( ; i < limit; i++)
+		{
+			if (bytes[i] == '\n' || bytes[i] == '\r')
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int skipWhitespace(int from, int to)
+	{
+		int i = from;
+		for ( ; i + 8 <= to; i += 8)
+		{
+			long word = buffer.getLong(i);
+			long content = ~(matchBytes(word, SPACES) | matchBytes(word, TABS))
+					& ~LOWS;
+			if (content != 0)
+			{
+				i += Long.numberOfTrailingZeros(content) >>> 3;
+				break;
+			}
+		}
+		// remaining bytes and the less common whitespace characters
+		while (i < to && isWhitespace(bytes[i]))
+		{
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Checks for the single byte characters of {@link Character#isWhitespace(char)}
+	 */
+	private static boolean isWhitespace(byte value)
+	{
+		return value == ' ' || value >= '\t' && value <= '\r' ||
+				value >= 0x1C && value <= 0x1F;
+	}
+
+	/**
+	 * Moves the unread bytes to the start of the buffer and reads more input
+	 *
+	 * @throws IOException when reading from the channel fails
+	 */
+	private void fill() throws IOException
+	{
+		int remaining = limit - position;
+		if (position == 0 && limit == bytes.length)
+		{
+			ByteBuffer larger = ByteBuffer.allocate(bytes.length * 2)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			System.arraycopy(bytes, 0, larger.array(), 0, limit);
+			buffer = larger;
+			bytes = buffer.array();
+		}
+		else if (position > 0)
+		{
+			System.arraycopy(bytes, position, bytes, 0, remaining);
+		}
+		position = 0;
+		limit = remaining;
+		buffer.clear();
+		buffer.position(limit);
+		while (buffer.hasRemaining())
+		{
+			int read = channel.read(buffer);
+			if (read < 0)
+			{
+				endOfInput = true;
+				break;
+			}
+			if (read == 0)
+			{
+				break;
+			}
+		}
+		limit = buffer.position();
+		buffer.clear();
+	}
+
+	/* Getters begin here */
+
+	public byte [] getBuffer() {
+		return bytes;
+	}
+
+	public int getLineStart() {
+		return lineStart;
+	}
+
+	public int getContentStart() {
+		return contentStart;
+	}
+
+	public int getLineEnd() {
+		return lineEnd;
+	}
+
+	public long getLineNumber() {
+		return lineNumber;
+	}
+
+}
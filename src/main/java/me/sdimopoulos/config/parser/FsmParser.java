@@ -19,8 +19,11 @@ import java.util.List;
 public class FsmParser implements Parser {
 
 	FsmState fsmState;
-	String currentLine;
+	CharSequence currentLine;
 	int currentCharIndex;
+	int currentLineEnd;
+	Latin1CharSequence latin1Line;
+	ParsingConfigurationException preallocated;
 
 	/**
 	 * Constructor
@@ -31,6 +34,7 @@ public class FsmParser implements Parser {
 	FsmParser(FsmState fsmState)
 	{
 		this.fsmState = fsmState;
+		this.latin1Line = new Latin1CharSequence();
 		this.resetParser();
 	}
 
@@ -41,10 +45,46 @@ public class FsmParser implements Parser {
 	public void resetParser()
 	{
 		this.currentCharIndex = 0;
+		this.currentLineEnd = 0;
 		this.currentLine = "";
 		this.fsmState.reset();
 	}
 
+	@Override
+	public void setLenient(boolean lenient)
+	{
+		this.preallocated = lenient ? ParsingConfigurationException.preallocate() : null;
+	}
+
+	/**
+	 * Builds the exception for input the FSM does not accept, or reuses the
+	 * preallocated one of a lenient parser
+	 *
+	 * @param reason The reason the line is rejected
+	 * @param line The characters containing the line
+	 * @param start The index of the first character of the line
+	 * @param end The index after the last character of the line
+	 * @param rejected The index of the character that was rejected
+	 * @return The exception to throw, its column not set
+	 */
+	private ParsingConfigurationException unparsable(
+			ParsingConfigurationException.Reason reason, CharSequence line,
+			int start, int end, int rejected)
+	{
+		if (this.preallocated != null)
+		{
+			return this.preallocated.reuse(reason);
+		}
+		if (reason == ParsingConfigurationException.Reason.UNEXPECTED_CHARACTER)
+		{
+			return new ParsingConfigurationException(
+					String.format("Found unparsable character [%c]", line.charAt(rejected)),
+					reason);
+		}
+		return new ParsingConfigurationException("Found unparsable line with content: "
+				+ line.subSequence(start, end), reason);
+	}
+
 	/**
 	 * Parses a single line of input and updates the parsing context
 	 * 
@@ -61,8 +101,50 @@ public class FsmParser implements Parser {
 	@Override
 	public void parseSingleLineAndUpdateContext(String line, ParsingContext parsingCtx)
 			throws ParsingConfigurationException
+	{
+		parseCharsAndUpdateContext(line, 0, line.length(), parsingCtx);
+	}
+
+	/**
+	 * Parses a single line given as Latin-1 bytes and updates the context
+	 * 
+	 * The bytes are fed to the FSM directly as characters, without decoding
+	 * the line into a String first.
+	 * 
+	 * @param bytes The buffer containing the line
+	 * @param from The index of the first byte of the line
+	 * @param to The index after the last byte of the line
+	 * @param parsingCtx The context of parsing object
+	 * @throws ParsingConfigurationException When unparsable input is met
+	 */
+	@Override
+	public void parseBytesAndUpdateContext(byte [] bytes, int from, int to,
+			ParsingContext parsingCtx) throws ParsingConfigurationException
+	{
+		this.latin1Line.reset(bytes, from, to);
+		parseCharsAndUpdateContext(this.latin1Line, 0, to - from, parsingCtx);
+	}
+
+	/**
+	 * Parses a range of characters as a single line and updates the context
+	 * 
+	 * First it wipes out leading whitespace and then processes remaining
+	 * character by character using the FSM.
+	 * 
+	 * @param line The characters containing the line
+	 * @param start The index of the first character of the line
+	 * @param end The index after the last character of the line
+	 * @param parsingCtx The context of parsing object
+	 * @throws ParsingConfigurationException When unparsable input is met, with
+	 * the column of the character that was rejected
+	 */
+	private void parseCharsAndUpdateContext(CharSequence line, int start,
+			int end, ParsingContext parsingCtx)
+			throws ParsingConfigurationException
 	{
 		this.currentLine = line;
+		this.currentCharIndex = start;
+		this.currentLineEnd = end;
 		Transition transition;
 		Character currChar = nextCharacter();
 		// First skip leading whitespace
@@ -73,26 +155,119 @@ public class FsmParser implements Parser {
 		// Parse the remaining line if any left
 		if(currChar!=null)
 		{
-			for( ; currChar != null; currChar = nextCharacter())
-			{
-				transition = this.fsmState.getCurrentState().parseInput(currChar);
-				this.fsmState.updateUsingTransition(transition);
-				boolean willUpdateContext = checkIfContextWillUpdate();
-				if(willUpdateContext)
+			try {
+				for( ; currChar != null; currChar = nextCharacter())
+				{
+					transition = this.fsmState.getCurrentState().parseInput(currChar);
+					if (transition == null)
+					{
+						throw unparsable(ParsingConfigurationException.Reason.UNEXPECTED_CHARACTER,
+								line, start, end, currentCharIndex - 1);
+					}
+					this.fsmState.updateUsingTransition(transition);
+					boolean willUpdateContext = checkIfContextWillUpdate();
+					if(willUpdateContext)
+					{
+						updateContext(parsingCtx);
+					}
+					this.fsmState.changeState(currChar);
+				}
+				if (willTerminate())
 				{
 					updateContext(parsingCtx);
 				}
-				this.fsmState.changeState(currChar);
+				else
+				{
+					throw unparsable(ParsingConfigurationException.Reason.INCOMPLETE_LINE,
+							line, start, end, end).atColumn(end - start + 1);
+				}
+			}
+			catch(ParsingConfigurationException e)
+			{
+				// the index is past the character that was rejected
+				throw e.atColumn(currentCharIndex - start);
 			}
-			if (willTerminate())
+		}
+	}
+
+	/**
+	 * Parses a range of characters as a single line, reporting its fields
+	 *
+	 * The FSM is run as in the String parsing, but instead of collecting the
+	 * output of a state in a buffer only the index where it started is kept.
+	 * When the FSM leaves a state that extracts a variable, the range from
+	 * that index to the current character is given to the sink. The ranges
+	 * are those of the output buffer as long as the FSM outputs are
+	 * contiguous in the input, as with the FSMs of the builders.
+	 *
+	 * @param input The characters containing the line
+	 * @param start The index of the first character of the line
+	 * @param end The index after the last character of the line
+	 * @param sink Receives the fields of the line
+	 * @throws ParsingConfigurationException When unparsable input is met
+	 */
+	@Override
+	public void parseRange(CharSequence input, int start, int end, FieldSink sink)
+			throws ParsingConfigurationException
+	{
+		this.fsmState.reset();
+		int index = start;
+		while (index < end && Character.isWhitespace(input.charAt(index)))
+		{
+			index++;
+		}
+		if (index == end)
+		{
+			return;
+		}
+		int outputStart = index;
+		try {
+			for ( ; index < end; index++)
 			{
-				updateContext(parsingCtx);
+				State current = this.fsmState.getCurrentState();
+				Transition transition = current.parseInput(input.charAt(index));
+				if (transition == null)
+				{
+					throw unparsable(ParsingConfigurationException.Reason.UNEXPECTED_CHARACTER,
+							input, start, end, index);
+				}
+				if (transition.transitToState != current)
+				{
+					if (!transition.willTransmitParsed)
+					{
+						emitField(current, outputStart, index, sink);
+						outputStart = transition.willTransmitInput ? index : index + 1;
+					}
+					this.fsmState.setCurrentState(transition.transitToState);
+				}
 			}
-			else
+			State last = this.fsmState.getCurrentState();
+			if (!last.isFinal())
 			{
-				throw new ParsingConfigurationException("Found unparsable line with content: "
-						+ String.format("%s", line));
+				throw unparsable(ParsingConfigurationException.Reason.INCOMPLETE_LINE,
+						input, start, end, end).atColumn(end - start + 1);
 			}
+			emitField(last, outputStart, end, sink);
+		}
+		catch(ParsingConfigurationException e)
+		{
+			throw e.atColumn(index - start + 1);
+		}
+		finally {
+			// leave the parser ready for a line parsed into a context
+			this.fsmState.reset();
+		}
+	}
+
+	/**
+	 * Gives the output range of a state to the sink, if the state extracts a
+	 * variable
+	 */
+	private static void emitField(State state, int start, int end, FieldSink sink)
+	{
+		if (state.getParsedVariable() != ParseVariable.NA)
+		{
+			sink.field(state.getParsedVariable(), state.getParsedType(), start, end);
 		}
 	}
 
@@ -103,7 +278,7 @@ public class FsmParser implements Parser {
 	 */
 	Character nextCharacter()
 	{
-		if (currentCharIndex<currentLine.length())
+		if (currentCharIndex<currentLineEnd)
 		{
 			return currentLine.charAt(currentCharIndex++);
 		}
@@ -120,7 +295,7 @@ public class FsmParser implements Parser {
 	 */
 	boolean hasNextCharacter()
 	{
-		return currentCharIndex < currentLine.length();
+		return currentCharIndex < currentLineEnd;
 	}
 
 	/**
@@ -138,15 +313,17 @@ public class FsmParser implements Parser {
 	/**
 	 * Check to see if the parsing context should get updated.
 	 * 
-	 * The parsing context is not updated if the next state is receiving the 
-	 * current character or if the transition is in self
-	 * 
+	 * The parsing context is not updated if the next state is receiving the
+	 * current output buffer or if the transition is in self. A state that
+	 * only receives the current character starts a new output, so the
+	 * output of the current state is complete.
+	 *
 	 * @return true or false
 	 */
 	private boolean checkIfContextWillUpdate()
 	{
 		boolean willUpdateContext;
-		if (this.fsmState.isNextStateWillReceiveInput()||
+		if (this.fsmState.isNextStateWillReceiveParsed()||
 				this.fsmState.getNextState() == this.fsmState.getCurrentState())
 			willUpdateContext = false;
 		else
@@ -181,7 +358,8 @@ public class FsmParser implements Parser {
 		case VALUE:
 			parsingCtx.setParsedVariableValue("value", 
 					Parser.getValueWithProperType(this.fsmState.returnOutput(),
-							this.fsmState.getCurrentState().getParsedType()));
+							this.fsmState.getCurrentState().getParsedType(),
+							this.preallocated));
 			break;
 		case GROUP:
 			parsingCtx.setParsedVariableValue("group", 
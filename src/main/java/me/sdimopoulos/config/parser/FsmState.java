@@ -1,5 +1,10 @@
 package me.sdimopoulos.config.parser;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * Keeps track of the FSM current and the output.
  * 
@@ -28,6 +33,7 @@ public class FsmState {
 	 */
 	public FsmState(State init)
 	{
+		prepareLookupTables(init);
 		this.initState = init;
 		this.outputStringBld = new StringBuilder();
 		this.currentState = initState;
@@ -37,6 +43,32 @@ public class FsmState {
 	}
 	
 	
+	/**
+	 * Prepares the ASCII lookup tables of all the states reachable from init
+	 * 
+	 * @param init The initial state of the FSM
+	 */
+	private static void prepareLookupTables(State init)
+	{
+		Set<State> visited = new HashSet<>();
+		Deque<State> pending = new ArrayDeque<>();
+		pending.add(init);
+		visited.add(init);
+		while (!pending.isEmpty())
+		{
+			State state = pending.poll();
+			state.prepareLookupTable();
+			for (Transition transition : state.getTransitions())
+			{
+				if (visited.add(transition.transitToState))
+				{
+					pending.add(transition.transitToState);
+				}
+			}
+		}
+	}
+	
+	
 	/**
 	 * Resets the FSM in its initial state. Output buffer is discarded and the 
 	 * current state is set to the initial
@@ -0,0 +1,203 @@
+package me.sdimopoulos.config.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Channel of the decompressed bytes of a gzip stream, inflated on its own thread
+ *
+ * A worker thread inflates the stream into blocks and hands them over through
+ * a bounded queue, while the thread that reads the channel, usually the
+ * {@link ByteLineScanner} of the loader, parses the previous blocks. The two
+ * stages overlap, so reading a compressed file takes about as long as the
+ * slower of them instead of their sum, and the decompressed bytes never go to
+ * a temporary file.
+ *
+ * A fixed number of blocks is allocated and returned to the worker once read,
+ * which bounds the memory and blocks the worker when the parser falls behind.
+ * A decompression error is thrown by the read after the last good block.
+ * Closing the channel stops the worker and closes the stream.
+ */
+public class InflatingChannel implements ReadableByteChannel {
+
+	/** Default size of a decompressed block */
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 18;
+	/** Default number of blocks in flight */
+	public static final int DEFAULT_BLOCKS = 4;
+
+	private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+	private final BlockingQueue<ByteBuffer> filled;
+	private final BlockingQueue<ByteBuffer> free;
+	private final Thread worker;
+	private volatile IOException failure;
+	private volatile boolean closed;
+	private ByteBuffer current;
+	private boolean ended;
+
+	/**
+	 * Constructor
+	 *
+	 * @param compressed The gzip stream, closed with the channel
+	 */
+	public InflatingChannel(InputStream compressed)
+	{
+		this(compressed, DEFAULT_BLOCK_SIZE, DEFAULT_BLOCKS);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param compressed The gzip stream, closed with the channel
+	 * @param blockSize The size of a decompressed block
+	 * @param blocks The number of blocks in flight, at least 2
+	 */
+	public InflatingChannel(InputStream compressed, int blockSize, int blocks)
+	{
+		int count = Math.max(blocks, 2);
+		this.filled = new ArrayBlockingQueue<>(count + 1);
+		this.free = new ArrayBlockingQueue<>(count);
+		for (int i = 0; i < count; i++)
+		{
+			free.add(ByteBuffer.allocate(Math.max(blockSize, 512)));
+		}
+		this.worker = new Thread(() -> inflate(compressed, blockSize), "config-inflater");
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	/**
+	 * Inflates the stream into free blocks until its end, an error or close
+	 */
+	private void inflate(InputStream compressed, int blockSize)
+	{
+		try(InputStream source = compressed;
+				InputStream in = new GZIPInputStream(source, Math.max(blockSize / 4, 512))) {
+			boolean endOfStream = false;
+			while (!endOfStream && !closed)
+			{
+				ByteBuffer block = free.take();
+				byte [] bytes = block.array();
+				int length = 0;
+				while (length < bytes.length)
+				{
+					int read = in.read(bytes, length, bytes.length - length);
+					if (read < 0)
+					{
+						endOfStream = true;
+						break;
+					}
+					length += read;
+				}
+				block.clear();
+				block.limit(length);
+				if (length > 0)
+				{
+					filled.put(block);
+				}
+			}
+		}
+		catch(IOException e)
+		{
+			failure = e;
+		}
+		catch(InterruptedException e)
+		{
+			//intentionally left empty. interrupted only when the channel is closed
+		}
+		finally
+		{
+			filled.offer(END);
+		}
+	}
+
+	@Override
+	public int read(ByteBuffer destination) throws IOException
+	{
+		if (closed)
+		{
+			throw new ClosedChannelException();
+		}
+		while (current == null || !current.hasRemaining())
+		{
+			if (ended)
+			{
+				return -1;
+			}
+			if (current != null)
+			{
+				free.offer(current);
+				current = null;
+			}
+			ByteBuffer next;
+			try {
+				next = filled.take();
+			}
+			catch(InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for decompressed data");
+			}
+			if (next == END)
+			{
+				ended = true;
+				if (failure != null)
+				{
+					throw new IOException(failure.getMessage(), failure);
+				}
+				return -1;
+			}
+			current = next;
+		}
+		int length = Math.min(destination.remaining(), current.remaining());
+		int limit = current.limit();
+		current.limit(current.position() + length);
+		destination.put(current);
+		current.limit(limit);
+		return length;
+	}
+
+	@Override
+	public boolean isOpen()
+	{
+		return !closed;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		if (closed)
+		{
+			return;
+		}
+		closed = true;
+		worker.interrupt();
+		try {
+			worker.join();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Checks if bytes start with the gzip magic number
+	 *
+	 * @param first The first byte
+	 * @param second The second byte
+	 * @return true if they are 0x1f 0x8b
+	 */
+	public static boolean isGzipMagic(int first, int second)
+	{
+		return (first & 0xFF) == 0x1f && (second & 0xFF) == 0x8b;
+	}
+
+}
@@ -0,0 +1,64 @@
+package me.sdimopoulos.config.parser;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A CharSequence view over a range of Latin-1 (or ASCII) bytes
+ *
+ * Every byte is one character, so the bytes can be parsed in place without
+ * running a charset decoder or copying them into a String. The view can be
+ * pointed to a new range with {@link #reset(byte[], int, int)}.
+ */
+class Latin1CharSequence implements CharSequence {
+
+	private byte [] bytes;
+	private int offset;
+	private int length;
+
+	/**
+	 * Constructor, creates an empty view
+	 */
+	Latin1CharSequence()
+	{
+		this.bytes = new byte [0];
+		this.offset = 0;
+		this.length = 0;
+	}
+
+	/**
+	 * Points the view to a new range of bytes
+	 *
+	 * @param bytes The buffer containing the characters
+	 * @param from The index of the first byte
+	 * @param to The index after the last byte
+	 * @return This view
+	 */
+	Latin1CharSequence reset(byte [] bytes, int from, int to)
+	{
+		this.bytes = bytes;
+		this.offset = from;
+		this.length = to - from;
+		return this;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		return (char) (bytes[offset + index] & 0xFF);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return new Latin1CharSequence().reset(bytes, offset + start, offset + end);
+	}
+
+	@Override
+	public String toString() {
+		return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+	}
+
+}
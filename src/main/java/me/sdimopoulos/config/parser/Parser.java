@@ -1,5 +1,6 @@
 package me.sdimopoulos.config.parser;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 
@@ -28,11 +29,115 @@ public interface Parser {
 		NA
 	}
 
+	/**
+	 * Receives the fields found by {@link Parser#parseBlock} as offsets into
+	 * the parsed characters
+	 */
+	interface FieldSink {
+
+		/**
+		 * Receives a field of the current line
+		 *
+		 * @param variable The field, GROUP, SETTING, OVERRIDE or VALUE
+		 * @param type The type of a VALUE, NA for the other fields
+		 * @param start The index of the first character of the field
+		 * @param end The index after the last character of the field
+		 */
+		void field(ParseVariable variable, ParseType type, int start, int end);
+
+		/**
+		 * Called after each line, also after blank and comment lines
+		 *
+		 * @param start The index of the first character of the line
+		 * @param end The index after the last character, before the line
+		 * terminator
+		 * @return true to go on with the next line, false to stop
+		 */
+		boolean endOfLine(int start, int end);
+	}
+
 	/**
 	 * Resets the parser and the associated FSM to make them ready for next line
 	 */
 	void resetParser();
 
+	/**
+	 * Makes the parser cheap to fail, for loads that skip the bad lines
+	 *
+	 * A lenient parser throws the same preallocated
+	 * {@link ParsingConfigurationException} for every error, without a stack
+	 * trace and without a message built from the line, and rejects invalid
+	 * values without converting them through an exception. The exception is
+	 * only valid until the next line is parsed. A strict parser, the default,
+	 * throws a new exception with a message and a stack trace.
+	 *
+	 * @param lenient true to throw the preallocated exception
+	 */
+	void setLenient(boolean lenient);
+
+	/**
+	 * Parses a range of characters as a single line, reporting its fields
+	 *
+	 * Nothing is copied and no value is converted: the sink gets the offsets
+	 * and the type of every field and decides what to materialize, for
+	 * example with {@link #getValueWithProperType(String, ParseType)}. The
+	 * parsing context is not used.
+	 *
+	 * @param input The characters containing the line
+	 * @param start The index of the first character of the line
+	 * @param end The index after the last character of the line
+	 * @param sink Receives the fields of the line
+	 * @throws ParsingConfigurationException When unparsable input is met,
+	 * with the column counted from the start of the line
+	 */
+	void parseRange(CharSequence input, int start, int end, FieldSink sink)
+			throws ParsingConfigurationException;
+
+	/**
+	 * Parses a block of many lines, reporting their fields
+	 *
+	 * The lines are separated by \n or \r\n and each is parsed as with
+	 * {@link #parseRange(CharSequence, int, int, FieldSink)}, so a large read
+	 * buffer, a {@link java.nio.CharBuffer} or a file mapped as characters is
+	 * parsed in place without a String per line. A line cut at the end of the
+	 * range is parsed as it is, so a caller that reads in chunks passes the
+	 * range up to the last line terminator and carries the rest over.
+	 *
+	 * @param input The characters containing the lines
+	 * @param start The index of the first character of the first line
+	 * @param end The index after the last character of the block
+	 * @param sink Receives the fields and the end of every line
+	 * @return The index after the last line parsed, end unless the sink
+	 * stopped the parsing
+	 * @throws ParsingConfigurationException When unparsable input is met on
+	 * the line after the last one given to {@link FieldSink#endOfLine}
+	 */
+	default int parseBlock(CharSequence input, int start, int end, FieldSink sink)
+			throws ParsingConfigurationException
+	{
+		int lineStart = start;
+		while (lineStart < end)
+		{
+			int lineEnd = lineStart;
+			while (lineEnd < end && input.charAt(lineEnd) != '\n')
+			{
+				lineEnd++;
+			}
+			int next = lineEnd < end ? lineEnd + 1 : end;
+			if (lineEnd > lineStart && input.charAt(lineEnd - 1) == '\r')
+			{
+				lineEnd--;
+			}
+			parseRange(input, lineStart, lineEnd, sink);
+			if (!sink.endOfLine(lineStart, lineEnd))
+			{
+				return next;
+			}
+			lineStart = next;
+		}
+		return end;
+	}
+
 	/**
 	 * Parses a single line of input and updates the parsing context
 	 * 
@@ -48,6 +153,27 @@ public interface Parser {
 	 */
 	void parseSingleLineAndUpdateContext(String line, ParsingContext parsingCtx) throws ParsingConfigurationException;
 
+	/**
+	 * Parses a single line given as Latin-1 bytes and updates the parsing context
+	 * 
+	 * Every byte is taken as one character, which is also correct for ASCII
+	 * input in any ASCII compatible charset. By default the bytes are turned
+	 * into a String and given to
+	 * {@link #parseSingleLineAndUpdateContext(String, ParsingContext)}.
+	 * 
+	 * @param bytes The buffer containing the line
+	 * @param from The index of the first byte of the line
+	 * @param to The index after the last byte of the line
+	 * @param parsingCtx The context of parsing object
+	 * @throws ParsingConfigurationException When unparsable input is met
+	 */
+	default void parseBytesAndUpdateContext(byte [] bytes, int from, int to,
+			ParsingContext parsingCtx) throws ParsingConfigurationException
+	{
+		parseSingleLineAndUpdateContext(new String(bytes, from, to - from,
+				StandardCharsets.ISO_8859_1), parsingCtx);
+	}
+
 	
 	/**
 	 * Extracts a value of specified type
@@ -64,6 +190,24 @@ public interface Parser {
 	 */
 	static Object getValueWithProperType(String value, ParseType type) 
 			throws ParsingConfigurationException {
+		return getValueWithProperType(value, type, null);
+	}
+
+	/**
+	 * Extracts a value of specified type, reporting an invalid value with a
+	 * reused exception
+	 * 
+	 * @param value The String value to extract
+	 * @param type The ParseType to extract
+	 * @param preallocated The exception thrown for an invalid value, or null
+	 * to throw a new one with a message
+	 * @return An Object that contains the value in the specified type
+	 * @throws ParsingConfigurationException thrown if the value is not of the 
+	 * expected type.
+	 */
+	static Object getValueWithProperType(String value, ParseType type,
+			ParsingConfigurationException preallocated)
+			throws ParsingConfigurationException {
 		Object returnValue;
 		switch(type)
 		{
@@ -71,10 +215,20 @@ public interface Parser {
 			returnValue = value;
 			break;
 		case BOOLEAN:
-			returnValue = convertToBoolean(value);
+			returnValue = preallocated == null ? Boolean.valueOf(convertToBoolean(value))
+					: toBooleanOrNull(value);
+			if (returnValue == null)
+			{
+				throw preallocated.reuse(ParsingConfigurationException.Reason.INVALID_BOOLEAN);
+			}
 			break;
 		case NUMBER:
-			returnValue = convertToLong(value);
+			returnValue = preallocated == null ? convertToLong(value)
+					: toLongOrNull(value);
+			if (returnValue == null)
+			{
+				throw preallocated.reuse(ParsingConfigurationException.Reason.INVALID_NUMBER);
+			}
 			break;
 		case ARRAY:
 			returnValue = convertToArray(value);
@@ -98,22 +252,35 @@ public interface Parser {
 	static boolean convertToBoolean(String value) 
 			throws ParsingConfigurationException
 	{
-		boolean valueBoolean;
+		Boolean valueBoolean = toBooleanOrNull(value);
+		if (valueBoolean == null)
+		{
+			throw new ParsingConfigurationException("Boolean value must be "
+					+ "one of true, yes, false, no ["+value+"]",
+					ParsingConfigurationException.Reason.INVALID_BOOLEAN);
+		}
+		return valueBoolean;
+	}
+
+	/**
+	 * Extracts a boolean value from the given string without failing
+	 * 
+	 * @param value The String to convert
+	 * @return A boolean value, or null if the value is not one of yes, no,
+	 * true, false
+	 */
+	static Boolean toBooleanOrNull(String value)
+	{
 		String toCheck = value.toLowerCase();
 		if (toCheck.contains("true")||toCheck.contains("yes"))
 		{
-			valueBoolean = true;
+			return Boolean.TRUE;
 		}
 		else if ((toCheck.contains("false")||toCheck.contains("no")))
 		{
-			valueBoolean = false;
+			return Boolean.FALSE;
 		}
-		else
-		{
-			throw new ParsingConfigurationException("Boolean value must be "
-					+ "one of true, yes, false, no ["+value+"]");
-		}
-		return valueBoolean;
+		return null;
 	}
 
 	/**
@@ -135,11 +302,57 @@ public interface Parser {
 		catch (NumberFormatException ex)
 		{
 			throw new ParsingConfigurationException(String.format("Cannot "
-					+ "convert %s to integer: %s",value));
+					+ "convert %s to integer: %s",value,ex.getMessage()),
+					ParsingConfigurationException.Reason.INVALID_NUMBER);
 		}
 		return valueInteger;
 	}
 
+	/**
+	 * Extracts a long value from the given string without failing
+	 * 
+	 * Accepts the same values as {@link Long#parseLong(String)}, but tells
+	 * an invalid value or an overflow without creating an exception.
+	 * 
+	 * @param value The String to convert
+	 * @return A Long value, or null if the value is not an integer that fits
+	 * in a long
+	 */
+	static Long toLongOrNull(String value)
+	{
+		int length = value.length();
+		int i = 0;
+		boolean negative = false;
+		if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+'))
+		{
+			negative = value.charAt(0) == '-';
+			i++;
+		}
+		if (i == length)
+		{
+			return null;
+		}
+		// accumulate negatively, as Long.parseLong, to reach Long.MIN_VALUE
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long multiplyLimit = limit / 10;
+		long result = 0;
+		for ( ; i < length; i++)
+		{
+			int digit = Character.digit(value.charAt(i), 10);
+			if (digit < 0 || result < multiplyLimit)
+			{
+				return null;
+			}
+			result *= 10;
+			if (result < limit + digit)
+			{
+				return null;
+			}
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+
 	/**
 	 * Converts a String to an ArrayList
 	 * 
@@ -151,4 +364,4 @@ public interface Parser {
 		return Arrays.asList(value.split(","));
 
 	}
-}
\ No newline at end of file
+}
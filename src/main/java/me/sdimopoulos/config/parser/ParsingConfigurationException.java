@@ -3,11 +3,104 @@ package me.sdimopoulos.config.parser;
 /**
  * Thrown when parsing of the input file fails
  *
+ * The exception tells why the line was rejected and at which column, the
+ * loader knows the line. A lenient parser, see {@link Parser#setLenient},
+ * throws one preallocated instance without a stack trace for every bad line
+ * and its message is built only when it is read. Other parsers throw a new
+ * exception with a message and a stack trace, as any exception.
  */
 public class ParsingConfigurationException extends Exception {
 
+	/**
+	 * Enum containing the reasons a line is rejected for
+	 */
+	public enum Reason {
+		UNEXPECTED_CHARACTER,
+		INCOMPLETE_LINE,
+		UNPARSABLE_LINE,
+		INVALID_BOOLEAN,
+		INVALID_NUMBER
+	}
+
+	private Reason reason;
+	private int column;
+
 	public ParsingConfigurationException(String string) {
+		this(string, Reason.UNPARSABLE_LINE);
+	}
+
+	public ParsingConfigurationException(String string, Reason reason) {
 		super(string);
+		this.reason = reason;
+	}
+
+	/**
+	 * Constructor of the instance reused by a lenient parser
+	 */
+	private ParsingConfigurationException() {
+		super(null, null, false, false);
+	}
+
+	/**
+	 * Creates an exception without a stack trace or a message, that a lenient
+	 * parser throws again for every error with {@link #reuse(Reason)}
+	 *
+	 * @return The exception
+	 */
+	static ParsingConfigurationException preallocate() {
+		return new ParsingConfigurationException();
+	}
+
+	/**
+	 * Prepares a preallocated exception to be thrown for another error
+	 *
+	 * @param reason The reason of the error
+	 * @return This exception, with its column not set
+	 */
+	ParsingConfigurationException reuse(Reason reason) {
+		this.reason = reason;
+		this.column = 0;
+		return this;
+	}
+
+	/**
+	 * Sets the column of the error, unless it is already set
+	 *
+	 * @param column The column, starting from 1
+	 * @return This exception
+	 */
+	ParsingConfigurationException atColumn(int column) {
+		if (this.column == 0)
+		{
+			this.column = column;
+		}
+		return this;
+	}
+
+	/**
+	 * Returns the message, which for a preallocated exception is made from
+	 * the reason and the column of the last error
+	 */
+	@Override
+	public String getMessage() {
+		String message = super.getMessage();
+		return message != null ? message
+				: "Found unparsable input: " + reason + " at column " + column;
+	}
+
+	/* Getters and Setters begin here */
+
+	public Reason getReason() {
+		return reason;
+	}
+
+	/**
+	 * Returns the column of the error in the parsed characters
+	 *
+	 * @return The column, starting from 1, or 0 if it is not known
+	 */
+	public int getColumn() {
+		return column;
 	}
 
 	private static final long serialVersionUID = -5470164902552222477L;
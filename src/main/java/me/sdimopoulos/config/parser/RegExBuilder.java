@@ -3,45 +3,73 @@ package me.sdimopoulos.config.parser;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import me.sdimopoulos.config.parser.Parser.ParseType;
+import me.sdimopoulos.config.parser.Parser.ParseVariable;
+
 /**
  * Builder for the Regular Expression used to parse the configuration settings file
- * 
+ *
  * The builder constructs an Non-Deterministic FSM structure based on Java's
- * own Regular Expression engine.
+ * own Regular Expression engine. The same patterns can also be compiled
+ * into a Deterministic FSM with the {@link RegExCompiler}.
  */
 
 public class RegExBuilder {
 
-		
+	static final String REGULAR_EXPRESSION_COMMENT = "^\\s*;.*$";
+	static final String REGULAR_EXPRESSION_GROUP =
+			"^\\s*\\[(?<group>[\\w_]+)\\]\\s*(?:;.*)?$|";
+	static final String REGULAR_EXPRESSION_SETTING =
+			"^\\s*(?<setting>\\p{Alpha}[\\w_]*)(?:<(?<override>\\p{Alpha}[\\w_]*)>)?\\s*=\\s*"
+			+ "(\"(?<valueString>[^\"]*)\"|"
+			+ "(?<valuePath>\\/[\\w\\/_]*)|"
+			+ "(?<valueBoolean>\\p{Alpha}+)|"
+			+ "(?<valueArray>\\p{Alpha}+(,\\p{Alpha}+)+)|"
+			+ "(?<valueNumber>\\d+))\\s*(?:;.*)?$";
+
+
 	/** Builds the Regular Expression required to parse the given text file
-	 * 
+	 *
 	 * First the states are defined and then the transitions. The state array is used
 	 * mostly for convenience, only the reference to the first state is required
-	 * to keep the whole structure in memory and this is passed to FsmState. 
+	 * to keep the whole structure in memory and this is passed to FsmState.
 	 * A 13 state FSM is used to parse all possible input lines and extract
 	 * information about groups, setting names, setting values and overrides.
 	 * The FsmState is returned and can be used by the {@link FsmParser}
-	 * 
-	 * 
+	 *
+	 *
 	 * @return Matcher a matcher object that can parse input lines
 	 */
 		public Matcher[] buildRegEx() {
-			String regularExpressionCommentStr = "^\\s*;.*$";
-			String regularExpressionGroupStr = "^\\s*\\[(?<group>[\\w_]+)\\]\\s*(?:;.*)?$|";
-			
-			String regularExpressionSettingStr = "^\\s*(?<setting>\\p{Alpha}[\\w_]*)(?:<(?<override>\\p{Alpha}[\\w_]*)>)?\\s*=\\s*"
-					+ "(\"(?<valueString>.*)\"|"
-					+ "(?<valuePath>\\/[\\w\\/_]*)|"
-					+ "(?<valueBoolean>\\p{Alpha}+)|"
-					+ "(?<valueArray>\\p{Alpha}+(,\\p{Alpha}+)+)|"
-					+ "(?<valueNumber>\\d+))\\s*(?:;.*)?$";
-			Pattern patternComment = Pattern.compile(regularExpressionCommentStr);
-			Pattern patternGroup = Pattern.compile(regularExpressionGroupStr);
-			Pattern patternSetting = Pattern.compile(regularExpressionSettingStr);
+			Pattern patternComment = Pattern.compile(REGULAR_EXPRESSION_COMMENT);
+			Pattern patternGroup = Pattern.compile(REGULAR_EXPRESSION_GROUP);
+			Pattern patternSetting = Pattern.compile(REGULAR_EXPRESSION_SETTING);
 			return new Matcher [] {
 					patternComment.matcher(""),
 					patternGroup.matcher(""),
 					patternSetting.matcher("")};
 		}
-	
+
+	/** Compiles the Regular Expressions into a Deterministic FSM
+	 *
+	 * The named groups of the patterns are mapped to the parsed variables and
+	 * value types in the same way the {@link RegExParser} does. The patterns
+	 * are compiled as one alternation and the minimized DFA is returned.
+	 *
+	 * @return FsmState object which can be used by the {@link FsmParser}
+	 */
+		public FsmState buildDFA() {
+			return new RegExCompiler()
+					.addCapture("group", ParseVariable.GROUP, ParseType.NA)
+					.addCapture("setting", ParseVariable.SETTING, ParseType.NA)
+					.addCapture("override", ParseVariable.OVERRIDE, ParseType.NA)
+					.addCapture("valueString", ParseVariable.VALUE, ParseType.STRING)
+					.addCapture("valuePath", ParseVariable.VALUE, ParseType.STRING)
+					.addCapture("valueBoolean", ParseVariable.VALUE, ParseType.BOOLEAN)
+					.addCapture("valueArray", ParseVariable.VALUE, ParseType.ARRAY)
+					.addCapture("valueNumber", ParseVariable.VALUE, ParseType.NUMBER)
+					.compile(REGULAR_EXPRESSION_COMMENT, REGULAR_EXPRESSION_GROUP,
+							REGULAR_EXPRESSION_SETTING);
+		}
+
 }
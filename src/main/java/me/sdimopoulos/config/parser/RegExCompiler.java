@@ -0,0 +1,590 @@
+package me.sdimopoulos.config.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import me.sdimopoulos.config.parser.Parser.ParseType;
+import me.sdimopoulos.config.parser.Parser.ParseVariable;
+
+/**
+ * Compiles regular expressions into a minimized Deterministic FSM
+ *
+ * The compiler accepts the regular expression subset described in
+ * {@link RegExPatternParser} and produces an {@link FsmState} that can be used
+ * by the {@link FsmParser}, so grammars written as patterns run in linear time
+ * without backtracking. Several patterns given together are compiled as one
+ * alternation.
+ *
+ * The construction follows the Glushkov approach: every character class of
+ * the pattern is a position, the DFA states are sets of positions (subset
+ * construction) and the result is minimized by partition refinement. Named
+ * groups registered with {@link #addCapture(String, ParseVariable, ParseType)}
+ * become capture actions: a DFA state is labeled with the parsed variable of
+ * the capture it is accumulating, and transitions either start, continue or
+ * leave a capture. The FSM keeps a single output buffer, so captures must be
+ * decidable while reading the input left to right. Patterns in which the same
+ * character may or may not belong to a capture, depending on input not yet
+ * read, are rejected with an {@link IllegalArgumentException}. A nullable
+ * capture that is skipped is reported as empty.
+ */
+public class RegExCompiler {
+
+	private static final int PLAIN = 0;
+	private static final int START = 1;
+	private static final int CONTINUE = 2;
+
+	private final Map<String, ParseVariable> captureVariables;
+	private final Map<String, ParseType> captureTypes;
+
+	private List<RegExNode> positions;
+	private List<BitSet> follow;
+	private List<BitSet> internal;
+	private List<RegExNode> nullableCaptures;
+	private BitSet patternLast;
+
+	/**
+	 * Constructor
+	 */
+	public RegExCompiler()
+	{
+		this.captureVariables = new LinkedHashMap<>();
+		this.captureTypes = new LinkedHashMap<>();
+	}
+
+	/**
+	 * Registers a named group as a capture reported to the parsing context
+	 *
+	 * @param groupName The name of the group in the patterns
+	 * @param variable The variable the captured text is stored in
+	 * @param type The type of the value, used for the VALUE variable
+	 * @return This compiler
+	 */
+	public RegExCompiler addCapture(String groupName, ParseVariable variable,
+			ParseType type)
+	{
+		captureVariables.put(groupName, variable);
+		captureTypes.put(groupName, type);
+		return this;
+	}
+
+	/**
+	 * Compiles the given patterns into a minimized DFA
+	 *
+	 * @param patterns The patterns, matched as alternatives of each other
+	 * @return FsmState object which can be used for parsing input
+	 * @throws IllegalArgumentException if a pattern is malformed, unsupported
+	 * or its captures cannot be decided deterministically
+	 */
+	public FsmState compile(String... patterns)
+	{
+		RegExNode root = new RegExNode(RegExNode.Kind.ALTERNATION);
+		for (String pattern : patterns)
+		{
+			root.children.add(new RegExPatternParser(pattern,
+					captureVariables.keySet()).parse());
+		}
+		positions = new ArrayList<>();
+		follow = new ArrayList<>();
+		internal = new ArrayList<>();
+		nullableCaptures = new ArrayList<>();
+		analyse(root, null);
+		patternLast = root.last;
+		// a virtual position before the input, followed by the first positions
+		int start = positions.size();
+		follow.add((BitSet) root.first.clone());
+		internal.add(new BitSet());
+
+		int [] intervals = buildIntervals();
+		BitSet [] matching = matchPositions(intervals);
+
+		// Subset construction
+		List<BitSet> dfaStates = new ArrayList<>();
+		Map<BitSet, Integer> dfaIds = new HashMap<>();
+		List<int []> targets = new ArrayList<>();
+		List<int []> kinds = new ArrayList<>();
+		BitSet startSet = new BitSet();
+		startSet.set(start);
+		dfaStates.add(startSet);
+		dfaIds.put(startSet, 0);
+		for (int s = 0; s < dfaStates.size(); s++)
+		{
+			BitSet current = dfaStates.get(s);
+			Set<RegExNode> labels = labels(current);
+			Set<RegExNode> preOpen = preOpenCaptures(current);
+			BitSet reachable = new BitSet();
+			for (int p = current.nextSetBit(0); p >= 0; p = current.nextSetBit(p + 1))
+			{
+				reachable.or(follow.get(p));
+			}
+			int [] stateTargets = new int [matching.length];
+			int [] stateKinds = new int [matching.length];
+			for (int i = 0; i < matching.length; i++)
+			{
+				BitSet next = (BitSet) reachable.clone();
+				next.and(matching[i]);
+				if (next.isEmpty())
+				{
+					stateTargets[i] = -1;
+					continue;
+				}
+				Integer id = dfaIds.get(next);
+				if (id == null)
+				{
+					id = dfaStates.size();
+					dfaStates.add(next);
+					dfaIds.put(next, id);
+				}
+				stateTargets[i] = id;
+				stateKinds[i] = transitionKind(current, next, labels, preOpen);
+				if (id == s && !labels.isEmpty() && stateKinds[i] != CONTINUE)
+				{
+					throw new IllegalArgumentException("Repeated capture "
+							+ "groups are not supported");
+				}
+			}
+			targets.add(stateTargets);
+			kinds.add(stateKinds);
+		}
+
+		int numberOfStates = dfaStates.size();
+		boolean [] accepting = new boolean [numberOfStates];
+		ParseVariable [] variables = new ParseVariable [numberOfStates];
+		ParseType [] types = new ParseType [numberOfStates];
+		for (int s = 0; s < numberOfStates; s++)
+		{
+			BitSet current = dfaStates.get(s);
+			accepting[s] = current.intersects(root.last) ||
+					current.get(start) && root.nullable;
+			labelState(current, s, variables, types);
+		}
+		int [] blocks = minimize(targets, kinds, accepting, variables, types);
+		return new FsmState(buildStates(blocks, intervals, targets, kinds,
+				accepting, variables, types));
+	}
+
+	/**
+	 * Computes nullable, first and last sets of the tree and the follow links
+	 *
+	 * @param node The node to analyse
+	 * @param enclosingGroup The innermost capture group containing the node
+	 */
+	private void analyse(RegExNode node, RegExNode enclosingGroup)
+	{
+		node.enclosingGroup = enclosingGroup;
+		node.first = new BitSet();
+		node.last = new BitSet();
+		switch (node.kind)
+		{
+		case EMPTY:
+			node.nullable = true;
+			break;
+		case CHARS:
+			node.position = positions.size();
+			positions.add(node);
+			follow.add(new BitSet());
+			internal.add(new BitSet());
+			node.nullable = false;
+			node.first.set(node.position);
+			node.last.set(node.position);
+			break;
+		case GROUP:
+			RegExNode child = node.children.get(0);
+			analyse(child, node.isCapture() ? node : enclosingGroup);
+			copySets(node, child);
+			if (node.isCapture() && node.nullable)
+			{
+				nullableCaptures.add(node);
+			}
+			break;
+		case CONCAT:
+			node.nullable = true;
+			BitSet trailing = new BitSet();
+			for (RegExNode part : node.children)
+			{
+				analyse(part, enclosingGroup);
+				link(trailing, part.first, node);
+				if (node.nullable)
+				{
+					node.first.or(part.first);
+				}
+				if (!part.nullable)
+				{
+					trailing.clear();
+					node.last.clear();
+				}
+				trailing.or(part.last);
+				node.last.or(part.last);
+				node.nullable &= part.nullable;
+			}
+			break;
+		case ALTERNATION:
+			node.nullable = false;
+			for (RegExNode alternative : node.children)
+			{
+				analyse(alternative, enclosingGroup);
+				node.nullable |= alternative.nullable;
+				node.first.or(alternative.first);
+				node.last.or(alternative.last);
+			}
+			break;
+		case STAR:
+		case PLUS:
+		case OPTIONAL:
+			RegExNode repeated = node.children.get(0);
+			analyse(repeated, enclosingGroup);
+			copySets(node, repeated);
+			node.nullable = node.kind != RegExNode.Kind.PLUS || repeated.nullable;
+			if (node.kind != RegExNode.Kind.OPTIONAL)
+			{
+				link(repeated.last, repeated.first, node);
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	private void copySets(RegExNode target, RegExNode source)
+	{
+		target.nullable = source.nullable;
+		target.first.or(source.first);
+		target.last.or(source.last);
+	}
+
+	/**
+	 * Adds follow links between two position sets
+	 *
+	 * A link is internal when it was created inside the capture group of its
+	 * target position, so following it keeps accumulating the same capture.
+	 *
+	 * @param from The positions the links begin from
+	 * @param to The positions that may follow
+	 * @param creator The node creating the links
+	 */
+	private void link(BitSet from, BitSet to, RegExNode creator)
+	{
+		for (int p = from.nextSetBit(0); p >= 0; p = from.nextSetBit(p + 1))
+		{
+			follow.get(p).or(to);
+			for (int q = to.nextSetBit(0); q >= 0; q = to.nextSetBit(q + 1))
+			{
+				RegExNode group = positions.get(q).enclosingGroup;
+				if (group != null && creator.enclosingGroup == group)
+				{
+					internal.get(p).set(q);
+				}
+			}
+		}
+	}
+
+	private RegExNode groupOf(int position)
+	{
+		return position < positions.size() ?
+				positions.get(position).enclosingGroup : null;
+	}
+
+	/**
+	 * Returns the nullable captures that may be entered after the given state
+	 *
+	 * These captures are opened in the state itself so that they are reported
+	 * even when they match the empty string.
+	 */
+	private Set<RegExNode> preOpenCaptures(BitSet state)
+	{
+		Set<RegExNode> preOpen = new HashSet<>();
+		for (RegExNode capture : nullableCaptures)
+		{
+			for (int p = state.nextSetBit(0); p >= 0; p = state.nextSetBit(p + 1))
+			{
+				if (groupOf(p) != capture && follow.get(p).intersects(capture.first))
+				{
+					preOpen.add(capture);
+				}
+			}
+		}
+		return preOpen;
+	}
+
+	private Set<RegExNode> labels(BitSet state)
+	{
+		Set<RegExNode> labels = preOpenCaptures(state);
+		for (int p = state.nextSetBit(0); p >= 0; p = state.nextSetBit(p + 1))
+		{
+			if (groupOf(p) != null)
+			{
+				labels.add(groupOf(p));
+			}
+		}
+		return labels;
+	}
+
+	/**
+	 * Decides if a DFA transition starts, continues or does not touch a capture
+	 */
+	private int transitionKind(BitSet from, BitSet to, Set<RegExNode> labels,
+			Set<RegExNode> preOpen)
+	{
+		boolean anyLabeled = false;
+		boolean anyUnlabeled = false;
+		boolean anyContinue = false;
+		boolean anyStart = false;
+		for (int q = to.nextSetBit(0); q >= 0; q = to.nextSetBit(q + 1))
+		{
+			RegExNode group = groupOf(q);
+			if (group == null)
+			{
+				anyUnlabeled = true;
+				continue;
+			}
+			anyLabeled = true;
+			for (int p = from.nextSetBit(0); p >= 0; p = from.nextSetBit(p + 1))
+			{
+				if (!follow.get(p).get(q))
+				{
+					continue;
+				}
+				boolean continues = labels.contains(group) &&
+						(internal.get(p).get(q) ||
+								preOpen.contains(group) && groupOf(p) != group);
+				anyContinue |= continues;
+				anyStart |= !continues;
+			}
+		}
+		if (anyLabeled && anyUnlabeled || anyContinue && anyStart)
+		{
+			throw new IllegalArgumentException("Capture boundary cannot be "
+					+ "decided deterministically");
+		}
+		return !anyLabeled ? PLAIN : (anyContinue ? CONTINUE : START);
+	}
+
+	/**
+	 * Sets the parsed variable and value type of a DFA state
+	 *
+	 * All captures of a state must report the same variable. The value type is
+	 * taken from the captures that can be closed in the state, since the value
+	 * is converted when the capture is left.
+	 */
+	private void labelState(BitSet state, int id, ParseVariable [] variables,
+			ParseType [] types)
+	{
+		Set<RegExNode> labels = labels(state);
+		variables[id] = ParseVariable.NA;
+		types[id] = ParseType.NA;
+		if (labels.isEmpty())
+		{
+			return;
+		}
+		Set<ParseVariable> stateVariables = new HashSet<>();
+		Set<ParseType> closingTypes = new HashSet<>();
+		for (RegExNode label : labels)
+		{
+			stateVariables.add(captureVariables.get(label.groupName));
+			types[id] = captureTypes.get(label.groupName);
+		}
+		for (RegExNode label : preOpenCaptures(state))
+		{
+			closingTypes.add(captureTypes.get(label.groupName));
+		}
+		for (int p = state.nextSetBit(0); p >= 0; p = state.nextSetBit(p + 1))
+		{
+			RegExNode group = groupOf(p);
+			if (group == null)
+			{
+				continue;
+			}
+			BitSet leaving = (BitSet) follow.get(p).clone();
+			leaving.andNot(internal.get(p));
+			if (!leaving.isEmpty() || patternLast.get(p))
+			{
+				closingTypes.add(captureTypes.get(group.groupName));
+			}
+		}
+		if (stateVariables.size() > 1 || closingTypes.size() > 1)
+		{
+			throw new IllegalArgumentException("Ambiguous capture groups "
+					+ "for the same input: " + stateVariables + " " + closingTypes);
+		}
+		variables[id] = stateVariables.iterator().next();
+		if (!closingTypes.isEmpty())
+		{
+			types[id] = closingTypes.iterator().next();
+		}
+	}
+
+	/**
+	 * Splits the char domain into intervals not crossed by any position class
+	 *
+	 * @return The sorted lower bounds of the intervals
+	 */
+	private int [] buildIntervals()
+	{
+		TreeSet<Integer> bounds = new TreeSet<>();
+		bounds.add(0);
+		for (RegExNode position : positions)
+		{
+			for (int i = 0; i < position.ranges.length; i += 2)
+			{
+				bounds.add(position.ranges[i]);
+				if (position.ranges[i + 1] < RegExPatternParser.MAX_CHAR)
+				{
+					bounds.add(position.ranges[i + 1] + 1);
+				}
+			}
+		}
+		int [] intervals = new int [bounds.size()];
+		int i = 0;
+		for (int bound : bounds)
+		{
+			intervals[i++] = bound;
+		}
+		return intervals;
+	}
+
+	private BitSet [] matchPositions(int [] intervals)
+	{
+		BitSet [] matching = new BitSet [intervals.length];
+		for (int i = 0; i < intervals.length; i++)
+		{
+			matching[i] = new BitSet();
+			for (RegExNode position : positions)
+			{
+				if (Transition.inRanges(position.ranges, (char) intervals[i]))
+				{
+					matching[i].set(position.position);
+				}
+			}
+		}
+		return matching;
+	}
+
+	/**
+	 * Minimizes the DFA using partition refinement
+	 *
+	 * States start partitioned by acceptance and capture label, and blocks are
+	 * split until all states of a block move to the same blocks with the same
+	 * capture action for every input interval.
+	 *
+	 * @return The block of every DFA state
+	 */
+	private int [] minimize(List<int []> targets, List<int []> kinds,
+			boolean [] accepting, ParseVariable [] variables, ParseType [] types)
+	{
+		int numberOfStates = accepting.length;
+		int [] blocks = new int [numberOfStates];
+		Map<List<Object>, Integer> initial = new HashMap<>();
+		for (int s = 0; s < numberOfStates; s++)
+		{
+			List<Object> key = Arrays.asList(accepting[s], variables[s], types[s]);
+			Integer block = initial.get(key);
+			if (block == null)
+			{
+				block = initial.size();
+				initial.put(key, block);
+			}
+			blocks[s] = block;
+		}
+		int numberOfBlocks = initial.size();
+		while (true)
+		{
+			Map<List<Integer>, Integer> signatures = new HashMap<>();
+			int [] refined = new int [numberOfStates];
+			for (int s = 0; s < numberOfStates; s++)
+			{
+				int [] stateTargets = targets.get(s);
+				List<Integer> signature = new ArrayList<>();
+				signature.add(blocks[s]);
+				for (int i = 0; i < stateTargets.length; i++)
+				{
+					signature.add(stateTargets[i] < 0 ? -1 :
+						blocks[stateTargets[i]] * 3 + kinds.get(s)[i]);
+				}
+				Integer block = signatures.get(signature);
+				if (block == null)
+				{
+					block = signatures.size();
+					signatures.put(signature, block);
+				}
+				refined[s] = block;
+			}
+			blocks = refined;
+			if (signatures.size() == numberOfBlocks)
+			{
+				return blocks;
+			}
+			numberOfBlocks = signatures.size();
+		}
+	}
+
+	/**
+	 * Creates the State and Transition objects of the minimized DFA
+	 *
+	 * @return The initial state
+	 */
+	private State buildStates(int [] blocks, int [] intervals,
+			List<int []> targets, List<int []> kinds, boolean [] accepting,
+			ParseVariable [] variables, ParseType [] types)
+	{
+		// renumber blocks in breadth first order so the initial state gets 0
+		Map<Integer, Integer> representatives = new HashMap<>();
+		for (int s = blocks.length - 1; s >= 0; s--)
+		{
+			representatives.put(blocks[s], s);
+		}
+		List<Integer> order = new ArrayList<>();
+		Map<Integer, State> states = new HashMap<>();
+		order.add(blocks[0]);
+		states.put(blocks[0], new State(0));
+		for (int i = 0; i < order.size(); i++)
+		{
+			for (int target : targets.get(representatives.get(order.get(i))))
+			{
+				if (target >= 0 && !states.containsKey(blocks[target]))
+				{
+					states.put(blocks[target], new State(order.size()));
+					order.add(blocks[target]);
+				}
+			}
+		}
+		for (int block : order)
+		{
+			int s = representatives.get(block);
+			State state = states.get(block).setFinal(accepting[s])
+					.setParsedVariable(variables[s])
+					.setParsedType(types[s]);
+			Map<List<Integer>, int []> grouped = new LinkedHashMap<>();
+			int [] stateTargets = targets.get(s);
+			for (int i = 0; i < stateTargets.length; i++)
+			{
+				if (stateTargets[i] < 0)
+				{
+					continue;
+				}
+				List<Integer> key = Arrays.asList(blocks[stateTargets[i]],
+						kinds.get(s)[i]);
+				int high = i + 1 < intervals.length ? intervals[i + 1] - 1 :
+					RegExPatternParser.MAX_CHAR;
+				int [] ranges = grouped.get(key);
+				grouped.put(key, RegExPatternParser.union(ranges == null ?
+						new int [0] : ranges, new int [] {intervals[i], high}));
+			}
+			for (Map.Entry<List<Integer>, int []> entry : grouped.entrySet())
+			{
+				int kind = entry.getKey().get(1);
+				state.addTransition(new Transition(entry.getValue(),
+						states.get(entry.getKey().get(0)), kind != PLAIN)
+						.setWillTransmitParsed(kind == CONTINUE));
+			}
+		}
+		return states.get(blocks[0]);
+	}
+
+}
@@ -0,0 +1,91 @@
+package me.sdimopoulos.config.parser;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A node of the syntax tree of a regular expression
+ *
+ * Nodes are created by the {@link RegExPatternParser} and analysed by the
+ * {@link RegExCompiler}. Character leaves are the positions of the Glushkov
+ * automaton, so each of them gets a unique position index. The remaining
+ * properties (nullable, first and last position sets) are filled in during
+ * the analysis of the tree.
+ */
+class RegExNode {
+
+	/**
+	 * Enum containing the supported regular expression constructs
+	 */
+	enum Kind {
+		EMPTY,
+		CHARS,
+		CONCAT,
+		ALTERNATION,
+		STAR,
+		PLUS,
+		OPTIONAL,
+		GROUP
+	}
+
+	final Kind kind;
+	final List<RegExNode> children;
+	int [] ranges;
+	String groupName;
+	RegExNode enclosingGroup;
+	int position;
+	boolean nullable;
+	BitSet first;
+	BitSet last;
+
+	/**
+	 * Constructor
+	 *
+	 * @param kind The construct this node represents
+	 */
+	RegExNode(Kind kind)
+	{
+		this.kind = kind;
+		this.children = new ArrayList<>();
+		this.position = -1;
+	}
+
+	/**
+	 * Creates a leaf matching any character of the given ranges
+	 *
+	 * @param ranges Sorted, disjoint pairs of inclusive character bounds
+	 * @return The new node
+	 */
+	static RegExNode chars(int [] ranges)
+	{
+		RegExNode node = new RegExNode(Kind.CHARS);
+		node.ranges = ranges;
+		return node;
+	}
+
+	/**
+	 * Creates a node with a single child
+	 *
+	 * @param kind The construct of the node
+	 * @param child The child node
+	 * @return The new node
+	 */
+	static RegExNode wrap(Kind kind, RegExNode child)
+	{
+		RegExNode node = new RegExNode(kind);
+		node.children.add(child);
+		return node;
+	}
+
+	/**
+	 * Checks if this node is a capture group that is reported to the context
+	 *
+	 * @return true or false
+	 */
+	boolean isCapture()
+	{
+		return kind == Kind.GROUP && groupName != null;
+	}
+
+}
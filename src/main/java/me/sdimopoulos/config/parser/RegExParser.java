@@ -7,9 +7,21 @@ import java.util.regex.Pattern;
 
 public class RegExParser implements Parser {
 
+	private static final String [] FIELD_NAMES = {"group", "setting", "override",
+			"valueString", "valuePath", "valueBoolean", "valueArray", "valueNumber"};
+	private static final ParseVariable [] FIELD_VARIABLES = {ParseVariable.GROUP,
+			ParseVariable.SETTING, ParseVariable.OVERRIDE, ParseVariable.VALUE,
+			ParseVariable.VALUE, ParseVariable.VALUE, ParseVariable.VALUE,
+			ParseVariable.VALUE};
+	private static final ParseType [] FIELD_TYPES = {ParseType.NA, ParseType.NA,
+			ParseType.NA, ParseType.STRING, ParseType.STRING, ParseType.BOOLEAN,
+			ParseType.ARRAY, ParseType.NUMBER};
+
 	Matcher [] matcherArray;
 	String currentLine;
 	int currentCharIndex;
+	boolean [][] hasField;
+	ParsingConfigurationException preallocated;
 
 	/**
 	 * Constructor
@@ -35,6 +47,32 @@ public class RegExParser implements Parser {
 			matcher.reset();
 	}
 
+	@Override
+	public void setLenient(boolean lenient)
+	{
+		this.preallocated = lenient ? ParsingConfigurationException.preallocate() : null;
+	}
+
+	/**
+	 * Builds the exception for a line no pattern matches, or reuses the
+	 * preallocated one of a lenient parser
+	 *
+	 * @param line The characters containing the line
+	 * @param start The index of the first character of the line
+	 * @param end The index after the last character of the line
+	 * @return The exception to throw, its column not set
+	 */
+	private ParsingConfigurationException unparsable(CharSequence line, int start, int end)
+	{
+		if (this.preallocated != null)
+		{
+			return this.preallocated.reuse(ParsingConfigurationException.Reason.UNPARSABLE_LINE);
+		}
+		return new ParsingConfigurationException("Found unparsable line with content: "
+				+ line.subSequence(start, end),
+				ParsingConfigurationException.Reason.UNPARSABLE_LINE);
+	}
+
 	/**
 	 * Parses a single line of input and updates the parsing context
 	 * 
@@ -75,8 +113,84 @@ public class RegExParser implements Parser {
 			}
 			if(!parsingSuccess)
 			{
-				throw new ParsingConfigurationException("Found unparsable line with content: "
-						+ String.format("%s", line));
+				throw unparsable(line, 0, line.length()).atColumn(currentCharIndex);
+			}
+		}
+	}
+
+	/**
+	 * Parses a range of characters as a single line, reporting its fields
+	 *
+	 * The matchers are run on the range of the input in place, and the
+	 * offsets of the named groups that matched are given to the sink.
+	 *
+	 * @param input The characters containing the line
+	 * @param start The index of the first character of the line
+	 * @param end The index after the last character of the line
+	 * @param sink Receives the fields of the line
+	 * @throws ParsingConfigurationException When unparsable input is met
+	 */
+	@Override
+	public void parseRange(CharSequence input, int start, int end, FieldSink sink)
+			throws ParsingConfigurationException
+	{
+		int contentStart = start;
+		while (contentStart < end && Character.isWhitespace(input.charAt(contentStart)))
+		{
+			contentStart++;
+		}
+		if (contentStart == end)
+		{
+			return;
+		}
+		for (int i = 0; i < this.matcherArray.length; i++)
+		{
+			Matcher matcher = this.matcherArray[i];
+			matcher.reset(input).region(contentStart, end);
+			if (matcher.matches())
+			{
+				emitFields(i, matcher, sink);
+				return;
+			}
+		}
+		throw unparsable(input, start, end).atColumn(contentStart - start + 1);
+	}
+
+	/**
+	 * Gives the offsets of the named groups that matched to the sink
+	 *
+	 * The groups a pattern lacks are found once, on its first match, and
+	 * skipped afterwards.
+	 */
+	private void emitFields(int matcherIndex, Matcher matcher, FieldSink sink)
+	{
+		if (this.hasField == null)
+		{
+			this.hasField = new boolean [this.matcherArray.length][];
+		}
+		boolean [] fields = this.hasField[matcherIndex];
+		if (fields == null)
+		{
+			fields = new boolean [FIELD_NAMES.length];
+			for (int i = 0; i < FIELD_NAMES.length; i++)
+			{
+				try {
+					matcher.start(FIELD_NAMES[i]);
+					fields[i] = true;
+				}
+				catch(IllegalArgumentException e)
+				{
+					fields[i] = false;
+				}
+			}
+			this.hasField[matcherIndex] = fields;
+		}
+		for (int i = 0; i < FIELD_NAMES.length; i++)
+		{
+			if (fields[i] && matcher.start(FIELD_NAMES[i]) >= 0)
+			{
+				sink.field(FIELD_VARIABLES[i], FIELD_TYPES[i],
+						matcher.start(FIELD_NAMES[i]), matcher.end(FIELD_NAMES[i]));
 			}
 		}
 	}
@@ -159,7 +273,7 @@ public class RegExParser implements Parser {
 				if (groupValue != null) {
 					parsingCtx.setParsedVariableValue("value", 
 						Parser.getValueWithProperType(groupValue,
-								groupEntry.getValue()));
+								groupEntry.getValue(), this.preallocated));
 					/*System.out.println(String
 							.format("%s found and update to value %s",
 									groupName, groupValue));*/
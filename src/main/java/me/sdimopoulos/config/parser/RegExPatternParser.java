@@ -0,0 +1,406 @@
+package me.sdimopoulos.config.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Recursive descent parser for the regular expression subset of the compiler
+ *
+ * The supported subset is the one used by the {@link RegExBuilder} patterns:
+ * literals and escaped metacharacters, the dot, character classes with ranges
+ * and negation, the predefined classes \d \w \s (and their negations), the
+ * POSIX classes \p{Alpha}, \p{Digit}, \p{Alnum}, \p{Upper}, \p{Lower},
+ * \p{Space}, the quantifiers *, + and ?, alternation, plain, non-capturing
+ * and named groups. Predefined classes follow the ASCII definitions of
+ * {@link java.util.regex.Pattern}. The anchors ^ and $ are accepted and ignored
+ * because lines are always matched as a whole. Named groups that are not
+ * registered as captures are treated as non-capturing groups.
+ */
+class RegExPatternParser {
+
+	static final int MAX_CHAR = Character.MAX_VALUE;
+
+	private static final int [] DIGIT = {'0', '9'};
+	private static final int [] ALPHA = {'A', 'Z', 'a', 'z'};
+	private static final int [] UPPER = {'A', 'Z'};
+	private static final int [] LOWER = {'a', 'z'};
+	private static final int [] ALNUM = {'0', '9', 'A', 'Z', 'a', 'z'};
+	private static final int [] WORD = {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+	private static final int [] SPACE = {'\t', '\r', ' ', ' '};
+	private static final int [] DOT = {0, '\n' - 1, '\n' + 1, '\r' - 1,
+			'\r' + 1, 0x84, 0x86, 0x2027, 0x202A, MAX_CHAR};
+
+	private final String pattern;
+	private final Set<String> captureNames;
+	private int index;
+	private RegExNode currentGroup;
+
+	/**
+	 * Constructor
+	 *
+	 * @param pattern The regular expression to parse
+	 * @param captureNames The named groups that are reported as captures
+	 */
+	RegExPatternParser(String pattern, Set<String> captureNames)
+	{
+		this.pattern = pattern;
+		this.captureNames = captureNames;
+		this.index = 0;
+		this.currentGroup = null;
+	}
+
+	/**
+	 * Parses the whole pattern into a syntax tree
+	 *
+	 * @return The root node of the tree
+	 * @throws IllegalArgumentException if the pattern is malformed or uses
+	 * unsupported constructs
+	 */
+	RegExNode parse()
+	{
+		RegExNode root = parseAlternation();
+		if (index < pattern.length())
+		{
+			throw error("Unmatched closing ')'");
+		}
+		return root;
+	}
+
+	private RegExNode parseAlternation()
+	{
+		RegExNode first = parseConcatenation();
+		if (!peek('|'))
+		{
+			return first;
+		}
+		RegExNode alternation = new RegExNode(RegExNode.Kind.ALTERNATION);
+		alternation.children.add(first);
+		while (peek('|'))
+		{
+			index++;
+			alternation.children.add(parseConcatenation());
+		}
+		return alternation;
+	}
+
+	private RegExNode parseConcatenation()
+	{
+		RegExNode concatenation = new RegExNode(RegExNode.Kind.CONCAT);
+		while (index < pattern.length() && !peek('|') && !peek(')'))
+		{
+			RegExNode atom = parseRepetition();
+			if (atom != null)
+			{
+				concatenation.children.add(atom);
+			}
+		}
+		if (concatenation.children.isEmpty())
+		{
+			return new RegExNode(RegExNode.Kind.EMPTY);
+		}
+		return concatenation.children.size() == 1 ?
+				concatenation.children.get(0) : concatenation;
+	}
+
+	private RegExNode parseRepetition()
+	{
+		RegExNode atom = parseAtom();
+		while (index < pattern.length())
+		{
+			char quantifier = pattern.charAt(index);
+			RegExNode.Kind kind;
+			if (quantifier == '*')
+				kind = RegExNode.Kind.STAR;
+			else if (quantifier == '+')
+				kind = RegExNode.Kind.PLUS;
+			else if (quantifier == '?')
+				kind = RegExNode.Kind.OPTIONAL;
+			else if (quantifier == '{')
+				throw error("Bounded repetition is not supported");
+			else
+				break;
+			if (atom == null)
+			{
+				throw error("Dangling quantifier");
+			}
+			index++;
+			if (peek('?') || peek('+'))
+			{
+				throw error("Lazy and possessive quantifiers are not supported");
+			}
+			atom = RegExNode.wrap(kind, atom);
+		}
+		return atom;
+	}
+
+	private RegExNode parseAtom()
+	{
+		char current = pattern.charAt(index++);
+		switch (current)
+		{
+		case '^':
+		case '$':
+			return null;
+		case '.':
+			return RegExNode.chars(DOT);
+		case '(':
+			return parseGroup();
+		case '[':
+			return RegExNode.chars(parseClass());
+		case '\\':
+			return RegExNode.chars(parseEscape());
+		case '*':
+		case '+':
+		case '?':
+			throw error("Dangling quantifier");
+		default:
+			return RegExNode.chars(new int [] {current, current});
+		}
+	}
+
+	private RegExNode parseGroup()
+	{
+		RegExNode group = new RegExNode(RegExNode.Kind.GROUP);
+		if (peek('?'))
+		{
+			index++;
+			if (peek(':'))
+			{
+				index++;
+			}
+			else if (peek('<'))
+			{
+				int end = pattern.indexOf('>', index);
+				if (end < 0)
+				{
+					throw error("Unterminated group name");
+				}
+				String name = pattern.substring(index + 1, end);
+				index = end + 1;
+				if (captureNames.contains(name))
+				{
+					if (currentGroup != null)
+					{
+						throw error("Nested capture groups are not supported");
+					}
+					group.groupName = name;
+				}
+			}
+			else
+			{
+				throw error("Unsupported group construct");
+			}
+		}
+		RegExNode enclosing = currentGroup;
+		if (group.isCapture())
+		{
+			currentGroup = group;
+		}
+		group.children.add(parseAlternation());
+		currentGroup = enclosing;
+		if (!peek(')'))
+		{
+			throw error("Unclosed group");
+		}
+		index++;
+		return group;
+	}
+
+	private int [] parseClass()
+	{
+		boolean negated = peek('^');
+		if (negated)
+		{
+			index++;
+		}
+		int [] ranges = new int [0];
+		boolean firstItem = true;
+		while (index < pattern.length() && (firstItem || !peek(']')))
+		{
+			firstItem = false;
+			char current = pattern.charAt(index++);
+			int [] item;
+			if (current == '\\')
+			{
+				item = parseEscape();
+			}
+			else if (current == '[')
+			{
+				item = parseClass();
+			}
+			else
+			{
+				item = new int [] {current, current};
+			}
+			if (item.length == 2 && item[0] == item[1] && peek('-')
+					&& index + 1 < pattern.length()
+					&& pattern.charAt(index + 1) != ']')
+			{
+				index++;
+				char high = pattern.charAt(index++);
+				int [] highItem = high == '\\' ? parseEscape() :
+					new int [] {high, high};
+				if (highItem.length != 2 || highItem[0] != highItem[1]
+						|| highItem[0] < item[0])
+				{
+					throw error("Illegal character range");
+				}
+				item = new int [] {item[0], highItem[0]};
+			}
+			ranges = union(ranges, item);
+		}
+		if (!peek(']'))
+		{
+			throw error("Unclosed character class");
+		}
+		index++;
+		return negated ? negate(ranges) : ranges;
+	}
+
+	private int [] parseEscape()
+	{
+		if (index >= pattern.length())
+		{
+			throw error("Trailing escape character");
+		}
+		char escaped = pattern.charAt(index++);
+		switch (escaped)
+		{
+		case 'd':
+			return DIGIT;
+		case 'D':
+			return negate(DIGIT);
+		case 'w':
+			return WORD;
+		case 'W':
+			return negate(WORD);
+		case 's':
+			return SPACE;
+		case 'S':
+			return negate(SPACE);
+		case 'p':
+			return parsePosixClass();
+		case 'P':
+			return negate(parsePosixClass());
+		case 't':
+			return new int [] {'\t', '\t'};
+		case 'n':
+			return new int [] {'\n', '\n'};
+		case 'r':
+			return new int [] {'\r', '\r'};
+		case 'f':
+			return new int [] {'\f', '\f'};
+		default:
+			if (Character.isLetterOrDigit(escaped))
+			{
+				throw error("Unsupported escape sequence \\" + escaped);
+			}
+			return new int [] {escaped, escaped};
+		}
+	}
+
+	private int [] parsePosixClass()
+	{
+		int end = pattern.indexOf('}', index);
+		if (!peek('{') || end < 0)
+		{
+			throw error("Malformed character property");
+		}
+		String name = pattern.substring(index + 1, end);
+		index = end + 1;
+		switch (name)
+		{
+		case "Alpha":
+			return ALPHA;
+		case "Digit":
+			return DIGIT;
+		case "Alnum":
+			return ALNUM;
+		case "Upper":
+			return UPPER;
+		case "Lower":
+			return LOWER;
+		case "Space":
+			return SPACE;
+		default:
+			throw error("Unsupported character property " + name);
+		}
+	}
+
+	private boolean peek(char expected)
+	{
+		return index < pattern.length() && pattern.charAt(index) == expected;
+	}
+
+	private IllegalArgumentException error(String reason)
+	{
+		return new IllegalArgumentException(String.format("%s near index %d "
+				+ "of pattern %s", reason, index, pattern));
+	}
+
+	/**
+	 * Merges two range arrays into one sorted array of disjoint ranges
+	 *
+	 * @param a The first ranges
+	 * @param b The second ranges
+	 * @return The union of both
+	 */
+	static int [] union(int [] a, int [] b)
+	{
+		List<int []> all = new ArrayList<>();
+		for (int i = 0; i < a.length; i += 2)
+			all.add(new int [] {a[i], a[i + 1]});
+		for (int i = 0; i < b.length; i += 2)
+			all.add(new int [] {b[i], b[i + 1]});
+		all.sort((x, y) -> Integer.compare(x[0], y[0]));
+		int [] merged = new int [all.size() * 2];
+		int size = 0;
+		for (int [] range : all)
+		{
+			if (size > 0 && range[0] <= merged[size - 1] + 1)
+			{
+				merged[size - 1] = Math.max(merged[size - 1], range[1]);
+			}
+			else
+			{
+				merged[size++] = range[0];
+				merged[size++] = range[1];
+			}
+		}
+		int [] result = new int [size];
+		System.arraycopy(merged, 0, result, 0, size);
+		return result;
+	}
+
+	/**
+	 * Complements a range array over the whole char domain
+	 *
+	 * @param ranges The ranges to complement
+	 * @return The characters not covered by the input ranges
+	 */
+	static int [] negate(int [] ranges)
+	{
+		int [] result = new int [ranges.length + 2];
+		int size = 0;
+		int next = 0;
+		for (int i = 0; i < ranges.length; i += 2)
+		{
+			if (ranges[i] > next)
+			{
+				result[size++] = next;
+				result[size++] = ranges[i] - 1;
+			}
+			next = ranges[i + 1] + 1;
+		}
+		if (next <= MAX_CHAR)
+		{
+			result[size++] = next;
+			result[size++] = MAX_CHAR;
+		}
+		int [] trimmed = new int [size];
+		System.arraycopy(result, 0, trimmed, 0, size);
+		return trimmed;
+	}
+
+}
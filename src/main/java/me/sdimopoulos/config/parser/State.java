@@ -12,11 +12,17 @@ import java.util.List;
  * 4. the data type of the value that is expected in case the variable is the value
  * and 5. if the state is final (a state that given input buffer is empty it would
  * allow the parsing to complete successfully).
+ * For the ASCII characters the accepted transition is also kept in a lookup
+ * table of 128 entries, so that the common input does not have to be checked
+ * against each rule.
  *
  */
 public class State {
+	private static final int ASCII_SIZE = 128;
+
 	public int Id;
 	private List<Transition> transitions;
+	private Transition [] asciiTransitions;
 	private Parser.ParseVariable parsedVariable;
 	private Parser.ParseType parsedType;
 	private boolean isFinal;
@@ -52,40 +58,33 @@ public class State {
 	 *   or an exact character input rule (only first character is inspected)
 	 * 
 	 * @param input The Character to check
-	 * @return Transition that accepted the input
-	 * @throws ParsingConfigurationException thrown if no rule accepts the input
+	 * @return Transition that accepted the input, or null if no rule accepts
+	 * the input, so that the parser decides how to report it
 	 */
 	Transition parseInput(char input)
-			throws ParsingConfigurationException
 	{
 		boolean inputAccepted = false;
 		Transition transitionAccepted = null;
-		//System.out.println(String.format("DEBUG: State %d parses char %c",this.Id,input));
-		for (Transition transition : this.transitions)
-		{
-			//System.out.println(String.format("DEBUG: Eval transition (%s,%d,%b)",transition.inputExpected,transition.transitToState.Id,transition.willTransmitInput));
-			if(transition.inputExpected.equals("\\w") && Character.isAlphabetic(input)||
-					transition.inputExpected.equals("\\d") && Character.isDigit(input)||
-					transition.inputExpected.equals("\\s") && Character.isWhitespace(input)||
-					transition.inputExpected.startsWith(Character.toString(input))||
-					transition.inputExpected.equals("\\*") // any character wildcard
-					)
-			{
-				inputAccepted = true;
-				transitionAccepted = transition;
-				break;
-			}
-		}
-		if(!inputAccepted)
+		if (input < ASCII_SIZE && this.asciiTransitions != null)
 		{
-			throw new ParsingConfigurationException(
-					String.format("Found unparsable character [%c]",input)
-					);
+			transitionAccepted = this.asciiTransitions[input];
+			inputAccepted = transitionAccepted != null;
 		}
 		else
 		{
-			return transitionAccepted;
+			//System.out.println(String.format("DEBUG: State %d parses char %c",this.Id,input));
+			for (Transition transition : this.transitions)
+			{
+				//System.out.println(String.format("DEBUG: Eval transition (%s,%d,%b)",transition.inputExpected,transition.transitToState.Id,transition.willTransmitInput));
+				if(transition.accepts(input))
+				{
+					inputAccepted = true;
+					transitionAccepted = transition;
+					break;
+				}
+			}
 		}
+		return inputAccepted ? transitionAccepted : null;
 	}
 
 	/**
@@ -96,6 +95,41 @@ public class State {
 	void addTransition(Transition transition)
 	{
 		transitions.add(transition);
+		asciiTransitions = null;
+	}
+
+	/**
+	 * Fills the lookup table with the accepted transition of each ASCII character
+	 * 
+	 * The table is built by evaluating the rules in order, so it gives exactly
+	 * the same transition as the sequential inspection. Adding a transition
+	 * discards the table.
+	 */
+	void prepareLookupTable()
+	{
+		Transition [] table = new Transition [ASCII_SIZE];
+		for (char input = 0; input < ASCII_SIZE; input++)
+		{
+			for (Transition transition : this.transitions)
+			{
+				if (transition.accepts(input))
+				{
+					table[input] = transition;
+					break;
+				}
+			}
+		}
+		asciiTransitions = table;
+	}
+
+	/**
+	 * Returns the transitions that begin from this state
+	 * 
+	 * @return The list of transitions
+	 */
+	List<Transition> getTransitions()
+	{
+		return transitions;
 	}
 
 	/* Getters and Setters begin here */
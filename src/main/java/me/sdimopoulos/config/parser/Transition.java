@@ -1,18 +1,23 @@
 package me.sdimopoulos.config.parser;
 
+import java.util.Arrays;
+
 /**
  * Transition rule used in the FSM
- * 
+ *
  * A transition between states. The transitions are attached to a {@link State}
  * object which shows the origin of the transition. A property transitToState
  * contains the target transition. The rule accepts a certain type of input
  * defined in the inputExpected String. Also flags define if during the transition
  * the current state will trasmit its input and its output to the next state.
+ * Transitions generated by the {@link RegExCompiler} do not use an input rule
+ * String but a sorted array of inclusive character ranges instead.
  *
  */
 public class Transition {
 
 	String inputExpected;
+	int [] inputRanges;
 	State transitToState;
 	boolean willTransmitInput;
 	boolean willTransmitParsed;
@@ -24,7 +29,66 @@ public class Transition {
 		willTransmitInput = willTransmit;
 		willTransmitParsed = false;
 	}
-	
+
+	/**
+	 * Constructor for character range transitions
+	 *
+	 * @param ranges Sorted, disjoint pairs of inclusive character bounds
+	 * (low0, high0, low1, high1, ...)
+	 * @param transitTo The target state
+	 * @param willTransmit true if the input character is passed to the target
+	 */
+	Transition(int [] ranges, State transitTo, boolean willTransmit)
+	{
+		inputRanges = ranges;
+		transitToState = transitTo;
+		willTransmitInput = willTransmit;
+		willTransmitParsed = false;
+	}
+
+	/**
+	 * Decides if this transition rule accepts the input character
+	 *
+	 * A rule can be a wildcard rule:
+	 * 1. \\w all alpha
+	 * 2. \\d all digits
+	 * 3. \\s all whitespace
+	 * 4. \\* all chars
+	 *
+	 * or an exact character input rule (only first character is inspected).
+	 * Range transitions accept the characters that fall in one of their ranges.
+	 *
+	 * @param input The character to check
+	 * @return true if the input is accepted
+	 */
+	boolean accepts(char input)
+	{
+		if (inputRanges != null)
+		{
+			return inRanges(inputRanges, input);
+		}
+		return inputExpected.equals("\\w") && Character.isAlphabetic(input)||
+				inputExpected.equals("\\d") && Character.isDigit(input)||
+				inputExpected.equals("\\s") && Character.isWhitespace(input)||
+				inputExpected.startsWith(Character.toString(input))||
+				inputExpected.equals("\\*"); // any character wildcard
+	}
+
+	/**
+	 * Checks if a character falls in one of the given ranges
+	 *
+	 * @param ranges Sorted, disjoint pairs of inclusive character bounds
+	 * @param input The character to check
+	 * @return true or false
+	 */
+	static boolean inRanges(int [] ranges, char input)
+	{
+		int index = Arrays.binarySearch(ranges, input);
+		// an exact hit is a range bound, otherwise an odd insertion point
+		// means the character lies between a low and a high bound
+		return index >= 0 || ((-index - 1) & 1) == 1;
+	}
+
 	/* Getters and Setters begin here */
 	public boolean isWillTransmitParsed() {
 		return willTransmitParsed;
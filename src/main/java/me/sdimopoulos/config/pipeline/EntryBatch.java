@@ -0,0 +1,52 @@
+package me.sdimopoulos.config.pipeline;
+
+/**
+ * Parsed lines, passed from the parser to the stage that fills the Config
+ *
+ * Each entry is a section header or a setting, with the kind of the entry
+ * in a byte array and its name and value in parallel arrays. Whether the
+ * override of a setting is selected is resolved by the parser, so the
+ * entries are inserted without looking at the override names.
+ */
+final class EntryBatch {
+
+	/** A section header, the name is the section name */
+	static final byte GROUP = 0;
+	/** A setting without a selected override, kept only if it is new */
+	static final byte SETTING = 1;
+	/** A setting with a selected override, always replacing the value */
+	static final byte OVERRIDE = 2;
+
+	final byte [] kinds;
+	final String [] names;
+	final Object [] values;
+	int count;
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity The maximum number of entries
+	 */
+	EntryBatch(int capacity)
+	{
+		this.kinds = new byte [capacity];
+		this.names = new String [capacity];
+		this.values = new Object [capacity];
+	}
+
+	/**
+	 * Adds an entry, the batch must not be full
+	 *
+	 * @param kind The kind of the entry
+	 * @param name The section or setting name
+	 * @param value The value of a setting
+	 */
+	void add(byte kind, String name, Object value)
+	{
+		kinds[count] = kind;
+		names[count] = name;
+		values[count] = value;
+		count++;
+	}
+
+}
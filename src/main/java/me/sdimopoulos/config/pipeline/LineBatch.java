@@ -0,0 +1,62 @@
+package me.sdimopoulos.config.pipeline;
+
+/**
+ * Lines copied out of the read buffer, passed from the reader to the parser
+ *
+ * The content of the lines, without the leading whitespace, is stored back
+ * to back in one byte array, with the bounds of each line in two int arrays.
+ */
+final class LineBatch {
+
+	final byte [] bytes;
+	final int [] starts;
+	final int [] ends;
+	final boolean [] ascii;
+	int count;
+	private int used;
+
+	/**
+	 * Constructor
+	 *
+	 * @param lines The maximum number of lines
+	 * @param size The size of the byte array
+	 */
+	LineBatch(int lines, int size)
+	{
+		this.bytes = new byte [size];
+		this.starts = new int [lines];
+		this.ends = new int [lines];
+		this.ascii = new boolean [lines];
+	}
+
+	/**
+	 * Checks if a line fits in the remaining space
+	 *
+	 * @param length The length of the line
+	 * @return true if the line can be added
+	 */
+	boolean fits(int length)
+	{
+		return count < starts.length && used + length <= bytes.length;
+	}
+
+	/**
+	 * Copies a line into the batch, which must fit
+	 *
+	 * @param source The buffer containing the line
+	 * @param from The index of the first byte of the line
+	 * @param to The index after the last byte of the line
+	 * @param isAscii Whether the line is pure ASCII
+	 */
+	void add(byte [] source, int from, int to, boolean isAscii)
+	{
+		int length = to - from;
+		System.arraycopy(source, from, bytes, used, length);
+		starts[count] = used;
+		ends[count] = used + length;
+		ascii[count] = isAscii;
+		used += length;
+		count++;
+	}
+
+}
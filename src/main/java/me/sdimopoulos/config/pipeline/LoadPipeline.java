@@ -0,0 +1,438 @@
+package me.sdimopoulos.config.pipeline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+
+import me.sdimopoulos.config.Config;
+import me.sdimopoulos.config.ConfigGroup;
+import me.sdimopoulos.config.parser.ByteLineScanner;
+import me.sdimopoulos.config.parser.FsmState;
+import me.sdimopoulos.config.parser.Parser;
+import me.sdimopoulos.config.parser.ParserBuilder;
+import me.sdimopoulos.config.parser.ParsingConfigurationException;
+import me.sdimopoulos.config.parser.ParsingContext;
+
+/**
+ * Loads a file in three stages running on three threads
+ *
+ * A reader thread splits the input into lines with a {@link ByteLineScanner},
+ * drops the blank and comment lines, and copies the others into batches. A
+ * parser thread runs the FSM over each batch and turns every line into a
+ * compact entry, a section header or a setting with its value and whether
+ * its override is selected. The calling thread takes the entries and puts
+ * them in the {@link Config}. The stages are connected by
+ * {@link SpscRingBuffer}s, so reading, parsing and inserting a large file
+ * overlap and use about three cores instead of one.
+ *
+ * Each stage handles the lines in file order, so the result is the same as
+ * with the sequential loader: an override that is selected replaces the
+ * value, any other setting is kept only if it is new, and loading stops at
+ * the first empty line. A failure in any stage stops the others and is thrown
+ * by {@link #load(ReadableByteChannel, List, Config)}.
+ */
+public class LoadPipeline {
+
+	/** Default number of lines in a batch */
+	public static final int DEFAULT_BATCH_LINES = 1024;
+	/** Default number of batches in flight between two stages */
+	public static final int DEFAULT_RING_SIZE = 32;
+
+	private static final int SPINS = 64;
+	private static final int YIELDS = 128;
+	private static final long PARK_NANOS = 50_000;
+
+	private static final LineBatch END_OF_LINES = new LineBatch(0, 0);
+	private static final EntryBatch END_OF_ENTRIES = new EntryBatch(0);
+
+	private final FsmState fsmState;
+	private final Charset charset;
+	private int batchLines = DEFAULT_BATCH_LINES;
+	private int ringSize = DEFAULT_RING_SIZE;
+
+	/**
+	 * Constructor
+	 *
+	 * @param fsmState The FSM used to parse the lines
+	 * @param charset The charset of the input, which the scanner must support
+	 */
+	public LoadPipeline(FsmState fsmState, Charset charset)
+	{
+		if (!ByteLineScanner.supportsCharset(charset))
+		{
+			throw new IllegalArgumentException("Lines of " + charset
+					+ " cannot be split as bytes");
+		}
+		this.fsmState = fsmState;
+		this.charset = charset;
+	}
+
+	/**
+	 * Loads the input into a configuration
+	 *
+	 * @param channel The input, read by the reader thread
+	 * @param overrides A list of overrides
+	 * @param config The empty configuration to fill
+	 * @return The filled configuration
+	 * @throws IOException if the input cannot be read
+	 * @throws ParsingConfigurationException if a line cannot be parsed
+	 */
+	public Config load(ReadableByteChannel channel, List<String> overrides,
+			Config config) throws IOException, ParsingConfigurationException
+	{
+		Run run = new Run(channel, overrides);
+		Thread reader = new Thread(run::read, "config-reader");
+		Thread parser = new Thread(run::parse, "config-parser");
+		reader.setDaemon(true);
+		parser.setDaemon(true);
+		reader.start();
+		parser.start();
+		try {
+			run.insert(config);
+		}
+		finally {
+			run.aborted = true;
+			join(reader);
+			join(parser);
+		}
+		run.rethrowFailure();
+		return config;
+	}
+
+	private static void join(Thread thread)
+	{
+		boolean interrupted = false;
+		while (thread.isAlive())
+		{
+			try {
+				thread.join();
+			}
+			catch(InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Waits a little longer on each idle round, from spinning to parking
+	 *
+	 * @param idle The number of idle rounds so far
+	 * @return The next number of idle rounds
+	 */
+	private static int backOff(int idle)
+	{
+		if (idle >= YIELDS)
+		{
+			LockSupport.parkNanos(PARK_NANOS);
+			return idle;
+		}
+		if (idle >= SPINS)
+		{
+			Thread.yield();
+		}
+		return idle + 1;
+	}
+
+	/**
+	 * The state shared by the stages of one load
+	 */
+	private final class Run {
+
+		private final ReadableByteChannel channel;
+		private final List<String> overrides;
+		private final SpscRingBuffer<LineBatch> lines = new SpscRingBuffer<>(ringSize);
+		private final SpscRingBuffer<EntryBatch> entries = new SpscRingBuffer<>(ringSize);
+		private volatile Throwable failure;
+		private volatile boolean aborted;
+
+		Run(ReadableByteChannel channel, List<String> overrides)
+		{
+			this.channel = channel;
+			this.overrides = overrides;
+		}
+
+		/**
+		 * The first stage, splits the input into batches of lines
+		 */
+		void read()
+		{
+			try {
+				ByteLineScanner scanner = new ByteLineScanner(channel, charset);
+				boolean isLatin1 = charset.equals(StandardCharsets.ISO_8859_1);
+				int batchBytes = batchLines * 64;
+				LineBatch batch = new LineBatch(batchLines, batchBytes);
+				while (scanner.nextLine() && !scanner.isEmpty())
+				{
+					if (scanner.isBlank() || scanner.isComment())
+					{
+						continue;
+					}
+					int from = scanner.getContentStart();
+					int to = scanner.getLineEnd();
+					if (!batch.fits(to - from))
+					{
+						if (batch.count > 0 && !put(lines, batch))
+						{
+							return;
+						}
+						batch = new LineBatch(batchLines, Math.max(batchBytes, to - from));
+					}
+					batch.add(scanner.getBuffer(), from, to,
+							isLatin1 || scanner.isContentAscii());
+				}
+				if (batch.count > 0 && !put(lines, batch))
+				{
+					return;
+				}
+			}
+			catch(Throwable e)
+			{
+				fail(e);
+			}
+			finally
+			{
+				put(lines, END_OF_LINES);
+			}
+		}
+
+		/**
+		 * The second stage, parses the batches of lines into entries
+		 */
+		void parse()
+		{
+			try {
+				Parser fsmParser = new ParserBuilder().buildParserWithFSM(fsmState);
+				CharsetDecoder decoder = charset.newDecoder();
+				Set<String> selected = new HashSet<>(overrides);
+				ParsingContext parsingCtx = new ParsingContext(null, overrides);
+				parsingCtx.setupParsedVariables(new String [] {"group","setting",
+						"override","value"});
+				LineBatch batch;
+				while ((batch = take(lines, END_OF_LINES)) != END_OF_LINES)
+				{
+					EntryBatch parsed = new EntryBatch(batch.count);
+					for (int i = 0; i < batch.count; i++)
+					{
+						if (batch.ascii[i])
+						{
+							fsmParser.parseBytesAndUpdateContext(batch.bytes,
+									batch.starts[i], batch.ends[i], parsingCtx);
+						}
+						else
+						{
+							fsmParser.parseSingleLineAndUpdateContext(decode(decoder,
+									batch, i), parsingCtx);
+						}
+						addEntry(parsed, parsingCtx, selected);
+						parsingCtx.resetParsedVariables();
+						fsmParser.resetParser();
+					}
+					if (!put(entries, parsed))
+					{
+						return;
+					}
+				}
+			}
+			catch(Throwable e)
+			{
+				fail(e);
+			}
+			finally
+			{
+				put(entries, END_OF_ENTRIES);
+			}
+		}
+
+		/**
+		 * The last stage, puts the entries in the configuration
+		 *
+		 * Mirrors the checks of the sequential loader: a section that is
+		 * found again becomes the current one, and a setting is stored if its
+		 * override is selected or if the section does not have it yet.
+		 */
+		void insert(Config config)
+		{
+			Map<String,Object> group = null;
+			EntryBatch batch;
+			while ((batch = take(entries, END_OF_ENTRIES)) != END_OF_ENTRIES)
+			{
+				for (int i = 0; i < batch.count; i++)
+				{
+					String name = batch.names[i];
+					switch(batch.kinds[i])
+					{
+					case EntryBatch.GROUP:
+						if (!config.containsKey(name))
+						{
+							config.put(name, new ConfigGroup());
+						}
+						group = config.get(name);
+						break;
+					case EntryBatch.OVERRIDE:
+						current(config, group).put(name, batch.values[i]);
+						break;
+					default:
+						Map<String,Object> settings = current(config, group);
+						if (!settings.containsKey(name))
+						{
+							settings.put(name, batch.values[i]);
+						}
+						break;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Returns the current section; before the first header this is the
+		 * section with the empty name, as for the sequential loader
+		 */
+		private Map<String,Object> current(Config config, Map<String,Object> group)
+		{
+			return group != null ? group : config.get("");
+		}
+
+		private void addEntry(EntryBatch parsed, ParsingContext parsingCtx,
+				Set<String> selected)
+		{
+			String group = (String) parsingCtx.getParsedVariableValue("group");
+			if (group != null)
+			{
+				parsed.add(EntryBatch.GROUP, group, null);
+				return;
+			}
+			String setting = (String) parsingCtx.getParsedVariableValue("setting");
+			if (setting != null)
+			{
+				String override = (String) parsingCtx.getParsedVariableValue("override");
+				parsed.add(override != null && selected.contains(override)
+						? EntryBatch.OVERRIDE : EntryBatch.SETTING, setting,
+						parsingCtx.getParsedVariableValue("value"));
+			}
+		}
+
+		private String decode(CharsetDecoder decoder, LineBatch batch, int line)
+				throws CharacterCodingException
+		{
+			return decoder.decode(ByteBuffer.wrap(batch.bytes, batch.starts[line],
+					batch.ends[line] - batch.starts[line])).toString();
+		}
+
+		/**
+		 * Hands a batch to the next stage, waiting while the ring is full
+		 *
+		 * @return false if the load was aborted
+		 */
+		private <T> boolean put(SpscRingBuffer<T> ring, T batch)
+		{
+			int idle = 0;
+			while (!ring.offer(batch))
+			{
+				if (aborted)
+				{
+					return false;
+				}
+				idle = backOff(idle);
+			}
+			return true;
+		}
+
+		/**
+		 * Takes the next batch, waiting while the ring is empty
+		 *
+		 * @return The batch, or the end marker if the load was aborted
+		 */
+		private <T> T take(SpscRingBuffer<T> ring, T end)
+		{
+			int idle = 0;
+			while (!aborted)
+			{
+				T batch = ring.poll();
+				if (batch != null)
+				{
+					return batch;
+				}
+				idle = backOff(idle);
+			}
+			return end;
+		}
+
+		private void fail(Throwable e)
+		{
+			if (failure == null)
+			{
+				failure = e;
+			}
+			aborted = true;
+		}
+
+		/**
+		 * Throws the first failure of the reader or parser stage
+		 */
+		void rethrowFailure() throws IOException, ParsingConfigurationException
+		{
+			Throwable e = failure;
+			if (e == null)
+			{
+				return;
+			}
+			if (e instanceof IOException)
+				throw (IOException) e;
+			if (e instanceof ParsingConfigurationException)
+				throw (ParsingConfigurationException) e;
+			if (e instanceof RuntimeException)
+				throw (RuntimeException) e;
+			if (e instanceof Error)
+				throw (Error) e;
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/* Getters and Setters begin here */
+
+	public int getBatchLines() {
+		return batchLines;
+	}
+
+	/**
+	 * Sets the number of lines handed over at once between two stages
+	 *
+	 * @param batchLines The number of lines in a batch
+	 * @return This pipeline
+	 */
+	public LoadPipeline setBatchLines(int batchLines) {
+		this.batchLines = Math.max(batchLines, 1);
+		return this;
+	}
+
+	public int getRingSize() {
+		return ringSize;
+	}
+
+	/**
+	 * Sets the number of batches that can wait between two stages, which
+	 * bounds the memory used when a stage is slower than the previous one
+	 *
+	 * @param ringSize The capacity of the rings
+	 * @return This pipeline
+	 */
+	public LoadPipeline setRingSize(int ringSize) {
+		this.ringSize = Math.max(ringSize, 1);
+		return this;
+	}
+
+}
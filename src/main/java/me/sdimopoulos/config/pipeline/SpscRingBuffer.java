@@ -0,0 +1,126 @@
+package me.sdimopoulos.config.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded queue for exactly one producer thread and one consumer thread
+ *
+ * The elements are kept in an array of a power of two size indexed by two
+ * counters, the tail written only by the producer and the head written only
+ * by the consumer, so neither side takes a lock or retries a compare and set.
+ * A counter is published with an ordered write after the slot it covers, and
+ * each side keeps a cached copy of the other's counter, which it reads again
+ * only when the queue looks full or empty. The counters are padded so that
+ * they do not share a cache line.
+ *
+ * The methods never block; callers decide how to wait.
+ *
+ * @param <E> The type of the elements
+ */
+public final class SpscRingBuffer<E> {
+
+	private final Object [] slots;
+	private final int mask;
+	private final Sequence head = new Sequence();
+	private final Sequence tail = new Sequence();
+	/** Producer side copy of head */
+	private long cachedHead;
+	/** Consumer side copy of tail */
+	private long cachedTail;
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity The maximum number of elements, rounded up to a power
+	 * of two
+	 */
+	public SpscRingBuffer(int capacity)
+	{
+		if (capacity < 1 || capacity > 1 << 30)
+		{
+			throw new IllegalArgumentException("Invalid capacity " + capacity);
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity)
+		{
+			size <<= 1;
+		}
+		this.slots = new Object [size];
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Adds an element, called only by the producer thread
+	 *
+	 * @param element The element, not null
+	 * @return false if the queue is full
+	 */
+	public boolean offer(E element)
+	{
+		long position = tail.get();
+		if (position - cachedHead >= slots.length)
+		{
+			cachedHead = head.get();
+			if (position - cachedHead >= slots.length)
+			{
+				return false;
+			}
+		}
+		slots[(int) position & mask] = element;
+		tail.lazySet(position + 1);
+		return true;
+	}
+
+	/**
+	 * Removes the oldest element, called only by the consumer thread
+	 *
+	 * @return The element, or null if the queue is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public E poll()
+	{
+		long position = head.get();
+		if (position >= cachedTail)
+		{
+			cachedTail = tail.get();
+			if (position >= cachedTail)
+			{
+				return null;
+			}
+		}
+		int index = (int) position & mask;
+		E element = (E) slots[index];
+		slots[index] = null;
+		head.lazySet(position + 1);
+		return element;
+	}
+
+	/**
+	 * Returns the number of elements, exact only when both threads are idle
+	 *
+	 * @return The number of queued elements
+	 */
+	public int size()
+	{
+		return (int) (tail.get() - head.get());
+	}
+
+	/**
+	 * Returns the maximum number of elements
+	 *
+	 * @return The capacity
+	 */
+	public int capacity()
+	{
+		return slots.length;
+	}
+
+	/**
+	 * A counter on a cache line of its own
+	 */
+	@SuppressWarnings({"serial", "unused"})
+	private static final class Sequence extends AtomicLong {
+		private long p1, p2, p3, p4, p5, p6, p7;
+	}
+
+}
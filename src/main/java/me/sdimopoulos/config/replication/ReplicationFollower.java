@@ -0,0 +1,202 @@
+package me.sdimopoulos.config.replication;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import me.sdimopoulos.config.Config;
+import me.sdimopoulos.config.subscription.ConfigSubscriptions;
+
+/**
+ * Keeps a copy of the configuration of a {@link ReplicationLeader}
+ *
+ * A thread reads the messages of the leader and builds each new version of
+ * the configuration aside, then publishes it with a single volatile write,
+ * so {@link #getConfig()} always returns a whole version and never one that
+ * is half applied. A delta copies only the section map of the current version
+ * and replaces the sections it carries; the unchanged sections are shared
+ * between the versions. A delta that does not apply to the current version
+ * stops the follower.
+ *
+ * When {@link ConfigSubscriptions} are set, every new version is passed to
+ * their update, so the listeners of the follower are notified of the changed
+ * settings.
+ */
+public class ReplicationFollower implements AutoCloseable {
+
+	private final Socket socket;
+	private final Thread reader;
+	private final Object versionLock = new Object();
+	private volatile Config config;
+	private volatile long version;
+	private volatile IOException failure;
+	private volatile ConfigSubscriptions subscriptions;
+	private volatile boolean closed;
+
+	/**
+	 * Constructor, connects to the leader
+	 *
+	 * @param leader The address of the leader
+	 * @throws IOException if the leader cannot be reached
+	 */
+	public ReplicationFollower(InetSocketAddress leader) throws IOException
+	{
+		this.config = new Config();
+		this.socket = new Socket();
+		this.socket.setTcpNoDelay(true);
+		this.socket.connect(leader);
+		this.reader = new Thread(this::read, "config-follower");
+		this.reader.setDaemon(true);
+		this.reader.start();
+	}
+
+	private void read()
+	{
+		try(DataInputStream in = new DataInputStream(
+				new BufferedInputStream(socket.getInputStream(), 1 << 16))) {
+			while (!closed)
+			{
+				in.readInt();
+				apply(SnapshotCodec.decode(in));
+			}
+		}
+		catch(IOException e)
+		{
+			if (!closed)
+			{
+				failure = e;
+			}
+		}
+		finally
+		{
+			closed = true;
+			synchronized (versionLock)
+			{
+				versionLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Builds the next version from a message and publishes it
+	 */
+	private void apply(SnapshotCodec.Message message) throws IOException
+	{
+		Config next = new Config();
+		if (message.getType() == SnapshotCodec.DELTA)
+		{
+			if (message.getBaseVersion() != version)
+			{
+				throw new IOException("Delta to version " + message.getVersion()
+						+ " applies to " + message.getBaseVersion()
+						+ " but the follower has " + version);
+			}
+			next.putAll(config);
+			for (String group : message.getRemoved())
+			{
+				next.remove(group);
+			}
+		}
+		for (Map.Entry<String,Map<String,Object>> section : message.getSections().entrySet())
+		{
+			next.put(section.getKey(), section.getValue());
+		}
+		config = next;
+		synchronized (versionLock)
+		{
+			version = message.getVersion();
+			versionLock.notifyAll();
+		}
+		ConfigSubscriptions listeners = subscriptions;
+		if (listeners != null)
+		{
+			listeners.update(next);
+		}
+	}
+
+	/**
+	 * Waits until the follower has a version
+	 *
+	 * @param minimum The version to wait for
+	 * @param timeout The maximum time to wait
+	 * @param unit The unit of the timeout
+	 * @return true if the follower has that version or a later one
+	 * @throws InterruptedException if the thread is interrupted
+	 */
+	public boolean awaitVersion(long minimum, long timeout, TimeUnit unit)
+			throws InterruptedException
+	{
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized (versionLock)
+		{
+			while (version < minimum && !closed)
+			{
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0)
+				{
+					return false;
+				}
+				TimeUnit.NANOSECONDS.timedWait(versionLock, remaining);
+			}
+			return version >= minimum;
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		closed = true;
+		socket.close();
+		try {
+			reader.join();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/* Getters and Setters begin here */
+
+	/**
+	 * Returns the last whole version received
+	 *
+	 * @return The configuration, empty until the first snapshot
+	 */
+	public Config getConfig() {
+		return config;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the error that stopped the follower
+	 *
+	 * @return The error, or null if the follower is running or was closed
+	 */
+	public IOException getFailure() {
+		return failure;
+	}
+
+	public ConfigSubscriptions getSubscriptions() {
+		return subscriptions;
+	}
+
+	/**
+	 * Sets the subscriptions updated with every new version
+	 *
+	 * @param subscriptions The subscriptions, or null
+	 * @return This follower
+	 */
+	public ReplicationFollower setSubscriptions(ConfigSubscriptions subscriptions) {
+		this.subscriptions = subscriptions;
+		return this;
+	}
+
+}
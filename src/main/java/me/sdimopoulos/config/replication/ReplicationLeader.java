@@ -0,0 +1,271 @@
+package me.sdimopoulos.config.replication;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import me.sdimopoulos.config.Config;
+import me.sdimopoulos.config.ConfigDiff;
+
+/**
+ * Serves a configuration to followers over TCP
+ *
+ * The leader loads and parses the file once and publishes every new version:
+ *
+ *   ReplicationLeader leader = new ReplicationLeader(config, 7070);
+ *   ...
+ *   leader.publish(configLoader.loadConfig(path, overrides));
+ *
+ * A follower that connects gets a snapshot of the current version. Then each
+ * published version is sent as a delta with only the sections that were
+ * added, changed or removed, found with a {@link ConfigDiff}. Every message
+ * is encoded once by {@link SnapshotCodec} and the same bytes are queued to
+ * all followers, each written by a thread of its own so that a slow follower
+ * does not hold back the others. A follower whose queue is full is sent a
+ * fresh snapshot instead of the deltas it missed.
+ *
+ * Messages are framed by their length in an int.
+ */
+public class ReplicationLeader implements AutoCloseable {
+
+	/** Default number of messages queued for a follower */
+	public static final int DEFAULT_QUEUE_SIZE = 64;
+
+	private final ServerSocket serverSocket;
+	private final Thread acceptor;
+	private final List<Session> sessions = new CopyOnWriteArrayList<>();
+	private final int queueSize;
+	private Config config;
+	private long version = 1;
+	private byte [] snapshot;
+	private volatile boolean closed;
+
+	/**
+	 * Constructor, listens on the loopback interface
+	 *
+	 * @param config The first version of the configuration
+	 * @param port The port to listen to, 0 for any free port
+	 * @throws IOException if the port cannot be bound
+	 */
+	public ReplicationLeader(Config config, int port) throws IOException
+	{
+		this(config, new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+				DEFAULT_QUEUE_SIZE);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param config The first version of the configuration
+	 * @param address The address to listen to
+	 * @param queueSize The number of messages queued for a follower
+	 * @throws IOException if the address cannot be bound
+	 */
+	public ReplicationLeader(Config config, InetSocketAddress address, int queueSize)
+			throws IOException
+	{
+		this.config = config;
+		this.queueSize = Math.max(queueSize, 1);
+		this.serverSocket = new ServerSocket();
+		this.serverSocket.bind(address);
+		this.acceptor = new Thread(this::accept, "config-leader");
+		this.acceptor.setDaemon(true);
+		this.acceptor.start();
+	}
+
+	/**
+	 * Publishes a new version of the configuration to all the followers
+	 *
+	 * @param newConfig The new version
+	 * @return The differences with the previous version
+	 */
+	public synchronized ConfigDiff publish(Config newConfig)
+	{
+		ConfigDiff diff = ConfigDiff.between(config, newConfig);
+		Set<String> changed = new LinkedHashSet<>();
+		List<String> removed = new ArrayList<>();
+		for (String group : newConfig.keySet())
+		{
+			if (!config.containsKey(group))
+			{
+				changed.add(group);
+			}
+		}
+		for (String group : config.keySet())
+		{
+			if (!newConfig.containsKey(group))
+			{
+				removed.add(group);
+			}
+		}
+		for (String group : diff.getChangedGroups())
+		{
+			if (newConfig.containsKey(group))
+			{
+				changed.add(group);
+			}
+		}
+		if (changed.isEmpty() && removed.isEmpty())
+		{
+			config = newConfig;
+			return diff;
+		}
+		byte [] delta = SnapshotCodec.encodeDelta(version + 1, version, newConfig,
+				changed, removed);
+		config = newConfig;
+		version++;
+		snapshot = null;
+		for (Session session : sessions)
+		{
+			if (!session.queue.offer(delta))
+			{
+				session.queue.clear();
+				session.queue.offer(currentSnapshot());
+			}
+		}
+		return diff;
+	}
+
+	/**
+	 * Returns the snapshot of the current version, encoded once per version
+	 */
+	private byte [] currentSnapshot()
+	{
+		if (snapshot == null)
+		{
+			snapshot = SnapshotCodec.encodeSnapshot(version, config);
+		}
+		return snapshot;
+	}
+
+	private void accept()
+	{
+		while (!closed)
+		{
+			try {
+				Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				Session session = new Session(socket);
+				synchronized (this)
+				{
+					session.queue.offer(currentSnapshot());
+					sessions.add(session);
+				}
+				session.start();
+			}
+			catch(IOException e)
+			{
+				//intentionally left empty. the socket is closed or the follower left
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		closed = true;
+		serverSocket.close();
+		for (Session session : sessions)
+		{
+			session.close();
+		}
+		try {
+			acceptor.join();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * A connected follower with the messages waiting to be written to it
+	 */
+	private final class Session {
+
+		private final Socket socket;
+		private final BlockingQueue<byte []> queue = new ArrayBlockingQueue<>(queueSize);
+		private final Thread writer;
+
+		Session(Socket socket)
+		{
+			this.socket = socket;
+			this.writer = new Thread(this::write, "config-leader-" + socket.getPort());
+			this.writer.setDaemon(true);
+		}
+
+		void start()
+		{
+			writer.start();
+		}
+
+		private void write()
+		{
+			try(DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(socket.getOutputStream(), 1 << 16))) {
+				while (!closed)
+				{
+					byte [] message = queue.take();
+					out.writeInt(message.length);
+					out.write(message);
+					if (queue.isEmpty())
+					{
+						out.flush();
+					}
+				}
+			}
+			catch(IOException | InterruptedException e)
+			{
+				//intentionally left empty. the follower left or the leader closed
+			}
+			finally
+			{
+				sessions.remove(this);
+				closeSocket();
+			}
+		}
+
+		void close()
+		{
+			closeSocket();
+			writer.interrupt();
+		}
+
+		private void closeSocket()
+		{
+			try {
+				socket.close();
+			}
+			catch(IOException e)
+			{
+				//intentionally left empty. nothing more to send
+			}
+		}
+	}
+
+	/* Getters and Setters begin here */
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	public synchronized long getVersion() {
+		return version;
+	}
+
+	public int getFollowerCount() {
+		return sessions.size();
+	}
+
+}
@@ -0,0 +1,324 @@
+package me.sdimopoulos.config.replication;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import me.sdimopoulos.config.Config;
+import me.sdimopoulos.config.ConfigGroup;
+
+/**
+ * Binary encoding of configuration snapshots and per section deltas
+ *
+ * A message starts with its type and version. A snapshot then has all the
+ * sections; a delta has the version it applies to, the sections that were
+ * added or changed, in full, and the names of the removed sections. A
+ * section is its name, the number of settings and each setting as a name and
+ * a tagged value. Strings are UTF-8 with an int length, numbers are 8 bytes,
+ * and arrays are a count followed by the strings.
+ *
+ * Messages are encoded once into a byte array, which the leader writes to
+ * every follower.
+ */
+public final class SnapshotCodec {
+
+	/** A message with the whole configuration */
+	public static final byte SNAPSHOT = 1;
+	/** A message with the sections changed since a version */
+	public static final byte DELTA = 2;
+
+	private static final byte NULL_VALUE = 0;
+	private static final byte STRING_VALUE = 1;
+	private static final byte LONG_VALUE = 2;
+	private static final byte BOOLEAN_VALUE = 3;
+	private static final byte ARRAY_VALUE = 4;
+
+	/**
+	 * A decoded message
+	 */
+	public static final class Message {
+
+		private final byte type;
+		private final long version;
+		private final long baseVersion;
+		private final Map<String,Map<String,Object>> sections;
+		private final List<String> removed;
+
+		Message(byte type, long version, long baseVersion,
+				Map<String,Map<String,Object>> sections, List<String> removed)
+		{
+			this.type = type;
+			this.version = version;
+			this.baseVersion = baseVersion;
+			this.sections = sections;
+			this.removed = removed;
+		}
+
+		/* Getters and Setters begin here */
+
+		public byte getType() {
+			return type;
+		}
+
+		public long getVersion() {
+			return version;
+		}
+
+		/**
+		 * Returns the version a delta applies to, -1 for a snapshot
+		 *
+		 * @return The base version
+		 */
+		public long getBaseVersion() {
+			return baseVersion;
+		}
+
+		/**
+		 * Returns all the sections of a snapshot, or the added and changed
+		 * sections of a delta
+		 *
+		 * @return The sections in order
+		 */
+		public Map<String,Map<String,Object>> getSections() {
+			return sections;
+		}
+
+		/**
+		 * Returns the removed sections of a delta
+		 *
+		 * @return The section names
+		 */
+		public List<String> getRemoved() {
+			return removed;
+		}
+	}
+
+	/**
+	 * Constructor
+	 */
+	private SnapshotCodec()
+	{
+	}
+
+	/**
+	 * Encodes a snapshot of a configuration
+	 *
+	 * @param version The version of the configuration
+	 * @param config The configuration
+	 * @return The encoded message
+	 */
+	public static byte [] encodeSnapshot(long version, Config config)
+	{
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(SNAPSHOT);
+			out.writeLong(version);
+			out.writeInt(config.size());
+			for (String group : config.keySet())
+			{
+				writeSection(out, group, config.get(group));
+			}
+			out.flush();
+			return bytes.toByteArray();
+		}
+		catch(IOException e)
+		{
+			throw new IllegalStateException("Cannot encode a snapshot in memory", e);
+		}
+	}
+
+	/**
+	 * Encodes the sections that changed between two versions
+	 *
+	 * @param version The new version
+	 * @param baseVersion The version the delta applies to
+	 * @param config The new configuration
+	 * @param changed The added and changed sections
+	 * @param removed The removed sections
+	 * @return The encoded message
+	 */
+	public static byte [] encodeDelta(long version, long baseVersion, Config config,
+			Collection<String> changed, Collection<String> removed)
+	{
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 12);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(DELTA);
+			out.writeLong(version);
+			out.writeLong(baseVersion);
+			out.writeInt(changed.size());
+			for (String group : changed)
+			{
+				writeSection(out, group, config.get(group));
+			}
+			out.writeInt(removed.size());
+			for (String group : removed)
+			{
+				writeString(out, group);
+			}
+			out.flush();
+			return bytes.toByteArray();
+		}
+		catch(IOException e)
+		{
+			throw new IllegalStateException("Cannot encode a delta in memory", e);
+		}
+	}
+
+	/**
+	 * Decodes a message
+	 *
+	 * @param in The input positioned at the start of the message
+	 * @return The message
+	 * @throws IOException if the input cannot be read or is not a message
+	 */
+	public static Message decode(DataInput in) throws IOException
+	{
+		byte type = in.readByte();
+		if (type != SNAPSHOT && type != DELTA)
+		{
+			throw new IOException("Unknown message type " + type);
+		}
+		long version = in.readLong();
+		long baseVersion = type == DELTA ? in.readLong() : -1;
+		int count = readCount(in);
+		Map<String,Map<String,Object>> sections = new LinkedHashMap<>(
+				Math.max(16, count * 2));
+		for (int i = 0; i < count; i++)
+		{
+			String group = readString(in);
+			sections.put(group, readSettings(in));
+		}
+		List<String> removed = new ArrayList<>();
+		if (type == DELTA)
+		{
+			int removedCount = readCount(in);
+			for (int i = 0; i < removedCount; i++)
+			{
+				removed.add(readString(in));
+			}
+		}
+		return new Message(type, version, baseVersion, sections, removed);
+	}
+
+	private static void writeSection(DataOutputStream out, String group,
+			Map<String,Object> settings) throws IOException
+	{
+		writeString(out, group);
+		out.writeInt(settings.size());
+		for (Map.Entry<String,Object> entry : settings.entrySet())
+		{
+			writeString(out, entry.getKey());
+			writeValue(out, entry.getValue());
+		}
+	}
+
+	private static ConfigGroup readSettings(DataInput in) throws IOException
+	{
+		int count = readCount(in);
+		ConfigGroup settings = new ConfigGroup();
+		for (int i = 0; i < count; i++)
+		{
+			String key = readString(in);
+			settings.put(key, readValue(in));
+		}
+		return settings;
+	}
+
+	private static void writeValue(DataOutputStream out, Object value) throws IOException
+	{
+		if (value == null)
+		{
+			out.writeByte(NULL_VALUE);
+		}
+		else if (value instanceof String)
+		{
+			out.writeByte(STRING_VALUE);
+			writeString(out, (String) value);
+		}
+		else if (value instanceof Long)
+		{
+			out.writeByte(LONG_VALUE);
+			out.writeLong((Long) value);
+		}
+		else if (value instanceof Boolean)
+		{
+			out.writeByte(BOOLEAN_VALUE);
+			out.writeBoolean((Boolean) value);
+		}
+		else if (value instanceof List)
+		{
+			List<?> list = (List<?>) value;
+			out.writeByte(ARRAY_VALUE);
+			out.writeInt(list.size());
+			for (Object element : list)
+			{
+				writeString(out, String.valueOf(element));
+			}
+		}
+		else
+		{
+			throw new IllegalArgumentException("Cannot encode a "
+					+ value.getClass().getName());
+		}
+	}
+
+	private static Object readValue(DataInput in) throws IOException
+	{
+		byte tag = in.readByte();
+		switch(tag)
+		{
+		case NULL_VALUE:
+			return null;
+		case STRING_VALUE:
+			return readString(in);
+		case LONG_VALUE:
+			return in.readLong();
+		case BOOLEAN_VALUE:
+			return in.readBoolean();
+		case ARRAY_VALUE:
+			String [] elements = new String [readCount(in)];
+			for (int i = 0; i < elements.length; i++)
+			{
+				elements[i] = readString(in);
+			}
+			return Arrays.asList(elements);
+		default:
+			throw new IOException("Unknown value tag " + tag);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException
+	{
+		byte [] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInput in) throws IOException
+	{
+		byte [] bytes = new byte [readCount(in)];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static int readCount(DataInput in) throws IOException
+	{
+		int count = in.readInt();
+		if (count < 0)
+		{
+			throw new IOException("Negative length " + count);
+		}
+		return count;
+	}
+
+}
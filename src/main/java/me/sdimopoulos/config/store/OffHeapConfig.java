@@ -0,0 +1,333 @@
+package me.sdimopoulos.config.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import me.sdimopoulos.config.ConfigView;
+
+/**
+ * A configuration object that keeps the settings outside the Java heap
+ *
+ * Setting names and values are encoded in records in direct ByteBuffers and
+ * found through an off-heap hash index (see {@link RecordStore} and
+ * {@link RecordIndex}), so a configuration with millions of settings adds only
+ * one small object per section to the heap. Values are decoded on every get,
+ * which trades some query time for the shorter GC pauses.
+ *
+ * When the given amount of direct memory is used, the store spills to a
+ * temporary file which is memory mapped, so the size of a load is not bounded
+ * by the heap or the direct memory limit. {@link #close()} frees the direct
+ * memory, unmaps and deletes the temporary file, after which the config
+ * cannot be used.
+ *
+ * Every access to the buffers holds the read lock of the config and
+ * {@link #close()} takes the write lock, so the buffers are freed only after
+ * the running queries are done, and a later query throws an
+ * IllegalStateException instead of reading freed memory.
+ *
+ * The config is filled through put, which is what the {@link
+ * me.sdimopoulos.config.ConfigLoader} uses, for example with
+ * setConfigSupplier(OffHeapConfig::new). Loading is not thread safe, while
+ * concurrent queries of a loaded config are.
+ */
+public class OffHeapConfig extends ConfigView implements Closeable {
+
+	private static final long serialVersionUID = -2710557440396893421L;
+
+	/** Direct memory used by default before spilling to a file */
+	public static final long DEFAULT_MAX_DIRECT_BYTES = 256L << 20;
+
+	private final transient OffHeapMemory memory;
+	private transient RecordStore store;
+	private transient RecordIndex index;
+	private final transient Map<String,OffHeapConfigGroup> groups;
+	private transient int nextGroupId;
+	// guarded by the lock, the buffers are freed under the write lock
+	private final transient ReadWriteLock lock;
+	private transient boolean closed;
+
+	/**
+	 * Constructor, spills to the default temporary directory after
+	 * {@link #DEFAULT_MAX_DIRECT_BYTES}
+	 */
+	public OffHeapConfig()
+	{
+		this(DEFAULT_MAX_DIRECT_BYTES, null);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxDirectBytes The direct memory to use before spilling to a file,
+	 * 0 to always use a memory mapped file
+	 * @param spillDirectory The directory of the temporary file, or null for
+	 * the default temporary directory
+	 */
+	public OffHeapConfig(long maxDirectBytes, Path spillDirectory)
+	{
+		this.memory = new OffHeapMemory(maxDirectBytes, spillDirectory);
+		this.store = new RecordStore(memory);
+		this.index = new RecordIndex(memory, store);
+		this.groups = new HashMap<>();
+		this.nextGroupId = 0;
+		this.lock = new ReentrantReadWriteLock();
+		this.closed = false;
+	}
+
+	@Override
+	protected Map<String,Object> getGroup(String name)
+	{
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			checkOpen();
+			return groups.get(name);
+		}
+		finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	protected Set<String> groupNames()
+	{
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			checkOpen();
+			return groups.keySet();
+		}
+		finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Adds a section, copying its settings in the store
+	 *
+	 * A section that is already present is replaced by a new empty one, so the
+	 * settings of the old section are no longer reachable.
+	 *
+	 * @param name The name of the section
+	 * @param group The settings of the section
+	 * @return The replaced section or null
+	 */
+	@Override
+	public Map<String,Object> put(String name, Map<String,Object> group)
+	{
+		OffHeapConfigGroup created;
+		Map<String,Object> previous;
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			checkOpen();
+			created = new OffHeapConfigGroup(this, nextGroupId++);
+			previous = groups.put(name, created);
+		}
+		finally {
+			readLock.unlock();
+		}
+		created.putAll(group);
+		return previous;
+	}
+
+	@Override
+	public void putAll(Map<? extends String, ? extends Map<String,Object>> m)
+	{
+		for (Map.Entry<? extends String, ? extends Map<String,Object>> entry
+				: m.entrySet())
+		{
+			put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Frees the direct buffers, unmaps the mapped ones and deletes the
+	 * temporary file, if any
+	 *
+	 * Waits for the running queries to finish, the queries made after the
+	 * close throw an IllegalStateException.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try {
+			if (!closed)
+			{
+				closed = true;
+				groups.clear();
+				store = null;
+				index = null;
+				memory.close();
+			}
+		}
+		finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of settings in all sections
+	 *
+	 * The settings of a replaced section are left in the store and its
+	 * index, but are not counted.
+	 *
+	 * @return The number of settings
+	 */
+	public int getSettingCount()
+	{
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			checkOpen();
+			int count = 0;
+			for (OffHeapConfigGroup group : groups.values())
+			{
+				count += group.size();
+			}
+			return count;
+		}
+		finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the bytes of direct memory allocated by the store
+	 *
+	 * @return The bytes
+	 */
+	public long getDirectBytes()
+	{
+		return memory.getDirectBytes();
+	}
+
+	/**
+	 * Returns the bytes of the temporary file mapped by the store
+	 *
+	 * @return The bytes
+	 */
+	public long getMappedBytes()
+	{
+		return memory.getMappedBytes();
+	}
+
+	/**
+	 * Returns the value of a setting of a section
+	 *
+	 * @param groupId The id of the section
+	 * @param key The setting name
+	 * @param defaultValue Returned if the section has no such setting
+	 * @return The value or the default value
+	 */
+	Object valueOf(int groupId, String key, Object defaultValue)
+	{
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			checkOpen();
+			long address = index.find(RecordIndex.hash(groupId, key), groupId, key);
+			return address == 0 ? defaultValue : store.valueAt(address);
+		}
+		finally {
+			readLock.unlock();
+		}
+	}
+
+	long find(int groupId, String key)
+	{
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			checkOpen();
+			return index.find(RecordIndex.hash(groupId, key), groupId, key);
+		}
+		finally {
+			readLock.unlock();
+		}
+	}
+
+	long append(int groupId, String key, Object value, long previous)
+	{
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			checkOpen();
+			return store.append(previous, RecordIndex.hash(groupId, key), groupId,
+					key, value);
+		}
+		finally {
+			readLock.unlock();
+		}
+	}
+
+	long index(int groupId, String key, long address)
+	{
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			checkOpen();
+			return index.put(RecordIndex.hash(groupId, key), groupId, key, address);
+		}
+		finally {
+			readLock.unlock();
+		}
+	}
+
+	String keyAt(long address)
+	{
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			checkOpen();
+			return store.keyAt(address);
+		}
+		finally {
+			readLock.unlock();
+		}
+	}
+
+	Object valueAt(long address)
+	{
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			checkOpen();
+			return store.valueAt(address);
+		}
+		finally {
+			readLock.unlock();
+		}
+	}
+
+	long previousAt(long address)
+	{
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			checkOpen();
+			return store.previousAt(address);
+		}
+		finally {
+			readLock.unlock();
+		}
+	}
+
+	private void checkOpen()
+	{
+		if (closed)
+		{
+			throw new IllegalStateException("The off-heap config is closed");
+		}
+	}
+
+}
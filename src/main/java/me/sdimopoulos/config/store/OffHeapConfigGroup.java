@@ -0,0 +1,134 @@
+package me.sdimopoulos.config.store;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A configuration section of an {@link OffHeapConfig}
+ *
+ * The settings are kept in the records of the config store. As with the
+ * ConfigGroup, a missing setting is returned as an empty string. The records of
+ * a section are linked from the latest one backwards, which is the iteration
+ * order; records replaced by a later one of the same key are skipped.
+ */
+final class OffHeapConfigGroup extends AbstractMap<String,Object> {
+
+	private final OffHeapConfig config;
+	private final int id;
+	private long lastAddress;
+	private int size;
+
+	/**
+	 * Constructor
+	 *
+	 * @param config The config that owns the section
+	 * @param id The id of the section in the store
+	 */
+	OffHeapConfigGroup(OffHeapConfig config, int id)
+	{
+		this.config = config;
+		this.id = id;
+		this.lastAddress = 0;
+		this.size = 0;
+	}
+
+	@Override
+	public Object get(Object key)
+	{
+		return key instanceof String ? config.valueOf(id, (String) key, "") : "";
+	}
+
+	@Override
+	public Object getOrDefault(Object key, Object defaultValue)
+	{
+		return key instanceof String ? config.valueOf(id, (String) key, defaultValue)
+				: defaultValue;
+	}
+
+	@Override
+	public boolean containsKey(Object key)
+	{
+		return key instanceof String && config.find(id, (String) key) != 0;
+	}
+
+	@Override
+	public Object put(String key, Object value)
+	{
+		long address = config.append(id, key, value, lastAddress);
+		long previous = config.index(id, key, address);
+		lastAddress = address;
+		if (previous == 0)
+		{
+			size++;
+			return null;
+		}
+		return config.valueAt(previous);
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public Set<Map.Entry<String,Object>> entrySet()
+	{
+		return new AbstractSet<Map.Entry<String,Object>>() {
+			@Override
+			public Iterator<Map.Entry<String,Object>> iterator() {
+				return new EntryIterator();
+			}
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * Walks the records of the section from the latest to the first
+	 */
+	private final class EntryIterator implements Iterator<Map.Entry<String,Object>> {
+
+		private long address = lastAddress;
+		private String key;
+
+		@Override
+		public boolean hasNext()
+		{
+			while (key == null && address != 0)
+			{
+				String candidate = config.keyAt(address);
+				if (config.find(id, candidate) == address)
+				{
+					key = candidate;
+				}
+				else
+				{
+					address = config.previousAt(address);
+				}
+			}
+			return key != null;
+		}
+
+		@Override
+		public Map.Entry<String,Object> next()
+		{
+			if (!hasNext())
+			{
+				throw new NoSuchElementException();
+			}
+			Map.Entry<String,Object> entry = new AbstractMap.SimpleImmutableEntry<>(
+					key, config.valueAt(address));
+			key = null;
+			address = config.previousAt(address);
+			return entry;
+		}
+	}
+
+}
@@ -0,0 +1,186 @@
+package me.sdimopoulos.config.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Allocates the buffers of an off-heap store
+ *
+ * Buffers are allocated as direct ByteBuffers until the given amount of direct
+ * memory is used. After that the store spills: the buffers are mapped from
+ * consecutive regions of a temporary file, so the size of the store is only
+ * bounded by the disk and the address space.
+ *
+ * Closing the memory frees the direct buffers and unmaps the mapped ones
+ * right away, with the cleaner of the buffers, and deletes the temporary
+ * file. A buffer must not be used after that, reading a freed buffer can
+ * crash the JVM. If the cleaner cannot be reached, the buffers are left to
+ * the garbage collector as any direct or mapped buffer.
+ */
+final class OffHeapMemory implements Closeable {
+
+	private final long maxDirectBytes;
+	private final Path spillDirectory;
+	private FileChannel spillChannel;
+	private long directBytes;
+	private long mappedBytes;
+	private long releasedBytes;
+	private final List<ByteBuffer> buffers = new ArrayList<>();
+
+	private static final Object UNSAFE;
+	private static final Method INVOKE_CLEANER;
+
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			// Java 9 and later
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+		}
+		catch(ReflectiveOperationException|RuntimeException e)
+		{
+			invokeCleaner = null;
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxDirectBytes The direct memory to use before spilling to a file
+	 * @param spillDirectory The directory of the temporary file, or null for
+	 * the default temporary directory
+	 */
+	OffHeapMemory(long maxDirectBytes, Path spillDirectory)
+	{
+		this.maxDirectBytes = maxDirectBytes;
+		this.spillDirectory = spillDirectory;
+		this.directBytes = 0;
+		this.mappedBytes = 0;
+	}
+
+	/**
+	 * Allocates a new zero filled buffer in native byte order
+	 *
+	 * @param size The size of the buffer in bytes
+	 * @return The buffer
+	 * @throws UncheckedIOException if the temporary file cannot be mapped
+	 */
+	ByteBuffer allocate(int size)
+	{
+		ByteBuffer buffer;
+		if (spillChannel == null && directBytes + size <= maxDirectBytes)
+		{
+			buffer = ByteBuffer.allocateDirect(size);
+			directBytes += size;
+		}
+		else
+		{
+			try {
+				if (spillChannel == null)
+				{
+					Path file = spillDirectory == null
+							? Files.createTempFile("config", ".offheap")
+							: Files.createTempFile(spillDirectory, "config", ".offheap");
+					spillChannel = FileChannel.open(file, StandardOpenOption.READ,
+							StandardOpenOption.WRITE,
+							StandardOpenOption.DELETE_ON_CLOSE);
+				}
+				buffer = spillChannel.map(FileChannel.MapMode.READ_WRITE,
+						mappedBytes, size);
+				mappedBytes += size;
+			}
+			catch(IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+		buffers.add(buffer);
+		return buffer.order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Frees a direct buffer or unmaps a mapped one
+	 *
+	 * @param buffer A buffer returned by {@link #allocate(int)}
+	 * @return true if the buffer was released, false if it is left to the
+	 * garbage collector
+	 */
+	private static boolean release(ByteBuffer buffer)
+	{
+		try {
+			if (INVOKE_CLEANER != null)
+			{
+				INVOKE_CLEANER.invoke(UNSAFE, buffer);
+				return true;
+			}
+			// Java 8
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null)
+			{
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+				return true;
+			}
+		}
+		catch(ReflectiveOperationException|RuntimeException e)
+		{
+			// left to the garbage collector
+		}
+		return false;
+	}
+
+	/**
+	 * Releases all the buffers, then closes and deletes the temporary file,
+	 * if the store has spilled
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		for (ByteBuffer buffer : buffers)
+		{
+			if (release(buffer))
+			{
+				releasedBytes += buffer.capacity();
+			}
+		}
+		buffers.clear();
+		if (spillChannel != null)
+		{
+			spillChannel.close();
+			spillChannel = null;
+		}
+	}
+
+	/* Getters begin here */
+
+	long getDirectBytes() {
+		return directBytes;
+	}
+
+	long getMappedBytes() {
+		return mappedBytes;
+	}
+
+	long getReleasedBytes() {
+		return releasedBytes;
+	}
+
+}
@@ -0,0 +1,160 @@
+package me.sdimopoulos.config.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Off-heap hash index from section and key to the latest record
+ *
+ * An open addressing table with linear probing, kept in a buffer allocated by
+ * the {@link OffHeapMemory}. Every slot is a long: the lower 48 bits hold the
+ * record address and the upper 16 bits a tag taken from the hash, so most
+ * probes of other keys are rejected without reading the record. An empty
+ * slot is 0, which is never a valid address. The table doubles when it is
+ * three quarters full, reading the full hash of each entry from its record.
+ */
+final class RecordIndex {
+
+	private static final int INITIAL_CAPACITY = 1 << 10;
+	private static final int MAX_CAPACITY = 1 << 27;
+	private static final long ADDRESS_MASK = (1L << 48) - 1;
+
+	private final OffHeapMemory memory;
+	private final RecordStore store;
+	private ByteBuffer slots;
+	private int mask;
+	private int size;
+
+	/**
+	 * Constructor
+	 *
+	 * @param memory The memory where the table is allocated
+	 * @param store The store holding the records
+	 */
+	RecordIndex(OffHeapMemory memory, RecordStore store)
+	{
+		this.memory = memory;
+		this.store = store;
+		this.slots = memory.allocate(INITIAL_CAPACITY * 8);
+		this.mask = INITIAL_CAPACITY - 1;
+		this.size = 0;
+	}
+
+	/**
+	 * Hashes a section id and setting name
+	 *
+	 * @param groupId The id of the section
+	 * @param key The setting name
+	 * @return The hash
+	 */
+	static int hash(int groupId, String key)
+	{
+		int h = key.hashCode() * 0x9E3779B9 + groupId;
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	/**
+	 * Finds the latest record of a setting
+	 *
+	 * @param hash The hash of the section and key
+	 * @param groupId The id of the section
+	 * @param key The setting name
+	 * @return The record address or 0 if the setting is missing
+	 */
+	long find(int hash, int groupId, String key)
+	{
+		long tag = tag(hash);
+		for (int i = hash & mask; ; i = (i + 1) & mask)
+		{
+			long slot = slots.getLong(i << 3);
+			if (slot == 0)
+			{
+				return 0;
+			}
+			long address = slot & ADDRESS_MASK;
+			if ((slot & ~ADDRESS_MASK) == tag && store.matches(address, groupId, key))
+			{
+				return address;
+			}
+		}
+	}
+
+	/**
+	 * Points a setting to a new record
+	 *
+	 * @param hash The hash of the section and key
+	 * @param groupId The id of the section
+	 * @param key The setting name
+	 * @param address The address of the new record
+	 * @return The address of the replaced record or 0 if the setting is new
+	 */
+	long put(int hash, int groupId, String key, long address)
+	{
+		long tag = tag(hash);
+		int i = hash & mask;
+		for ( ; ; i = (i + 1) & mask)
+		{
+			long slot = slots.getLong(i << 3);
+			if (slot == 0)
+			{
+				break;
+			}
+			long previous = slot & ADDRESS_MASK;
+			if ((slot & ~ADDRESS_MASK) == tag && store.matches(previous, groupId, key))
+			{
+				slots.putLong(i << 3, tag | address);
+				return previous;
+			}
+		}
+		slots.putLong(i << 3, tag | address);
+		if (++size > (mask + 1) / 4 * 3)
+		{
+			grow();
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the number of settings in the index
+	 */
+	int size()
+	{
+		return size;
+	}
+
+	private static long tag(int hash)
+	{
+		return ((long) (hash >>> 16)) << 48;
+	}
+
+	private void grow()
+	{
+		int capacity = mask + 1;
+		if (capacity == MAX_CAPACITY)
+		{
+			throw new IllegalStateException("The off-heap index is full");
+		}
+		ByteBuffer larger = memory.allocate(capacity * 2 * 8);
+		int largerMask = capacity * 2 - 1;
+		for (int i = 0; i < capacity; i++)
+		{
+			long slot = slots.getLong(i << 3);
+			if (slot != 0)
+			{
+				int j = store.hashAt(slot & ADDRESS_MASK) & largerMask;
+				while (larger.getLong(j << 3) != 0)
+				{
+					j = (j + 1) & largerMask;
+				}
+				larger.putLong(j << 3, slot);
+			}
+		}
+		slots = larger;
+		mask = largerMask;
+	}
+
+}
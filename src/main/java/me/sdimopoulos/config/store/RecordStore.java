@@ -0,0 +1,341 @@
+package me.sdimopoulos.config.store;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append only store of the setting records
+ *
+ * Records are written one after the other in chunks allocated by the
+ * {@link OffHeapMemory}. A record never crosses a chunk, so a new chunk is
+ * started when the current one is full. Chunks start small and double in size
+ * up to {@link #MAX_CHUNK_SIZE}. A record is referenced by its address, which
+ * holds the chunk number (starting from 1, so that no address is 0) in the
+ * upper bits and the offset in the chunk in the lower 32 bits.
+ *
+ * The record layout is:
+ * 1. the address of the previous record of the same section (long)
+ * 2. the hash of the section and key (int)
+ * 3. the section id (int)
+ * 4. the length and the UTF-8 bytes of the key (int, bytes)
+ * 5. the value type (byte) and the encoded value
+ *
+ * Values are encoded according to their type: strings as length and UTF-8
+ * bytes, numbers as a long, booleans as a byte and arrays as the number of
+ * elements followed by each element as a string.
+ */
+final class RecordStore {
+
+	static final int MAX_CHUNKS = 0xFFFE;
+	static final int MIN_CHUNK_SIZE = 1 << 16;
+	static final int MAX_CHUNK_SIZE = 1 << 26;
+
+	private static final int PREVIOUS_OFFSET = 0;
+	private static final int HASH_OFFSET = 8;
+	private static final int GROUP_OFFSET = 12;
+	private static final int KEY_LENGTH_OFFSET = 16;
+	private static final int KEY_OFFSET = 20;
+
+	private static final byte TYPE_NULL = 0;
+	private static final byte TYPE_STRING = 1;
+	private static final byte TYPE_NUMBER = 2;
+	private static final byte TYPE_BOOLEAN = 3;
+	private static final byte TYPE_ARRAY = 4;
+
+	private final OffHeapMemory memory;
+	private ByteBuffer [] chunks;
+	private int chunkCount;
+	private int nextChunkSize;
+	private ByteBuffer scratch;
+	private long recordBytes;
+
+	/**
+	 * Constructor
+	 *
+	 * @param memory The memory where the chunks are allocated
+	 */
+	RecordStore(OffHeapMemory memory)
+	{
+		this.memory = memory;
+		this.chunks = new ByteBuffer [8];
+		this.chunkCount = 0;
+		this.nextChunkSize = MIN_CHUNK_SIZE;
+		this.scratch = ByteBuffer.allocate(256).order(ByteOrder.nativeOrder());
+		this.recordBytes = 0;
+	}
+
+	/**
+	 * Appends a new record
+	 *
+	 * @param previous The address of the previous record of the section or 0
+	 * @param hash The hash of the section and key
+	 * @param groupId The id of the section
+	 * @param key The setting name
+	 * @param value The setting value
+	 * @return The address of the record
+	 * @throws IllegalArgumentException if the value type is not supported
+	 */
+	long append(long previous, int hash, int groupId, String key, Object value)
+	{
+		scratch.clear();
+		scratch.putLong(previous);
+		scratch.putInt(hash);
+		scratch.putInt(groupId);
+		putString(key);
+		putValue(value);
+		scratch.flip();
+		int length = scratch.remaining();
+		ByteBuffer chunk = chunkFor(length);
+		int offset = chunk.position();
+		chunk.put(scratch.array(), 0, length);
+		recordBytes += length;
+		return ((long) chunkCount << 32) | offset;
+	}
+
+	/**
+	 * Returns the hash stored in a record
+	 */
+	int hashAt(long address)
+	{
+		return chunk(address).getInt(offset(address) + HASH_OFFSET);
+	}
+
+	/**
+	 * Returns the address of the previous record of the same section
+	 */
+	long previousAt(long address)
+	{
+		return chunk(address).getLong(offset(address) + PREVIOUS_OFFSET);
+	}
+
+	/**
+	 * Checks if a record holds the given section and key
+	 *
+	 * ASCII keys are compared with the stored bytes directly, other keys are
+	 * encoded first.
+	 *
+	 * @param address The address of the record
+	 * @param groupId The id of the section
+	 * @param key The setting name
+	 * @return true or false
+	 */
+	boolean matches(long address, int groupId, String key)
+	{
+		ByteBuffer chunk = chunk(address);
+		int offset = offset(address);
+		if (chunk.getInt(offset + GROUP_OFFSET) != groupId)
+		{
+			return false;
+		}
+		int keyLength = chunk.getInt(offset + KEY_LENGTH_OFFSET);
+		int keyStart = offset + KEY_OFFSET;
+		for (int i = 0; i < key.length(); i++)
+		{
+			char c = key.charAt(i);
+			if (c >= 0x80)
+			{
+				return matchesEncoded(chunk, keyStart, keyLength, key);
+			}
+			if (i >= keyLength || chunk.get(keyStart + i) != c)
+			{
+				return false;
+			}
+		}
+		return keyLength == key.length();
+	}
+
+	/**
+	 * Returns the key of a record
+	 */
+	String keyAt(long address)
+	{
+		ByteBuffer chunk = chunk(address);
+		int offset = offset(address);
+		return getString(chunk, offset + KEY_LENGTH_OFFSET);
+	}
+
+	/**
+	 * Decodes the value of a record
+	 *
+	 * @param address The address of the record
+	 * @return The value as String, Long, Boolean or List of String
+	 */
+	Object valueAt(long address)
+	{
+		ByteBuffer chunk = chunk(address);
+		int offset = offset(address);
+		int position = offset + KEY_OFFSET + chunk.getInt(offset + KEY_LENGTH_OFFSET);
+		byte type = chunk.get(position++);
+		Object value;
+		switch(type)
+		{
+		case TYPE_STRING:
+			value = getString(chunk, position);
+			break;
+		case TYPE_NUMBER:
+			value = chunk.getLong(position);
+			break;
+		case TYPE_BOOLEAN:
+			value = chunk.get(position) != 0;
+			break;
+		case TYPE_ARRAY:
+			String [] elements = new String [chunk.getInt(position)];
+			position += 4;
+			for (int i = 0; i < elements.length; i++)
+			{
+				elements[i] = getString(chunk, position);
+				position += 4 + chunk.getInt(position);
+			}
+			value = Arrays.asList(elements);
+			break;
+		default:
+			value = null;
+			break;
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the bytes used by the records
+	 */
+	long getRecordBytes()
+	{
+		return recordBytes;
+	}
+
+	private void putValue(Object value)
+	{
+		if (value == null)
+		{
+			ensureScratch(1);
+			scratch.put(TYPE_NULL);
+		}
+		else if (value instanceof String)
+		{
+			ensureScratch(1);
+			scratch.put(TYPE_STRING);
+			putString((String) value);
+		}
+		else if (value instanceof Long)
+		{
+			ensureScratch(9);
+			scratch.put(TYPE_NUMBER);
+			scratch.putLong((Long) value);
+		}
+		else if (value instanceof Boolean)
+		{
+			ensureScratch(2);
+			scratch.put(TYPE_BOOLEAN);
+			scratch.put((byte) ((Boolean) value ? 1 : 0));
+		}
+		else if (value instanceof List)
+		{
+			List<?> elements = (List<?>) value;
+			ensureScratch(5);
+			scratch.put(TYPE_ARRAY);
+			scratch.putInt(elements.size());
+			for (Object element : elements)
+			{
+				if (!(element instanceof String))
+				{
+					throw new IllegalArgumentException(
+							"Array values can only contain strings: " + element);
+				}
+				putString((String) element);
+			}
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unsupported value type "
+					+ value.getClass().getName());
+		}
+	}
+
+	private void putString(String value)
+	{
+		byte [] bytes = value.getBytes(StandardCharsets.UTF_8);
+		ensureScratch(4 + bytes.length);
+		scratch.putInt(bytes.length);
+		scratch.put(bytes);
+	}
+
+	private static String getString(ByteBuffer chunk, int position)
+	{
+		byte [] bytes = new byte [chunk.getInt(position)];
+		position += 4;
+		for (int i = 0; i < bytes.length; i++)
+		{
+			bytes[i] = chunk.get(position + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static boolean matchesEncoded(ByteBuffer chunk, int keyStart,
+			int keyLength, String key)
+	{
+		byte [] bytes = key.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length != keyLength)
+		{
+			return false;
+		}
+		for (int i = 0; i < bytes.length; i++)
+		{
+			if (chunk.get(keyStart + i) != bytes[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void ensureScratch(int size)
+	{
+		if (scratch.remaining() < size)
+		{
+			ByteBuffer larger = ByteBuffer.allocate(
+					Math.max(scratch.capacity() * 2, scratch.position() + size))
+					.order(ByteOrder.nativeOrder());
+			scratch.flip();
+			larger.put(scratch);
+			scratch = larger;
+		}
+	}
+
+	/**
+	 * Returns a chunk with enough space for the record, starting a new one if
+	 * the current chunk is full
+	 */
+	private ByteBuffer chunkFor(int length)
+	{
+		ByteBuffer current = chunkCount == 0 ? null : chunks[chunkCount - 1];
+		if (current == null || current.remaining() < length)
+		{
+			if (chunkCount == MAX_CHUNKS)
+			{
+				throw new IllegalStateException("The off-heap store is full");
+			}
+			if (chunkCount == chunks.length)
+			{
+				chunks = Arrays.copyOf(chunks, chunkCount * 2);
+			}
+			current = memory.allocate(Math.max(nextChunkSize, length));
+			chunks[chunkCount++] = current;
+			nextChunkSize = Math.min(nextChunkSize * 2, MAX_CHUNK_SIZE);
+		}
+		return current;
+	}
+
+	private ByteBuffer chunk(long address)
+	{
+		return chunks[(int) (address >>> 32) - 1];
+	}
+
+	private static int offset(long address)
+	{
+		return (int) address;
+	}
+
+}
@@ -0,0 +1,20 @@
+package me.sdimopoulos.config.subscription;
+
+import java.util.List;
+
+import me.sdimopoulos.config.ConfigDiff;
+
+/**
+ * Receives the changes of the settings it subscribed to
+ */
+@FunctionalInterface
+public interface ConfigChangeListener {
+
+	/**
+	 * Called once per update with all the subscribed settings that changed
+	 *
+	 * @param changes The changes, in the order of the {@link ConfigDiff}
+	 */
+	void onChange(List<ConfigDiff.Change> changes);
+
+}
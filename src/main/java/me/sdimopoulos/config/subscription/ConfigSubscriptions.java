@@ -0,0 +1,205 @@
+package me.sdimopoulos.config.subscription;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.sdimopoulos.config.Config;
+import me.sdimopoulos.config.ConfigDiff;
+
+/**
+ * Notifies listeners of the changes of the settings they care about
+ *
+ * Components subscribe to single settings and the current configuration is
+ * replaced on reload:
+ *
+ *   ConfigSubscriptions subscriptions = new ConfigSubscriptions(config, executor);
+ *   subscriptions.onChange("core", "max_bytes_per_request",
+ *       changes -> resize((Long) changes.get(0).getNewValue()));
+ *   ...
+ *   subscriptions.update(configLoader.loadConfig(path, overrides));
+ *
+ * The subscriptions are indexed by section and setting name. An update
+ * computes a {@link ConfigDiff} and looks up only the changed settings in the
+ * index, so its cost depends on the number of changes and not on the number
+ * of subscriptions, and subscriptions to settings that did not change cost
+ * nothing. The changes of an update are grouped per listener, so a listener
+ * of several settings is called once, and all the listeners of an update are
+ * called in one task on the executor. A listener that throws does not stop
+ * the others; the exception goes to the uncaught exception handler of the
+ * thread.
+ */
+public class ConfigSubscriptions {
+
+	private final Executor executor;
+	private final ConcurrentMap<String,ConcurrentMap<String,List<Subscription>>> index =
+			new ConcurrentHashMap<>();
+	private final AtomicInteger subscriptionCount = new AtomicInteger();
+	private volatile Config config;
+
+	/**
+	 * Constructor, the listeners are called by the thread of the update
+	 *
+	 * @param config The current configuration
+	 */
+	public ConfigSubscriptions(Config config)
+	{
+		this(config, Runnable::run);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param config The current configuration
+	 * @param executor The executor that calls the listeners
+	 */
+	public ConfigSubscriptions(Config config, Executor executor)
+	{
+		this.config = config != null ? config : new Config();
+		this.executor = executor;
+	}
+
+	/**
+	 * Subscribes to the changes of a setting
+	 *
+	 * @param group The section name
+	 * @param key The setting name
+	 * @param listener The listener to notify when the setting is added,
+	 * removed or changed
+	 * @return The subscription, to cancel it
+	 */
+	public Subscription onChange(String group, String key, ConfigChangeListener listener)
+	{
+		Subscription subscription = new Subscription(this, group, key, listener);
+		index.computeIfAbsent(group, name -> new ConcurrentHashMap<>())
+			.compute(key, (name, list) -> {
+				List<Subscription> subscriptions = list != null ? list
+						: new CopyOnWriteArrayList<>();
+				subscriptions.add(subscription);
+				return subscriptions;
+			});
+		subscriptionCount.incrementAndGet();
+		return subscription;
+	}
+
+	/**
+	 * Removes a subscription from the index
+	 *
+	 * @param subscription The subscription to remove
+	 */
+	void remove(Subscription subscription)
+	{
+		ConcurrentMap<String,List<Subscription>> keys = index.get(subscription.getGroup());
+		if (keys == null)
+		{
+			return;
+		}
+		keys.computeIfPresent(subscription.getKey(), (name, list) -> {
+			if (list.remove(subscription))
+			{
+				subscriptionCount.decrementAndGet();
+			}
+			return list.isEmpty() ? null : list;
+		});
+	}
+
+	/**
+	 * Replaces the current configuration and notifies the listeners
+	 *
+	 * @param newConfig The new version of the configuration
+	 * @return The differences with the previous version
+	 */
+	public synchronized ConfigDiff update(Config newConfig)
+	{
+		ConfigDiff diff = ConfigDiff.between(config, newConfig);
+		config = newConfig;
+		publish(diff);
+		return diff;
+	}
+
+	/**
+	 * Notifies the listeners of the changed settings
+	 *
+	 * Used when the differences are already known, for example when the
+	 * configuration is replaced elsewhere.
+	 *
+	 * @param diff The changes
+	 */
+	public void publish(ConfigDiff diff)
+	{
+		Map<ConfigChangeListener,List<ConfigDiff.Change>> batches = new IdentityHashMap<>();
+		List<ConfigChangeListener> listeners = new ArrayList<>();
+		String lastGroup = null;
+		ConcurrentMap<String,List<Subscription>> keys = null;
+		for (ConfigDiff.Change change : diff.getChanges())
+		{
+			if (!change.getGroup().equals(lastGroup))
+			{
+				lastGroup = change.getGroup();
+				keys = index.get(lastGroup);
+			}
+			List<Subscription> subscriptions = keys == null ? null : keys.get(change.getKey());
+			if (subscriptions == null)
+			{
+				continue;
+			}
+			for (Subscription subscription : subscriptions)
+			{
+				List<ConfigDiff.Change> batch = batches.get(subscription.getListener());
+				if (batch == null)
+				{
+					batch = new ArrayList<>();
+					batches.put(subscription.getListener(), batch);
+					listeners.add(subscription.getListener());
+				}
+				if (batch.isEmpty() || batch.get(batch.size() - 1) != change)
+				{
+					batch.add(change);
+				}
+			}
+		}
+		if (!listeners.isEmpty())
+		{
+			executor.execute(() -> deliver(listeners, batches));
+		}
+	}
+
+	private static void deliver(List<ConfigChangeListener> listeners,
+			Map<ConfigChangeListener,List<ConfigDiff.Change>> batches)
+	{
+		for (ConfigChangeListener listener : listeners)
+		{
+			try {
+				listener.onChange(Collections.unmodifiableList(batches.get(listener)));
+			}
+			catch(RuntimeException e)
+			{
+				Thread thread = Thread.currentThread();
+				thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+			}
+		}
+	}
+
+	/* Getters and Setters begin here */
+
+	/**
+	 * Returns the configuration of the last update
+	 *
+	 * @return The current configuration
+	 */
+	public Config getConfig() {
+		return config;
+	}
+
+	public int getSubscriptionCount() {
+		return subscriptionCount.get();
+	}
+
+}
@@ -0,0 +1,59 @@
+package me.sdimopoulos.config.subscription;
+
+/**
+ * A listener registered for the changes of one setting
+ */
+public final class Subscription implements AutoCloseable {
+
+	private final ConfigSubscriptions owner;
+	private final String group;
+	private final String key;
+	private final ConfigChangeListener listener;
+
+	/**
+	 * Constructor
+	 *
+	 * @param owner The registry of the subscription
+	 * @param group The section name
+	 * @param key The setting name
+	 * @param listener The notified listener
+	 */
+	Subscription(ConfigSubscriptions owner, String group, String key,
+			ConfigChangeListener listener)
+	{
+		this.owner = owner;
+		this.group = group;
+		this.key = key;
+		this.listener = listener;
+	}
+
+	/**
+	 * Stops the notifications, a batch already handed to the executor may
+	 * still be delivered
+	 */
+	public void cancel()
+	{
+		owner.remove(this);
+	}
+
+	@Override
+	public void close()
+	{
+		cancel();
+	}
+
+	/* Getters and Setters begin here */
+
+	public String getGroup() {
+		return group;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public ConfigChangeListener getListener() {
+		return listener;
+	}
+
+}
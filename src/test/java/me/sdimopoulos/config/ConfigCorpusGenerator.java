@@ -0,0 +1,426 @@
+package me.sdimopoulos.config;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates synthetic configuration files for performance and scale tests
+ *
+ * The output is a function of the seed and the shape only, so the same
+ * settings produce byte for byte the same file on every run. The lines are
+ * written as bytes straight into a large buffer, without formatting Strings,
+ * so files of several GB can be generated in seconds.
+ *
+ * The shape is set with the setters:
+ * 1. the number of sections and of settings per section
+ * 2. the override density, the fraction of settings followed by an override
+ * 3. the comment ratio, the fraction of lines that are comments
+ * 4. the value type mix, relative weights of strings, numbers, paths,
+ * booleans and arrays
+ * 5. the line length, as ranges of the name and value lengths
+ * 6. fixed settings written in every section, so that queries can hit them
+ *
+ * Section names are "section" followed by the section number written in
+ * letters (sectionaa, sectionab, ...), so they are unique and predictable.
+ * Every generated line is accepted by all the parsers of the loader.
+ */
+public class ConfigCorpusGenerator {
+
+	/**
+	 * The types of the generated values
+	 */
+	public enum ValueType {STRING, NUMBER, PATH, BOOLEAN, ARRAY}
+
+	private static final int BUFFER_SIZE = 1 << 20;
+	private static final long [] POWERS_OF_TEN = new long [19];
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++)
+		{
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+	private static final byte [][] BOOLEANS = {
+			bytes("yes"), bytes("no"), bytes("true"), bytes("false")};
+
+	private final long seed;
+	private int numOfSections = 100;
+	private int numOfSettingsPerSection = 2000;
+	private double overrideDensity = 0.2;
+	private double commentRatio = 0.1;
+	private int [] valueTypeWeights = {3, 2, 1, 3, 1};
+	private int minNameLength = 6;
+	private int maxNameLength = 16;
+	private int minValueLength = 4;
+	private int maxValueLength = 24;
+	private List<String> overrides = Arrays.asList("test", "staging", "production");
+	private final List<String> fixedKeys = new ArrayList<>();
+	private final List<ValueType> fixedTypes = new ArrayList<>();
+
+	private SplittableRandom random;
+	private byte [] buffer;
+	private int position;
+	private long written;
+	private OutputTarget target;
+
+	/**
+	 * Constructor
+	 *
+	 * @param seed The seed of the random generator
+	 */
+	public ConfigCorpusGenerator(long seed)
+	{
+		this.seed = seed;
+	}
+
+	/**
+	 * Generates the configuration into a file, replacing it if it exists
+	 *
+	 * @param file The path of the file
+	 * @return The number of bytes written
+	 * @throws IOException if writing fails
+	 */
+	public long generate(Path file) throws IOException
+	{
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			return generate((bytes, length) -> {
+				ByteBuffer wrapped = ByteBuffer.wrap(bytes, 0, length);
+				while (wrapped.hasRemaining())
+				{
+					channel.write(wrapped);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Generates the configuration into a stream, which is not closed
+	 *
+	 * @param stream The stream to write to
+	 * @return The number of bytes written
+	 * @throws IOException if writing fails
+	 */
+	public long generate(OutputStream stream) throws IOException
+	{
+		return generate((bytes, length) -> stream.write(bytes, 0, length));
+	}
+
+	private long generate(OutputTarget target) throws IOException
+	{
+		this.random = new SplittableRandom(seed);
+		this.buffer = new byte [BUFFER_SIZE];
+		this.position = 0;
+		this.written = 0;
+		this.target = target;
+		int totalWeight = 0;
+		for (int weight : valueTypeWeights)
+		{
+			totalWeight += weight;
+		}
+		byte [][] overrideNames = new byte [overrides.size()][];
+		for (int i = 0; i < overrideNames.length; i++)
+		{
+			overrideNames[i] = bytes(overrides.get(i));
+		}
+		byte [][] fixedNames = new byte [fixedKeys.size()][];
+		for (int i = 0; i < fixedNames.length; i++)
+		{
+			fixedNames[i] = bytes(fixedKeys.get(i));
+		}
+		int nameWidth = 2;
+		for (long names = 26 * 26; names < numOfSections; names *= 26)
+		{
+			nameWidth++;
+		}
+		for (int i = 0; i < numOfSections; i++)
+		{
+			writeSection(i, nameWidth);
+			for (int j = 0; j < fixedNames.length; j++)
+			{
+				writeSetting(fixedNames[j], null, fixedTypes.get(j));
+			}
+			for (int j = 0; j < numOfSettingsPerSection; j++)
+			{
+				while (random.nextDouble() < commentRatio)
+				{
+					writeComment();
+				}
+				byte [] name = randomName();
+				writeSetting(name, null, randomType(totalWeight));
+				if (random.nextDouble() < overrideDensity)
+				{
+					byte [] override = overrideNames[random.nextInt(overrideNames.length)];
+					writeSetting(name, override, randomType(totalWeight));
+				}
+			}
+		}
+		flush();
+		return written;
+	}
+
+	private void writeSection(int number, int width)
+	{
+		ensure(16 + width);
+		put((byte) '[');
+		put(bytes("section"));
+		position += width;
+		for (int k = 1; k <= width; k++)
+		{
+			buffer[position - k] = (byte) ('a' + number % 26);
+			number /= 26;
+		}
+		put((byte) ']');
+		put((byte) '\n');
+	}
+
+	private void writeComment()
+	{
+		int length = randomBetween(minValueLength, maxValueLength * 2);
+		ensure(length + 8);
+		if (random.nextBoolean())
+		{
+			put((byte) ' ');
+			put((byte) ' ');
+		}
+		put((byte) ';');
+		for (int i = 0; i < length; i++)
+		{
+			put(i % 7 == 6 ? (byte) ' ' : randomLetter());
+		}
+		put((byte) '\n');
+	}
+
+	private void writeSetting(byte [] name, byte [] override, ValueType type)
+	{
+		int valueLength = randomBetween(minValueLength, maxValueLength);
+		ensure(name.length + (override == null ? 0 : override.length + 2)
+				+ valueLength * 2 + 32);
+		put(name);
+		if (override != null)
+		{
+			put((byte) '<');
+			put(override);
+			put((byte) '>');
+		}
+		put((byte) ' ');
+		put((byte) '=');
+		put((byte) ' ');
+		switch(type)
+		{
+		case STRING:
+			put((byte) '"');
+			for (int i = 0; i < valueLength; i++)
+			{
+				put(i % 6 == 5 ? (byte) ' ' : randomLetter());
+			}
+			put((byte) '"');
+			break;
+		case NUMBER:
+			putNumber(random.nextLong(1, POWERS_OF_TEN[Math.min(valueLength, 18)]));
+			break;
+		case PATH:
+			for (int i = 0; i < valueLength; i++)
+			{
+				put(i % 8 == 0 ? (byte) '/' : randomLetter());
+			}
+			break;
+		case BOOLEAN:
+			put(BOOLEANS[random.nextInt(BOOLEANS.length)]);
+			break;
+		case ARRAY:
+			for (int i = 0; i < valueLength; i++)
+			{
+				put(i % 5 == 4 && i < valueLength - 1 ? (byte) ',' : randomLetter());
+			}
+			if (valueLength < 6)
+			{
+				put((byte) ',');
+				put(randomLetter());
+			}
+			break;
+		default:
+			break;
+		}
+		put((byte) '\n');
+	}
+
+	private byte [] randomName()
+	{
+		byte [] name = new byte [randomBetween(minNameLength, maxNameLength)];
+		for (int i = 0; i < name.length; i++)
+		{
+			name[i] = i > 0 && i % 5 == 0 ? (byte) '_' : randomLetter();
+		}
+		return name;
+	}
+
+	private ValueType randomType(int totalWeight)
+	{
+		int pick = random.nextInt(totalWeight);
+		int i = 0;
+		while (pick >= valueTypeWeights[i])
+		{
+			pick -= valueTypeWeights[i++];
+		}
+		return ValueType.values()[i];
+	}
+
+	private byte randomLetter()
+	{
+		return (byte) ('a' + random.nextInt(26));
+	}
+
+	private int randomBetween(int min, int max)
+	{
+		return min >= max ? min : random.nextInt(min, max + 1);
+	}
+
+	private void putNumber(long value)
+	{
+		int start = position;
+		do {
+			buffer[position++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value > 0);
+		for (int i = start, j = position - 1; i < j; i++, j--)
+		{
+			byte swap = buffer[i];
+			buffer[i] = buffer[j];
+			buffer[j] = swap;
+		}
+	}
+
+	private void put(byte value)
+	{
+		buffer[position++] = value;
+	}
+
+	private void put(byte [] values)
+	{
+		System.arraycopy(values, 0, buffer, position, values.length);
+		position += values.length;
+	}
+
+	/**
+	 * Makes room for a line, writing out the buffer if needed
+	 */
+	private void ensure(int length)
+	{
+		if (position + length > buffer.length)
+		{
+			try {
+				flush();
+			}
+			catch(IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+			if (length > buffer.length)
+			{
+				buffer = new byte [length];
+			}
+		}
+	}
+
+	private void flush() throws IOException
+	{
+		target.write(buffer, position);
+		written += position;
+		position = 0;
+	}
+
+	private static byte [] bytes(String value)
+	{
+		return value.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Where the generated bytes go
+	 */
+	private interface OutputTarget {
+		void write(byte [] bytes, int length) throws IOException;
+	}
+
+	/* Setters begin here */
+
+	public ConfigCorpusGenerator setNumOfSections(int numOfSections) {
+		this.numOfSections = numOfSections;
+		return this;
+	}
+
+	public ConfigCorpusGenerator setNumOfSettingsPerSection(int numOfSettingsPerSection) {
+		this.numOfSettingsPerSection = numOfSettingsPerSection;
+		return this;
+	}
+
+	public ConfigCorpusGenerator setOverrideDensity(double overrideDensity) {
+		this.overrideDensity = overrideDensity;
+		return this;
+	}
+
+	/**
+	 * Sets the fraction of comment lines, must be less than 1
+	 */
+	public ConfigCorpusGenerator setCommentRatio(double commentRatio) {
+		this.commentRatio = commentRatio;
+		return this;
+	}
+
+	/**
+	 * Sets the relative weights of the value types
+	 *
+	 * @param string The weight of quoted strings
+	 * @param number The weight of numbers
+	 * @param path The weight of paths
+	 * @param bool The weight of booleans
+	 * @param array The weight of arrays
+	 * @return This generator
+	 */
+	public ConfigCorpusGenerator setValueTypeWeights(int string, int number,
+			int path, int bool, int array) {
+		this.valueTypeWeights = new int [] {string, number, path, bool, array};
+		return this;
+	}
+
+	public ConfigCorpusGenerator setNameLength(int min, int max) {
+		this.minNameLength = Math.max(1, min);
+		this.maxNameLength = Math.max(this.minNameLength, max);
+		return this;
+	}
+
+	public ConfigCorpusGenerator setValueLength(int min, int max) {
+		this.minValueLength = Math.max(1, min);
+		this.maxValueLength = Math.max(this.minValueLength, max);
+		return this;
+	}
+
+	public ConfigCorpusGenerator setOverrides(List<String> overrides) {
+		this.overrides = overrides;
+		return this;
+	}
+
+	/**
+	 * Adds a setting with a random value of the given type to every section
+	 *
+	 * @param key The setting name, letters and underscores only
+	 * @param type The type of the value
+	 * @return This generator
+	 */
+	public ConfigCorpusGenerator addFixedSetting(String key, ValueType type) {
+		this.fixedKeys.add(key);
+		this.fixedTypes.add(type);
+		return this;
+	}
+
+}
@@ -0,0 +1,100 @@
+package me.sdimopoulos.config;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import me.sdimopoulos.config.ConfigCorpusGenerator.ValueType;
+
+/**
+ * Unit testing of the synthetic configuration generator
+ *
+ * The generated files must be reproducible and accepted by all the loaders.
+ */
+public class ConfigCorpusGeneratorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ConfigCorpusGenerator generator(long seed)
+	{
+		return new ConfigCorpusGenerator(seed)
+				.setNumOfSections(700)
+				.setNumOfSettingsPerSection(20)
+				.setOverrideDensity(0.3)
+				.setCommentRatio(0.2)
+				.setValueLength(1, 30)
+				.setNameLength(1, 20)
+				.addFixedSetting("max_files", ValueType.NUMBER);
+	}
+
+	@Test
+	public void testSameSeedSameOutput() throws Exception
+	{
+		ByteArrayOutputStream first = new ByteArrayOutputStream();
+		ByteArrayOutputStream second = new ByteArrayOutputStream();
+		ByteArrayOutputStream other = new ByteArrayOutputStream();
+		long written = generator(7).generate(first);
+		generator(7).generate(second);
+		generator(8).generate(other);
+		Assert.assertEquals(written, first.size());
+		Assert.assertArrayEquals(first.toByteArray(), second.toByteArray());
+		Assert.assertFalse(Arrays.equals(first.toByteArray(), other.toByteArray()));
+	}
+
+	@Test
+	public void testAcceptedByAllLoaders() throws Exception
+	{
+		Path file = folder.getRoot().toPath().resolve("generated.conf");
+		generator(11).generate(file);
+		List<String> overrides = Arrays.asList("test", "staging");
+		ConfigLoader configLoader = new ConfigLoader();
+		Config config = configLoader.loadConfig(file.toString(), overrides);
+		Assert.assertEquals(700, config.size());
+		Assert.assertTrue(config.containsKey("sectionaaa"));
+		Assert.assertTrue(config.get("sectionbax").get("max_files") instanceof Long);
+		Assert.assertEquals(config, configLoader.loadConfigRegEx(file.toString(), overrides));
+		Assert.assertEquals(config, configLoader.loadConfigRegExDFA(file.toString(), overrides));
+	}
+
+	@Test
+	public void testLoadSpecSameAsFiltering() throws Exception
+	{
+		Path file = folder.getRoot().toPath().resolve("generated.conf");
+		generator(13).generate(file);
+		List<String> overrides = Arrays.asList("test", "staging");
+		ConfigLoader configLoader = new ConfigLoader();
+		Config config = configLoader.loadConfig(file.toString(), overrides);
+		List<String> keys = new ArrayList<>(config.get("sectionabc").keySet()).subList(0, 5);
+		LoadSpec spec = new LoadSpec()
+				.addGroup("sectionaaa")
+				.addGroup("sectionzzz")
+				.addGroup("sectionabc", keys.toArray(new String [0]))
+				.addGroup("sectionabc", "max_files");
+		Config projected = configLoader.loadConfig(file.toString(), overrides, spec);
+		Assert.assertEquals(new HashSet<>(Arrays.asList("sectionaaa", "sectionabc")),
+				projected.keySet());
+		Assert.assertEquals(config.get("sectionaaa"), projected.get("sectionaaa"));
+		Map<String,Object> expected = new HashMap<>();
+		for (Map.Entry<String,Object> setting : config.get("sectionabc").entrySet())
+		{
+			if (spec.includesKey("sectionabc", setting.getKey()))
+			{
+				expected.put(setting.getKey(), setting.getValue());
+			}
+		}
+		Assert.assertEquals(6, expected.size());
+		Assert.assertEquals(expected, projected.get("sectionabc"));
+	}
+
+}
@@ -0,0 +1,145 @@
+package me.sdimopoulos.config;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit testing of the differences between two versions of a configuration
+ *
+ * The sample configuration is loaded twice and one copy is changed.
+ */
+public class ConfigDiffTest {
+
+	Config oldConfig;
+	Config newConfig;
+
+	@Before
+	public void loadConfiguration()
+	{
+		List<String> overrides = Arrays.asList(new String[] {"production", "containers"});
+		ConfigLoader configLoader = new ConfigLoader();
+		oldConfig = configLoader.loadConfig("src/test/resources/server.conf", overrides);
+		newConfig = configLoader.loadConfig("src/test/resources/server.conf", overrides);
+	}
+
+	@Test
+	public void testSameContentIsEmpty()
+	{
+		Assert.assertTrue(ConfigDiff.between(oldConfig, newConfig).isEmpty());
+		Assert.assertTrue(ConfigDiff.between(oldConfig, oldConfig).isEmpty());
+		Assert.assertEquals(((ConfigGroup) oldConfig.get("core")).getContentHash(),
+				((ConfigGroup) newConfig.get("core")).getContentHash());
+	}
+
+	@Test
+	public void testViewsAreCached()
+	{
+		ConfigGroup core = (ConfigGroup) newConfig.get("core");
+		Assert.assertSame(core.entrySet(), core.entrySet());
+		Assert.assertSame(core.keySet(), core.keySet());
+		Assert.assertSame(core.values(), core.values());
+		ConfigGroup copy = (ConfigGroup) core.clone();
+		copy.keySet().remove("max_bytes_per_request");
+		Assert.assertTrue(core.containsKey("max_bytes_per_request"));
+		Assert.assertFalse(copy.containsKey("max_bytes_per_request"));
+		Assert.assertEquals(core.size() - 1, copy.keySet().size());
+		Assert.assertNotEquals(core.getContentHash(), copy.getContentHash());
+		copy.put("max_bytes_per_request", core.get("max_bytes_per_request"));
+		Assert.assertEquals(core.getContentHash(), copy.getContentHash());
+	}
+
+	@Test
+	public void testAddedRemovedAndChanged()
+	{
+		newConfig.get("core").put("max_bytes_per_request", 1l);
+		newConfig.get("core").put("new_setting", "value");
+		newConfig.get("rest").remove("description");
+		newConfig.remove("websockets");
+		ConfigGroup extra = new ConfigGroup();
+		extra.put("enabled", true);
+		newConfig.put("extra", extra);
+		ConfigDiff diff = ConfigDiff.between(oldConfig, newConfig);
+		Assert.assertTrue(diff.isChanged("core", "max_bytes_per_request"));
+		Assert.assertTrue(diff.isChanged("core", "new_setting"));
+		Assert.assertTrue(diff.isChanged("rest", "description"));
+		Assert.assertTrue(diff.isChanged("extra", "enabled"));
+		Assert.assertTrue(diff.isChanged("websockets", "enabled"));
+		Assert.assertFalse(diff.isChanged("core", "config_path"));
+		Assert.assertEquals(1, diff.getChanges(ConfigDiff.Type.CHANGED).size());
+		ConfigDiff.Change change = diff.getChanges(ConfigDiff.Type.CHANGED).get(0);
+		Assert.assertEquals(52346850l, change.getOldValue());
+		Assert.assertEquals(1l, change.getNewValue());
+		Assert.assertEquals(2, diff.getChanges(ConfigDiff.Type.ADDED).size());
+		Assert.assertEquals(1 + oldConfig.get("websockets").size(),
+				diff.getChanges(ConfigDiff.Type.REMOVED).size());
+		Assert.assertFalse(diff.getChangedGroups().contains("ftp"));
+	}
+
+	@Test
+	public void testRevertedChangeRestoresHash()
+	{
+		ConfigGroup core = (ConfigGroup) newConfig.get("core");
+		long hash = core.getContentHash();
+		Object value = core.put("max_bytes_per_request", 1l);
+		Assert.assertNotEquals(hash, core.getContentHash());
+		core.put("max_bytes_per_request", value);
+		Assert.assertEquals(hash, core.getContentHash());
+		core.remove("config_path");
+		core.merge("config_path", "/var/lib/docker/config", (a, b) -> b);
+		Assert.assertEquals(hash, core.getContentHash());
+		Assert.assertTrue(ConfigDiff.between(oldConfig, newConfig).isEmpty());
+	}
+
+	@Test
+	public void testCollidingStringHashesDiffer()
+	{
+		ConfigGroup first = new ConfigGroup();
+		ConfigGroup second = new ConfigGroup();
+		first.put("key", "Aa");
+		second.put("key", "BB");
+		Assert.assertEquals("Aa".hashCode(), "BB".hashCode());
+		Assert.assertNotEquals(first.getContentHash(), second.getContentHash());
+		oldConfig.put("colliding", first);
+		newConfig.put("colliding", second);
+		Assert.assertTrue(ConfigDiff.between(oldConfig, newConfig).isChanged("colliding", "key"));
+	}
+
+	@Test
+	public void testChangesThroughViews()
+	{
+		for (Map.Entry<String,Object> entry : newConfig.get("core").entrySet())
+		{
+			if (entry.getKey().equals("max_bytes_per_request"))
+			{
+				entry.setValue(2l);
+			}
+		}
+		ConfigDiff diff = ConfigDiff.between(oldConfig, newConfig);
+		Assert.assertEquals(1, diff.getChanges().size());
+		Assert.assertTrue(diff.isChanged("core", "max_bytes_per_request"));
+
+		newConfig.get("rest").keySet().remove("description");
+		Iterator<String> keys = newConfig.get("websockets").keySet().iterator();
+		keys.next();
+		keys.remove();
+		newConfig.get("core").values().removeIf(value -> value.equals(2l));
+		diff = ConfigDiff.between(oldConfig, newConfig);
+		Assert.assertTrue(diff.isChanged("core", "max_bytes_per_request"));
+		Assert.assertTrue(diff.isChanged("rest", "description"));
+		Assert.assertEquals(3, diff.getChanges(ConfigDiff.Type.REMOVED).size());
+
+		newConfig.get("core").put("max_bytes_per_request", 52346850l);
+		newConfig.get("rest").put("description", "Rest request hadler");
+		newConfig.put("websockets", oldConfig.get("websockets"));
+		Assert.assertTrue(ConfigDiff.between(oldConfig, newConfig).isEmpty());
+		Assert.assertEquals(((ConfigGroup) oldConfig.get("core")).getContentHash(),
+				((ConfigGroup) newConfig.get("core")).getContentHash());
+	}
+
+}
@@ -0,0 +1,123 @@
+package me.sdimopoulos.config;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.sdimopoulos.config.Config;
+import me.sdimopoulos.config.ConfigLoader;
+import me.sdimopoulos.config.parser.FsmState;
+import me.sdimopoulos.config.parser.Parser;
+import me.sdimopoulos.config.parser.Parser.ParseType;
+import me.sdimopoulos.config.parser.Parser.ParseVariable;
+import me.sdimopoulos.config.parser.ParserBuilder;
+import me.sdimopoulos.config.parser.ParsingConfigurationException;
+import me.sdimopoulos.config.parser.ParsingContext;
+import me.sdimopoulos.config.parser.RegExBuilder;
+import me.sdimopoulos.config.parser.RegExCompiler;
+
+
+/**
+ * Basic unit testing of the ConfigLoader class using the RegEx patterns compiled into a DFSM
+ *
+ * The sample configuration file is given. Then
+ * all the example queries are tested.
+ *
+ */
+public class ConfigLoaderCompiledDFSMTest {
+
+	Config config;
+
+	@Before
+	public void readConfiguration()
+	{
+		List<String> overrides = Arrays.asList(new String[] {"deprecated", "production"});
+		ConfigLoader configLoader = new ConfigLoader();
+		config = configLoader.loadConfigRegExDFA("src/test/resources/server.conf", overrides);
+	}
+	@Test
+	public void testCompletedExecution() {
+		Assert.assertNotNull(config);
+	}
+
+	@Test
+	public void testSimpleLongParsing()
+	{
+		Assert.assertEquals(52346850l,
+				config.get("core").get("max_bytes_per_request"));
+	}
+
+	@Test
+	public void testSimpleStringParsing()
+	{
+		Assert.assertEquals("Websocket request hadler",
+				config.get("websockets").get("description"));
+	}
+
+	@Test
+	public void testUnknownKeyFetchAsEmpty()
+	{
+		Assert.assertEquals("",
+				config.get("websockets").get("unknown_key"));
+	}
+
+	@Test
+	public void testSimpleArrayParsing()
+	{
+		Assert.assertEquals(Arrays.asList("array", "containing", "arguments"),
+				config.get("rest").get("arguments"));
+	}
+
+	@Test public void testSimpleBooleanParsing()
+	{
+		Assert.assertEquals(false, config.get("websockets").get("enabled"));
+	}
+
+	@Test
+	public void testSimplePathParsing()
+	{
+		Assert.assertEquals("/opt/yourcompany/restAPI/v1", config.get("rest").get("config_path"));
+
+	}
+
+	@Test
+	public void testSameResultAsRegEx()
+	{
+		List<String> overrides = Arrays.asList(new String[] {"stage"});
+		ConfigLoader configLoader = new ConfigLoader();
+		Assert.assertEquals(configLoader.loadConfigRegEx("src/test/resources/server.conf", overrides),
+				configLoader.loadConfigRegExDFA("src/test/resources/server.conf", overrides));
+	}
+
+	@Test
+	public void testEmptyStringCapture() throws Exception
+	{
+		FsmState fsmState = new RegExBuilder().buildDFA();
+		Parser parser = new ParserBuilder().buildParserWithFSM(fsmState);
+		ParsingContext parsingCtx = new ParsingContext(new Config(), Arrays.asList());
+		parser.parseSingleLineAndUpdateContext("description = \"\" ; empty", parsingCtx);
+		Assert.assertEquals("description", parsingCtx.getParsedVariableValue("setting"));
+		Assert.assertEquals("", parsingCtx.getParsedVariableValue("value"));
+	}
+
+	@Test(expected = ParsingConfigurationException.class)
+	public void testRejectsUnparsableLine() throws Exception
+	{
+		FsmState fsmState = new RegExBuilder().buildDFA();
+		Parser parser = new ParserBuilder().buildParserWithFSM(fsmState);
+		ParsingContext parsingCtx = new ParsingContext(new Config(), Arrays.asList());
+		parser.parseSingleLineAndUpdateContext("[core = 1", parsingCtx);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsUndecidableCapture()
+	{
+		new RegExCompiler()
+			.addCapture("value", ParseVariable.VALUE, ParseType.STRING)
+			.compile("\"(?<value>.*)\"");
+	}
+
+}
@@ -1,7 +1,23 @@
 package me.sdimopoulos.config;
 
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -9,6 +25,12 @@ import org.junit.Test;
 
 import me.sdimopoulos.config.Config;
 import me.sdimopoulos.config.ConfigLoader;
+import me.sdimopoulos.config.parser.FsmBuilder;
+import me.sdimopoulos.config.parser.Parser;
+import me.sdimopoulos.config.parser.ParserBuilder;
+import me.sdimopoulos.config.parser.ParsingContext;
+import me.sdimopoulos.config.parser.ParsingConfigurationException;
+import me.sdimopoulos.config.parser.ParsingConfigurationException.Reason;
 
 
 /**
@@ -74,4 +96,424 @@ public class ConfigLoaderDFSMTest {
 
 	}
 
+	@Test
+	public void testNonAsciiValueInEachCharset() throws Exception
+	{
+		String content = "[cafe]\nname = \"Caf\u00e9 cr\u00e8me\"\n";
+		ConfigLoader configLoader = new ConfigLoader();
+		Path file = Files.createTempFile("charset", ".conf");
+		try {
+			Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+			Assert.assertEquals("Caf\u00e9 cr\u00e8me", configLoader
+					.loadConfig(file.toString(), Arrays.asList())
+					.get("cafe").get("name"));
+			Files.write(file, content.getBytes(StandardCharsets.ISO_8859_1));
+			Assert.assertEquals("Caf\u00e9 cr\u00e8me", configLoader
+					.setCharset(StandardCharsets.ISO_8859_1)
+					.loadConfig(file.toString(), Arrays.asList())
+					.get("cafe").get("name"));
+			Files.write(file, content.getBytes(StandardCharsets.UTF_16));
+			Assert.assertEquals("Caf\u00e9 cr\u00e8me", configLoader
+					.setCharset(StandardCharsets.UTF_16)
+					.loadConfig(file.toString(), Arrays.asList())
+					.get("cafe").get("name"));
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testLoadSpecGroups()
+	{
+		List<String> overrides = Arrays.asList(new String[] {"deprecated", "production"});
+		Config projected = new ConfigLoader().loadConfig("src/test/resources/server.conf",
+				overrides, new LoadSpec().addGroup("core").addGroup("rest"));
+		Assert.assertEquals(new HashSet<>(Arrays.asList("core", "rest")), projected.keySet());
+		Assert.assertEquals(config.get("core"), projected.get("core"));
+		Assert.assertEquals(config.get("rest"), projected.get("rest"));
+	}
+
+	@Test
+	public void testLoadSpecKeys()
+	{
+		List<String> overrides = Arrays.asList(new String[] {"deprecated", "production"});
+		Config projected = new ConfigLoader().loadConfig("src/test/resources/server.conf",
+				overrides, new LoadSpec().addGroup("rest", "config_path", "arguments"));
+		Assert.assertEquals(2, projected.get("rest").size());
+		Assert.assertEquals("/opt/yourcompany/restAPI/v1", projected.get("rest").get("config_path"));
+		Assert.assertEquals(config.get("rest").get("arguments"), projected.get("rest").get("arguments"));
+		Assert.assertEquals("", projected.get("rest").get("description"));
+	}
+
+	@Test
+	public void testLoadSpecSkipsWithoutParsing() throws Exception
+	{
+		String content = "[skipped]\nnot a setting at all !\n[core]\nwanted = 1\n"
+				+ "unwanted = this would fail !\n[core]\nwanted_too = yes\n\n[core]\nafter_empty = 2\n";
+		LoadSpec spec = new LoadSpec().addGroup("core", "wanted", "wanted_too", "after_empty");
+		Path file = Files.createTempFile("projection", ".conf");
+		try {
+			Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+			Config projected = new ConfigLoader().loadConfig(file.toString(), Arrays.asList(), spec);
+			Assert.assertEquals(1, projected.size());
+			Assert.assertEquals(1l, projected.get("core").get("wanted"));
+			Assert.assertEquals(true, projected.get("core").get("wanted_too"));
+			Assert.assertFalse(projected.get("core").containsKey("after_empty"));
+			Files.write(file, content.getBytes(StandardCharsets.UTF_16));
+			Assert.assertEquals(projected, new ConfigLoader().setCharset(StandardCharsets.UTF_16)
+					.loadConfig(file.toString(), Arrays.asList(), spec));
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testLoadSpecKeysWithNonAsciiNames() throws Exception
+	{
+		// the low byte of \u013d is '=', of \u0120 is ' ' and of \u013c is '<'
+		String content = "[core]\nwanted\u013dkey = 1\nwanted\u0120key = 2\n"
+				+ "wanted\u013ckey = 3\nwanted = 4\n";
+		LoadSpec spec = new LoadSpec().addGroup("core", "wanted\u013dkey",
+				"wanted\u0120key", "wanted\u013ckey");
+		Path file = Files.createTempFile("projection", ".conf");
+		try {
+			for (Charset charset : Arrays.asList(StandardCharsets.UTF_8, StandardCharsets.UTF_16))
+			{
+				Files.write(file, content.getBytes(charset));
+				Config projected = new ConfigLoader().setCharset(charset)
+						.loadConfig(file.toString(), Arrays.asList(), spec);
+				Assert.assertEquals(1l, projected.get("core").get("wanted\u013dkey"));
+				Assert.assertEquals(2l, projected.get("core").get("wanted\u0120key"));
+				Assert.assertEquals(3l, projected.get("core").get("wanted\u013ckey"));
+				Assert.assertFalse(projected.get("core").containsKey("wanted"));
+			}
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testGzipLoadingSameResult() throws Exception
+	{
+		List<String> overrides = Arrays.asList(new String[] {"deprecated", "production"});
+		Path file = Files.createTempFile("server", ".conf.gz");
+		try {
+			try(OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+				Files.copy(Paths.get("src/test/resources/server.conf"), out);
+			}
+			ConfigLoader configLoader = new ConfigLoader();
+			Assert.assertEquals(config, configLoader.loadConfig(file.toString(), overrides));
+			Assert.assertEquals(config, configLoader.loadConfigRegEx(file.toString(), overrides));
+			Assert.assertEquals(config.get("core"), configLoader.loadConfig(file.toString(),
+					overrides, new LoadSpec().addGroup("core")).get("core"));
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test(expected = ConfigLoadException.class)
+	public void testCorruptGzipFailsWithTypedException() throws Exception
+	{
+		Path file = Files.createTempFile("corrupt", ".conf.gz");
+		try {
+			byte [] compressed;
+			try(ByteArrayOutputStream bytes = new ByteArrayOutputStream()) {
+				try(OutputStream out = new GZIPOutputStream(bytes)) {
+					out.write(Files.readAllBytes(Paths.get("src/test/resources/server.conf")));
+				}
+				compressed = bytes.toByteArray();
+			}
+			Files.write(file, Arrays.copyOf(compressed, compressed.length / 2));
+			new ConfigLoader().loadConfig(file.toString(), Arrays.asList());
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testAsyncLoadingSameResult() throws Exception
+	{
+		List<String> overrides = Arrays.asList(new String[] {"deprecated", "production"});
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Assert.assertEquals(config, new ConfigLoader()
+					.loadConfigAsync("src/test/resources/server.conf", overrides, executor)
+					.get());
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testAsyncLoadingFailsWithTypedException() throws Exception
+	{
+		CompletableFuture<Config> future = new ConfigLoader()
+				.loadConfigAsync("src/test/resources/missing.conf", Arrays.asList(),
+						Runnable::run);
+		try {
+			future.get();
+			Assert.fail("Loading a missing file must fail");
+		}
+		catch(ExecutionException e)
+		{
+			Assert.assertTrue(e.getCause() instanceof ConfigLoadException);
+		}
+	}
+
+	@Test
+	public void testAsyncLoadingCancelledBeforeStart()
+	{
+		AtomicReference<Runnable> task = new AtomicReference<>();
+		CompletableFuture<Config> future = new ConfigLoader()
+				.loadConfigAsync("src/test/resources/server.conf", Arrays.asList(),
+						task::set);
+		Assert.assertTrue(future.cancel(true));
+		task.get().run();
+		Assert.assertTrue(future.isCancelled());
+	}
+
+	/**
+	 * A configuration that cancels its loading when its second section is
+	 * put, and remembers whether it was discarded
+	 */
+	static class CancellingConfig extends Config implements AutoCloseable {
+
+		private static final long serialVersionUID = 1L;
+
+		final AtomicReference<CompletableFuture<Config>> future;
+		boolean closed;
+
+		CancellingConfig(AtomicReference<CompletableFuture<Config>> future)
+		{
+			this.future = future;
+		}
+
+		@Override
+		public Map<String,Object> put(String group, Map<String,Object> settings)
+		{
+			Map<String,Object> previous = super.put(group, settings);
+			if (size() == 2)
+			{
+				future.get().cancel(true);
+			}
+			return previous;
+		}
+
+		@Override
+		public void close()
+		{
+			closed = true;
+		}
+	}
+
+	@Test
+	public void testAsyncLoadingCancelledWhileLoading() throws Exception
+	{
+		StringBuilder content = new StringBuilder();
+		for (int group = 0; group < 500; group++)
+		{
+			// the names cannot have digits
+			content.append("[group_").append((char) ('a' + group / 26 % 26))
+					.append((char) ('a' + group % 26)).append("]\n");
+			for (int setting = 0; setting < 9; setting++)
+			{
+				content.append("setting_").append((char) ('a' + setting))
+						.append(" = ").append(setting).append("\n");
+			}
+		}
+		Path file = Files.createTempFile("cancel", ".conf");
+		try {
+			Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+			AtomicReference<CompletableFuture<Config>> future = new AtomicReference<>();
+			AtomicReference<CancellingConfig> config = new AtomicReference<>();
+			AtomicReference<Runnable> task = new AtomicReference<>();
+			future.set(new ConfigLoader()
+					.setConfigSupplier(() -> {
+						config.set(new CancellingConfig(future));
+						return config.get();
+					})
+					.loadConfigAsync(file.toString(), Arrays.asList(), task::set));
+			task.get().run();
+			Assert.assertTrue(future.get().isCancelled());
+			Assert.assertTrue(config.get().closed);
+			// the loading stops at the first check after the cancellation
+			Assert.assertTrue(config.get().size() < 500);
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testBatchQuerySameAsGet()
+	{
+		String [] keys = {"description", "enabled", "unknown_key"};
+		Object [] values = config.getAll("websockets", keys, new Object [keys.length]);
+		for (int i = 0; i < keys.length; i++)
+		{
+			Assert.assertEquals(config.get("websockets").get(keys[i]), values[i]);
+		}
+		config.getAll("unknown_group", keys, values);
+		Assert.assertArrayEquals(new Object [keys.length], values);
+	}
+
+	@Test
+	public void testBatchQueryOfManySections()
+	{
+		String [] groups = {"core", "rest", "rest", "unknown_group"};
+		String [] keys = {"max_bytes_per_request", "arguments", "config_path", "enabled"};
+		Object [] values = config.getAll(groups, keys, new Object [keys.length]);
+		for (int i = 0; i < keys.length; i++)
+		{
+			Assert.assertEquals(config.get(groups[i]).get(keys[i]), values[i]);
+		}
+	}
+
+	/**
+	 * Writes the sample file with bad lines inserted after the given lines
+	 */
+	private Path writeWithBadLines(String... badLines) throws Exception
+	{
+		List<String> lines = new ArrayList<>(Files.readAllLines(
+				Paths.get("src/test/resources/server.conf")));
+		for (int i = 0; i < badLines.length; i++)
+		{
+			lines.add(3 + i * 4, badLines[i]);
+		}
+		Path file = Files.createTempFile("dirty", ".conf");
+		Files.write(file, lines);
+		return file;
+	}
+
+	@Test
+	public void testLenientLoadingSkipsBadLines() throws Exception
+	{
+		Path file = writeWithBadLines("   bad line", "flag = maybe", "count =");
+		try {
+			List<String> overrides = Arrays.asList(new String[] {"deprecated", "production"});
+			LoadDiagnostics diagnostics = new LoadDiagnostics();
+			Config lenient = new ConfigLoader().loadConfigLenient(file.toString(),
+					overrides, diagnostics);
+			Assert.assertEquals(config, lenient);
+			Assert.assertEquals(3, diagnostics.getErrorCount());
+			Assert.assertFalse(diagnostics.isTruncated());
+			Assert.assertEquals(4, diagnostics.getLine(0));
+			Assert.assertEquals(8, diagnostics.getColumn(0));
+			Assert.assertEquals(Reason.UNEXPECTED_CHARACTER, diagnostics.getReason(0));
+			Assert.assertEquals(8, diagnostics.getLine(1));
+			Assert.assertEquals(Reason.INVALID_BOOLEAN, diagnostics.getReason(1));
+			Assert.assertEquals(12, diagnostics.getLine(2));
+			Assert.assertEquals(8, diagnostics.getColumn(2));
+			Assert.assertEquals(Reason.INCOMPLETE_LINE, diagnostics.getReason(2));
+
+			LoadDiagnostics one = new LoadDiagnostics(1);
+			new ConfigLoader().loadConfigLenient(file.toString(), overrides, one);
+			Assert.assertEquals(1, one.size());
+			Assert.assertEquals(3, one.getErrorCount());
+			Assert.assertTrue(one.isTruncated());
+			new ConfigLoader().loadConfigLenient("src/test/resources/server.conf",
+					overrides, one);
+			Assert.assertTrue(one.isEmpty());
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testStrictLoadingFailsWithStackTrace() throws Exception
+	{
+		Path file = writeWithBadLines("   bad line");
+		try {
+			new ConfigLoader().loadConfig(file.toString(), Arrays.asList());
+			Assert.fail("Loaded a bad line");
+		}
+		catch(ConfigLoadException e)
+		{
+			ParsingConfigurationException cause = (ParsingConfigurationException) e.getCause();
+			Assert.assertEquals(Reason.UNEXPECTED_CHARACTER, cause.getReason());
+			Assert.assertEquals(5, cause.getColumn());
+			Assert.assertEquals("Found unparsable character [l]", cause.getMessage());
+			Assert.assertTrue(cause.getStackTrace().length > 0);
+		}
+		finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testInvalidNumberMessage()
+	{
+		try {
+			Parser.convertToLong("12x");
+			Assert.fail("Converted 12x");
+		}
+		catch(ParsingConfigurationException e)
+		{
+			Assert.assertEquals(Reason.INVALID_NUMBER, e.getReason());
+			Assert.assertEquals("Cannot convert 12x to integer: For input string: \"12x\"",
+					e.getMessage());
+		}
+	}
+
+	@Test
+	public void testLenientParserReusesStacklessException() throws Exception
+	{
+		Parser parser = new ParserBuilder().buildParserWithFSM(new FsmBuilder().buildFSM());
+		parser.setLenient(true);
+		ParsingContext parsingCtx = new ParsingContext(new Config(), Arrays.asList());
+		parsingCtx.setupParsedVariables(new String [] {"group","setting","override","value"});
+		List<ParsingConfigurationException> errors = new ArrayList<>();
+		for (String line : new String [] {"bad line", "flag = maybe", "count = 99999999999999999999"})
+		{
+			try {
+				parser.parseSingleLineAndUpdateContext(line, parsingCtx);
+				Assert.fail("Parsed " + line);
+			}
+			catch(ParsingConfigurationException e)
+			{
+				errors.add(e);
+				Assert.assertEquals(0, e.getStackTrace().length);
+				if (errors.size() == 1)
+				{
+					Assert.assertEquals(Reason.UNEXPECTED_CHARACTER, e.getReason());
+					Assert.assertEquals(5, e.getColumn());
+					Assert.assertEquals("Found unparsable input: UNEXPECTED_CHARACTER at column 5",
+							e.getMessage());
+				}
+				else
+				{
+					Assert.assertSame(errors.get(0), e);
+					Assert.assertEquals(errors.size() == 2 ? Reason.INVALID_BOOLEAN
+							: Reason.INVALID_NUMBER, e.getReason());
+				}
+			}
+			parsingCtx.resetParsedVariables();
+			parser.resetParser();
+		}
+		parser.parseSingleLineAndUpdateContext("count = 9223372036854775807", parsingCtx);
+		Assert.assertEquals(Long.MAX_VALUE, parsingCtx.getParsedVariableValue("value"));
+	}
+
+	@Test
+	public void testLongConversionWithoutException()
+	{
+		for (String value : new String [] {"0", "42", "-42", "+7", "9223372036854775807",
+				"-9223372036854775808", "0009"})
+		{
+			Assert.assertEquals(Long.valueOf(value), Parser.toLongOrNull(value));
+		}
+		for (String value : new String [] {"", "-", "+", "12x", "9223372036854775808",
+				"-9223372036854775809", "99999999999999999999", "1 2"})
+		{
+			Assert.assertNull(value, Parser.toLongOrNull(value));
+		}
+	}
+
 }
@@ -1,23 +1,46 @@
 package me.sdimopoulos.config;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.net.InetSocketAddress;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
-import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.github.javafaker.Faker;
 
 import me.sdimopoulos.config.Config;
 import me.sdimopoulos.config.ConfigLoader;
+import me.sdimopoulos.config.ConfigCorpusGenerator.ValueType;
+import me.sdimopoulos.config.cache.HotKeyCache;
+import me.sdimopoulos.config.index.ColumnarIndex;
+import me.sdimopoulos.config.index.ColumnarIndex.NumberColumn;
+import me.sdimopoulos.config.index.ValueIndex;
+import me.sdimopoulos.config.journal.JournaledConfig;
+import me.sdimopoulos.config.mapped.MappedConfig;
+import me.sdimopoulos.config.parser.FsmBuilder;
+import me.sdimopoulos.config.parser.Parser;
+import me.sdimopoulos.config.parser.Parser.FieldSink;
+import me.sdimopoulos.config.parser.Parser.ParseType;
+import me.sdimopoulos.config.parser.Parser.ParseVariable;
+import me.sdimopoulos.config.parser.ParserBuilder;
+import me.sdimopoulos.config.parser.ParsingContext;
+import me.sdimopoulos.config.replication.ReplicationFollower;
+import me.sdimopoulos.config.replication.ReplicationLeader;
+import me.sdimopoulos.config.subscription.ConfigSubscriptions;
 
 /**
  * Long test of loading with random inputs and multiple queries
@@ -25,72 +48,40 @@ import me.sdimopoulos.config.ConfigLoader;
  * This test mostly measures the performance of the loader and the querying.
  * 
  * Creates a settings file with a large number of input lines (default is 100
- * group settings sections with 200 * 12 lines each, totaling 240000 lines)
+ * group settings sections with about 2400 lines each, totaling 240000 lines)
+ * in a temporary folder, using the {@link ConfigCorpusGenerator} with a fixed
+ * seed so that every run loads the same input.
  * Then this file is given to the ConfigLoader to load it. Load average is 
  * reported on a number of iterations (default: 10).
  *
  */
 public class ConfigLoaderLongTest {
 
-	String settingsHugeFilename = "src/test/resources/huge.conf";
+	static long seed = 20181018L;
 	static int numOfSections = 100;
-	static int numOfSettingsPerSection = 200;
+	static int numOfSettingsPerSection = 1800;
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	String settingsHugeFilename;
 	Config config;
 	Faker faker = new Faker();
 	
 	@Before
 	public void prepareAndLoad() throws Exception {
-		
-		BufferedWriter writer = new BufferedWriter(new FileWriter(settingsHugeFilename));
-	   
-		for (int i = 0 ; i < numOfSections ; i++)
-		{
-			writer.write(String.format("[%s] ;= %s\n", 
-					faker.letterify("section??"),
-					faker.letterify("????????????")));
-			writer.write(String.format(";%s = \"%s\"\n", 
-					faker.letterify("????????????"),
-					faker.letterify("????????????")));
-			for(int j = 0; j < numOfSettingsPerSection ; j++)
-			{
-				writer.write(String.format("%s = \"%s\"\n", 
-						faker.letterify("????????????"),
-						faker.letterify("????????????")));
-				writer.write(String.format("%s = %s\n", 
-						faker.letterify("????????????"),
-						faker.numerify("############")));
-				writer.write(String.format("%s = %s\n", 
-						"query_meA",
-						faker.numerify("############")));
-				writer.write(String.format("%s = \"%s\"\n", 
-						"query_meB",
-						faker.letterify("????????????")));
-				writer.write(String.format("   ;%s\n", 
-						faker.letterify("??????????????????????")));
-				writer.write(String.format("%s = %s\n", 
-						faker.letterify("????????????"),
-						faker.letterify("/???????/?????/")));
-				writer.write(String.format("%s = %s\n", 
-						faker.letterify("????????????"),
-						faker.letterify("yes")));
-				writer.write(String.format("%s = %s\n", 
-						faker.letterify("????????????"),
-						faker.letterify("false")));
-				writer.write(String.format("%s = %s\n", 
-						faker.letterify("????????????"),
-						faker.letterify("false")));
-				writer.write(String.format("%s = %s\n", 
-						faker.letterify("????????????"),
-						faker.letterify("false")));
-				writer.write(String.format("%s = %s\n", 
-						faker.letterify("?????_???_????<test>"),
-						faker.letterify("?????,?????,????")));
-				writer.write(String.format("%s = %s\n", 
-						faker.letterify("????????????<staging>"),
-						faker.letterify("\"??????????????\"")));
-			}
-		}
-		writer.close();
+		Path settingsHugeFile = folder.getRoot().toPath().resolve("huge.conf");
+		new ConfigCorpusGenerator(seed)
+			.setNumOfSections(numOfSections)
+			.setNumOfSettingsPerSection(numOfSettingsPerSection)
+			.setOverrideDensity(2.0 / 9)
+			.setCommentRatio(1.0 / 12)
+			.setValueTypeWeights(2, 1, 1, 4, 1)
+			.setNameLength(10, 14)
+			.setValueLength(8, 14)
+			.setOverrides(Arrays.asList("test", "staging"))
+			.addFixedSetting("query_meA", ValueType.NUMBER)
+			.addFixedSetting("query_meB", ValueType.STRING)
+			.generate(settingsHugeFile);
+		settingsHugeFilename = settingsHugeFile.toString();
 	}
 
 	@Test
@@ -111,6 +102,162 @@ public class ConfigLoaderLongTest {
 				totalTime/10e6/iterations));
 	}
 	
+	@Test
+	public void testLoadingTimeExecutionLenient() throws Exception {
+		List<String> overrides = Arrays.asList(new String[] {"test", "staging"});
+		ConfigLoader configLoader = new ConfigLoader();
+		Path dirtyFile = folder.getRoot().toPath().resolve("dirty.conf");
+		List<String> lines = Files.readAllLines(folder.getRoot().toPath().resolve("huge.conf"));
+		List<String> dirtyLines = new ArrayList<>(lines.size() + lines.size() / 50);
+		for (int i = 0 ; i < lines.size() ; i++)
+		{
+			dirtyLines.add(lines.get(i));
+			if (i % 50 == 1 && !lines.get(i).isEmpty())
+			{
+				dirtyLines.add(i % 100 == 1 ? "bad line " + i : "flag_" + i + " = maybe");
+			}
+		}
+		Files.write(dirtyFile, dirtyLines);
+		LoadDiagnostics diagnostics = new LoadDiagnostics();
+		int iterations = 10;
+		long cleanTime = 0;
+		long dirtyTime = 0;
+		for (int i = 0 ; i < iterations ; i++)
+		{
+			long startTime = System.nanoTime();
+			config = configLoader.loadConfig(settingsHugeFilename, overrides);
+			cleanTime += System.nanoTime() - startTime;
+			startTime = System.nanoTime();
+			Config dirty = configLoader.loadConfigLenient(dirtyFile.toString(), overrides, diagnostics);
+			dirtyTime += System.nanoTime() - startTime;
+			Assert.assertEquals(config.get("sectionbb"), dirty.get("sectionbb"));
+		}
+		System.out.println(String.format("Lenient: Long test average loading time was %.6f millies with %d bad lines and %.6f millies for the clean file",
+				dirtyTime/10e6/iterations, diagnostics.getErrorCount(), cleanTime/10e6/iterations));
+	}
+
+	@Test
+	public void testBlockParsingTimeExecution() throws Exception {
+		Parser parser = new ParserBuilder().buildParserWithFSM(new FsmBuilder().buildFSM());
+		String text = new String(Files.readAllBytes(folder.getRoot().toPath().resolve("huge.conf")),
+				StandardCharsets.UTF_8);
+		String [] lines = text.split("\n");
+		ParsingContext parsingCtx = new ParsingContext(new Config(), Arrays.asList());
+		parsingCtx.setupParsedVariables(new String [] {"group","setting","override","value"});
+		long [] fields = new long [1];
+		FieldSink sink = new FieldSink() {
+			@Override
+			public void field(ParseVariable variable, ParseType type, int start, int end) {
+				fields[0]++;
+			}
+			@Override
+			public boolean endOfLine(int start, int end) {
+				return true;
+			}
+		};
+		int iterations = 10;
+		long lineTime = 0;
+		long blockTime = 0;
+		for (int i = 0 ; i < iterations ; i++)
+		{
+			long startTime = System.nanoTime();
+			for (String line : lines)
+			{
+				parser.parseSingleLineAndUpdateContext(line, parsingCtx);
+				parsingCtx.resetParsedVariables();
+				parser.resetParser();
+			}
+			lineTime += System.nanoTime() - startTime;
+			startTime = System.nanoTime();
+			Assert.assertEquals(text.length(), parser.parseBlock(text, 0, text.length(), sink));
+			blockTime += System.nanoTime() - startTime;
+		}
+		System.out.println(String.format("Block: Long test average parsing time was %.6f millies for %d fields and %.6f millies line by line",
+				blockTime/10e6/iterations, fields[0] / iterations, lineTime/10e6/iterations));
+	}
+
+	@Test
+	public void testLoadingTimeExecutionLoadSpec() {
+		List<String> overrides = Arrays.asList(new String[] {"test", "staging"});
+		ConfigLoader configLoader = new ConfigLoader();
+		LoadSpec spec = new LoadSpec()
+				.addGroup("sectionaa")
+				.addGroup("sectionbb")
+				.addGroup("sectioncc", "query_meA", "query_meB");
+		int iterations = 10;
+		long totalTime = 0;
+		for (int i = 0 ; i < iterations ; i++)
+		{
+			long startTime = System.nanoTime();
+			config = configLoader.loadConfig(settingsHugeFilename, overrides, spec);
+			long estimatedTime = System.nanoTime() - startTime;
+			Assert.assertEquals(3, config.size());
+			Assert.assertEquals(2, config.get("sectioncc").size());
+			totalTime += estimatedTime;
+		}
+		System.out.println(String.format("LoadSpec: Long test average loading time of 3 sections was %.6f millies",
+				totalTime/10e6/iterations));
+	}
+
+	@Test
+	public void testLoadingTimeExecutionGzip() throws Exception {
+		List<String> overrides = Arrays.asList(new String[] {"test", "staging"});
+		Path compressedFile = folder.getRoot().toPath().resolve("huge.conf.gz");
+		try(OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressedFile))) {
+			Files.copy(folder.getRoot().toPath().resolve("huge.conf"), out);
+		}
+		ConfigLoader configLoader = new ConfigLoader();
+		byte [] buffer = new byte [1 << 16];
+		int iterations = 10;
+		long inflateTime = 0;
+		long plainTime = 0;
+		long gzipTime = 0;
+		for (int i = 0 ; i < iterations ; i++)
+		{
+			long startTime = System.nanoTime();
+			try(InputStream in = new GZIPInputStream(Files.newInputStream(compressedFile), 1 << 16)) {
+				while (in.read(buffer) >= 0);
+			}
+			inflateTime += System.nanoTime() - startTime;
+			startTime = System.nanoTime();
+			Config plain = configLoader.loadConfig(settingsHugeFilename, overrides);
+			plainTime += System.nanoTime() - startTime;
+			startTime = System.nanoTime();
+			config = configLoader.loadConfig(compressedFile.toString(), overrides);
+			gzipTime += System.nanoTime() - startTime;
+			Assert.assertEquals(plain.size(), config.size());
+		}
+		System.out.println(String.format("Gzip: Long test average loading time was %.6f millies compressed, %.6f millies uncompressed and %.6f millies to only inflate",
+				gzipTime/10e6/iterations, plainTime/10e6/iterations, inflateTime/10e6/iterations));
+	}
+
+	@Test
+	public void testLoadingTimeExecutionPipelined() {
+		List<String> overrides = Arrays.asList(new String[] {"test", "staging"});
+		ConfigLoader configLoader = new ConfigLoader();
+		int warmup = 5;
+		int iterations = 10;
+		long sequentialTime = 0;
+		long pipelinedTime = 0;
+		for (int i = 0 ; i < warmup + iterations ; i++)
+		{
+			long startTime = System.nanoTime();
+			Config sequential = configLoader.loadConfig(settingsHugeFilename, overrides);
+			long estimatedSequential = System.nanoTime() - startTime;
+			startTime = System.nanoTime();
+			config = configLoader.loadConfigPipelined(settingsHugeFilename, overrides);
+			long estimatedPipelined = System.nanoTime() - startTime;
+			Assert.assertEquals(sequential.size(), config.size());
+			if (i >= warmup)
+			{
+				sequentialTime += estimatedSequential;
+				pipelinedTime += estimatedPipelined;
+			}
+		}
+		System.out.println(String.format("Pipelined: Long test average configuration loading time was %.6f millies pipelined and %.6f millies sequential",
+				pipelinedTime/10e6/iterations, sequentialTime/10e6/iterations));
+	}
+
 	@Test
 	public void testLoadingTimeExecutionNDFSM() {
 		List<String> overrides = Arrays.asList(new String[] {"test", "staging"});
@@ -129,6 +276,174 @@ public class ConfigLoaderLongTest {
 				totalTime/10e6/iterations));
 	}
 	
+	@Test
+	public void testLoadingTimeExecutionCompiledDFSM() {
+		List<String> overrides = Arrays.asList(new String[] {"test", "staging"});
+		ConfigLoader configLoader = new ConfigLoader();
+		int iterations = 10;
+		long totalTime = 0;
+		for (int i = 0 ; i < iterations ; i++)
+		{
+			long startTime = System.nanoTime();
+			config = configLoader.loadConfigRegExDFA(settingsHugeFilename, overrides);
+			long estimatedTime = System.nanoTime() - startTime;
+			Assert.assertNotNull(config);
+			totalTime += estimatedTime;
+		}
+		System.out.println(String.format("Compiled DFSM(RegEx): Long test average configuration loading time was %.6f millies",
+				totalTime/10e6/iterations));
+	}
+	
+	@Test
+	public void testDiffTimeExecution() {
+		List<String> overrides = Arrays.asList(new String[] {"test", "staging"});
+		ConfigLoader configLoader = new ConfigLoader();
+		Config oldConfig = configLoader.loadConfig(settingsHugeFilename, overrides);
+		config = configLoader.loadConfig(settingsHugeFilename, overrides);
+		config.get("sectionbb").put("query_meA", -1l);
+		int iterations = 1000;
+		long totalTime = 0;
+		long deepTime = 0;
+		for (int i = 0 ; i < iterations ; i++)
+		{
+			long startTime = System.nanoTime();
+			ConfigDiff diff = ConfigDiff.between(oldConfig, config);
+			totalTime += System.nanoTime() - startTime;
+			Assert.assertEquals(1, diff.getChanges().size());
+			if (i % 100 == 0)
+			{
+				startTime = System.nanoTime();
+				Assert.assertFalse(oldConfig.equals(config));
+				deepTime += System.nanoTime() - startTime;
+			}
+		}
+		System.out.println(String.format("Diff: Long test average diff time of two loads differing in one setting was %.6f millies, and %.6f millies for equals",
+				totalTime/10e6/iterations, deepTime/10e6/(iterations / 100)));
+	}
+
+	@Test
+	public void testSubscriptionDispatchTimeExecution() {
+		List<String> overrides = Arrays.asList(new String[] {"test", "staging"});
+		ConfigLoader configLoader = new ConfigLoader();
+		Config first = configLoader.loadConfig(settingsHugeFilename, overrides);
+		Config second = configLoader.loadConfig(settingsHugeFilename, overrides);
+		second.get("sectionbb").put("query_meA", -1l);
+		ConfigSubscriptions unsubscribed = new ConfigSubscriptions(first);
+		ConfigSubscriptions subscribed = new ConfigSubscriptions(first);
+		long [] notified = new long [1];
+		subscribed.onChange("sectionbb", "query_meA", changes -> notified[0]++);
+		int subscribers = 0;
+		for (String group : first.keySet())
+		{
+			for (String key : first.get(group).keySet())
+			{
+				if (subscribers++ % 20 == 0 && !key.equals("query_meA"))
+				{
+					subscribed.onChange(group, key, changes -> notified[0] += 1000);
+				}
+			}
+		}
+		int iterations = 1000;
+		long unsubscribedTime = 0;
+		long subscribedTime = 0;
+		for (int i = 0 ; i < iterations ; i++)
+		{
+			Config next = i % 2 == 0 ? second : first;
+			long startTime = System.nanoTime();
+			unsubscribed.update(next);
+			unsubscribedTime += System.nanoTime() - startTime;
+			startTime = System.nanoTime();
+			subscribed.update(next);
+			subscribedTime += System.nanoTime() - startTime;
+		}
+		Assert.assertEquals(iterations, notified[0]);
+		System.out.println(String.format("Subscriptions: Long test average update time was %.6f millies with %d subscriptions and %.6f millies without",
+				subscribedTime/10e6/iterations, subscribed.getSubscriptionCount(),
+				unsubscribedTime/10e6/iterations));
+	}
+
+	@Test
+	public void testReplicationFanOutTimeExecution() throws Exception {
+		List<String> overrides = Arrays.asList(new String[] {"test", "staging"});
+		ConfigLoader configLoader = new ConfigLoader();
+		config = configLoader.loadConfig(settingsHugeFilename, overrides);
+		int followers = 16;
+		int iterations = 20;
+		try(ReplicationLeader leader = new ReplicationLeader(config, 0)) {
+			InetSocketAddress address = new InetSocketAddress("localhost", leader.getPort());
+			List<ReplicationFollower> nodes = new ArrayList<>();
+			try {
+				long startTime = System.nanoTime();
+				for (int i = 0 ; i < followers ; i++)
+				{
+					nodes.add(new ReplicationFollower(address));
+				}
+				for (ReplicationFollower node : nodes)
+				{
+					Assert.assertTrue(node.awaitVersion(1, 60, TimeUnit.SECONDS));
+				}
+				long snapshotTime = System.nanoTime() - startTime;
+				long deltaTime = 0;
+				Config current = config;
+				for (int i = 0 ; i < iterations ; i++)
+				{
+					Config next = new Config();
+					next.putAll(current);
+					ConfigGroup changed = new ConfigGroup();
+					changed.putAll(current.get("sectionbb"));
+					changed.put("query_meA", (long) i);
+					next.put("sectionbb", changed);
+					startTime = System.nanoTime();
+					leader.publish(next);
+					for (ReplicationFollower node : nodes)
+					{
+						Assert.assertTrue(node.awaitVersion(i + 2, 60, TimeUnit.SECONDS));
+					}
+					deltaTime += System.nanoTime() - startTime;
+					current = next;
+				}
+				Assert.assertEquals(current, nodes.get(followers - 1).getConfig());
+				System.out.println(String.format("Replication: Long test fan-out of a snapshot to %d followers took %.6f millies and of a one setting delta %.6f millies on average",
+						followers, snapshotTime/10e6, deltaTime/10e6/iterations));
+			}
+			finally {
+				for (ReplicationFollower node : nodes)
+				{
+					node.close();
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testJournaledSetTimeExecution() throws Exception {
+		List<String> overrides = Arrays.asList(new String[] {"test", "staging"});
+		ConfigLoader configLoader = new ConfigLoader();
+		long startTime = System.nanoTime();
+		config = configLoader.loadConfig(settingsHugeFilename, overrides);
+		long loadTime = System.nanoTime() - startTime;
+		String [] groups = config.keySet().toArray(new String [0]);
+		int changes = 1000;
+		long setTime;
+		long compactTime;
+		try(JournaledConfig journaled = configLoader.loadJournaledConfig(settingsHugeFilename, overrides)) {
+			startTime = System.nanoTime();
+			for (int i = 0 ; i < changes ; i++)
+			{
+				journaled.set(groups[i % groups.length], "query_meA", (long) i);
+			}
+			setTime = System.nanoTime() - startTime;
+			startTime = System.nanoTime();
+			journaled.compact();
+			compactTime = System.nanoTime() - startTime;
+		}
+		config = configLoader.loadConfig(settingsHugeFilename, overrides);
+		Assert.assertEquals((long) changes - 1,
+				config.get(groups[(changes - 1) % groups.length]).get("query_meA"));
+		System.out.println(String.format("Journal: Long test average set time was %.6f millies, compaction of %d changes took %.6f millies and a load %.6f millies",
+				setTime/10e6/changes, changes, compactTime/10e6, loadTime/10e6));
+	}
+
 	@Test
 	public void testQueryTimeExecutionDFSM() {
 		List<String> overrides = Arrays.asList(new String[] {"test", "staging"});
@@ -155,6 +470,49 @@ public class ConfigLoaderLongTest {
 				iterations*4, totalTime/10e6/iterations*4));
 	}
 	
+	@Test
+	public void testQueryTimeExecutionMapped() throws Exception {
+		List<String> overrides = Arrays.asList(new String[] {"test", "staging"});
+		ConfigLoader configLoader = new ConfigLoader();
+		config = configLoader.loadConfig(settingsHugeFilename, overrides);
+		Path mappedFile = folder.getRoot().toPath().resolve("huge.cfgm");
+		configLoader.writeMappedConfig(settingsHugeFilename, overrides, mappedFile.toString());
+		int iterations = 10;
+		long openTime = 0;
+		MappedConfig mapped = null;
+		for (int i = 0 ; i < iterations ; i++)
+		{
+			long startTime = System.nanoTime();
+			mapped = MappedConfig.open(mappedFile);
+			openTime += System.nanoTime() - startTime;
+		}
+		String [] groups = config.keySet().toArray(new String [0]);
+		int queries = 100000;
+		long heapTime = 0;
+		long mappedTime = 0;
+		for (int round = 0 ; round < 3 ; round++)
+		{
+			heapTime = 0;
+			mappedTime = 0;
+			long startTime = System.nanoTime();
+			for (int i = 0 ; i < queries ; i++)
+			{
+				Assert.assertNotNull(config.get(groups[i % groups.length]).get("query_meA"));
+			}
+			heapTime += System.nanoTime() - startTime;
+			startTime = System.nanoTime();
+			for (int i = 0 ; i < queries ; i++)
+			{
+				Assert.assertNotNull(mapped.get(groups[i % groups.length]).get("query_meA"));
+			}
+			mappedTime += System.nanoTime() - startTime;
+		}
+		Assert.assertEquals(config.get("sectionbb"), mapped.get("sectionbb"));
+		System.out.println(String.format("Mapped: Long test average open time was %.6f millies for a %d bytes file, and average query time (N=%d) %.6f millies mapped and %.6f millies on the heap",
+				openTime/10e6/iterations, Files.size(mappedFile), queries,
+				mappedTime/10e6/queries, heapTime/10e6/queries));
+	}
+
 	@Test
 	public void testQueryTimeExecutionNDFSM() {
 		List<String> overrides = Arrays.asList(new String[] {"test", "staging"});
@@ -181,10 +539,217 @@ public class ConfigLoaderLongTest {
 				iterations*4, totalTime/10e6/iterations*4));
 	}
 	
-	@After
-	public void tearDown() throws IOException
-	{
-		Files.deleteIfExists(Paths.get(settingsHugeFilename));
+	@Test
+	public void testQueryTimeExecutionBatch() {
+		List<String> overrides = Arrays.asList(new String[] {"test", "staging"});
+		ConfigLoader configLoader = new ConfigLoader();
+		config = configLoader.loadConfig(settingsHugeFilename, overrides);
+		Assert.assertNotNull(config);
+		int iterations = 25000;
+		String [] keys = new String [16];
+		Object [] values = new Object [keys.length];
+		long totalTimeGet = 0;
+		long totalTimeBatch = 0;
+		for (int i = 0 ; i < iterations ; i++)
+		{
+			String key1 = faker.letterify("section??");
+			for (int j = 0 ; j < keys.length ; j++)
+			{
+				keys[j] = j % 2 == 0 ? "query_meA" : faker.letterify("?????????");
+			}
+			long startTime = System.nanoTime();
+			for (int j = 0 ; j < keys.length ; j++)
+			{
+				values[j] = config.get(key1).get(keys[j]);
+			}
+			long estimatedTime = System.nanoTime() - startTime;
+			totalTimeGet += estimatedTime;
+			startTime = System.nanoTime();
+			config.getAll(key1, keys, values);
+			estimatedTime = System.nanoTime() - startTime;
+			totalTimeBatch += estimatedTime;
+		}
+		System.out.println(String.format("Batch: Long test average query time of %d keys was %.6f millies with get and %.6f millies with getAll",
+				keys.length, totalTimeGet/10e6/iterations, totalTimeBatch/10e6/iterations));
+	}
+	
+	@Test
+	public void testQueryTimeExecutionColumn() {
+		List<String> overrides = Arrays.asList(new String[] {"test", "staging"});
+		ConfigLoader configLoader = new ConfigLoader();
+		config = configLoader.loadConfig(settingsHugeFilename, overrides);
+		ColumnarIndex index = ColumnarIndex.build(config);
+		NumberColumn column = (NumberColumn) index.column("query_meA");
+		int iterations = 1000;
+		long sumGet = 0;
+		long sumColumn = 0;
+		long totalTimeGet = 0;
+		long totalTimeColumn = 0;
+		for (int i = 0 ; i < iterations ; i++)
+		{
+			long startTime = System.nanoTime();
+			for (String group : index.getGroups())
+			{
+				sumGet += (Long) config.get(group).get("query_meA");
+			}
+			long estimatedTime = System.nanoTime() - startTime;
+			totalTimeGet += estimatedTime;
+			startTime = System.nanoTime();
+			for (int j = 0 ; j < column.size() ; j++)
+			{
+				sumColumn += column.longAt(j);
+			}
+			estimatedTime = System.nanoTime() - startTime;
+			totalTimeColumn += estimatedTime;
+		}
+		Assert.assertEquals(sumGet, sumColumn);
+		System.out.println(String.format("Column: Long test average time to read a key across %d sections was %.6f millies with get and %.6f millies with the column",
+				column.size(), totalTimeGet/10e6/iterations, totalTimeColumn/10e6/iterations));
+	}
+	
+	@Test
+	public void testQueryTimeExecutionValueIndex() {
+		List<String> overrides = Arrays.asList(new String[] {"test", "staging"});
+		ConfigLoader configLoader = new ConfigLoader();
+		config = configLoader.loadConfig(settingsHugeFilename, overrides);
+		ValueIndex index = ValueIndex.build(config);
+		String group = config.keySet().iterator().next();
+		Object value = config.get(group).get("query_meB");
+		int iterations = 1000;
+		long totalTime = 0;
+		long totalTimeRange = 0;
+		for (int i = 0 ; i < iterations ; i++)
+		{
+			long startTime = System.nanoTime();
+			Assert.assertFalse(index.lookup(value).isEmpty());
+			long estimatedTime = System.nanoTime() - startTime;
+			totalTime += estimatedTime;
+			long from = Long.parseLong(faker.numerify("############"));
+			startTime = System.nanoTime();
+			index.numbersInRange(from, from + 1000000000L);
+			estimatedTime = System.nanoTime() - startTime;
+			totalTimeRange += estimatedTime;
+		}
+		System.out.println(String.format("ValueIndex: Long test average reverse lookup time was %.6f millies and range query time was %.6f millies",
+				totalTime/10e6/iterations, totalTimeRange/10e6/iterations));
+	}
+
+	@Test
+	public void testOverlayReplaceTimeExecution() {
+		List<String> overrides = Arrays.asList(new String[] {"test", "staging"});
+		ConfigLoader configLoader = new ConfigLoader();
+		config = configLoader.loadConfig(settingsHugeFilename, overrides);
+		List<String> groups = Arrays.asList(config.keySet().toArray(new String [0]));
+		Config host = new Config();
+		for (int i = 0 ; i < 4 ; i++)
+		{
+			ConfigGroup settings = new ConfigGroup();
+			settings.put("query_meA", (long) i);
+			host.put(groups.get(i), settings);
+		}
+		OverlayConfig overlay = new OverlayConfig(config, host, new Config());
+		int numOfQueries = 100000;
+		String [] queryGroups = new String [numOfQueries];
+		String [] queryKeys = new String [numOfQueries];
+		for (int i = 0 ; i < numOfQueries ; i++)
+		{
+			queryGroups[i] = groups.get(i % groups.size());
+			queryKeys[i] = i % 2 == 0 ? "query_meA" : "query_meB";
+		}
+		int iterations = 40;
+		long totalTimeOverlay = 0;
+		long totalTimeMerge = 0;
+		for (int i = 0 ; i < iterations ; i++)
+		{
+			Config runtime = new Config();
+			ConfigGroup settings = new ConfigGroup();
+			settings.put("query_meB", "runtime" + i);
+			runtime.put(groups.get(i % groups.size()), settings);
+			long startTime = System.nanoTime();
+			overlay.replaceLayer(2, runtime);
+			for (int j = 0 ; j < numOfQueries ; j++)
+			{
+				overlay.get(queryGroups[j]).get(queryKeys[j]);
+			}
+			totalTimeOverlay += System.nanoTime() - startTime;
+			startTime = System.nanoTime();
+			Config merged = new Config();
+			for (Config layer : Arrays.asList(config, host, runtime))
+			{
+				for (Map.Entry<String,Map<String,Object>> group : layer.entrySet())
+				{
+					Map<String,Object> copy = merged.getOrDefault(group.getKey(), null);
+					if (copy == null)
+					{
+						copy = new ConfigGroup();
+						merged.put(group.getKey(), copy);
+					}
+					copy.putAll(group.getValue());
+				}
+			}
+			for (int j = 0 ; j < numOfQueries ; j++)
+			{
+				merged.get(queryGroups[j]).get(queryKeys[j]);
+			}
+			totalTimeMerge += System.nanoTime() - startTime;
+			Assert.assertEquals(merged.get(groups.get(i % groups.size())).get("query_meB"),
+					overlay.get(groups.get(i % groups.size())).get("query_meB"));
+			Assert.assertEquals(merged.get(groups.get(1)).get("query_meA"),
+					overlay.get(groups.get(1)).get("query_meA"));
+		}
+		System.out.println(String.format("Overlay: Long test average layer replacement and query time (N=%d) was %.6f millies and %.6f millies merging copies",
+				numOfQueries, totalTimeOverlay/10e6/iterations, totalTimeMerge/10e6/iterations));
+	}
+
+	@Test
+	public void testQueryTimeExecutionHotKeyCache() {
+		List<String> overrides = Arrays.asList(new String[] {"test", "staging"});
+		ConfigLoader configLoader = new ConfigLoader();
+		config = configLoader.loadConfig(settingsHugeFilename, overrides);
+		HotKeyCache cache = new HotKeyCache(config);
+		List<String> groups = Arrays.asList(config.keySet().toArray(new String [0]));
+		int numOfQueries = 100000;
+		String [] queryGroups = new String [numOfQueries];
+		String [] queryKeys = new String [numOfQueries];
+		for (int i = 0 ; i < numOfQueries ; i++)
+		{
+			boolean hot = i % 10 != 0;
+			queryGroups[i] = hot ? groups.get(i % 4) : faker.letterify("section??");
+			queryKeys[i] = hot ? (i % 2 == 0 ? "query_meA" : "query_meB")
+					: faker.letterify("??????????");
+		}
+		int warmup = 20;
+		int iterations = 40;
+		long totalTimeGet = 0;
+		long totalTimeCache = 0;
+		for (int i = -warmup ; i < iterations ; i++)
+		{
+			long startTime = System.nanoTime();
+			for (int j = 0 ; j < numOfQueries ; j++)
+			{
+				config.get(queryGroups[j]).get(queryKeys[j]);
+			}
+			long timeGet = System.nanoTime() - startTime;
+			startTime = System.nanoTime();
+			for (int j = 0 ; j < numOfQueries ; j++)
+			{
+				cache.get(queryGroups[j], queryKeys[j]);
+			}
+			long timeCache = System.nanoTime() - startTime;
+			if (i >= 0)
+			{
+				totalTimeGet += timeGet;
+				totalTimeCache += timeCache;
+			}
+		}
+		for (int j = 0 ; j < 8 ; j++)
+		{
+			Assert.assertEquals(config.get(queryGroups[j]).get(queryKeys[j]),
+					cache.get(queryGroups[j], queryKeys[j]));
+		}
+		System.out.println(String.format("HotKeyCache: Long test average query time (N=%d) was %.6f millies with get and %.6f millies with the cache (%s)",
+				numOfQueries, totalTimeGet/10e6/iterations, totalTimeCache/10e6/iterations,
+				cache.getStats()));
 	}
 
 }
@@ -0,0 +1,160 @@
+package me.sdimopoulos.config;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit testing of the overlay of configurations
+ *
+ * The sample configuration is the base layer, with a small host layer and a
+ * runtime layer over it.
+ */
+public class OverlayConfigTest {
+
+	Config base;
+	Config host;
+	Config runtime;
+	OverlayConfig overlay;
+
+	@Before
+	public void loadConfiguration()
+	{
+		List<String> overrides = Arrays.asList(new String[] {"production", "containers"});
+		base = new ConfigLoader().loadConfig("src/test/resources/server.conf", overrides);
+		host = layer("core", "max_files_per_session", 10L);
+		host.get("core").put("host_name", "alpha");
+		runtime = layer("rest", "description", "Runtime handler");
+		overlay = new OverlayConfig(base, host, runtime);
+	}
+
+	private static Config layer(String group, String key, Object value)
+	{
+		Config config = new Config();
+		ConfigGroup settings = new ConfigGroup();
+		settings.put(key, value);
+		config.put(group, settings);
+		return config;
+	}
+
+	@Test
+	public void testPrecedence()
+	{
+		Assert.assertEquals(10L, overlay.get("core").get("max_files_per_session"));
+		Assert.assertEquals("alpha", overlay.get("core").get("host_name"));
+		Assert.assertEquals(52346850L, overlay.get("core").get("max_bytes_per_request"));
+		Assert.assertEquals("Runtime handler", overlay.get("rest").get("description"));
+		Assert.assertEquals("/opt/yourcompany/restAPI/prod", overlay.get("rest").get("config_path"));
+		Assert.assertEquals("", overlay.get("core").get("missing"));
+		Assert.assertNull(overlay.get("core").getOrDefault("missing", null));
+		Assert.assertFalse(overlay.get("core").containsKey("missing"));
+		Assert.assertEquals(base.get("core").size() + 1, overlay.get("core").size());
+		Assert.assertEquals(base.keySet(), overlay.keySet());
+		Assert.assertTrue(overlay.get("nothing").isEmpty());
+		Assert.assertFalse(overlay.containsKey("nothing"));
+	}
+
+	@Test
+	public void testNothingIsCopied()
+	{
+		Assert.assertFalse(overlay.isResolved("core", "config_path"));
+		Assert.assertEquals("/var/lib/docker/config", overlay.get("core").get("config_path"));
+		Assert.assertTrue(overlay.isResolved("core", "config_path"));
+		Assert.assertFalse(overlay.isResolved("core", "max_bytes_per_request"));
+		Assert.assertSame(overlay.get("core"), overlay.get("core"));
+	}
+
+	@Test
+	public void testReplaceLayerForgetsOnlyItsChanges()
+	{
+		Map<String,Object> core = overlay.get("core");
+		core.get("max_files_per_session");
+		core.get("host_name");
+		core.get("config_path");
+		overlay.get("rest").get("description");
+		Config newHost = layer("core", "max_files_per_session", 20L);
+		newHost.get("core").put("host_name", "alpha");
+		ConfigDiff diff = overlay.replaceLayer(1, newHost);
+		Assert.assertEquals(1, diff.getChanges().size());
+		Assert.assertFalse(overlay.isResolved("core", "max_files_per_session"));
+		Assert.assertTrue(overlay.isResolved("core", "host_name"));
+		Assert.assertTrue(overlay.isResolved("core", "config_path"));
+		Assert.assertTrue(overlay.isResolved("rest", "description"));
+		Assert.assertEquals(20L, core.get("max_files_per_session"));
+		Assert.assertSame(newHost, overlay.getLayers().get(1));
+	}
+
+	@Test
+	public void testReplaceLayerChangesSections()
+	{
+		Map<String,Object> rest = overlay.get("rest");
+		Assert.assertEquals("Runtime handler", rest.get("description"));
+		Config newRuntime = layer("extra", "enabled", true);
+		overlay.replaceLayer(2, newRuntime);
+		Assert.assertEquals("Rest request hadler", rest.get("description"));
+		Assert.assertEquals(true, overlay.get("extra").get("enabled"));
+		Assert.assertTrue(overlay.keySet().contains("extra"));
+		overlay.replaceLayer(2, new Config());
+		Assert.assertFalse(overlay.containsKey("extra"));
+		Assert.assertFalse(overlay.keySet().contains("extra"));
+		Assert.assertEquals(base.get("rest"), rest);
+	}
+
+	@Test
+	public void testInvalidateAfterChangeInPlace()
+	{
+		Assert.assertEquals("alpha", overlay.get("core").get("host_name"));
+		host.get("core").put("host_name", "beta");
+		Assert.assertEquals("alpha", overlay.get("core").get("host_name"));
+		overlay.invalidate("core", "host_name");
+		Assert.assertEquals("beta", overlay.get("core").get("host_name"));
+		host.put("extra", new ConfigGroup());
+		overlay.invalidate();
+		Assert.assertTrue(overlay.containsKey("extra"));
+	}
+
+	@Test
+	public void testMissingSectionsAreNotRemembered()
+	{
+		int groups = overlay.getGroupCount();
+		for (int i = 0; i < 1000; i++)
+		{
+			Assert.assertTrue(overlay.get("missing" + i).isEmpty());
+			Assert.assertFalse(overlay.containsKey("missing" + i));
+		}
+		Assert.assertEquals(groups, overlay.getGroupCount());
+		overlay.replaceLayer(2, layer("missing0", "enabled", true));
+		Assert.assertEquals(true, overlay.get("missing0").get("enabled"));
+		Assert.assertEquals(groups + 1, overlay.getGroupCount());
+	}
+
+	@Test
+	public void testMissingSettingsAreNotRemembered()
+	{
+		Map<String,Object> core = overlay.get("core");
+		for (int i = 0; i < 1000; i++)
+		{
+			Assert.assertEquals("", core.get("missing" + i));
+			Assert.assertFalse(overlay.isResolved("core", "missing" + i));
+		}
+		core.get("host_name");
+		Assert.assertTrue(overlay.isResolved("core", "host_name"));
+		host.get("core").put("missing0", "added");
+		Assert.assertEquals("added", core.get("missing0"));
+	}
+
+	@Test
+	public void testCopyOfOverlay()
+	{
+		Config copy = new Config();
+		copy.putAll(overlay);
+		Assert.assertEquals(10L, copy.get("core").get("max_files_per_session"));
+		Assert.assertEquals("Rest request hadler", base.get("rest").get("description"));
+		Assert.assertEquals("Runtime handler", copy.get("rest").get("description"));
+	}
+
+}
@@ -0,0 +1,147 @@
+package me.sdimopoulos.config.binding;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.sdimopoulos.config.Config;
+import me.sdimopoulos.config.ConfigGroup;
+import me.sdimopoulos.config.ConfigLoader;
+
+/**
+ * Unit testing of the binding of sections to interfaces
+ *
+ * The sample configuration is loaded and its sections are bound to the
+ * interfaces below, and the bound values are compared with get(group).get(key).
+ */
+public class ConfigBinderTest {
+
+	public interface Core {
+		long maxBytesPerRequest();
+		int maxFilesPerSession();
+		double memoryAllocationLimit();
+		String configPath();
+	}
+
+	public interface Rest {
+		String description();
+		List<String> arguments();
+		@ConfigKey("config_path") String path();
+		default boolean enabled() { return true; }
+	}
+
+	public interface Websockets extends Rest {
+		@Override
+		default List<String> arguments() { return Arrays.asList("none"); }
+	}
+
+	public interface Broken {
+		String description();
+		long enabled();
+		int missingSetting();
+	}
+
+	public interface WithParameters {
+		String description(int length);
+	}
+
+	Config config;
+
+	@Before
+	public void loadConfiguration()
+	{
+		List<String> overrides = Arrays.asList(new String[] {"production", "containers"});
+		config = new ConfigLoader().loadConfig("src/test/resources/server.conf", overrides);
+	}
+
+	@Test
+	public void testBindSection()
+	{
+		Core core = ConfigBinder.bind(config, "core", Core.class);
+		Assert.assertEquals(52346850l, core.maxBytesPerRequest());
+		Assert.assertEquals(12364590, core.maxFilesPerSession());
+		Assert.assertEquals(3456373288d, core.memoryAllocationLimit(), 0);
+		Assert.assertEquals("/var/lib/docker/config", core.configPath());
+		Assert.assertEquals(config.get("core").get("config_path"), core.configPath());
+	}
+
+	@Test
+	public void testKeyAnnotationAndDefaults()
+	{
+		Rest rest = ConfigBinder.bind(config, "rest", Rest.class);
+		Assert.assertEquals("Rest request hadler", rest.description());
+		Assert.assertEquals(Arrays.asList("array", "containing", "arguments"), rest.arguments());
+		Assert.assertEquals("/opt/yourcompany/restAPI/prod", rest.path());
+		Assert.assertTrue(rest.enabled());
+		Websockets websockets = ConfigBinder.bind(config, "websockets", Websockets.class);
+		Assert.assertFalse(websockets.enabled());
+		Assert.assertEquals(Arrays.asList("none"), websockets.arguments());
+		Assert.assertEquals("/opt/yourcompany/websocketAPI/prod", websockets.path());
+	}
+
+	@Test
+	public void testGeneratedClassIsReused()
+	{
+		Core first = ConfigBinder.bind(config, "core", Core.class);
+		ConfigGroup group = new ConfigGroup();
+		group.putAll(config.get("core"));
+		group.put("max_bytes_per_request", 1l);
+		Core second = ConfigBinder.bind(group, Core.class);
+		Assert.assertSame(first.getClass(), second.getClass());
+		Assert.assertEquals(1l, second.maxBytesPerRequest());
+		Assert.assertEquals(52346850l, first.maxBytesPerRequest());
+	}
+
+	@Test
+	public void testAllProblemsReported()
+	{
+		try {
+			ConfigBinder.bind(config, "websockets", Broken.class);
+			Assert.fail("Expected a ConfigBindingException");
+		}
+		catch(ConfigBindingException e)
+		{
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("setting enabled is a Boolean but enabled() returns long"));
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("missing setting missing_setting"));
+		}
+	}
+
+	@Test
+	public void testIntOverflowIsMismatch()
+	{
+		ConfigGroup group = new ConfigGroup();
+		group.putAll(config.get("core"));
+		group.put("max_files_per_session", 1l << 40);
+		try {
+			ConfigBinder.bind(group, Core.class);
+			Assert.fail("Expected a ConfigBindingException");
+		}
+		catch(ConfigBindingException e)
+		{
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("max_files_per_session"));
+		}
+	}
+
+	@Test(expected = ConfigBindingException.class)
+	public void testMissingSection()
+	{
+		ConfigBinder.bind(config, "unknown", Core.class);
+	}
+
+	@Test(expected = ConfigBindingException.class)
+	public void testMethodWithParameters()
+	{
+		ConfigBinder.bind(config, "rest", WithParameters.class);
+	}
+
+	@Test
+	public void testSnakeCase()
+	{
+		Assert.assertEquals("max_bytes_per_request", ConfigBinder.toSnakeCase("maxBytesPerRequest"));
+		Assert.assertEquals("path", ConfigBinder.toSnakeCase("path"));
+	}
+
+}
@@ -0,0 +1,131 @@
+package me.sdimopoulos.config.cache;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.sdimopoulos.config.Config;
+import me.sdimopoulos.config.ConfigGroup;
+
+/**
+ * Unit testing of the hot key front cache
+ *
+ * A configuration of many settings is read with a skewed access pattern, and
+ * the answers of the cache are compared with get(group).get(key) while its
+ * statistics show which pairs were promoted and demoted.
+ */
+public class HotKeyCacheTest {
+
+	static int numOfSections = 50;
+	static int numOfSettingsPerSection = 200;
+	Config config;
+
+	@Before
+	public void buildConfiguration()
+	{
+		config = new Config();
+		for (int i = 0; i < numOfSections; i++)
+		{
+			ConfigGroup group = new ConfigGroup();
+			for (int j = 0; j < numOfSettingsPerSection; j++)
+			{
+				group.put("setting" + j, (long) (i * numOfSettingsPerSection + j));
+			}
+			config.put("section" + i, group);
+		}
+	}
+
+	@Test
+	public void testSameAnswersAsGet()
+	{
+		HotKeyCache cache = new HotKeyCache(config, 64, 1);
+		for (int round = 0; round < 20; round++)
+		{
+			for (int i = 0; i < numOfSections; i += 7)
+			{
+				for (int j = 0; j < numOfSettingsPerSection; j += 13)
+				{
+					Assert.assertEquals(config.get("section" + i).get("setting" + j),
+							cache.get("section" + i, "setting" + j));
+				}
+			}
+		}
+		Assert.assertEquals("", cache.get("section1", "unknown"));
+		Assert.assertNull(cache.get("unknown", "setting1"));
+	}
+
+	@Test
+	public void testHotKeysArePromoted()
+	{
+		HotKeyCache cache = new HotKeyCache(config, 64, 4);
+		for (int i = 0; i < 100000; i++)
+		{
+			if (i % 10 != 0)
+			{
+				cache.get("section3", "setting" + (i % 4));
+			}
+			else
+			{
+				cache.get("section" + (i / 10 % numOfSections),
+						"setting" + (i / 100 % numOfSettingsPerSection));
+			}
+		}
+		for (int j = 0; j < 4; j++)
+		{
+			Assert.assertTrue(cache.isCached("section3", "setting" + j));
+		}
+		HotKeyCache.Stats stats = cache.getStats();
+		Assert.assertTrue(stats.toString(), stats.getHitRatio() > 0.85);
+		Assert.assertTrue(stats.getPromotions() >= 4);
+		Assert.assertTrue(stats.getSize() <= cache.getCapacity());
+	}
+
+	@Test
+	public void testColdKeysAreDemoted()
+	{
+		HotKeyCache cache = new HotKeyCache(config, 16, 1);
+		for (int i = 0; i < 10000; i++)
+		{
+			cache.get("section1", "setting" + (i % 2));
+		}
+		Assert.assertTrue(cache.isCached("section1", "setting0"));
+		for (int i = 0; i < 100000; i++)
+		{
+			cache.get("section2", "setting" + (i % 8));
+		}
+		Assert.assertFalse(cache.isCached("section1", "setting0"));
+		Assert.assertFalse(cache.isCached("section1", "setting1"));
+		Assert.assertTrue(cache.isCached("section2", "setting0"));
+		Assert.assertTrue(cache.getStats().getDemotions() >= 2);
+	}
+
+	@Test
+	public void testNoSamplingNoPromotion()
+	{
+		HotKeyCache cache = new HotKeyCache(config, 16, 0);
+		for (int i = 0; i < 1000; i++)
+		{
+			cache.get("section1", "setting1");
+		}
+		HotKeyCache.Stats stats = cache.getStats();
+		Assert.assertEquals(0, stats.getHits());
+		Assert.assertEquals(1000, stats.getMisses());
+		Assert.assertEquals(0, stats.getSize());
+	}
+
+	@Test
+	public void testInvalidate()
+	{
+		HotKeyCache cache = new HotKeyCache(config, 16, 1);
+		for (int i = 0; i < 100; i++)
+		{
+			cache.get("section1", "setting1");
+		}
+		Assert.assertTrue(cache.isCached("section1", "setting1"));
+		config.get("section1").put("setting1", "changed");
+		cache.invalidate();
+		Assert.assertEquals(0, cache.getStats().getSize());
+		Assert.assertEquals("changed", cache.get("section1", "setting1"));
+	}
+
+}
@@ -0,0 +1,114 @@
+package me.sdimopoulos.config.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.sdimopoulos.config.Config;
+import me.sdimopoulos.config.ConfigGroup;
+import me.sdimopoulos.config.index.ColumnarIndex.BooleanColumn;
+import me.sdimopoulos.config.index.ColumnarIndex.Column;
+import me.sdimopoulos.config.index.ColumnarIndex.NumberColumn;
+import me.sdimopoulos.config.index.ColumnarIndex.ObjectColumn;
+
+/**
+ * Unit testing of the columnar layout of a configuration
+ *
+ * A configuration of many sections is built in memory and every column is
+ * compared with the values read with get(group).get(key).
+ */
+public class ColumnarIndexTest {
+
+	static int numOfSections = 1000;
+	Config config;
+	ColumnarIndex index;
+
+	@Before
+	public void buildConfiguration()
+	{
+		config = new Config();
+		for (int i = 0; i < numOfSections; i++)
+		{
+			ConfigGroup group = new ConfigGroup();
+			group.put("max_files", (long) i);
+			group.put("enabled", i % 3 == 0);
+			group.put("description", "section " + i);
+			if (i % 2 == 0)
+			{
+				group.put("mixed", i % 4 == 0 ? (Object) "even" : (Object) 1l);
+			}
+			config.put("section" + i, group);
+		}
+		index = ColumnarIndex.build(config);
+	}
+
+	@Test
+	public void testSectionOrder()
+	{
+		// the sections are numbered in the order they were put in the Config
+		Assert.assertEquals(new ArrayList<>(config.keySet()), index.getGroups());
+		Column column = index.column("max_files");
+		for (int i = 0; i < numOfSections; i++)
+		{
+			Assert.assertEquals("section" + i, index.getGroups().get(i));
+			Assert.assertEquals((long) i, column.valueAt(i));
+		}
+	}
+
+	@Test
+	public void testTypedColumns()
+	{
+		Assert.assertTrue(index.column("max_files") instanceof NumberColumn);
+		Assert.assertTrue(index.column("enabled") instanceof BooleanColumn);
+		Assert.assertTrue(index.column("description") instanceof ObjectColumn);
+		Assert.assertTrue(index.column("mixed") instanceof ObjectColumn);
+	}
+
+	@Test
+	public void testColumnsSameAsGet()
+	{
+		for (String key : Arrays.asList("max_files", "enabled", "description", "mixed"))
+		{
+			Column column = index.column(key);
+			List<String> groups = new ArrayList<>();
+			for (int i = 0; i < column.size(); i++)
+			{
+				Assert.assertEquals(config.get(column.groupAt(i)).get(key),
+						column.valueAt(i));
+				groups.add(column.groupAt(i));
+			}
+			for (String group : config.keySet())
+			{
+				Assert.assertEquals(config.get(group).containsKey(key),
+						groups.contains(group));
+			}
+		}
+	}
+
+	@Test
+	public void testPrimitiveAccess()
+	{
+		NumberColumn numbers = (NumberColumn) index.column("max_files");
+		long sum = 0;
+		for (int i = 0; i < numbers.size(); i++)
+		{
+			sum += numbers.longAt(i);
+		}
+		Assert.assertEquals((long) numOfSections * (numOfSections - 1) / 2, sum);
+		BooleanColumn enabled = (BooleanColumn) index.column("enabled");
+		Assert.assertTrue(enabled.booleanAt(enabled.positionOf(3)));
+		Assert.assertFalse(enabled.booleanAt(enabled.positionOf(4)));
+		Assert.assertTrue(index.column("mixed").positionOf(3) < 0);
+	}
+
+	@Test
+	public void testMissingColumnIsEmpty()
+	{
+		Assert.assertEquals(0, index.column("unknown_key").size());
+	}
+
+}
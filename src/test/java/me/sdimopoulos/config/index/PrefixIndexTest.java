@@ -0,0 +1,88 @@
+package me.sdimopoulos.config.index;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.sdimopoulos.config.Config;
+import me.sdimopoulos.config.ConfigGroup;
+import me.sdimopoulos.config.ConfigLoader;
+
+/**
+ * Unit testing of the prefix index over section and setting names
+ *
+ * Every search is compared with a scan of the names of the sample file.
+ */
+public class PrefixIndexTest {
+
+	Config config;
+	PrefixIndex index;
+
+	@Before
+	public void readConfiguration()
+	{
+		List<String> overrides = Arrays.asList(new String[] {"deprecated", "production"});
+		ConfigLoader configLoader = new ConfigLoader();
+		config = configLoader.loadConfig("src/test/resources/server.conf", overrides);
+		index = PrefixIndex.build(config);
+	}
+
+	@Test
+	public void testKeysWithPrefixSameAsScan()
+	{
+		for (String group : config.keySet())
+		{
+			for (String prefix : Arrays.asList("", "c", "con", "config_path", "max_", "x"))
+			{
+				Assert.assertEquals(config.get(group).keySet().stream()
+						.filter(key -> key.startsWith(prefix))
+						.sorted().collect(Collectors.toList()),
+						index.keysWithPrefix(group, prefix));
+			}
+		}
+	}
+
+	@Test
+	public void testGroupsWithPrefix()
+	{
+		Assert.assertEquals(config.keySet().stream().sorted()
+				.collect(Collectors.toList()), index.groupsWithPrefix(""));
+		Assert.assertEquals(Arrays.asList("rest"), index.groupsWithPrefix("re"));
+		Assert.assertEquals(Collections.emptyList(), index.groupsWithPrefix("rest_"));
+	}
+
+	@Test
+	public void testKeysOfMissingGroup()
+	{
+		Assert.assertEquals(Collections.emptyList(),
+				index.keysWithPrefix("unknown_group", ""));
+	}
+
+	@Test
+	public void testNamesThatArePrefixesOfOthers()
+	{
+		Config names = new Config();
+		names.put("section", new ConfigGroup());
+		for (String key : Arrays.asList("max", "max_bytes", "max_bytes_total",
+				"max_count", "min", ""))
+		{
+			names.get("section").put(key, 1l);
+		}
+		PrefixIndex namesIndex = PrefixIndex.build(names);
+		Assert.assertEquals(Arrays.asList("max", "max_bytes", "max_bytes_total",
+				"max_count"), namesIndex.keysWithPrefix("section", "max"));
+		Assert.assertEquals(Arrays.asList("max_bytes", "max_bytes_total"),
+				namesIndex.keysWithPrefix("section", "max_b"));
+		Assert.assertEquals(Arrays.asList("max_bytes_total"),
+				namesIndex.keysWithPrefix("section", "max_bytes_"));
+		Assert.assertEquals(6, namesIndex.keysWithPrefix("section", "").size());
+		Assert.assertEquals(Collections.emptyList(),
+				namesIndex.keysWithPrefix("section", "max_bytes_total_"));
+	}
+
+}
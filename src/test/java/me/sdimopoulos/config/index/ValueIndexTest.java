@@ -0,0 +1,104 @@
+package me.sdimopoulos.config.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.sdimopoulos.config.Config;
+import me.sdimopoulos.config.ConfigGroup;
+import me.sdimopoulos.config.ConfigLoader;
+import me.sdimopoulos.config.index.ValueIndex.Location;
+
+/**
+ * Unit testing of the inverted value index
+ *
+ * Reverse lookups on the sample file are compared with a scan of all the
+ * settings.
+ */
+public class ValueIndexTest {
+
+	Config config;
+	ValueIndex index;
+
+	@Before
+	public void readConfiguration()
+	{
+		List<String> overrides = Arrays.asList(new String[] {"stage"});
+		ConfigLoader configLoader = new ConfigLoader();
+		config = configLoader.loadConfig("src/test/resources/server.conf", overrides);
+		index = ValueIndex.build(config);
+	}
+
+	/**
+	 * Finds the settings holding a value by scanning the configuration
+	 */
+	private List<Location> scan(Object value)
+	{
+		List<Location> result = new ArrayList<>();
+		for (String group : config.keySet())
+		{
+			for (String key : config.get(group).keySet())
+			{
+				if (value.equals(config.get(group).get(key)))
+				{
+					result.add(new Location(group, key));
+				}
+			}
+		}
+		return result;
+	}
+
+	@Test
+	public void testLookupSameAsScan()
+	{
+		for (Object value : Arrays.asList("/opt/yourcompany/websocketAPI/stage",
+				"/opt/yourcompany", false, 52346850l,
+				Arrays.asList("array", "containing", "arguments")))
+		{
+			Assert.assertEquals(scan(value), index.lookup(value));
+		}
+	}
+
+	@Test
+	public void testLookupIsTyped()
+	{
+		Assert.assertEquals(Collections.emptyList(), index.lookup("52346850"));
+		Assert.assertEquals(Collections.emptyList(), index.lookup("no"));
+		Assert.assertEquals(Arrays.asList(new Location("websockets", "enabled")),
+				index.lookup(false));
+	}
+
+	@Test
+	public void testNumbersInRange()
+	{
+		Assert.assertEquals(Arrays.asList(
+				new Location("core", "max_files_per_session"),
+				new Location("core", "max_bytes_per_request")),
+				index.numbersInRange(0, 100000000));
+		Assert.assertEquals(3, index.numbersInRange(Long.MIN_VALUE, Long.MAX_VALUE).size());
+		Assert.assertEquals(Collections.emptyList(), index.numbersInRange(1, 0));
+	}
+
+	@Test
+	public void testLongPostings()
+	{
+		Config many = new Config();
+		for (int i = 0; i < 300; i++)
+		{
+			ConfigGroup group = new ConfigGroup();
+			for (int j = 0; j < 100; j++)
+			{
+				group.put("key" + j, j % 7 == 0 ? "common" : "value" + i + "_" + j);
+			}
+			many.put("section" + i, group);
+		}
+		config = many;
+		Assert.assertEquals(scan("common"), ValueIndex.build(many).lookup("common"));
+	}
+
+}
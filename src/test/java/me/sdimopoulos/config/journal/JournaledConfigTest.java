@@ -0,0 +1,228 @@
+package me.sdimopoulos.config.journal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import me.sdimopoulos.config.Config;
+import me.sdimopoulos.config.ConfigLoader;
+
+/**
+ * Unit testing of the journaled configuration
+ *
+ * The sample file is copied to a temporary folder, changed, reopened and
+ * compacted, and the results are compared with loads of the file.
+ */
+public class JournaledConfigTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	List<String> overrides = Arrays.asList(new String[] {"production", "containers"});
+	ConfigLoader configLoader = new ConfigLoader();
+	Path file;
+	Path journalFile;
+
+	@Before
+	public void copyConfiguration() throws IOException
+	{
+		file = folder.getRoot().toPath().resolve("server.conf");
+		journalFile = Paths.get(file + JournaledConfig.JOURNAL_SUFFIX);
+		Files.copy(Paths.get("src/test/resources/server.conf"), file);
+	}
+
+	private void setSamples(JournaledConfig config) throws IOException
+	{
+		config.set("core", "max_files_per_session", 5000L);
+		config.set("websockets", "config_path", "/opt/yourcompany/websocketAPI/v2");
+		config.set("rest", "enabled", true);
+		config.set("cache", "policies", Arrays.asList("lru", "lfu"));
+	}
+
+	private void assertSamples(Config config)
+	{
+		Assert.assertEquals(5000l, config.get("core").get("max_files_per_session"));
+		Assert.assertEquals("/opt/yourcompany/websocketAPI/v2",
+				config.get("websockets").get("config_path"));
+		Assert.assertEquals(true, config.get("rest").get("enabled"));
+		Assert.assertEquals(Arrays.asList("lru", "lfu"), config.get("cache").get("policies"));
+		Assert.assertEquals(52346850l, config.get("core").get("max_bytes_per_request"));
+	}
+
+	@Test
+	public void testChangesReplayedOnOpen() throws IOException
+	{
+		try(JournaledConfig config = configLoader.loadJournaledConfig(file.toString(), overrides)) {
+			setSamples(config);
+			assertSamples(config);
+			Assert.assertTrue(config.getJournalSize() > 0);
+		}
+		Assert.assertEquals("/opt/yourcompany/websocketAPI/prod", configLoader
+				.loadConfig(file.toString(), overrides).get("websockets").get("config_path"));
+		try(JournaledConfig config = configLoader.loadJournaledConfig(file.toString(), overrides)) {
+			assertSamples(config);
+		}
+	}
+
+	@Test
+	public void testCompactionRewritesFile() throws IOException
+	{
+		try(JournaledConfig config = configLoader.loadJournaledConfig(file.toString(), overrides)) {
+			setSamples(config);
+			config.compact();
+			Assert.assertEquals(0, config.getJournalSize());
+			config.set("core", "max_files_per_session", 6000L);
+			Assert.assertEquals(6000l, config.get("core").get("max_files_per_session"));
+		}
+		Config loaded = configLoader.loadConfig(file.toString(), overrides);
+		assertSamples(loaded);
+		Assert.assertEquals(Arrays.asList("array", "containing", "arguments"),
+				loaded.get("rest").get("arguments"));
+		Assert.assertEquals("/opt/yourcompany/websocketAPI/stage", configLoader
+				.loadConfig(file.toString(), Arrays.asList("stage"))
+				.get("websockets").get("config_path"));
+		try(JournaledConfig config = configLoader.loadJournaledConfig(file.toString(), overrides)) {
+			Assert.assertEquals(6000l, config.get("core").get("max_files_per_session"));
+		}
+	}
+
+	@Test
+	public void testCompactionKeepsPermissions() throws IOException
+	{
+		Assume.assumeTrue(Files.getFileAttributeView(file, PosixFileAttributeView.class) != null);
+		Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r--r--");
+		Files.setPosixFilePermissions(file, permissions);
+		try(JournaledConfig config = configLoader.loadJournaledConfig(file.toString(), overrides)) {
+			setSamples(config);
+			config.compact();
+		}
+		Assert.assertEquals(permissions, Files.getPosixFilePermissions(file));
+		assertSamples(configLoader.loadConfig(file.toString(), overrides));
+	}
+
+	@Test
+	public void testCompactionKeepsGzip() throws IOException
+	{
+		Path compressed = folder.getRoot().toPath().resolve("server.conf.gz");
+		try(OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+			Files.copy(file, out);
+		}
+		try(JournaledConfig config = configLoader.loadJournaledConfig(compressed.toString(), overrides)) {
+			setSamples(config);
+			config.compact();
+		}
+		byte [] bytes = Files.readAllBytes(compressed);
+		Assert.assertEquals(0x1f, bytes[0] & 0xFF);
+		Assert.assertEquals(0x8b, bytes[1] & 0xFF);
+		assertSamples(configLoader.loadConfig(compressed.toString(), overrides));
+	}
+
+	@Test
+	public void testBackgroundCompaction() throws Exception
+	{
+		try(JournaledConfig config = configLoader.loadJournaledConfig(file.toString(), overrides)) {
+			config.setCompactionThreshold(1);
+			setSamples(config);
+			long deadline = System.currentTimeMillis() + 10000;
+			while (config.getJournalSize() > 0 && System.currentTimeMillis() < deadline)
+			{
+				Thread.sleep(10);
+			}
+			Assert.assertNull(config.getCompactionFailure());
+			Assert.assertEquals(0, config.getJournalSize());
+		}
+		assertSamples(configLoader.loadConfig(file.toString(), overrides));
+	}
+
+	@Test
+	public void testCompactionNotRepeatedWithoutChanges() throws Exception
+	{
+		Queue<Runnable> tasks = new ArrayDeque<>();
+		try(JournaledConfig config = JournaledConfig.open(configLoader, file.toString(),
+				overrides, tasks::add)) {
+			config.setCompactionThreshold(1);
+			setSamples(config);
+			Assert.assertEquals(1, tasks.size());
+			tasks.poll().run();
+			Assert.assertNull(config.getCompactionFailure());
+			Assert.assertEquals(0, config.getJournalSize());
+			Assert.assertTrue(tasks.isEmpty());
+		}
+		assertSamples(configLoader.loadConfig(file.toString(), overrides));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNonPositiveCompactionThresholdRejected() throws IOException
+	{
+		try(JournaledConfig config = configLoader.loadJournaledConfig(file.toString(), overrides)) {
+			config.setCompactionThreshold(0);
+		}
+	}
+
+	@Test
+	public void testTornRecordDropped() throws IOException
+	{
+		long size;
+		try(JournaledConfig config = configLoader.loadJournaledConfig(file.toString(), overrides)) {
+			setSamples(config);
+			size = config.getJournalSize();
+		}
+		Files.write(journalFile, new byte [] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+		try(JournaledConfig config = configLoader.loadJournaledConfig(file.toString(), overrides)) {
+			assertSamples(config);
+			Assert.assertEquals(size, config.getJournalSize());
+			config.set("core", "max_files_per_session", 7000L);
+		}
+		try(JournaledConfig config = configLoader.loadJournaledConfig(file.toString(), overrides)) {
+			Assert.assertEquals(7000l, config.get("core").get("max_files_per_session"));
+		}
+	}
+
+	@Test
+	public void testUnwritableChangesRejected() throws IOException
+	{
+		try(JournaledConfig config = configLoader.loadJournaledConfig(file.toString(), overrides)) {
+			for (Object value : new Object [] {"a\"b", "a\nb", -1L, 1, null,
+					Arrays.asList("one"), Arrays.asList("a1", "b")})
+			{
+				try {
+					config.set("core", "key", value);
+					Assert.fail("Accepted " + value);
+				}
+				catch(IllegalArgumentException e)
+				{
+					//expected
+				}
+			}
+			try {
+				config.set("core", "1key", "value");
+				Assert.fail("Accepted an invalid setting name");
+			}
+			catch(IllegalArgumentException e)
+			{
+				//expected
+			}
+			Assert.assertEquals(0, config.getJournalSize());
+		}
+	}
+
+}
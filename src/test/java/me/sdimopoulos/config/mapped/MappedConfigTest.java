@@ -0,0 +1,137 @@
+package me.sdimopoulos.config.mapped;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import me.sdimopoulos.config.Config;
+import me.sdimopoulos.config.ConfigCorpusGenerator;
+import me.sdimopoulos.config.ConfigDiff;
+import me.sdimopoulos.config.ConfigGroup;
+import me.sdimopoulos.config.ConfigLoader;
+
+/**
+ * Unit testing of the memory mapped configuration format
+ *
+ * Configurations are written by the loader, mapped and compared with the
+ * loaded ones.
+ */
+public class MappedConfigTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	List<String> overrides = Arrays.asList(new String[] {"production", "containers"});
+	Config config;
+	Path mappedFile;
+
+	@Before
+	public void writeConfiguration()
+	{
+		mappedFile = folder.getRoot().toPath().resolve("server.cfgm");
+		ConfigLoader configLoader = new ConfigLoader();
+		config = configLoader.loadConfig("src/test/resources/server.conf", overrides);
+		configLoader.writeMappedConfig("src/test/resources/server.conf", overrides,
+				mappedFile.toString());
+	}
+
+	@Test
+	public void testSameAsLoaded() throws IOException
+	{
+		MappedConfig mapped = MappedConfig.open(mappedFile);
+		Assert.assertEquals(config, mapped);
+		Assert.assertEquals(mapped, config);
+		Assert.assertEquals(new ArrayList<>(config.keySet()), new ArrayList<>(mapped.keySet()));
+		Assert.assertEquals(52346850l, mapped.get("core").get("max_bytes_per_request"));
+		Assert.assertEquals(config.get("rest").get("arguments"), mapped.get("rest").get("arguments"));
+		Assert.assertEquals("", mapped.get("core").get("unknown"));
+		Assert.assertFalse(mapped.get("core").containsKey("unknown"));
+		Assert.assertTrue(mapped.get("unknown").isEmpty());
+		Assert.assertTrue(ConfigDiff.between(config, mapped).isEmpty());
+	}
+
+	@Test
+	public void testNonAsciiNamesAndValues() throws IOException
+	{
+		Config cafe = new Config();
+		ConfigGroup group = new ConfigGroup();
+		group.put("caf\u00e9", "cr\u00e8me");
+		group.put("cafe", "plain");
+		group.put("empty", "");
+		group.put("nothing", null);
+		cafe.put("men\u00fc", group);
+		cafe.put("empty", new ConfigGroup());
+		MappedConfigWriter.write(cafe, mappedFile);
+		MappedConfig mapped = MappedConfig.open(mappedFile);
+		Assert.assertEquals(cafe, mapped);
+		Assert.assertEquals("cr\u00e8me", mapped.get("men\u00fc").get("caf\u00e9"));
+		Assert.assertEquals("plain", mapped.get("men\u00fc").get("cafe"));
+		Assert.assertTrue(mapped.get("men\u00fc").containsKey("nothing"));
+		Assert.assertTrue(mapped.containsKey("empty"));
+	}
+
+	@Test
+	public void testGeneratedCorpus() throws IOException
+	{
+		Path file = folder.getRoot().toPath().resolve("generated.conf");
+		new ConfigCorpusGenerator(23)
+				.setNumOfSections(300)
+				.setNumOfSettingsPerSection(40)
+				.setOverrideDensity(0.3)
+				.generate(file);
+		List<String> corpusOverrides = Arrays.asList("test", "staging");
+		ConfigLoader configLoader = new ConfigLoader();
+		configLoader.writeMappedConfig(file.toString(), corpusOverrides, mappedFile.toString());
+		Assert.assertEquals(configLoader.loadConfig(file.toString(), corpusOverrides),
+				MappedConfig.open(mappedFile));
+	}
+
+	@Test
+	public void testReplacedFileKeepsMappedVersion() throws IOException
+	{
+		MappedConfig before = MappedConfig.open(mappedFile);
+		Config changed = new Config();
+		ConfigGroup core = new ConfigGroup();
+		core.put("max_bytes_per_request", 1l);
+		changed.put("core", core);
+		MappedConfigWriter.write(changed, mappedFile);
+		Assert.assertEquals(config, before);
+		Assert.assertEquals(changed, MappedConfig.open(mappedFile));
+	}
+
+	@Test
+	public void testReplacedFileKeepsPermissions() throws IOException
+	{
+		Assume.assumeTrue(Files.getFileAttributeView(mappedFile, PosixFileAttributeView.class) != null);
+		Assert.assertEquals(PosixFilePermissions.fromString("rw-r--r--"),
+				Files.getPosixFilePermissions(mappedFile));
+		Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-rw-r--");
+		Files.setPosixFilePermissions(mappedFile, permissions);
+		MappedConfigWriter.write(config, mappedFile);
+		Assert.assertEquals(permissions, Files.getPosixFilePermissions(mappedFile));
+		Assert.assertEquals(config, MappedConfig.open(mappedFile));
+	}
+
+	@Test(expected = IOException.class)
+	public void testOtherFormatRejected() throws IOException
+	{
+		Files.write(mappedFile, "[core]\nkey = 1\n".getBytes(StandardCharsets.UTF_8));
+		MappedConfig.open(mappedFile);
+	}
+
+}
@@ -0,0 +1,197 @@
+package me.sdimopoulos.config.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.sdimopoulos.config.Config;
+import me.sdimopoulos.config.ConfigGroup;
+
+/**
+ * Unit testing of the query metrics
+ *
+ * A small configuration is wrapped in an InstrumentedConfig and queried, and
+ * the answers are compared with the wrapped configuration while the counters
+ * of the snapshots are checked against the queries made.
+ */
+public class InstrumentedConfigTest {
+
+	Config config;
+	InstrumentedConfig instrumented;
+
+	@Before
+	public void buildConfiguration()
+	{
+		config = new Config();
+		for (int i = 0; i < 10; i++)
+		{
+			ConfigGroup group = new ConfigGroup();
+			group.put("max_files", (long) i);
+			group.put("name", "section " + i);
+			config.put("section" + i, group);
+		}
+		instrumented = new InstrumentedConfig(config);
+	}
+
+	@Test
+	public void testSameAnswersAsWrapped()
+	{
+		Assert.assertEquals(config, instrumented);
+		Assert.assertEquals(3l, instrumented.get("section3").get("max_files"));
+		Assert.assertEquals("", instrumented.get("section3").get("unknown"));
+		Assert.assertEquals(7l, instrumented.get("section3").getOrDefault("unknown", 7l));
+		Assert.assertNull(instrumented.get("unknown").get("max_files"));
+		Assert.assertArrayEquals(new Object [] {2l, ""},
+				instrumented.getAll("section2", new String [] {"max_files", "unknown"}, new Object [2]));
+	}
+
+	@Test
+	public void testHitsAndMisses()
+	{
+		for (int i = 0; i < 5; i++)
+		{
+			instrumented.get("section1").get("max_files");
+		}
+		instrumented.get("section1").get("unknown");
+		instrumented.get("section2").get("name");
+		instrumented.get("unknown").get("name");
+		ConfigMetrics.Snapshot snapshot = instrumented.getMetrics().snapshot();
+		Assert.assertEquals(7, snapshot.getLookupCount());
+		Assert.assertEquals(6, snapshot.getHitCount());
+		Assert.assertEquals(1, snapshot.getMissCount());
+		Assert.assertEquals(1, snapshot.getUnknownSectionCount());
+		Assert.assertEquals(Long.valueOf(5), snapshot.getSectionHits().get("section1"));
+		Assert.assertEquals(Long.valueOf(1), snapshot.getSectionMisses().get("section1"));
+		Assert.assertEquals(Long.valueOf(1), snapshot.getSectionHits().get("section2"));
+		Assert.assertEquals(Long.valueOf(0), snapshot.getSectionHits().get("section3"));
+		Assert.assertTrue(snapshot.getMeanNanos() > 0);
+		Assert.assertTrue(snapshot.getValueAtPercentile(50) <= snapshot.getMaxNanos());
+		Assert.assertTrue(snapshot.getLookupsPerSecond() > 0);
+	}
+
+	@Test
+	public void testDisabledRecordsNothing()
+	{
+		instrumented.getMetrics().setEnabled(false);
+		Map<String,Object> group = instrumented.get("section1");
+		Assert.assertSame(config.get("section1"), group);
+		Assert.assertEquals(1l, group.get("max_files"));
+		instrumented.get("unknown");
+		Assert.assertEquals(0, instrumented.getMetrics().snapshot().getLookupCount());
+		Assert.assertEquals(0, instrumented.getMetrics().snapshot().getUnknownSectionCount());
+	}
+
+	@Test
+	public void testReset()
+	{
+		instrumented.get("section1").get("max_files");
+		instrumented.getMetrics().reset();
+		instrumented.get("section1").get("unknown");
+		ConfigMetrics.Snapshot snapshot = instrumented.getMetrics().snapshot();
+		Assert.assertEquals(1, snapshot.getLookupCount());
+		Assert.assertEquals(0, snapshot.getHitCount());
+		Assert.assertEquals(1, snapshot.getMissCount());
+	}
+
+	@Test
+	public void testConcurrentRecording() throws InterruptedException
+	{
+		int numOfThreads = 4;
+		int lookupsPerThread = 100000;
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < numOfThreads; t++)
+		{
+			String section = "section" + t;
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < lookupsPerThread; i++)
+				{
+					instrumented.get(section).get("name");
+				}
+			}));
+		}
+		for (Thread thread : threads)
+		{
+			thread.start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+		ConfigMetrics.Snapshot snapshot = instrumented.getMetrics().snapshot();
+		Assert.assertEquals(numOfThreads * lookupsPerThread, snapshot.getLookupCount());
+		Assert.assertEquals(numOfThreads * lookupsPerThread, snapshot.getHitCount());
+		Assert.assertEquals(snapshot.getLookupCount(),
+				snapshot.getCountBetween(0, Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testEndedThreadsAreFolded() throws InterruptedException
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		int numOfThreads = 200;
+		for (int i = 0; i < numOfThreads; i++)
+		{
+			long latency = i;
+			Thread thread = new Thread(() -> {
+				histogram.record(latency);
+				histogram.record(latency);
+			});
+			thread.start();
+			thread.join();
+			Assert.assertTrue(histogram.recorderCount() <= 2);
+		}
+		histogram.record(1000);
+		long [] counts = histogram.counts();
+		Assert.assertEquals(1, histogram.recorderCount());
+		long total = 0;
+		for (int i = 0; i < LatencyHistogram.BUCKETS; i++)
+		{
+			total += counts[i];
+		}
+		Assert.assertEquals(2 * numOfThreads + 1, total);
+		Assert.assertEquals(numOfThreads * (numOfThreads - 1) + 1000, counts[LatencyHistogram.SUM]);
+	}
+
+	@Test
+	public void testHistogramBuckets()
+	{
+		long previousHighest = -1;
+		for (int bucket = 0; bucket < LatencyHistogram.BUCKETS; bucket++)
+		{
+			long lowest = LatencyHistogram.lowestValueOf(bucket);
+			long highest = LatencyHistogram.highestValueOf(bucket);
+			Assert.assertEquals(previousHighest + 1, lowest);
+			Assert.assertEquals(bucket, LatencyHistogram.bucketOf(lowest));
+			Assert.assertEquals(bucket, LatencyHistogram.bucketOf(highest));
+			Assert.assertTrue(highest - lowest <= Math.max(lowest / 16, 0));
+			previousHighest = highest;
+		}
+		Assert.assertEquals(Long.MAX_VALUE, previousHighest);
+	}
+
+	@Test
+	public void testJmxRegistration() throws Exception
+	{
+		instrumented.get("section1").get("max_files");
+		ObjectName name = instrumented.getMetrics().register("test");
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			Assert.assertEquals(1l, server.getAttribute(name, "LookupCount"));
+			Assert.assertEquals(true, server.getAttribute(name, "Enabled"));
+			Assert.assertNotNull(server.getAttribute(name, "SectionHits"));
+		}
+		finally {
+			instrumented.getMetrics().unregister();
+		}
+		Assert.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+	}
+
+}
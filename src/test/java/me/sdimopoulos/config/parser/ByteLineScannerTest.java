@@ -0,0 +1,196 @@
+package me.sdimopoulos.config.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit testing of the splitting of bytes into lines
+ *
+ * The scanner is given the smallest buffer, so that lines and terminators
+ * are split across refills, and channels that return few bytes per read.
+ */
+public class ByteLineScannerTest {
+
+	/**
+	 * A channel that returns at most a few bytes on every read
+	 */
+	static class TricklingChannel implements ReadableByteChannel {
+
+		final byte [] input;
+		final int chunk;
+		int position;
+
+		TricklingChannel(byte [] input, int chunk)
+		{
+			this.input = input;
+			this.chunk = chunk;
+		}
+
+		@Override
+		public int read(ByteBuffer dst)
+		{
+			if (position == input.length)
+			{
+				return -1;
+			}
+			int length = Math.min(Math.min(chunk, dst.remaining()), input.length - position);
+			dst.put(input, position, length);
+			position += length;
+			return length;
+		}
+
+		@Override
+		public boolean isOpen()
+		{
+			return true;
+		}
+
+		@Override
+		public void close()
+		{
+		}
+	}
+
+	private static ByteLineScanner scanner(String input, int chunk)
+	{
+		byte [] bytes = input.getBytes(StandardCharsets.UTF_8);
+		return new ByteLineScanner(new TricklingChannel(bytes, chunk),
+				StandardCharsets.UTF_8, 16);
+	}
+
+	private static List<String> lines(ByteLineScanner scanner) throws IOException
+	{
+		List<String> lines = new ArrayList<>();
+		while (scanner.nextLine())
+		{
+			lines.add(new String(scanner.getBuffer(), scanner.getLineStart(),
+					scanner.getLineEnd() - scanner.getLineStart(), StandardCharsets.UTF_8));
+		}
+		return lines;
+	}
+
+	@Test
+	public void testCarriageReturnNewlineSplitAcrossRefill() throws Exception
+	{
+		// the \r is the last byte of the 16 byte buffer, the \n comes with the refill
+		String input = "abcdefghijklmno\r\nsecond\r\nthird";
+		List<String> expected = Arrays.asList("abcdefghijklmno", "second", "third");
+		Assert.assertEquals(expected, lines(new ByteLineScanner(
+				Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))),
+				StandardCharsets.UTF_8, 16)));
+		for (int chunk = 1; chunk <= 16; chunk++)
+		{
+			Assert.assertEquals(expected, lines(scanner(input, chunk)));
+		}
+	}
+
+	@Test
+	public void testLoneCarriageReturns() throws Exception
+	{
+		for (int chunk = 1; chunk <= 16; chunk++)
+		{
+			ByteLineScanner scanner = scanner("one\rtwo\r\rthree\n\rfour\r", chunk);
+			Assert.assertEquals(Arrays.asList("one", "two", "", "three", "", "four"),
+					lines(scanner));
+			Assert.assertEquals(6, scanner.getLineNumber());
+		}
+	}
+
+	@Test
+	public void testLineLongerThanBuffer() throws Exception
+	{
+		StringBuilder longLine = new StringBuilder();
+		for (int i = 0; i < 100; i++)
+		{
+			longLine.append((char) ('a' + i % 26));
+		}
+		String input = "short\n" + longLine + "\nlast\n";
+		for (int chunk : new int [] {1, 7, 64})
+		{
+			ByteLineScanner scanner = scanner(input, chunk);
+			Assert.assertEquals(Arrays.asList("short", longLine.toString(), "last"),
+					lines(scanner));
+			Assert.assertTrue(scanner.getBuffer().length >= 100);
+		}
+	}
+
+	@Test
+	public void testLastLineWithoutTerminator() throws Exception
+	{
+		for (int chunk = 1; chunk <= 16; chunk++)
+		{
+			Assert.assertEquals(Arrays.asList("first", "no terminator here"),
+					lines(scanner("first\nno terminator here", chunk)));
+		}
+		Assert.assertEquals(Arrays.asList(), lines(scanner("", 16)));
+	}
+
+	@Test
+	public void testEmptyLineStopsLoading() throws Exception
+	{
+		ByteLineScanner scanner = scanner("[core]\n \n\nignored = 1\n", 3);
+		Assert.assertTrue(scanner.nextLine());
+		Assert.assertFalse(scanner.isEmpty());
+		Assert.assertTrue(scanner.nextLine());
+		Assert.assertFalse(scanner.isEmpty());
+		Assert.assertTrue(scanner.isBlank());
+		Assert.assertTrue(scanner.nextLine());
+		Assert.assertTrue(scanner.isEmpty());
+		Assert.assertEquals(3, scanner.getLineNumber());
+	}
+
+	@Test
+	public void testLeadingWhitespaceSkipped() throws Exception
+	{
+		ByteLineScanner scanner = scanner("\t \t  \t   name = 1\n \t; comment\n"
+				+ "\t\t\t\t\t\t\t\t\t\t[core]\n", 5);
+		Assert.assertTrue(scanner.nextLine());
+		Assert.assertEquals(9, scanner.getContentStart() - scanner.getLineStart());
+		Assert.assertEquals('n', scanner.firstContentByte());
+		Assert.assertEquals("name = 1", scanner.decodeContent());
+		Assert.assertTrue(scanner.isContentAscii());
+		Assert.assertTrue(scanner.nextLine());
+		Assert.assertTrue(scanner.isComment());
+		Assert.assertTrue(scanner.nextLine());
+		Assert.assertEquals(10, scanner.getContentStart() - scanner.getLineStart());
+		Assert.assertEquals("[core]", scanner.decodeContent());
+	}
+
+	@Test
+	public void testIndexOfInLongWords() throws Exception
+	{
+		ByteLineScanner scanner = scanner("=bcdefg=ijklmnopqrstuvw=", 64);
+		Assert.assertTrue(scanner.nextLine());
+		int start = scanner.getLineStart();
+		// first byte of the first word
+		Assert.assertEquals(start, scanner.indexOf((byte) '=', start, start + 24));
+		// last byte of the first word
+		Assert.assertEquals(start + 7, scanner.indexOf((byte) '=', start + 1, start + 24));
+		// last byte of the third word
+		Assert.assertEquals(start + 23, scanner.indexOf((byte) '=', start + 8, start + 24));
+		Assert.assertEquals(start + 23, scanner.indexOf((byte) '=', start + 16, start + 24));
+		Assert.assertEquals(-1, scanner.indexOf((byte) '=', start + 8, start + 23));
+		Assert.assertEquals(-1, scanner.indexOf((byte) 'z', start, start + 24));
+		Assert.assertEquals(start + 1, scanner.indexOf((byte) 'b', start, start + 24));
+	}
+
+	@Test
+	public void testNonAsciiContent() throws Exception
+	{
+		ByteLineScanner scanner = scanner("name = \"caf\u00e9\"\n", 4);
+		Assert.assertTrue(scanner.nextLine());
+		Assert.assertFalse(scanner.isContentAscii());
+		Assert.assertEquals("name = \"caf\u00e9\"", scanner.decodeContent());
+	}
+
+}
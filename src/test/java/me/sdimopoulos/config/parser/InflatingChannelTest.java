@@ -0,0 +1,124 @@
+package me.sdimopoulos.config.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit testing of the decompression of gzip streams on a separate thread
+ *
+ * Small blocks are used so that the data crosses many blocks and the worker
+ * waits for free blocks while the test reads.
+ */
+public class InflatingChannelTest {
+
+	private static byte [] gzip(byte [] data) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try(GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+			out.write(data);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static byte [] sample(int length)
+	{
+		byte [] data = new byte [length];
+		Random random = new Random(42);
+		for (int i = 0; i < length; i++)
+		{
+			data[i] = (byte) ('a' + random.nextInt(8));
+		}
+		return data;
+	}
+
+	private static byte [] readAll(InflatingChannel channel, int chunk) throws IOException
+	{
+		ByteArrayOutputStream read = new ByteArrayOutputStream();
+		ByteBuffer buffer = ByteBuffer.allocate(chunk);
+		while (channel.read(buffer) >= 0)
+		{
+			read.write(buffer.array(), 0, buffer.position());
+			buffer.clear();
+		}
+		return read.toByteArray();
+	}
+
+	@Test
+	public void testReadsAllBytesAcrossBlocks() throws IOException
+	{
+		byte [] data = sample(100_000);
+		try(InflatingChannel channel = new InflatingChannel(
+				new ByteArrayInputStream(gzip(data)), 1000, 2)) {
+			Assert.assertArrayEquals(data, readAll(channel, 777));
+			Assert.assertEquals(-1, channel.read(ByteBuffer.allocate(16)));
+		}
+	}
+
+	@Test
+	public void testEmptyStream() throws IOException
+	{
+		try(InflatingChannel channel = new InflatingChannel(
+				new ByteArrayInputStream(gzip(new byte [0])))) {
+			Assert.assertEquals(-1, channel.read(ByteBuffer.allocate(16)));
+		}
+	}
+
+	@Test
+	public void testTruncatedStreamFailsAfterGoodBlocks() throws IOException
+	{
+		byte [] compressed = gzip(sample(100_000));
+		try(InflatingChannel channel = new InflatingChannel(new ByteArrayInputStream(
+				Arrays.copyOf(compressed, compressed.length - 20)), 1000, 2)) {
+			readAll(channel, 1000);
+			Assert.fail("Expected an IOException");
+		}
+		catch(IOException e)
+		{
+			Assert.assertNotNull(e.getCause());
+		}
+	}
+
+	@Test
+	public void testCloseStopsWorkerAndStream() throws IOException
+	{
+		boolean [] closed = new boolean [1];
+		InputStream compressed = new ByteArrayInputStream(gzip(sample(100_000))) {
+			@Override
+			public void close()
+			{
+				closed[0] = true;
+			}
+		};
+		InflatingChannel channel = new InflatingChannel(compressed, 1000, 2);
+		Assert.assertTrue(channel.read(ByteBuffer.allocate(10)) > 0);
+		channel.close();
+		Assert.assertTrue(closed[0]);
+		Assert.assertFalse(channel.isOpen());
+		try {
+			channel.read(ByteBuffer.allocate(10));
+			Assert.fail("Expected a ClosedChannelException");
+		}
+		catch(ClosedChannelException e)
+		{
+			//expected
+		}
+	}
+
+	@Test
+	public void testGzipMagic()
+	{
+		Assert.assertTrue(InflatingChannel.isGzipMagic((byte) 0x1f, (byte) 0x8b));
+		Assert.assertFalse(InflatingChannel.isGzipMagic('[', 'c'));
+	}
+
+}
@@ -0,0 +1,173 @@
+package me.sdimopoulos.config.parser;
+
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import me.sdimopoulos.config.parser.Parser.FieldSink;
+import me.sdimopoulos.config.parser.Parser.ParseType;
+import me.sdimopoulos.config.parser.Parser.ParseVariable;
+import me.sdimopoulos.config.parser.ParsingConfigurationException.Reason;
+
+/**
+ * Unit testing of the parsing of blocks of lines into field offsets
+ *
+ * The FSM, the compiled RegEx DFA and the RegEx parsers are given the same
+ * blocks and must report the same fields.
+ */
+public class ParserBlockTest {
+
+	/**
+	 * Collects the fields as text, and stops at the first empty line
+	 */
+	static class CollectingSink implements FieldSink {
+
+		final CharSequence input;
+		final List<String> fields = new ArrayList<>();
+		int lines;
+
+		CollectingSink(CharSequence input)
+		{
+			this.input = input;
+		}
+
+		@Override
+		public void field(ParseVariable variable, ParseType type, int start, int end)
+		{
+			fields.add(variable + (type == ParseType.NA ? "" : "(" + type + ")")
+					+ ":" + input.subSequence(start, end));
+		}
+
+		@Override
+		public boolean endOfLine(int start, int end)
+		{
+			lines++;
+			return end > start;
+		}
+	}
+
+	private static List<Parser> parsers()
+	{
+		ParserBuilder parserBuilder = new ParserBuilder();
+		return Arrays.asList(
+				parserBuilder.buildParserWithFSM(new FsmBuilder().buildFSM()),
+				parserBuilder.buildParserWithFSM(new RegExBuilder().buildDFA()),
+				parserBuilder.buildParserWithRegEx(new RegExBuilder().buildRegEx()));
+	}
+
+	@Test
+	public void testFieldsOfBlock() throws Exception
+	{
+		String block = "; comment\r\n[core] ; group\r\n  path<prod> = /opt/x\n"
+				+ "name = \"A name\" ; note\nlist = a,b\nenabled = no\ncount = 42";
+		List<String> expected = Arrays.asList("GROUP:core", "SETTING:path",
+				"OVERRIDE:prod", "VALUE(STRING):/opt/x", "SETTING:name",
+				"VALUE(STRING):A name", "SETTING:list", "VALUE(ARRAY):a,b",
+				"SETTING:enabled", "VALUE(BOOLEAN):no", "SETTING:count",
+				"VALUE(NUMBER):42");
+		for (Parser parser : parsers())
+		{
+			CollectingSink sink = new CollectingSink(block);
+			Assert.assertEquals(block.length(), parser.parseBlock(block, 0,
+					block.length(), sink));
+			Assert.assertEquals(expected, sink.fields);
+			Assert.assertEquals(7, sink.lines);
+		}
+	}
+
+	@Test
+	public void testSameFieldsAsLineParsing() throws Exception
+	{
+		String file = new String(Files.readAllBytes(Paths.get("src/test/resources/server.conf")),
+				StandardCharsets.UTF_8);
+		String text = "xx" + file + "\n\nignored = 1";
+		CharBuffer buffer = CharBuffer.wrap(text.toCharArray());
+		for (Parser parser : parsers())
+		{
+			CollectingSink sink = new CollectingSink(buffer);
+			int stop = parser.parseBlock(buffer, 2, buffer.length(), sink);
+			Assert.assertEquals(text.indexOf("\n\n") + 2, stop);
+
+			List<String> fromLines = new ArrayList<>();
+			ParsingContext parsingCtx = new ParsingContext(null, Arrays.asList());
+			parsingCtx.setupParsedVariables(new String [] {"group","setting",
+					"override","value"});
+			for (String line : file.split("\n"))
+			{
+				parser.parseSingleLineAndUpdateContext(line, parsingCtx);
+				for (String name : new String [] {"group", "setting", "override"})
+				{
+					if (parsingCtx.getParsedVariableValue(name) != null)
+					{
+						fromLines.add(name.toUpperCase() + ":"
+								+ parsingCtx.getParsedVariableValue(name));
+					}
+				}
+				parsingCtx.resetParsedVariables();
+				parser.resetParser();
+			}
+			List<String> names = new ArrayList<>();
+			for (String field : sink.fields)
+			{
+				if (!field.startsWith("VALUE"))
+				{
+					names.add(field);
+				}
+			}
+			Assert.assertEquals(fromLines, names);
+			Assert.assertTrue(sink.fields.contains("VALUE(STRING):Websocket request hadler"));
+			Assert.assertTrue(sink.fields.contains("VALUE(NUMBER):3456373288"));
+		}
+	}
+
+	@Test
+	public void testLineParsingAfterBlock() throws Exception
+	{
+		String block = "[core]\nname = \"A name\"";
+		for (Parser parser : parsers())
+		{
+			parser.parseBlock(block, 0, block.length(), new CollectingSink(block));
+			ParsingContext parsingCtx = new ParsingContext(null, Arrays.asList());
+			parsingCtx.setupParsedVariables(new String [] {"group","setting",
+					"override","value"});
+			parser.parseSingleLineAndUpdateContext("[rest]", parsingCtx);
+			Assert.assertEquals("rest", parsingCtx.getParsedVariableValue("group"));
+			parser.resetParser();
+		}
+	}
+
+	@Test
+	public void testErrorColumnInLine() throws Exception
+	{
+		String block = "[core]\n  bad line\n";
+		for (Parser parser : parsers())
+		{
+			CollectingSink sink = new CollectingSink(block);
+			try {
+				parser.parseBlock(block, 0, block.length(), sink);
+				Assert.fail("Parsed a bad line");
+			}
+			catch(ParsingConfigurationException e)
+			{
+				Assert.assertEquals(1, sink.lines);
+				if (e.getReason() == Reason.UNEXPECTED_CHARACTER)
+				{
+					Assert.assertEquals(7, e.getColumn());
+				}
+				else
+				{
+					Assert.assertEquals(Reason.UNPARSABLE_LINE, e.getReason());
+					Assert.assertEquals(3, e.getColumn());
+				}
+			}
+		}
+	}
+
+}
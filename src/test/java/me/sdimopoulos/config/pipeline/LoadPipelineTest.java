@@ -0,0 +1,112 @@
+package me.sdimopoulos.config.pipeline;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import me.sdimopoulos.config.Config;
+import me.sdimopoulos.config.ConfigCorpusGenerator;
+import me.sdimopoulos.config.ConfigLoadException;
+import me.sdimopoulos.config.ConfigLoader;
+import me.sdimopoulos.config.parser.FsmBuilder;
+import me.sdimopoulos.config.parser.ParsingConfigurationException;
+
+/**
+ * Unit testing of the pipelined loading
+ *
+ * The pipelined loader must give the same configuration as the sequential
+ * one, including the overrides, also with tiny batches and rings so that the
+ * stages wait on each other all the time.
+ */
+public class LoadPipelineTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSameAsSequentialLoading()
+	{
+		List<String> overrides = Arrays.asList(new String[] {"production", "staging"});
+		ConfigLoader configLoader = new ConfigLoader();
+		Assert.assertEquals(configLoader.loadConfig("src/test/resources/server.conf", overrides),
+				configLoader.loadConfigPipelined("src/test/resources/server.conf", overrides));
+	}
+
+	@Test
+	public void testSameAsSequentialWithTinyBatches() throws Exception
+	{
+		Path file = folder.getRoot().toPath().resolve("generated.conf");
+		new ConfigCorpusGenerator(17)
+				.setNumOfSections(200)
+				.setNumOfSettingsPerSection(30)
+				.setOverrideDensity(0.4)
+				.setCommentRatio(0.2)
+				.generate(file);
+		List<String> overrides = Arrays.asList("test", "staging");
+		Config expected = new ConfigLoader().loadConfig(file.toString(), overrides);
+		try(FileChannel channel = FileChannel.open(file)) {
+			Config config = new LoadPipeline(new FsmBuilder().buildFSM(), StandardCharsets.UTF_8)
+					.setBatchLines(3)
+					.setRingSize(1)
+					.load(channel, overrides, new Config());
+			Assert.assertEquals(expected, config);
+		}
+	}
+
+	@Test
+	public void testParsingErrorStopsAllStages() throws Exception
+	{
+		Path file = folder.getRoot().toPath().resolve("broken.conf");
+		StringBuilder content = new StringBuilder("[core]\n");
+		for (int i = 0; i < 10000; i++)
+		{
+			content.append("setting").append(i).append(" = ").append(i).append('\n');
+		}
+		content.append("not a setting !\n");
+		Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+		try(FileChannel channel = FileChannel.open(file)) {
+			new LoadPipeline(new FsmBuilder().buildFSM(), StandardCharsets.UTF_8)
+					.setBatchLines(16)
+					.setRingSize(2)
+					.load(channel, Arrays.asList(), new Config());
+			Assert.fail("Expected a ParsingConfigurationException");
+		}
+		catch(ParsingConfigurationException e)
+		{
+			//expected
+		}
+		try {
+			new ConfigLoader().loadConfigPipelined(file.toString(), Arrays.asList());
+			Assert.fail("Expected a ConfigLoadException");
+		}
+		catch(ConfigLoadException e)
+		{
+			Assert.assertTrue(e.getCause() instanceof ParsingConfigurationException);
+		}
+	}
+
+	@Test
+	public void testNonAsciiLinesInEachCharset() throws Exception
+	{
+		Path file = folder.getRoot().toPath().resolve("cafe.conf");
+		String content = "[cafe]\nname = \"Caf\u00e9 cr\u00e8me\"\nopen = yes\n";
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+		Assert.assertEquals("Caf\u00e9 cr\u00e8me", new ConfigLoader()
+				.loadConfigPipelined(file.toString(), Arrays.asList())
+				.get("cafe").get("name"));
+		Files.write(file, content.getBytes(StandardCharsets.UTF_16));
+		Assert.assertEquals("Caf\u00e9 cr\u00e8me", new ConfigLoader()
+				.setCharset(StandardCharsets.UTF_16)
+				.loadConfigPipelined(file.toString(), Arrays.asList())
+				.get("cafe").get("name"));
+	}
+
+}
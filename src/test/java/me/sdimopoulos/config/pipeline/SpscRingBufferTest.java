@@ -0,0 +1,66 @@
+package me.sdimopoulos.config.pipeline;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit testing of the single producer single consumer ring buffer
+ */
+public class SpscRingBufferTest {
+
+	@Test
+	public void testCapacityAndOrder()
+	{
+		SpscRingBuffer<Integer> ring = new SpscRingBuffer<>(3);
+		Assert.assertEquals(4, ring.capacity());
+		Assert.assertNull(ring.poll());
+		for (int i = 0; i < 4; i++)
+		{
+			Assert.assertTrue(ring.offer(i));
+		}
+		Assert.assertFalse(ring.offer(4));
+		Assert.assertEquals(4, ring.size());
+		Assert.assertEquals(Integer.valueOf(0), ring.poll());
+		Assert.assertTrue(ring.offer(4));
+		for (int i = 1; i <= 4; i++)
+		{
+			Assert.assertEquals(Integer.valueOf(i), ring.poll());
+		}
+		Assert.assertNull(ring.poll());
+	}
+
+	@Test
+	public void testElementsCrossThreadsInOrder() throws InterruptedException
+	{
+		SpscRingBuffer<Long> ring = new SpscRingBuffer<>(8);
+		long count = 1_000_000;
+		Thread producer = new Thread(() -> {
+			for (long i = 0; i < count; i++)
+			{
+				while (!ring.offer(i))
+				{
+					Thread.yield();
+				}
+			}
+		});
+		producer.start();
+		for (long expected = 0; expected < count; expected++)
+		{
+			Long value;
+			while ((value = ring.poll()) == null)
+			{
+				Thread.yield();
+			}
+			Assert.assertEquals(expected, value.longValue());
+		}
+		producer.join();
+		Assert.assertEquals(0, ring.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCapacity()
+	{
+		new SpscRingBuffer<Object>(0);
+	}
+
+}
@@ -0,0 +1,130 @@
+package me.sdimopoulos.config.replication;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.sdimopoulos.config.Config;
+import me.sdimopoulos.config.ConfigDiff;
+import me.sdimopoulos.config.ConfigGroup;
+import me.sdimopoulos.config.ConfigLoader;
+import me.sdimopoulos.config.subscription.ConfigSubscriptions;
+
+/**
+ * Unit testing of the replication of a configuration to followers
+ *
+ * The leader and the followers run in this JVM and talk over the loopback
+ * interface.
+ */
+public class ReplicationTest {
+
+	Config config;
+
+	@Before
+	public void loadConfiguration()
+	{
+		List<String> overrides = Arrays.asList(new String[] {"production", "containers"});
+		config = new ConfigLoader().loadConfig("src/test/resources/server.conf", overrides);
+	}
+
+	private Config copy(Config source)
+	{
+		Config copy = new Config();
+		for (String group : source.keySet())
+		{
+			ConfigGroup settings = new ConfigGroup();
+			settings.putAll(source.get(group));
+			copy.put(group, settings);
+		}
+		return copy;
+	}
+
+	@Test
+	public void testCodecRoundTrip() throws IOException
+	{
+		byte [] encoded = SnapshotCodec.encodeSnapshot(7, config);
+		SnapshotCodec.Message message = SnapshotCodec.decode(
+				new DataInputStream(new ByteArrayInputStream(encoded)));
+		Assert.assertEquals(SnapshotCodec.SNAPSHOT, message.getType());
+		Assert.assertEquals(7, message.getVersion());
+		Assert.assertEquals(config, message.getSections());
+		Assert.assertEquals(new ArrayList<>(config.keySet()),
+				new ArrayList<>(message.getSections().keySet()));
+		encoded = SnapshotCodec.encodeDelta(8, 7, config, Arrays.asList("core"),
+				Collections.singletonList("ftp"));
+		message = SnapshotCodec.decode(new DataInputStream(new ByteArrayInputStream(encoded)));
+		Assert.assertEquals(SnapshotCodec.DELTA, message.getType());
+		Assert.assertEquals(7, message.getBaseVersion());
+		Assert.assertEquals(config.get("core"), message.getSections().get("core"));
+		Assert.assertEquals(Arrays.asList("ftp"), message.getRemoved());
+	}
+
+	@Test
+	public void testFollowersReceiveSnapshotAndDeltas() throws Exception
+	{
+		try(ReplicationLeader leader = new ReplicationLeader(config, 0)) {
+			InetSocketAddress address = new InetSocketAddress("localhost", leader.getPort());
+			try(ReplicationFollower first = new ReplicationFollower(address);
+					ReplicationFollower second = new ReplicationFollower(address)) {
+				Assert.assertTrue(first.awaitVersion(1, 10, TimeUnit.SECONDS));
+				Assert.assertTrue(second.awaitVersion(1, 10, TimeUnit.SECONDS));
+				Assert.assertEquals(config, first.getConfig());
+				Config changed = copy(config);
+				changed.get("core").put("max_bytes_per_request", 1l);
+				changed.remove("ftp");
+				ConfigGroup extra = new ConfigGroup();
+				changed.put("extra", extra);
+				Config before = first.getConfig();
+				leader.publish(changed);
+				Assert.assertEquals(2, leader.getVersion());
+				Assert.assertTrue(first.awaitVersion(2, 10, TimeUnit.SECONDS));
+				Assert.assertTrue(second.awaitVersion(2, 10, TimeUnit.SECONDS));
+				Assert.assertEquals(changed, first.getConfig());
+				Assert.assertEquals(changed, second.getConfig());
+				Assert.assertSame(before.get("rest"), first.getConfig().get("rest"));
+				Assert.assertEquals(config, before);
+				leader.publish(copy(changed));
+				Assert.assertEquals(2, leader.getVersion());
+			}
+		}
+	}
+
+	@Test
+	public void testLateFollowerAndSubscriptions() throws Exception
+	{
+		try(ReplicationLeader leader = new ReplicationLeader(config, 0)) {
+			Config changed = copy(config);
+			changed.get("rest").put("description", "changed");
+			leader.publish(changed);
+			InetSocketAddress address = new InetSocketAddress("localhost", leader.getPort());
+			try(ReplicationFollower follower = new ReplicationFollower(address)) {
+				Assert.assertTrue(follower.awaitVersion(2, 10, TimeUnit.SECONDS));
+				Assert.assertEquals(changed, follower.getConfig());
+				ConfigSubscriptions subscriptions = new ConfigSubscriptions(follower.getConfig());
+				List<ConfigDiff.Change> notified = Collections.synchronizedList(new ArrayList<>());
+				subscriptions.onChange("rest", "description", notified::addAll);
+				follower.setSubscriptions(subscriptions);
+				leader.publish(copy(config));
+				Assert.assertTrue(follower.awaitVersion(3, 10, TimeUnit.SECONDS));
+				long deadline = System.currentTimeMillis() + 10000;
+				while (notified.isEmpty() && System.currentTimeMillis() < deadline)
+				{
+					Thread.sleep(1);
+				}
+				Assert.assertEquals(1, notified.size());
+				Assert.assertEquals("Rest request hadler", notified.get(0).getNewValue());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,200 @@
+package me.sdimopoulos.config.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.sdimopoulos.config.Config;
+import me.sdimopoulos.config.ConfigGroup;
+import me.sdimopoulos.config.ConfigLoader;
+
+/**
+ * Unit testing of the off-heap configuration store
+ *
+ * The sample configuration file is loaded both in a heap Config and in an
+ * OffHeapConfig, the second one spilling to a file from the start, and the
+ * results are compared.
+ */
+public class OffHeapConfigTest {
+
+	Config heapConfig;
+	OffHeapConfig config;
+
+	@Before
+	public void readConfiguration()
+	{
+		List<String> overrides = Arrays.asList(new String[] {"deprecated", "production"});
+		ConfigLoader configLoader = new ConfigLoader();
+		heapConfig = configLoader.loadConfig("src/test/resources/server.conf", overrides);
+		config = (OffHeapConfig) configLoader
+				.setConfigSupplier(() -> new OffHeapConfig(0, null))
+				.loadConfig("src/test/resources/server.conf", overrides);
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		config.close();
+	}
+
+	@Test
+	public void testSameResultAsHeapConfig()
+	{
+		Assert.assertEquals(heapConfig, config);
+		Assert.assertEquals(config, heapConfig);
+		Assert.assertEquals(heapConfig.hashCode(), config.hashCode());
+	}
+
+	@Test
+	public void testTypedValues()
+	{
+		Assert.assertEquals(52346850l, config.get("core").get("max_bytes_per_request"));
+		Assert.assertEquals(false, config.get("websockets").get("enabled"));
+		Assert.assertEquals(Arrays.asList("array", "containing", "arguments"),
+				config.get("rest").get("arguments"));
+		Assert.assertEquals("/opt/yourcompany/restAPI/v1",
+				config.get("rest").get("config_path"));
+	}
+
+	@Test
+	public void testMissingGroupAndKey()
+	{
+		Assert.assertTrue(config.get("unknown_group").isEmpty());
+		Assert.assertEquals("", config.get("websockets").get("unknown_key"));
+	}
+
+	@Test
+	public void testSpillsToFile()
+	{
+		Assert.assertEquals(0, config.getDirectBytes());
+		Assert.assertTrue(config.getMappedBytes() > 0);
+	}
+
+	@Test
+	public void testReplacedSettingIsIteratedOnce() throws Exception
+	{
+		try(OffHeapConfig offHeap = new OffHeapConfig()) {
+			offHeap.put("group", new ConfigGroup());
+			offHeap.get("group").put("key", "first");
+			offHeap.get("group").put("other", 1l);
+			Assert.assertEquals("first", offHeap.get("group").put("key", "second"));
+			Assert.assertEquals(2, offHeap.get("group").size());
+			Map<String,Object> expected = new HashMap<>();
+			expected.put("key", "second");
+			expected.put("other", 1l);
+			Assert.assertEquals(expected, new HashMap<>(offHeap.get("group")));
+			Assert.assertEquals("second", offHeap.get("group").get("key"));
+		}
+	}
+
+	@Test
+	public void testManySettingsGrowTheIndex() throws Exception
+	{
+		try(OffHeapConfig offHeap = new OffHeapConfig(1 << 16, null)) {
+			offHeap.put("group", new ConfigGroup());
+			for (long i = 0; i < 100000; i++)
+			{
+				offHeap.get("group").put("key" + i, i);
+			}
+			Assert.assertEquals(100000, offHeap.getSettingCount());
+			Assert.assertEquals(99999l, offHeap.get("group").get("key99999"));
+			Assert.assertTrue(offHeap.getMappedBytes() > 0);
+		}
+	}
+
+	@Test
+	public void testReplacedSectionIsNotCounted() throws Exception
+	{
+		try(OffHeapConfig offHeap = new OffHeapConfig()) {
+			ConfigGroup group = new ConfigGroup();
+			group.put("first", 1l);
+			group.put("second", 2l);
+			offHeap.put("group", group);
+			offHeap.put("other", group);
+			Assert.assertEquals(4, offHeap.getSettingCount());
+			ConfigGroup replacement = new ConfigGroup();
+			replacement.put("third", 3l);
+			offHeap.put("group", replacement);
+			Assert.assertEquals(3, offHeap.getSettingCount());
+			Assert.assertEquals(replacement, offHeap.get("group"));
+		}
+	}
+
+	@Test
+	public void testCloseReleasesBuffers() throws Exception
+	{
+		OffHeapMemory memory = new OffHeapMemory(64, null);
+		memory.allocate(64);
+		memory.allocate(128);
+		Assert.assertEquals(64, memory.getDirectBytes());
+		Assert.assertEquals(128, memory.getMappedBytes());
+		memory.close();
+		Assert.assertEquals(192, memory.getReleasedBytes());
+		memory.close();
+		Assert.assertEquals(192, memory.getReleasedBytes());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testClosedConfigCannotBeQueried() throws Exception
+	{
+		config.close();
+		config.get("core");
+	}
+
+	@Test
+	public void testCloseWaitsForRunningQueries() throws Exception
+	{
+		AtomicInteger failures = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(4);
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 4; i++)
+		{
+			Thread thread = new Thread(() -> {
+				started.countDown();
+				try {
+					while (true)
+					{
+						for (Map.Entry<String,Object> entry : config.get("core").entrySet())
+						{
+							if (!heapConfig.get("core").get(entry.getKey()).equals(entry.getValue()))
+							{
+								failures.incrementAndGet();
+							}
+						}
+					}
+				}
+				catch(IllegalStateException e)
+				{
+					//intentionally left empty. the config was closed
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		started.await();
+		Thread.sleep(50);
+		config.close();
+		for (Thread thread : threads)
+		{
+			thread.join(10000);
+			Assert.assertFalse(thread.isAlive());
+		}
+		Assert.assertEquals(0, failures.get());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testRemoveIsNotSupported()
+	{
+		config.remove("core");
+	}
+
+}
@@ -0,0 +1,115 @@
+package me.sdimopoulos.config.subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.sdimopoulos.config.Config;
+import me.sdimopoulos.config.ConfigDiff;
+import me.sdimopoulos.config.ConfigLoader;
+
+/**
+ * Unit testing of the per setting change notifications
+ *
+ * The sample configuration is loaded twice, a copy is changed and passed to
+ * update, and the notified changes are checked.
+ */
+public class ConfigSubscriptionsTest {
+
+	Config config;
+	Config changed;
+
+	@Before
+	public void loadConfiguration()
+	{
+		List<String> overrides = Arrays.asList(new String[] {"production", "containers"});
+		ConfigLoader configLoader = new ConfigLoader();
+		config = configLoader.loadConfig("src/test/resources/server.conf", overrides);
+		changed = configLoader.loadConfig("src/test/resources/server.conf", overrides);
+		changed.get("core").put("max_bytes_per_request", 1l);
+		changed.get("core").remove("config_path");
+	}
+
+	@Test
+	public void testOnlyChangedKeysNotified()
+	{
+		ConfigSubscriptions subscriptions = new ConfigSubscriptions(config);
+		List<ConfigDiff.Change> notified = new ArrayList<>();
+		List<ConfigDiff.Change> unrelated = new ArrayList<>();
+		subscriptions.onChange("core", "max_bytes_per_request", notified::addAll);
+		subscriptions.onChange("rest", "description", unrelated::addAll);
+		subscriptions.onChange("unknown", "max_bytes_per_request", unrelated::addAll);
+		ConfigDiff diff = subscriptions.update(changed);
+		Assert.assertEquals(2, diff.getChanges().size());
+		Assert.assertSame(changed, subscriptions.getConfig());
+		Assert.assertEquals(1, notified.size());
+		Assert.assertEquals(1l, notified.get(0).getNewValue());
+		Assert.assertTrue(unrelated.isEmpty());
+	}
+
+	@Test
+	public void testOneBatchPerListenerAndUpdate()
+	{
+		ConfigSubscriptions subscriptions = new ConfigSubscriptions(config);
+		List<List<ConfigDiff.Change>> batches = new ArrayList<>();
+		ConfigChangeListener listener = batches::add;
+		subscriptions.onChange("core", "max_bytes_per_request", listener);
+		subscriptions.onChange("core", "config_path", listener);
+		subscriptions.onChange("core", "config_path", listener);
+		subscriptions.update(changed);
+		Assert.assertEquals(1, batches.size());
+		Assert.assertEquals(2, batches.get(0).size());
+		Assert.assertEquals(ConfigDiff.Type.REMOVED, batches.get(0).get(1).getType());
+		subscriptions.update(changed);
+		Assert.assertEquals(1, batches.size());
+	}
+
+	@Test
+	public void testCancel()
+	{
+		ConfigSubscriptions subscriptions = new ConfigSubscriptions(config);
+		List<ConfigDiff.Change> notified = new ArrayList<>();
+		Subscription subscription = subscriptions.onChange("core",
+				"max_bytes_per_request", notified::addAll);
+		Assert.assertEquals(1, subscriptions.getSubscriptionCount());
+		subscription.cancel();
+		subscription.cancel();
+		Assert.assertEquals(0, subscriptions.getSubscriptionCount());
+		subscriptions.update(changed);
+		Assert.assertTrue(notified.isEmpty());
+	}
+
+	@Test
+	public void testDeliveredOnExecutorDespiteFailingListener() throws Exception
+	{
+		ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "notifier");
+			thread.setUncaughtExceptionHandler((t, e) -> { });
+			return thread;
+		});
+		try {
+			ConfigSubscriptions subscriptions = new ConfigSubscriptions(config, executor);
+			List<String> threads = new ArrayList<>();
+			subscriptions.onChange("core", "max_bytes_per_request", changes -> {
+				throw new IllegalStateException("failing listener");
+			});
+			subscriptions.onChange("core", "max_bytes_per_request",
+					changes -> threads.add(Thread.currentThread().getName()));
+			subscriptions.update(changed);
+			executor.shutdown();
+			Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+			Assert.assertEquals(Arrays.asList("notifier"), threads);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+package me.sdimopoulos.config.stress;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.JJ_Result;
+
+import me.sdimopoulos.config.Config;
+import me.sdimopoulos.config.ConfigGroup;
+
+/**
+ * A new version built aside and swapped in, as the ReplicationFollower does
+ *
+ * The next version copies the section map of the current one, shares its
+ * unchanged section and replaces the changed one, then is published with one
+ * volatile write. A reader takes the current version once and reads one
+ * setting from each section, and must see both from the same version.
+ */
+@JCStressTest
+@Outcome(id = "1, 2", expect = ACCEPTABLE, desc = "The first version is seen")
+@Outcome(id = "1, 20", expect = ACCEPTABLE, desc = "The second version is seen")
+@Outcome(id = {"0, 0", "1, 0", "0, 2", "0, 20"}, expect = FORBIDDEN,
+		desc = "A partly built version is seen")
+@State
+public class CopyOnWriteSwapTest {
+
+	private volatile Config config = Snapshots.build(1L, 2L);
+
+	@Actor
+	public void follower()
+	{
+		Config current = config;
+		Config next = new Config();
+		next.putAll(current);
+		ConfigGroup changed = new ConfigGroup();
+		changed.put("b", 20L);
+		next.put("second", changed);
+		config = next;
+	}
+
+	@Actor
+	public void reader(JJ_Result result)
+	{
+		Snapshots.read(config, result);
+	}
+
+}
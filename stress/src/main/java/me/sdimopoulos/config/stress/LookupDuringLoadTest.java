@@ -0,0 +1,63 @@
+package me.sdimopoulos.config.stress;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE_INTERESTING;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.I_Result;
+
+import me.sdimopoulos.config.ConfigGroup;
+
+/**
+ * Baseline: a lookup of an existing setting while a load keeps inserting
+ * into the same ConfigGroup
+ *
+ * A ConfigGroup is a HashMap, and the inserts of the loader resize its table.
+ * A get racing a resize can look in the new table before the entries are
+ * moved, and a missing setting reads as an empty string, so the reader is
+ * told that a setting it has seen before is not there.
+ */
+@JCStressTest
+@Outcome(id = "1", expect = ACCEPTABLE, desc = "The existing setting is found")
+@Outcome(id = "0", expect = ACCEPTABLE_INTERESTING,
+		desc = "The existing setting reads as missing during a resize")
+@Outcome(id = "-1", expect = ACCEPTABLE_INTERESTING,
+		desc = "The lookup failed on the half resized table")
+@State
+public class LookupDuringLoadTest {
+
+	private static final int INSERTS = 64;
+
+	private final ConfigGroup group = new ConfigGroup();
+
+	public LookupDuringLoadTest()
+	{
+		group.put("existing", 1L);
+	}
+
+	@Actor
+	public void loader()
+	{
+		for (int i = 0; i < INSERTS; i++)
+		{
+			group.put("setting" + i, (long) i);
+		}
+	}
+
+	@Actor
+	public void reader(I_Result result)
+	{
+		try {
+			Object value = group.get("existing");
+			result.r1 = value instanceof Long ? ((Long) value).intValue() : 0;
+		}
+		catch(RuntimeException e)
+		{
+			result.r1 = -1;
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+package me.sdimopoulos.config.stress;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE_INTERESTING;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.JJ_Result;
+
+import me.sdimopoulos.config.Config;
+
+/**
+ * Baseline: a loaded Config handed to readers through a plain field
+ *
+ * This is how a service that reloads its configuration into a shared field
+ * publishes it today. Neither Config nor ConfigGroup has final fields, so
+ * the Java memory model lets a reader that sees the new Config see its
+ * section, or the settings of the section, not yet written.
+ */
+@JCStressTest
+@Outcome(id = "-1, -1", expect = ACCEPTABLE, desc = "The config is not published yet")
+@Outcome(id = "1, 2", expect = ACCEPTABLE, desc = "The whole config is seen")
+@Outcome(id = {"0, 0", "1, 0", "0, 2"}, expect = ACCEPTABLE_INTERESTING,
+		desc = "The published config is seen partly built")
+@State
+public class PlainConfigPublicationTest {
+
+	private Config config;
+
+	@Actor
+	public void publisher()
+	{
+		config = Snapshots.build(1L, 2L);
+	}
+
+	@Actor
+	public void reader(JJ_Result result)
+	{
+		Config seen = config;
+		if (seen == null)
+		{
+			result.r1 = -1;
+			result.r2 = -1;
+			return;
+		}
+		Snapshots.read(seen, result);
+	}
+
+}
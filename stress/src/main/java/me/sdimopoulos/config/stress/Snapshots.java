@@ -0,0 +1,56 @@
+package me.sdimopoulos.config.stress;
+
+import org.openjdk.jcstress.infra.results.JJ_Result;
+
+import me.sdimopoulos.config.Config;
+import me.sdimopoulos.config.ConfigGroup;
+
+/**
+ * Builds and reads the two section configuration shared by the tests
+ */
+final class Snapshots {
+
+	/**
+	 * Constructor
+	 */
+	private Snapshots()
+	{
+	}
+
+	/**
+	 * Builds a configuration the way the loader does, section by section
+	 *
+	 * @param first The value of first.a
+	 * @param second The value of second.b
+	 * @return The configuration
+	 */
+	static Config build(long first, long second)
+	{
+		Config config = new Config();
+		ConfigGroup group = new ConfigGroup();
+		group.put("a", first);
+		config.put("first", group);
+		group = new ConfigGroup();
+		group.put("b", second);
+		config.put("second", group);
+		return config;
+	}
+
+	/**
+	 * Reads first.a and second.b, a missing section or setting reads as 0
+	 *
+	 * @param config The configuration
+	 * @param result The result to fill
+	 */
+	static void read(Config config, JJ_Result result)
+	{
+		result.r1 = toLong(config.get("first").get("a"));
+		result.r2 = toLong(config.get("second").get("b"));
+	}
+
+	private static long toLong(Object value)
+	{
+		return value instanceof Long ? (Long) value : 0;
+	}
+
+}
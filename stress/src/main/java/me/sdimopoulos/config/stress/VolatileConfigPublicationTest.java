@@ -0,0 +1,50 @@
+package me.sdimopoulos.config.stress;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.JJ_Result;
+
+import me.sdimopoulos.config.Config;
+
+/**
+ * A loaded Config handed to readers through a volatile field
+ *
+ * The volatile write orders all the puts of the load before the publication,
+ * so a reader that sees the new Config sees all of it. This is the
+ * publication the lock-free readers of the loader rely on.
+ */
+@JCStressTest
+@Outcome(id = "-1, -1", expect = ACCEPTABLE, desc = "The config is not published yet")
+@Outcome(id = "1, 2", expect = ACCEPTABLE, desc = "The whole config is seen")
+@Outcome(id = {"0, 0", "1, 0", "0, 2"}, expect = FORBIDDEN,
+		desc = "The published config is seen partly built")
+@State
+public class VolatileConfigPublicationTest {
+
+	private volatile Config config;
+
+	@Actor
+	public void publisher()
+	{
+		config = Snapshots.build(1L, 2L);
+	}
+
+	@Actor
+	public void reader(JJ_Result result)
+	{
+		Config seen = config;
+		if (seen == null)
+		{
+			result.r1 = -1;
+			result.r2 = -1;
+			return;
+		}
+		Snapshots.read(seen, result);
+	}
+
+}